@@ -27,6 +27,7 @@ import org.apereo.portal.EntityIdentifier;
 import org.apereo.portal.groups.IEntityGroup;
 import org.apereo.portal.groups.IEntityNameFinder;
 import org.apereo.portal.groups.IGroupMember;
+import org.apereo.portal.persondir.BulkPersonAttributeResolver;
 import org.apereo.portal.portlet.om.IPortletDefinition;
 import org.apereo.portal.portlets.groupselector.EntityEnum;
 import org.apereo.portal.security.AuthorizationPrincipalHelper;
@@ -44,6 +45,17 @@ public class GroupListHelperImpl implements IGroupListHelper {
 
     private static final Log log = LogFactory.getLog(GroupListHelperImpl.class);
 
+    private BulkPersonAttributeResolver bulkPersonAttributeResolver;
+
+    /**
+     * Resolves the attributes of the person members of a group at once before their names are
+     * looked up. Optional.
+     */
+    public void setBulkPersonAttributeResolver(
+            BulkPersonAttributeResolver bulkPersonAttributeResolver) {
+        this.bulkPersonAttributeResolver = bulkPersonAttributeResolver;
+    }
+
     /*
      * (non-Javadoc)
      * @see org.apereo.portal.layout.dlm.remoting.IGroupListHelper#search(java.lang.String, java.lang.String)
@@ -432,9 +444,24 @@ public class GroupListHelperImpl implements IGroupListHelper {
     private JsonEntityBean populateChildren(
             JsonEntityBean jsonBean, Iterator<IGroupMember> children) {
 
+        List<IGroupMember> members = new ArrayList<>();
         while (children.hasNext()) {
+            members.add(children.next());
+        }
+
+        // The names of person members come from their attributes, resolve those for all of the
+        // members at once instead of one at a time
+        if (bulkPersonAttributeResolver != null) {
+            List<String> usernames = new ArrayList<>();
+            for (IGroupMember member : members) {
+                if (EntityEnum.PERSON.equals(getEntityType(member))) {
+                    usernames.add(member.getKey());
+                }
+            }
+            bulkPersonAttributeResolver.prefetch(usernames);
+        }
 
-            IGroupMember member = children.next();
+        for (IGroupMember member : members) {
 
             // add the entity bean to the list of children
             JsonEntityBean jsonChild = getEntity(member);
@@ -35,6 +35,7 @@ import javax.annotation.PostConstruct;
 import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
 import org.apereo.portal.EntityIdentifier;
+import org.apereo.portal.persondir.BulkPersonAttributeResolver;
 import org.apereo.portal.portlets.search.DisplayNameComparator;
 import org.apereo.portal.security.IAuthorizationPrincipal;
 import org.apereo.portal.security.IPermission;
@@ -64,6 +65,17 @@ public class PersonLookupHelperImpl implements IPersonLookupHelper {
         this.personAttributeDao = personLookupDao;
     }
 
+    private BulkPersonAttributeResolver bulkPersonAttributeResolver;
+
+    /**
+     * Resolves the attributes of the people found before checking the permission to view each of
+     * them, which for most searchers requires the group memberships of that person. Optional.
+     */
+    public void setBulkPersonAttributeResolver(
+            BulkPersonAttributeResolver bulkPersonAttributeResolver) {
+        this.bulkPersonAttributeResolver = bulkPersonAttributeResolver;
+    }
+
     private int maxResults = 10;
 
     public void setMaxResults(int maxResults) {
@@ -255,6 +267,17 @@ public class PersonLookupHelperImpl implements IPersonLookupHelper {
             Collections.sort(peopleList, new DisplayNameComparator());
             peopleList = peopleList.subList(0, maxResults);
         }
+        // The permission checks need the group memberships of the people found, which for PAGS
+        // groups look up the attributes of each person.  Cache those with a query per batch of
+        // people rather than one per person.
+        if (bulkPersonAttributeResolver != null) {
+            final List<String> usernames = new ArrayList<>(peopleList.size());
+            for (IPersonAttributes person : peopleList) {
+                usernames.add(person.getName());
+            }
+            bulkPersonAttributeResolver.prefetch(usernames);
+        }
+
         // Construct a new representation of the persons limited to attributes the searcher
         // has permissions to view.  Will change order of the list.
         List<IPersonAttributes> list =
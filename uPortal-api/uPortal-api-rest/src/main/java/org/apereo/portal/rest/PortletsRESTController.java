@@ -17,13 +17,17 @@ package org.apereo.portal.rest;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.StringUtils;
+import org.apereo.portal.AuthorizationException;
 import org.apereo.portal.EntityIdentifier;
 import org.apereo.portal.UserPreferencesManager;
 import org.apereo.portal.layout.IUserLayout;
@@ -32,6 +36,7 @@ import org.apereo.portal.layout.LayoutPortlet;
 import org.apereo.portal.portlet.om.IPortletDefinition;
 import org.apereo.portal.portlet.om.IPortletWindow;
 import org.apereo.portal.portlet.om.PortletCategory;
+import org.apereo.portal.portlet.om.PortletLifecycleState;
 import org.apereo.portal.portlet.registry.IPortletCategoryRegistry;
 import org.apereo.portal.portlet.registry.IPortletDefinitionRegistry;
 import org.apereo.portal.portlet.registry.IPortletWindowRegistry;
@@ -39,8 +44,10 @@ import org.apereo.portal.portlet.rendering.IPortletExecutionManager;
 import org.apereo.portal.portlets.favorites.FavoritesUtils;
 import org.apereo.portal.security.IAuthorizationPrincipal;
 import org.apereo.portal.security.IAuthorizationService;
+import org.apereo.portal.security.IPermission;
 import org.apereo.portal.security.IPerson;
 import org.apereo.portal.security.IPersonManager;
+import org.apereo.portal.security.PermissionHelper;
 import org.apereo.portal.url.PortalHttpServletFactoryService;
 import org.apereo.portal.user.IUserInstance;
 import org.apereo.portal.user.IUserInstanceManager;
@@ -119,16 +126,80 @@ public class PortletsRESTController {
 
         final Predicate<IPortletDefinition> favoritesPredicate =
                 p -> !limitByFavoriteFlag || favorites.contains(p) == favoriteValueToMatch;
-        final Predicate<IPortletDefinition> permissionsPredicate =
-                p -> this.doesUserHavePermissionToViewPortlet(ap, p, requiredPermissionType);
+        final List<IPortletDefinition> candidates =
+                allPortlets.stream().filter(favoritesPredicate).collect(Collectors.toList());
+        final Set<IPortletDefinition> permitted =
+                getPortletsUserHasPermissionToView(ap, candidates, requiredPermissionType);
         final List<PortletTuple> results =
-                allPortlets.stream()
-                        .filter(favoritesPredicate.and(permissionsPredicate))
+                candidates.stream()
+                        .filter(permitted::contains)
                         .map(PortletTuple::new)
                         .collect(Collectors.toList());
         return new ModelAndView("json", "portlets", results);
     }
 
+    /**
+     * The BROWSE, RENDER and SUBSCRIBE permissions all have the portlet as target and an activity
+     * chosen by its lifecycle state, so the portlets are checked with one {@link
+     * IAuthorizationService#getPermittedTargets} call per activity instead of one call each.
+     */
+    private Set<IPortletDefinition> getPortletsUserHasPermissionToView(
+            IAuthorizationPrincipal ap,
+            List<IPortletDefinition> portletDefinitions,
+            PortletPermissionType requiredPermissionType) {
+        final Function<PortletLifecycleState, String> activityForLifecycleState;
+        switch (requiredPermissionType) {
+            case BROWSE:
+                activityForLifecycleState = PermissionHelper::browseActivityForLifecycleState;
+                break;
+            case RENDER:
+                // Anyone who can subscribe to a portlet can render it
+            case SUBSCRIBE:
+                activityForLifecycleState = PermissionHelper::subscribeActivityForLifecycleState;
+                break;
+            default:
+                return portletDefinitions.stream()
+                        .filter(
+                                p ->
+                                        this.doesUserHavePermissionToViewPortlet(
+                                                ap, p, requiredPermissionType))
+                        .collect(Collectors.toSet());
+        }
+
+        final Map<String, Map<String, IPortletDefinition>> portletsByActivity =
+                new LinkedHashMap<>();
+        for (IPortletDefinition portletDefinition : portletDefinitions) {
+            final String activity =
+                    activityForLifecycleState.apply(portletDefinition.getLifecycleState());
+            if (activity == null) {
+                throw new AuthorizationException(
+                        "Unrecognized lifecycle state for channel "
+                                + portletDefinition.getPortletDefinitionId().getStringId());
+            }
+            portletsByActivity
+                    .computeIfAbsent(activity, k -> new LinkedHashMap<>())
+                    .put(
+                            PermissionHelper.permissionTargetIdForPortletDefinition(
+                                    portletDefinition),
+                            portletDefinition);
+        }
+
+        final Set<IPortletDefinition> result = new HashSet<>();
+        for (Map.Entry<String, Map<String, IPortletDefinition>> entry :
+                portletsByActivity.entrySet()) {
+            final Map<String, IPortletDefinition> portletsByTarget = entry.getValue();
+            for (String target :
+                    this.authorizationService.getPermittedTargets(
+                            ap,
+                            IPermission.PORTAL_SUBSCRIBE,
+                            entry.getKey(),
+                            portletsByTarget.keySet())) {
+                result.add(portletsByTarget.get(target));
+            }
+        }
+        return result;
+    }
+
     private boolean doesUserHavePermissionToViewPortlet(
             IAuthorizationPrincipal ap,
             IPortletDefinition portletDefinition,
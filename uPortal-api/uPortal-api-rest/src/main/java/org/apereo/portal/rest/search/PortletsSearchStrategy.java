@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,13 +27,11 @@ import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
 import org.apereo.portal.UserPreferencesManager;
 import org.apereo.portal.index.PortalSearchIndexer;
 import org.apereo.portal.index.SearchField;
@@ -60,13 +59,15 @@ public class PortletsSearchStrategy implements ISearchStrategy {
 
     private static final String RESULT_TYPE_NAME = "portlets";
 
-    private MultiFieldQueryParser queryParser;
+    private String[] queryFields;
+
+    private Map<String, Float> queryBoosts;
 
     private boolean displayScore;
 
     private boolean displayFavoriteFlag;
 
-    @Autowired private Directory directory;
+    @Autowired private PortalSearchIndexer portalSearchIndexer;
 
     @Autowired private IPortletDefinitionRegistry portletDefinitionRegistry;
 
@@ -92,11 +93,14 @@ public class PortletsSearchStrategy implements ISearchStrategy {
 
     @PostConstruct
     public void init() {
-        final String[] fields =
+        queryFields =
                 Arrays.stream(SearchField.values())
                         .map(SearchField::getValue)
                         .toArray(String[]::new);
-        queryParser = new MultiFieldQueryParser(fields, new StandardAnalyzer());
+        queryBoosts = new HashMap<>();
+        for (SearchField searchField : SearchField.values()) {
+            queryBoosts.put(searchField.getValue(), searchField.getBoost());
+        }
     }
 
     @Override
@@ -110,10 +114,21 @@ public class PortletsSearchStrategy implements ISearchStrategy {
         final List<Object> result = new ArrayList<>();
         final Set<IPortletDefinition> favorites = getFavorites(request);
 
-        try (IndexReader indexReader = DirectoryReader.open(directory)) {
+        final IndexSearcher searcher;
+        try {
+            searcher = portalSearchIndexer.acquireSearcher();
+        } catch (Exception e) {
+            logger.warn("Failed to search portal content for query='{}'", query, e);
+            return result;
+        }
+        if (searcher == null) {
+            logger.debug("No portlets indexed yet, nothing matches query='{}'", query);
+            return result;
+        }
+
+        try {
             final String queryString = query.endsWith(" ") ? query : query + "*";
-            final Query q = queryParser.parse(queryString);
-            final IndexSearcher searcher = new IndexSearcher(indexReader);
+            final Query q = parseQuery(queryString);
             final TopDocs topDocs = searcher.search(q, 50);
             Arrays.stream(topDocs.scoreDocs)
                     .forEach(
@@ -161,11 +176,24 @@ public class PortletsSearchStrategy implements ISearchStrategy {
         } catch (Exception e) {
             // Log a warning, but don't prevent other search strategies from succeeding...
             logger.warn("Failed to search portal content for query='{}'", query, e);
+        } finally {
+            try {
+                portalSearchIndexer.releaseSearcher(searcher);
+            } catch (IOException e) {
+                logger.warn("Failed to release index searcher", e);
+            }
         }
 
         return result;
     }
 
+    /** Query parsers are not thread safe, so each search gets its own */
+    private Query parseQuery(String queryString) throws ParseException {
+        final MultiFieldQueryParser queryParser =
+                new MultiFieldQueryParser(queryFields, new StandardAnalyzer(), queryBoosts);
+        return queryParser.parse(queryString);
+    }
+
     private Map<String, Object> getPortletAttrs(
             IPortletDefinition portlet,
             String url,
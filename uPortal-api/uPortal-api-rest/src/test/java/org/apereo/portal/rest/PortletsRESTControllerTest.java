@@ -7,10 +7,17 @@ import static org.apereo.portal.rest.PortletsRESTController.PortletPermissionTyp
 import static org.apereo.portal.rest.PortletsRESTController.PortletPermissionType.SUBSCRIBE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,8 +37,10 @@ import org.apereo.portal.portlet.registry.IPortletDefinitionRegistry;
 import org.apereo.portal.portlets.favorites.FavoritesUtils;
 import org.apereo.portal.security.IAuthorizationPrincipal;
 import org.apereo.portal.security.IAuthorizationService;
+import org.apereo.portal.security.IPermission;
 import org.apereo.portal.security.IPerson;
 import org.apereo.portal.security.IPersonManager;
+import org.apereo.portal.security.PermissionHelper;
 import org.apereo.portal.user.IUserInstance;
 import org.apereo.portal.user.IUserInstanceManager;
 import org.junit.Before;
@@ -152,6 +161,40 @@ public class PortletsRESTControllerTest {
         this.verifyPortletResults(mav, this.portletDefinition1, this.portletDefinition3);
     }
 
+    @Test
+    public void testGetPortletsChecksBrowsePermissionOncePerActivity() {
+        given(this.portletDefinition2.getLifecycleState())
+                .willReturn(PortletLifecycleState.APPROVED);
+        this.givenRequestSpecifiesPermissionType(BROWSE);
+        this.givenUserHasPermissionForPortlets(
+                this.user, BROWSE, this.portletDefinition1, this.portletDefinition2);
+        final ModelAndView mav = this.portletsRESTController.getPortlets(request);
+        this.verifyPortletResults(mav, this.portletDefinition1, this.portletDefinition2);
+        verify(this.authorizationService)
+                .getPermittedTargets(
+                        this.authorizationPrincipal,
+                        IPermission.PORTAL_SUBSCRIBE,
+                        IPermission.PORTLET_BROWSE_ACTIVITY,
+                        new HashSet<>(
+                                Arrays.asList(
+                                        PermissionHelper.permissionTargetIdForPortletDefinition(
+                                                this.portletDefinition1),
+                                        PermissionHelper.permissionTargetIdForPortletDefinition(
+                                                this.portletDefinition3))));
+        verify(this.authorizationService)
+                .getPermittedTargets(
+                        this.authorizationPrincipal,
+                        IPermission.PORTAL_SUBSCRIBE,
+                        IPermission.PORTLET_BROWSE_APPROVED_ACTIVITY,
+                        new HashSet<>(
+                                Arrays.asList(
+                                        PermissionHelper.permissionTargetIdForPortletDefinition(
+                                                this.portletDefinition2))));
+        verify(this.authorizationService, never())
+                .canPrincipalBrowse(
+                        any(IAuthorizationPrincipal.class), any(IPortletDefinition.class));
+    }
+
     @Test
     public void testGetPortletsWhenLimitingToFavoritedPortlets() {
         this.givenRequestSpecifiesFavoriteFlag(true);
@@ -211,16 +254,19 @@ public class PortletsRESTControllerTest {
             IPerson user,
             PortletsRESTController.PortletPermissionType permissionType,
             IPortletDefinition... portletDefinitions) {
+        switch (permissionType) {
+            case BROWSE:
+            case RENDER:
+            case SUBSCRIBE:
+                this.givenUserHasPermissionForTargets(portletDefinitions);
+                return;
+            default:
+                break;
+        }
         for (IPortletDefinition portletDefinition : portletDefinitions) {
             final String portletDefinitionStringId =
                     portletDefinition.getPortletDefinitionId().getStringId();
             switch (permissionType) {
-                case BROWSE:
-                    given(
-                                    this.authorizationService.canPrincipalBrowse(
-                                            this.authorizationPrincipal, portletDefinition))
-                            .willReturn(true);
-                    break;
                 case CONFIGURE:
                     given(
                                     this.authorizationService.canPrincipalConfigure(
@@ -233,18 +279,6 @@ public class PortletsRESTControllerTest {
                                             this.authorizationPrincipal, portletDefinitionStringId))
                             .willReturn(true);
                     break;
-                case SUBSCRIBE:
-                    given(
-                                    this.authorizationService.canPrincipalSubscribe(
-                                            this.authorizationPrincipal, portletDefinitionStringId))
-                            .willReturn(true);
-                    break;
-                case RENDER:
-                    given(
-                                    this.authorizationService.canPrincipalRender(
-                                            this.authorizationPrincipal, portletDefinitionStringId))
-                            .willReturn(true);
-                    break;
                 default:
                     throw new IllegalArgumentException(
                             "Unknown permission type: " + permissionType);
@@ -252,6 +286,31 @@ public class PortletsRESTControllerTest {
         }
     }
 
+    /** BROWSE, RENDER and SUBSCRIBE are checked in bulk, per activity. */
+    private void givenUserHasPermissionForTargets(IPortletDefinition... portletDefinitions) {
+        final Set<String> permittedTargets = new HashSet<>();
+        for (IPortletDefinition portletDefinition : portletDefinitions) {
+            permittedTargets.add(
+                    PermissionHelper.permissionTargetIdForPortletDefinition(portletDefinition));
+        }
+        given(
+                        this.authorizationService.getPermittedTargets(
+                                eq(this.authorizationPrincipal),
+                                eq(IPermission.PORTAL_SUBSCRIBE),
+                                anyString(),
+                                anyCollection()))
+                .willAnswer(
+                        invocation -> {
+                            final Set<String> result = new HashSet<>();
+                            for (Object target : invocation.getArgument(3, Collection.class)) {
+                                if (permittedTargets.contains(target)) {
+                                    result.add((String) target);
+                                }
+                            }
+                            return result;
+                        });
+    }
+
     private void givenUserHasFavoritePortlets(
             IPerson user, IPortletDefinition... portletDefinitions) {
         final Set<IPortletDefinition> favoritePortlets = new HashSet<>();
@@ -0,0 +1,135 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.rest.search;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apereo.portal.index.PortalSearchIndexer;
+import org.apereo.portal.index.SearchField;
+import org.apereo.portal.portlet.om.IPortletDefinition;
+import org.apereo.portal.portlet.registry.IPortletDefinitionRegistry;
+import org.apereo.portal.portlets.search.PortletRegistryUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class PortletsSearchStrategyTest {
+
+    @InjectMocks private PortletsSearchStrategy strategy;
+
+    @Mock private PortalSearchIndexer portalSearchIndexer;
+
+    @Mock private IPortletDefinitionRegistry portletDefinitionRegistry;
+
+    @Mock private PortletRegistryUtil portletRegistryUtil;
+
+    @Mock private HttpServletRequest req;
+
+    @Mock private IPortletDefinition weather;
+
+    @Mock private IPortletDefinition news;
+
+    private Directory directory;
+
+    private DirectoryReader reader;
+
+    @Before
+    public void setup() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        strategy.setDisplayFavoriteFlag(false);
+        strategy.setDisplayScore(false);
+        strategy.init();
+
+        when(weather.getFName()).thenReturn("weather");
+        when(weather.getTitle()).thenReturn("Weather");
+        when(news.getFName()).thenReturn("news");
+        when(news.getTitle()).thenReturn("Campus News");
+        when(portletDefinitionRegistry.getPortletDefinitionByFname("weather")).thenReturn(weather);
+        when(portletDefinitionRegistry.getPortletDefinitionByFname("news")).thenReturn(news);
+
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer =
+                new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(document("weather", "Weather"));
+            writer.addDocument(document("news", "Campus News"));
+        }
+        reader = DirectoryReader.open(directory);
+        when(portalSearchIndexer.acquireSearcher()).thenReturn(new IndexSearcher(reader));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void testSearch() throws IOException {
+        when(portletRegistryUtil.buildPortletUrl(req, news)).thenReturn("/p/news");
+
+        final List<?> result = strategy.search("camp", req);
+
+        Assert.assertEquals(1, result.size());
+        final Map<?, ?> attrs = (Map<?, ?>) result.get(0);
+        Assert.assertEquals("news", attrs.get("fname"));
+        Assert.assertEquals("/p/news", attrs.get("url"));
+        Assert.assertFalse(attrs.containsKey("favorite"));
+        Assert.assertFalse(attrs.containsKey("score"));
+        verify(portalSearchIndexer).releaseSearcher(any(IndexSearcher.class));
+    }
+
+    @Test
+    public void testSearchSkipsPortletsWithoutUrl() throws IOException {
+        when(portletRegistryUtil.buildPortletUrl(req, news)).thenReturn(null);
+
+        Assert.assertTrue(strategy.search("news", req).isEmpty());
+        verify(portalSearchIndexer).releaseSearcher(any(IndexSearcher.class));
+    }
+
+    @Test
+    public void testSearchBeforeIndexing() throws IOException {
+        when(portalSearchIndexer.acquireSearcher()).thenReturn(null);
+
+        Assert.assertTrue(strategy.search("news", req).isEmpty());
+    }
+
+    private static Document document(String fname, String title) {
+        final Document doc = new Document();
+        doc.add(new TextField(PortalSearchIndexer.LUCENE_DOC_ID_FIELD, fname, Field.Store.YES));
+        doc.add(new TextField(SearchField.FNAME.getValue(), fname, Field.Store.YES));
+        doc.add(new TextField(SearchField.TITLE.getValue(), title, Field.Store.YES));
+        return doc;
+    }
+}
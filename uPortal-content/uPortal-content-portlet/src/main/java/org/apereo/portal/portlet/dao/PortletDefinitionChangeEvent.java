@@ -0,0 +1,66 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.portlet.dao;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event : the portlet definition with the indicated fname was saved or deleted. Published while the
+ * change is still part of the current transaction, listeners that read the definition back should
+ * do so after the transaction has had a chance to commit.
+ */
+public class PortletDefinitionChangeEvent extends ApplicationEvent {
+
+    public enum ChangeType {
+        SAVED,
+        DELETED
+    }
+
+    private final String fname;
+    private final ChangeType changeType;
+
+    /**
+     * @param source the component that published the event (never <code>null</code>)
+     * @param fname non-null fname of the changed portlet definition
+     * @param changeType non-null kind of change
+     */
+    public PortletDefinitionChangeEvent(Object source, String fname, ChangeType changeType) {
+        super(source);
+
+        Validate.notNull(fname, "fname can not be null");
+        Validate.notNull(changeType, "changeType can not be null");
+
+        this.fname = fname;
+        this.changeType = changeType;
+    }
+
+    public String getFname() {
+        return this.fname;
+    }
+
+    public ChangeType getChangeType() {
+        return this.changeType;
+    }
+
+    @Override
+    public String toString() {
+        return "PortletDefinitionChangeEvent [fname="
+                + this.fname
+                + ", changeType="
+                + this.changeType
+                + "]";
+    }
+}
@@ -67,6 +67,17 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 
+/**
+ * Aggregates raw portal events while holding the {@link #AGGREGATION_LOCK_NAME} cluster lock. Every
+ * aggregator handles each event on the aggregation thread. This happens in the one AggrEvents
+ * transaction that also records the new last event date of the aggregation status. If any
+ * aggregator fails, the whole batch rolls back and is aggregated again on the next run.
+ *
+ * <p>The aggregators are deliberately not run in parallel. Each worker thread would need its own
+ * transaction, because a JPA EntityManager cannot be shared across threads. If the workers commit
+ * separately, a batch can be partly committed and then aggregated a second time on retry. Avoiding
+ * that would need each aggregator to record its own progress in the aggregation status.
+ */
 @Service
 public class PortalRawEventsAggregatorImpl extends BaseAggrEventsJpaDao
         implements PortalRawEventsAggregator, DisposableBean {
@@ -18,8 +18,12 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import javax.persistence.EntityManager;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -40,6 +44,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
 /**
  * Stores portal events using JPA/Hibenate no internal batch segmentation is done to the passed list
@@ -49,15 +56,24 @@ import org.springframework.stereotype.Repository;
 @Repository
 public class JpaPortalEventStore extends BaseRawEventsJpaDao implements IPortalEventDao {
 
+    /** Maximum number of ids bound into a single IN list when marking events */
+    private static final int MAX_IN_LIST_SIZE = 500;
+
     private ObjectMapper mapper;
     private String deleteQuery;
     private String selectQuery;
     private String selectUnaggregatedQuery;
-    private int flushPeriod = 1000;
+    private String selectUnaggregatedAfterQuery;
+    private String markAggregatedQuery;
+    private String markErrorAggregatingQuery;
+    private int pageSize = 1000;
+    private int storeBatchSize = 0;
     private CriteriaQuery<DateTime> findNewestPersistentPortalEventTimestampQuery;
     private CriteriaQuery<DateTime> findOldestPersistentPortalEventTimestampQuery;
     private ParameterExpression<DateTime> startTimeParameter;
     private ParameterExpression<DateTime> endTimeParameter;
+    private ParameterExpression<DateTime> lastTimestampParameter;
+    private ParameterExpression<Long> lastIdParameter;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -67,19 +83,44 @@ public class JpaPortalEventStore extends BaseRawEventsJpaDao implements IPortalE
     }
 
     /**
-     * Frequency that updated events should be flushed during a call to
-     * aggregatePortalEvents(DateTime, DateTime, int, FunctionWithoutResult), defaults to 1000.
+     * Number of raw events read per page during a call to aggregatePortalEvents(DateTime, DateTime,
+     * int, FunctionWithoutResult), the aggregated flags for each page are updated in bulk once the
+     * page has been processed. Defaults to the deprecated aggregationFlushPeriod property, or 1000.
      */
     @Value(
-            "${org.apereo.portal.events.handlers.db.JpaPortalEventStore.aggregationFlushPeriod:1000}")
+            "${org.apereo.portal.events.handlers.db.JpaPortalEventStore.aggregationPageSize:"
+                    + "${org.apereo.portal.events.handlers.db.JpaPortalEventStore.aggregationFlushPeriod:1000}}")
+    public void setAggregationPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @deprecated Events are no longer flushed during aggregation, use {@link
+     *     #setAggregationPageSize(int)}
+     */
+    @Deprecated
     public void setAggregationFlushPeriod(int flushPeriod) {
-        this.flushPeriod = flushPeriod;
+        this.setAggregationPageSize(flushPeriod);
+    }
+
+    /**
+     * Number of events to persist before flushing and clearing the session during a call to
+     * storePortalEvents(Iterable). When greater than 0 events are written in bounded batches, each
+     * in its own transaction, so that Hibernate can use JDBC batched inserts. Defaults to 0 which
+     * persists every event in one transaction and flushes on commit.
+     */
+    @Value("${org.apereo.portal.events.handlers.db.JpaPortalEventStore.storeBatchSize:0}")
+    public void setStoreBatchSize(int storeBatchSize) {
+        this.storeBatchSize = storeBatchSize;
     }
 
     @Override
     public void afterPropertiesSet() throws Exception {
         this.startTimeParameter = this.createParameterExpression(DateTime.class, "startTime");
         this.endTimeParameter = this.createParameterExpression(DateTime.class, "endTime");
+        this.lastTimestampParameter =
+                this.createParameterExpression(DateTime.class, "lastTimestamp");
+        this.lastIdParameter = this.createParameterExpression(Long.class, "lastId");
 
         this.selectQuery =
                 "SELECT e "
@@ -100,9 +141,8 @@ public class JpaPortalEventStore extends BaseRawEventsJpaDao implements IPortalE
                         + PersistentPortalEvent_.timestamp.getName()
                         + " ASC";
 
-        this.selectUnaggregatedQuery =
-                "SELECT e "
-                        + "FROM "
+        final String unaggregatedRestriction =
+                "FROM "
                         + PersistentPortalEvent.class.getName()
                         + " e "
                         + "WHERE e."
@@ -124,11 +164,43 @@ public class JpaPortalEventStore extends BaseRawEventsJpaDao implements IPortalE
                         + PersistentPortalEvent_.errorAggregating.getName()
                         + " is null OR e."
                         + PersistentPortalEvent_.errorAggregating.getName()
-                        + " = false) "
-                        + "ORDER BY e."
+                        + " = false) ";
+
+        final String unaggregatedOrder =
+                "ORDER BY e."
                         + PersistentPortalEvent_.timestamp.getName()
+                        + " ASC, e."
+                        + PersistentPortalEvent_.id.getName()
                         + " ASC";
 
+        this.selectUnaggregatedQuery = "SELECT e " + unaggregatedRestriction + unaggregatedOrder;
+
+        // Keyset pagination, continue after the (timestamp, id) of the last event in a page
+        this.selectUnaggregatedAfterQuery =
+                "SELECT e "
+                        + unaggregatedRestriction
+                        + "AND (e."
+                        + PersistentPortalEvent_.timestamp.getName()
+                        + " > :"
+                        + this.lastTimestampParameter.getName()
+                        + " OR (e."
+                        + PersistentPortalEvent_.timestamp.getName()
+                        + " = :"
+                        + this.lastTimestampParameter.getName()
+                        + " AND e."
+                        + PersistentPortalEvent_.id.getName()
+                        + " > :"
+                        + this.lastIdParameter.getName()
+                        + ")) "
+                        + unaggregatedOrder;
+
+        // Native updates avoid the temporary id tables Hibernate uses for bulk HQL updates on
+        // entities mapped with joined inheritance
+        this.markAggregatedQuery =
+                "UPDATE UP_RAW_EVENTS SET AGGREGATED = :flag WHERE EVENT_ID IN (:eventIds)";
+        this.markErrorAggregatingQuery =
+                "UPDATE UP_RAW_EVENTS SET ERROR_AGGR = :flag WHERE EVENT_ID IN (:eventIds)";
+
         this.deleteQuery =
                 "DELETE FROM "
                         + PersistentPortalEvent.class.getName()
@@ -208,9 +280,28 @@ public class JpaPortalEventStore extends BaseRawEventsJpaDao implements IPortalE
         }
     }
 
+    /**
+     * Runs in a raw events transaction, or in one transaction per batch when {@link
+     * #setStoreBatchSize(int)} is greater than 0.
+     */
     @Override
-    @RawEventsTransactional
-    public void storePortalEvents(Iterable<PortalEvent> portalEvents) {
+    public void storePortalEvents(final Iterable<PortalEvent> portalEvents) {
+        if (this.storeBatchSize > 0) {
+            this.storePortalEventBatches(portalEvents);
+            return;
+        }
+
+        this.getTransactionOperations()
+                .execute(
+                        new TransactionCallbackWithoutResult() {
+                            @Override
+                            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                                storeEachPortalEvent(portalEvents);
+                            }
+                        });
+    }
+
+    private void storeEachPortalEvent(Iterable<PortalEvent> portalEvents) {
         for (final PortalEvent portalEvent : portalEvents) {
             try {
                 storePortalEvent(portalEvent);
@@ -225,6 +316,112 @@ public class JpaPortalEventStore extends BaseRawEventsJpaDao implements IPortalE
         }
     }
 
+    /**
+     * Persists events in batches of {@link #setStoreBatchSize(int)}, each batch in its own
+     * transaction that is flushed and cleared before it commits so the inserts are sent as JDBC
+     * batches and the persistence context does not grow with the number of events.
+     */
+    private void storePortalEventBatches(Iterable<PortalEvent> portalEvents) {
+        final List<PortalEvent> batch = new ArrayList<PortalEvent>(this.storeBatchSize);
+        int eventCount = 0;
+        for (final PortalEvent portalEvent : portalEvents) {
+            batch.add(portalEvent);
+            if (batch.size() >= this.storeBatchSize) {
+                eventCount += this.storePortalEventBatch(batch);
+            }
+        }
+        eventCount += this.storePortalEventBatch(batch);
+
+        this.logger.debug("Stored {} events in batches of {}", eventCount, this.storeBatchSize);
+    }
+
+    /**
+     * Stores the batch in one transaction. If that transaction fails the events are stored again
+     * one transaction each, so a single event the database rejects does not lose the rest of the
+     * batch.
+     */
+    private int storePortalEventBatch(final List<PortalEvent> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return this.getTransactionOperations()
+                    .execute(
+                            new TransactionCallback<Integer>() {
+                                @Override
+                                public Integer doInTransaction(TransactionStatus status) {
+                                    return persistPortalEventBatch(batch);
+                                }
+                            });
+        } catch (RuntimeException re) {
+            this.logger.warn(
+                    "Failed to store a batch of "
+                            + batch.size()
+                            + " events, storing them one at a time. Exception="
+                            + re.getMessage());
+            return this.storePortalEventsIndividually(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /** Persists and flushes the batch, dropping the events that can not be persisted. */
+    private int persistPortalEventBatch(List<PortalEvent> batch) {
+        final EntityManager entityManager = this.getEntityManager();
+        int storedCount = 0;
+        for (final Iterator<PortalEvent> eventItr = batch.iterator(); eventItr.hasNext(); ) {
+            final PortalEvent portalEvent = eventItr.next();
+            try {
+                entityManager.persist(this.wrapPortalEvent(portalEvent));
+                storedCount++;
+            } catch (RuntimeException re) {
+                // Not worth storing individually either
+                eventItr.remove();
+                this.logger.warn(
+                        portalEvent.getClass().getName()
+                                + " could not be serialized or is not mapped as a persistent entity"
+                                + " and will not be stored. "
+                                + portalEvent
+                                + " Exception="
+                                + re.getMessage());
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        return storedCount;
+    }
+
+    private int storePortalEventsIndividually(List<PortalEvent> portalEvents) {
+        int storedCount = 0;
+        for (final PortalEvent portalEvent : portalEvents) {
+            try {
+                this.getTransactionOperations()
+                        .execute(
+                                new TransactionCallbackWithoutResult() {
+                                    @Override
+                                    protected void doInTransactionWithoutResult(
+                                            TransactionStatus status) {
+                                        final EntityManager entityManager = getEntityManager();
+                                        entityManager.persist(wrapPortalEvent(portalEvent));
+                                        entityManager.flush();
+                                        entityManager.clear();
+                                    }
+                                });
+                storedCount++;
+            } catch (RuntimeException re) {
+                this.logger.warn(
+                        "Failed to store "
+                                + portalEvent
+                                + ", it will not be stored. Exception="
+                                + re.getMessage());
+            }
+        }
+        return storedCount;
+    }
+
     @Override
     public DateTime getOldestPortalEventTimestamp() {
         final TypedQuery<DateTime> query =
@@ -250,73 +447,119 @@ public class JpaPortalEventStore extends BaseRawEventsJpaDao implements IPortalE
             Function<PortalEvent, Boolean> handler) {
         final Session session = this.getEntityManager().unwrap(Session.class);
         session.setFlushMode(FlushMode.COMMIT);
-        final org.hibernate.Query query = session.createQuery(this.selectUnaggregatedQuery);
-        query.setParameter(this.startTimeParameter.getName(), startTime);
-        query.setParameter(this.endTimeParameter.getName(), endTime);
-        if (maxEvents > 0) {
-            query.setMaxResults(maxEvents);
-        }
-
-        int resultCount = 0;
-        for (final ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
-                results.next(); ) {
-            final PersistentPortalEvent persistentPortalEvent =
-                    (PersistentPortalEvent) results.get(0);
-            final PortalEvent portalEvent;
-            try {
-                portalEvent =
-                        this.toPortalEvent(
-                                persistentPortalEvent.getEventData(),
-                                persistentPortalEvent.getEventType());
-            } catch (RuntimeException e) {
-                this.logger.warn(
-                        "Failed to convert PersistentPortalEvent to PortalEvent: "
-                                + persistentPortalEvent,
-                        e);
-
-                // Mark the event as error and store the mark to prevent trying to reprocess the
-                // broken event data
-                persistentPortalEvent.setErrorAggregating(true);
-                session.persist(persistentPortalEvent);
 
-                continue;
-            }
-
-            try {
+        final List<Long> aggregatedIds = new ArrayList<Long>(this.pageSize);
+        final List<Long> errorIds = new ArrayList<Long>();
 
-                final Boolean eventHandled = handler.apply(portalEvent);
-                if (!eventHandled) {
-                    this.logger.debug(
-                            "Aggregation stop requested before processing event {}", portalEvent);
-                    return false;
+        DateTime lastTimestamp = null;
+        long lastId = -1;
+        int resultCount = 0;
+        while (maxEvents <= 0 || resultCount < maxEvents) {
+            final int pageSize =
+                    maxEvents > 0
+                            ? Math.min(this.pageSize, maxEvents - resultCount)
+                            : this.pageSize;
+            final List<PersistentPortalEvent> page =
+                    this.selectUnaggregatedPage(
+                            session, startTime, endTime, lastTimestamp, lastId, pageSize);
+
+            for (final PersistentPortalEvent persistentPortalEvent : page) {
+                lastTimestamp = persistentPortalEvent.getTimestamp();
+                lastId = persistentPortalEvent.getId();
+                resultCount++;
+
+                final PortalEvent portalEvent;
+                try {
+                    portalEvent =
+                            this.toPortalEvent(
+                                    persistentPortalEvent.getEventData(),
+                                    persistentPortalEvent.getEventType());
+                } catch (RuntimeException e) {
+                    this.logger.warn(
+                            "Failed to convert PersistentPortalEvent to PortalEvent: "
+                                    + persistentPortalEvent,
+                            e);
+
+                    // Mark the event as error to prevent trying to reprocess the broken event data
+                    errorIds.add(persistentPortalEvent.getId());
+                    continue;
                 }
 
-                // Mark the event as aggregated and store the mark
-                persistentPortalEvent.setAggregated(true);
-                session.persist(persistentPortalEvent);
-
-                // periodic flush and clear of session to manage memory demands
-                if (++resultCount % this.flushPeriod == 0) {
-                    this.logger.debug(
-                            "Aggregated {} events, flush and clear {} EntityManager.",
-                            resultCount,
-                            BaseRawEventsJpaDao.PERSISTENCE_UNIT_NAME);
-                    session.flush();
-                    session.clear();
+                try {
+                    final Boolean eventHandled = handler.apply(portalEvent);
+                    if (!eventHandled) {
+                        this.logger.debug(
+                                "Aggregation stop requested before processing event {}",
+                                portalEvent);
+                        this.markEvents(session, aggregatedIds, errorIds);
+                        return false;
+                    }
+
+                    // Mark the event as aggregated
+                    aggregatedIds.add(persistentPortalEvent.getId());
+                } catch (Exception e) {
+                    this.logger.warn(
+                            "Failed to aggregate portal event: " + persistentPortalEvent, e);
+                    // mark the event as erred and move on. This will not be picked up by
+                    // processing again
+                    errorIds.add(persistentPortalEvent.getId());
                 }
+            }
+
+            // Store the marks for the page with set-based updates and release the loaded events
+            this.markEvents(session, aggregatedIds, errorIds);
+            session.clear();
+            this.logger.debug(
+                    "Aggregated {} events, cleared {} EntityManager.",
+                    resultCount,
+                    BaseRawEventsJpaDao.PERSISTENCE_UNIT_NAME);
 
-            } catch (Exception e) {
-                this.logger.warn("Failed to aggregate portal event: " + persistentPortalEvent, e);
-                // mark the event as erred and move on. This will not be picked up by processing
-                // again
-                persistentPortalEvent.setErrorAggregating(true);
-                session.persist(persistentPortalEvent);
+            if (page.size() < pageSize) {
+                break;
             }
         }
 
         return true;
     }
 
+    @SuppressWarnings("unchecked")
+    private List<PersistentPortalEvent> selectUnaggregatedPage(
+            Session session,
+            DateTime startTime,
+            DateTime endTime,
+            DateTime lastTimestamp,
+            long lastId,
+            int pageSize) {
+        final org.hibernate.Query query;
+        if (lastTimestamp == null) {
+            query = session.createQuery(this.selectUnaggregatedQuery);
+        } else {
+            query = session.createQuery(this.selectUnaggregatedAfterQuery);
+            query.setParameter(this.lastTimestampParameter.getName(), lastTimestamp);
+            query.setParameter(this.lastIdParameter.getName(), lastId);
+        }
+        query.setParameter(this.startTimeParameter.getName(), startTime);
+        query.setParameter(this.endTimeParameter.getName(), endTime);
+        query.setReadOnly(true);
+        query.setMaxResults(pageSize);
+        return query.list();
+    }
+
+    private void markEvents(Session session, List<Long> aggregatedIds, List<Long> errorIds) {
+        this.markEvents(session, this.markAggregatedQuery, aggregatedIds);
+        this.markEvents(session, this.markErrorAggregatingQuery, errorIds);
+    }
+
+    private void markEvents(Session session, String markQuery, List<Long> eventIds) {
+        for (final List<Long> eventIdChunk : Lists.partition(eventIds, MAX_IN_LIST_SIZE)) {
+            session.createSQLQuery(markQuery)
+                    .setParameter("flag", Boolean.TRUE)
+                    .setParameterList("eventIds", eventIdChunk)
+                    .executeUpdate();
+        }
+        eventIds.clear();
+    }
+
     @Override
     public void getPortalEvents(
             DateTime startTime, DateTime endTime, FunctionWithoutResult<PortalEvent> handler) {
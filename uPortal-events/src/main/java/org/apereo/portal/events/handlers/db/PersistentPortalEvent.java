@@ -48,13 +48,11 @@ public class PersistentPortalEvent implements Serializable {
     @Id
     @GeneratedValue(generator = "UP_RAW_EVENTS_GEN")
     @Column(name = "EVENT_ID")
-    @SuppressWarnings("unused")
     private final long id;
 
     @Index(name = "IDX_UP_RAW_EVENTS_TIMESTAMP")
     @Column(name = "TIMESTAMP", nullable = false, updatable = false)
     @Type(type = "dateTime")
-    @SuppressWarnings("unused")
     private final DateTime timestamp;
 
     @Index(name = "IDX_UP_RAW_EVENTS_SERVER_ID")
@@ -111,6 +109,14 @@ public class PersistentPortalEvent implements Serializable {
         this.eventType = (Class<PortalEvent>) portalEvent.getClass();
     }
 
+    long getId() {
+        return this.id;
+    }
+
+    DateTime getTimestamp() {
+        return this.timestamp;
+    }
+
     public Class<PortalEvent> getEventType() {
         return this.eventType;
     }
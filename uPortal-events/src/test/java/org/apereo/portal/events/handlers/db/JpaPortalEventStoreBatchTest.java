@@ -0,0 +1,156 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.events.handlers.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import org.apereo.portal.events.PortalEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class JpaPortalEventStoreBatchTest {
+
+    private static final String REJECTED = "rejected";
+
+    /** Event data persisted in the current transaction but not flushed yet */
+    private final List<String> pending = new ArrayList<>();
+
+    /** Event data flushed to the database */
+    private final List<String> stored = new ArrayList<>();
+
+    private int transactionCount;
+
+    private ObjectMapper mapper;
+
+    private JpaPortalEventStore store;
+
+    @Before
+    public void setUp() {
+        final EntityManager entityManager = mock(EntityManager.class);
+        doAnswer(
+                        invocation -> {
+                            final PersistentPortalEvent event = invocation.getArgument(0);
+                            pending.add(event.getEventData());
+                            return null;
+                        })
+                .when(entityManager)
+                .persist(any());
+        doAnswer(
+                        invocation -> {
+                            if (pending.contains(REJECTED)) {
+                                throw new PersistenceException("Batch entry rejected");
+                            }
+                            stored.addAll(pending);
+                            pending.clear();
+                            return null;
+                        })
+                .when(entityManager)
+                .flush();
+        doAnswer(
+                        invocation -> {
+                            pending.clear();
+                            return null;
+                        })
+                .when(entityManager)
+                .clear();
+
+        mapper = mock(ObjectMapper.class);
+
+        store = new JpaPortalEventStore();
+        store.setEntityManager(entityManager);
+        store.setMapper(mapper);
+        store.setTransactionOperations(
+                new TransactionOperations() {
+                    @Override
+                    public <T> T execute(TransactionCallback<T> action) {
+                        transactionCount++;
+                        try {
+                            return action.doInTransaction(mock(TransactionStatus.class));
+                        } catch (RuntimeException re) {
+                            // Roll back
+                            pending.clear();
+                            throw re;
+                        }
+                    }
+                });
+    }
+
+    @Test
+    public void testStoreWithoutBatches() throws Exception {
+        store.setStoreBatchSize(0);
+
+        store.storePortalEvents(Arrays.asList(event("e1"), event("e2"), event("e3")));
+
+        // Flushed when the one transaction commits
+        assertEquals(Arrays.asList("e1", "e2", "e3"), pending);
+        assertEquals(1, transactionCount);
+    }
+
+    @Test
+    public void testStoreBatches() throws Exception {
+        store.setStoreBatchSize(2);
+
+        store.storePortalEvents(
+                Arrays.asList(event("e1"), event("e2"), event("e3"), event("e4"), event("e5")));
+
+        assertEquals(Arrays.asList("e1", "e2", "e3", "e4", "e5"), stored);
+        assertEquals(3, transactionCount);
+    }
+
+    @Test
+    public void testUnserializableEventIsSkipped() throws Exception {
+        store.setStoreBatchSize(2);
+        final PortalEvent unserializable = mock(PortalEvent.class);
+        when(mapper.writeValueAsString(unserializable)).thenThrow(JsonMappingException.class);
+
+        store.storePortalEvents(
+                Arrays.asList(event("e1"), unserializable, event("e3"), event("e4"), event("e5")));
+
+        assertEquals(Arrays.asList("e1", "e3", "e4", "e5"), stored);
+        assertEquals(3, transactionCount);
+    }
+
+    @Test
+    public void testFailedBatchIsStoredOneEventAtATime() throws Exception {
+        store.setStoreBatchSize(2);
+
+        store.storePortalEvents(
+                Arrays.asList(event("e1"), event("e2"), event(REJECTED), event("e4"), event("e5")));
+
+        assertEquals(Arrays.asList("e1", "e2", "e4", "e5"), stored);
+        // The failed batch, then one transaction for each of its events
+        assertEquals(5, transactionCount);
+    }
+
+    private PortalEvent event(String eventData) throws Exception {
+        final PortalEvent event = mock(PortalEvent.class);
+        when(mapper.writeValueAsString(event)).thenReturn(eventData);
+        return event;
+    }
+}
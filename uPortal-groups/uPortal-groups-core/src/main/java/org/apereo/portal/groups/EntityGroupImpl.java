@@ -14,10 +14,14 @@
  */
 package org.apereo.portal.groups;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.naming.Name;
 import net.sf.ehcache.Cache;
@@ -170,31 +174,21 @@ public class EntityGroupImpl extends GroupMemberImpl implements IEntityGroup {
      */
     @Override
     public boolean deepContains(IGroupMember gm) throws GroupsException {
-        if (this.contains(gm)) {
-            return true;
-        }
-
-        boolean found = false;
-        Iterator<IEntityGroup> it = getMemberGroups();
-        while (it.hasNext() && !found) {
-            IEntityGroup group = it.next();
-            if (group != null) {
-                found = group.deepContains(gm);
-            } else {
-                // Something bad has happened:  we've abruptly lost a group node to
-                // which this group node refers.  This is an ERROR condition, but we
-                // shouldn't simply throw an exception because we know (from
-                // experience) it could make the portal unusable.  We definitely,
-                // need, however, to send a strong message.
-                String msg =
-                        "Groups Integrety Error:  Group '"
-                                + this.getName()
-                                + "' refers to a child group that is no longer available";
-                logger.error(msg);
+        // Walk down one level of the graph at a time so that the children of every group on a
+        // level can be looked up together
+        final Set<IEntityGroup> visited = new HashSet<>();
+        visited.add(this);
+        Collection<EntityGroupImpl> level = Collections.singleton(this);
+        while (!level.isEmpty()) {
+            final Map<EntityGroupImpl, Set<IGroupMember>> children = getChildren(level);
+            for (Set<IGroupMember> members : children.values()) {
+                if (members.contains(gm)) {
+                    return true;
+                }
             }
+            level = getMemberGroups(children, visited);
         }
-
-        return found;
+        return false;
     }
     /** Delegates to the factory. */
     @Override
@@ -216,7 +210,18 @@ public class EntityGroupImpl extends GroupMemberImpl implements IEntityGroup {
      */
     @Override
     public Set<IGroupMember> getDescendants() throws GroupsException {
-        return primGetAllMembers(new HashSet<IGroupMember>());
+        final Set<IGroupMember> result = new HashSet<>();
+        final Set<IEntityGroup> visited = new HashSet<>();
+        visited.add(this);
+        Collection<EntityGroupImpl> level = Collections.singleton(this);
+        while (!level.isEmpty()) {
+            final Map<EntityGroupImpl, Set<IGroupMember>> children = getChildren(level);
+            for (Set<IGroupMember> members : children.values()) {
+                result.addAll(members);
+            }
+            level = getMemberGroups(children, visited);
+        }
+        return result;
     }
     /**
      * Returns the <code>EntityIdentifier</code> cast to a <code>CompositeEntityIdentifier</code> so
@@ -269,21 +274,38 @@ public class EntityGroupImpl extends GroupMemberImpl implements IEntityGroup {
     }
 
     /**
-     * Returns an <code>Iterator</code> over the groups in our member <code>Collection</code>.
+     * Returns the groups among the children that have not been visited yet, marking them visited.
      * Reflects pending changes.
      *
-     * @return Iterator
+     * @param children the children of each group on one level of the graph
+     * @param visited the groups already walked, to avoid endless loops in case of circular group
+     *     dependencies
+     * @return Set
      */
-    private Iterator<IEntityGroup> getMemberGroups() throws GroupsException {
-
-        Set<IEntityGroup> result = new HashSet<>();
-        for (IGroupMember child : getChildren()) {
-            if (child.isGroup()) {
-                result.add((IEntityGroup) child);
+    private Set<EntityGroupImpl> getMemberGroups(
+            Map<EntityGroupImpl, Set<IGroupMember>> children, Set<IEntityGroup> visited) {
+
+        final Set<EntityGroupImpl> result = new HashSet<>();
+        for (Map.Entry<EntityGroupImpl, Set<IGroupMember>> entry : children.entrySet()) {
+            for (IGroupMember child : entry.getValue()) {
+                if (child == null) {
+                    // Something bad has happened:  we've abruptly lost a group node to
+                    // which this group node refers.  This is an ERROR condition, but we
+                    // shouldn't simply throw an exception because we know (from
+                    // experience) it could make the portal unusable.  We definitely,
+                    // need, however, to send a strong message.
+                    String msg =
+                            "Groups Integrety Error:  Group '"
+                                    + entry.getKey().getName()
+                                    + "' refers to a child group that is no longer available";
+                    logger.error(msg);
+                } else if (child.isGroup() && visited.add((IEntityGroup) child)) {
+                    result.add((EntityGroupImpl) child);
+                }
             }
         }
 
-        return result.iterator();
+        return result;
     }
 
     /**
@@ -309,6 +331,44 @@ public class EntityGroupImpl extends GroupMemberImpl implements IEntityGroup {
         return result;
     }
 
+    /**
+     * Returns the children of each of the groups, sharing the cache used by {@link #getChildren()}
+     * and asking the local group service of the misses for all of them at once.
+     */
+    private Map<EntityGroupImpl, Set<IGroupMember>> getChildren(
+            Collection<EntityGroupImpl> groups) throws GroupsException {
+        final Map<EntityGroupImpl, Set<IGroupMember>> result = new HashMap<>();
+        final Map<IIndividualGroupService, List<IEntityGroup>> uncached = new HashMap<>();
+        for (EntityGroupImpl group : groups) {
+            final Element element = childrenCache.get(group.getUnderlyingEntityIdentifier());
+            if (element != null) {
+                @SuppressWarnings("unchecked")
+                final Set<IGroupMember> children = (Set<IGroupMember>) element.getObjectValue();
+                result.put(group, children);
+            } else {
+                uncached.computeIfAbsent(group.getLocalGroupService(), k -> new ArrayList<>())
+                        .add(group);
+            }
+        }
+
+        for (Map.Entry<IIndividualGroupService, List<IEntityGroup>> entry : uncached.entrySet()) {
+            logger.debug("Constructing children for {} groups", entry.getValue().size());
+            final Map<IEntityGroup, List<IGroupMember>> members =
+                    entry.getKey().findMembersByGroup(entry.getValue());
+            for (IEntityGroup group : entry.getValue()) {
+                final List<IGroupMember> list = members.get(group);
+                final Set<IGroupMember> children =
+                        list != null
+                                ? Collections.unmodifiableSet(new HashSet<>(list))
+                                : Collections.<IGroupMember>emptySet();
+                childrenCache.put(new Element(group.getUnderlyingEntityIdentifier(), children));
+                result.put((EntityGroupImpl) group, children);
+            }
+        }
+
+        return result;
+    }
+
     /** @return String */
     @Override
     public String getName() {
@@ -406,23 +466,6 @@ public class EntityGroupImpl extends GroupMemberImpl implements IEntityGroup {
         childrenCache.put(new Element(cacheKey, children));
     }
 
-    /**
-     * Returns the <code>Set</code> of <code>IGroupMembers</code> in our member <code>Collection
-     * </code> and, recursively, in the <code>Collections</code> of our members.
-     *
-     * @param result Set - a Set that members are added to.
-     * @return Set
-     */
-    private Set<IGroupMember> primGetAllMembers(Set<IGroupMember> result) throws GroupsException {
-        for (IGroupMember gm : getChildren()) {
-            result.add(gm);
-            if (gm.isGroup()) {
-                ((EntityGroupImpl) gm).primGetAllMembers(result);
-            }
-        }
-        return result;
-    }
-
     /**
      * Removes the <code>IGroupMember</code> key from the appropriate key cache, by copying the
      * cache, removing the key from the copy and replacing the original with the copy. At this
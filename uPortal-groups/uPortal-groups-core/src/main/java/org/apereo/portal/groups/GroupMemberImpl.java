@@ -14,9 +14,14 @@
  */
 package org.apereo.portal.groups;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -71,7 +76,23 @@ public abstract class GroupMemberImpl implements IGroupMember {
      */
     @Override
     public Set<IEntityGroup> getAncestorGroups() throws GroupsException {
-        return primGetAncestorGroups(this, new HashSet<>());
+        // Walk up one level of the graph at a time so that the parents of every member on a level
+        // can be looked up together
+        final Set<IEntityGroup> result = new HashSet<>();
+        Collection<IGroupMember> level = Collections.singleton(this);
+        while (!level.isEmpty()) {
+            final Set<IGroupMember> nextLevel = new HashSet<>();
+            for (Set<IEntityGroup> parents : getParentGroups(level).values()) {
+                for (IEntityGroup group : parents) {
+                    // avoid endless loops in case of circular group dependencies
+                    if (result.add(group)) {
+                        nextLevel.add(group);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        return result;
     }
 
     /**
@@ -97,6 +118,43 @@ public abstract class GroupMemberImpl implements IGroupMember {
         return result;
     }
 
+    /**
+     * Returns the parent groups of each of the members, sharing the cache used by {@link
+     * #getParentGroups()} and asking the composite group service for all of the misses at once.
+     */
+    private Map<IGroupMember, Set<IEntityGroup>> getParentGroups(Collection<IGroupMember> members)
+            throws GroupsException {
+        final Map<IGroupMember, Set<IEntityGroup>> result = new HashMap<>();
+        final List<IGroupMember> uncached = new ArrayList<>();
+        for (IGroupMember member : members) {
+            final Element element = parentGroupsCache.get(member.getUnderlyingEntityIdentifier());
+            if (element != null) {
+                @SuppressWarnings("unchecked")
+                final Set<IEntityGroup> groups = (Set<IEntityGroup>) element.getObjectValue();
+                result.put(member, groups);
+            } else {
+                uncached.add(member);
+            }
+        }
+
+        if (!uncached.isEmpty()) {
+            logger.debug("Constructing containingGroups for {} members", uncached.size());
+            final Map<IGroupMember, List<IEntityGroup>> parents =
+                    GroupService.getCompositeGroupService().findParentGroupsByMember(uncached);
+            for (IGroupMember member : uncached) {
+                final List<IEntityGroup> groups = parents.get(member);
+                final Set<IEntityGroup> set =
+                        groups != null
+                                ? Collections.unmodifiableSet(new HashSet<>(groups))
+                                : Collections.<IEntityGroup>emptySet();
+                parentGroupsCache.put(new Element(member.getUnderlyingEntityIdentifier(), set));
+                result.put(member, set);
+            }
+        }
+
+        return result;
+    }
+
     private synchronized Set<IEntityGroup> buildParentGroupsSet() throws GroupsException {
         logger.debug(
                 "Constructing containingGroups for member='{}'", getUnderlyingEntityIdentifier());
@@ -131,11 +189,12 @@ public abstract class GroupMemberImpl implements IGroupMember {
 
     /**
      * Answers if this <code>IGroupMember</code> is, recursively, a member of <code>IGroupMember
-     * </code> gm.
+     * </code> gm. Walks up through the cached ancestors of this member rather than down through
+     * every descendant of <code>group</code>.
      */
     @Override
     public boolean isDeepMemberOf(IEntityGroup group) throws GroupsException {
-        return isMemberOf(group) ? true : group.deepContains(this);
+        return isMemberOf(group) ? true : getAncestorGroups().contains(group);
     }
 
     /** @return boolean */
@@ -161,27 +220,6 @@ public abstract class GroupMemberImpl implements IGroupMember {
         throw new UnsupportedOperationException("This member is not a group:  " + this.getKey());
     }
 
-    /**
-     * Returns the <code>Set</code> of groups in our member <code>Collection</code> and,
-     * recursively, in the <code>Collections</code> of our members.
-     *
-     * @param member org.apereo.portal.groups.IGroupMember - The current group member in the
-     *     recursive execution.
-     * @param result Set - A Set that groups are added to.
-     * @return Set
-     */
-    protected Set<IEntityGroup> primGetAncestorGroups(IGroupMember member, Set<IEntityGroup> result)
-            throws GroupsException {
-        for (IEntityGroup group : member.getParentGroups()) {
-            // avoid stack overflow in case of circular group dependencies
-            if (!result.contains(group)) {
-                result.add(group);
-                primGetAncestorGroups(group, result);
-            }
-        }
-        return result;
-    }
-
     @Override
     public final int hashCode() {
         final int prime = 31;
@@ -14,7 +14,12 @@
  */
 package org.apereo.portal.groups;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.naming.Name;
 import org.apereo.portal.EntityIdentifier;
 
@@ -37,6 +42,25 @@ public interface ICompositeGroupService extends IComponentGroupService {
      * @param gm IGroupMember
      */
     public Iterator findParentGroups(IGroupMember gm) throws GroupsException;
+    /**
+     * Returns the groups that contain each of the <code>IGroupMembers</code>, keyed by member.
+     * Services that can look up several members at once should override this default, which
+     * asks for each member in turn.
+     *
+     * @param members Collection of IGroupMember
+     */
+    public default Map<IGroupMember, List<IEntityGroup>> findParentGroupsByMember(
+            Collection<? extends IGroupMember> members) throws GroupsException {
+        final Map<IGroupMember, List<IEntityGroup>> result = new LinkedHashMap<>();
+        for (IGroupMember gm : members) {
+            final List<IEntityGroup> groups = new ArrayList<>();
+            for (Iterator it = findParentGroups(gm); it.hasNext(); ) {
+                groups.add((IEntityGroup) it.next());
+            }
+            result.put(gm, groups);
+        }
+        return result;
+    }
     /** Returns a pre-existing <code>IEntityGroup</code> or null if it does not exist. */
     public IEntityGroup findGroup(String key) throws GroupsException;
     /** Returns a pre-existing <code>IEntityGroup</code> or null if it does not exist. */
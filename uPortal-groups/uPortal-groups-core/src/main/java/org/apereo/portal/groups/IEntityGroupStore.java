@@ -14,7 +14,12 @@
  */
 package org.apereo.portal.groups;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apereo.portal.EntityIdentifier;
 
 /** Interface for finding and maintaining <code>IEntityGroups</code>. */
@@ -48,6 +53,26 @@ public interface IEntityGroupStore extends IGroupConstants {
      * @param gm org.apereo.portal.groups.IEntityGroup
      */
     Iterator findParentGroups(IGroupMember gm) throws GroupsException;
+    /**
+     * Returns the <code>IEntityGroups</code> that each of the <code>IGroupMembers</code> belongs
+     * to. Stores that can look up the memberships of several members at once should override this
+     * default, which asks for each member in turn.
+     *
+     * @return java.util.Map
+     * @param members java.util.Collection
+     */
+    default Map<IGroupMember, List<IEntityGroup>> findParentGroupsByMember(
+            Collection<? extends IGroupMember> members) throws GroupsException {
+        final Map<IGroupMember, List<IEntityGroup>> result = new LinkedHashMap<>();
+        for (IGroupMember gm : members) {
+            final List<IEntityGroup> groups = new ArrayList<>();
+            for (Iterator it = findParentGroups(gm); it.hasNext(); ) {
+                groups.add((IEntityGroup) it.next());
+            }
+            result.put(gm, groups);
+        }
+        return result;
+    }
     /**
      * Returns an <code>Iterator</code> over the <code>Collection</code> of <code>IEntities</code>
      * that are members of this <code>IEntityGroup</code>.
@@ -83,6 +108,26 @@ public interface IEntityGroupStore extends IGroupConstants {
      * @param group org.apereo.portal.groups.IEntityGroup
      */
     Iterator findMemberGroups(IEntityGroup group) throws GroupsException;
+    /**
+     * Returns the <code>IEntityGroups</code> that are members of each of the <code>IEntityGroups
+     * </code>. Stores that can look up the members of several groups at once should override this
+     * default, which asks for each group in turn.
+     *
+     * @return java.util.Map
+     * @param groups java.util.Collection
+     */
+    default Map<IEntityGroup, List<IEntityGroup>> findMemberGroupsByGroup(
+            Collection<IEntityGroup> groups) throws GroupsException {
+        final Map<IEntityGroup, List<IEntityGroup>> result = new LinkedHashMap<>();
+        for (IEntityGroup group : groups) {
+            final List<IEntityGroup> members = new ArrayList<>();
+            for (Iterator it = findMemberGroups(group); it.hasNext(); ) {
+                members.add((IEntityGroup) it.next());
+            }
+            result.put(group, members);
+        }
+        return result;
+    }
     /** @return org.apereo.portal.groups.IEntityGroup */
     IEntityGroup newInstance(Class entityType) throws GroupsException;
     /**
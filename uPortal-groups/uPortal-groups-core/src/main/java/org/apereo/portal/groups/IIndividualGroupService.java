@@ -14,7 +14,12 @@
  */
 package org.apereo.portal.groups;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Defines a component group service that finds and maintains <code>IGroupMembers</code> within a
@@ -36,6 +41,25 @@ public interface IIndividualGroupService extends ICompositeGroupService {
      * @param group IEntityGroup
      */
     public Iterator findMembers(IEntityGroup group) throws GroupsException;
+    /**
+     * Returns the members of each of the <code>IEntityGroups</code>, keyed by group. Services that
+     * can look up the members of several groups at once should override this default, which asks
+     * for each group in turn.
+     *
+     * @param groups Collection of IEntityGroup
+     */
+    public default Map<IEntityGroup, List<IGroupMember>> findMembersByGroup(
+            Collection<IEntityGroup> groups) throws GroupsException {
+        final Map<IEntityGroup, List<IGroupMember>> result = new LinkedHashMap<>();
+        for (IEntityGroup group : groups) {
+            final List<IGroupMember> members = new ArrayList<>();
+            for (Iterator it = findMembers(group); it.hasNext(); ) {
+                members.add((IGroupMember) it.next());
+            }
+            result.put(group, members);
+        }
+        return result;
+    }
     /**
      * Answers if the group can be updated or deleted in the store.
      *
@@ -22,8 +22,11 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
@@ -69,6 +72,9 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
     private static final String MEMBER_IS_ENTITY = "F";
     private static final String MEMBER_IS_GROUP = "T";
 
+    // Maximum number of keys bound to one IN list by the batch lookups
+    private static final int MAX_IN_LIST_SIZE = 100;
+
     private static final String SEARCH_CACHE_NAME =
             "org.apereo.portal.groups.RDBMEntityGroupStore.search";
     private static final String PARENT_GROUP_BY_ENTITY_CACHE_NAME =
@@ -160,6 +166,9 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
     private Ehcache parentGroupEntityCache;
     private Ehcache parentGroupEntityGroupCache;
 
+    // Transitive closure of group memberships, null unless enabled for the service
+    private RDBMGroupClosureTable closureTable;
+
     /** RDBMEntityGroupStore constructor. */
     public RDBMEntityGroupStore() {
         initialize();
@@ -187,6 +196,14 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
         parentGroupEntityGroupCache = getGroupSearchCache(PARENT_GROUP_BY_ENTTITY_GROUP_CACHE_NAME);
     }
 
+    /**
+     * Maintains the given closure table on membership changes and uses it to cache the parent
+     * groups of all of a member's ancestors at once.
+     */
+    void setClosureTable(RDBMGroupClosureTable closureTable) {
+        this.closureTable = closureTable;
+    }
+
     private Ehcache getGroupSearchCache(String cacheName) {
         final ApplicationContext context = ApplicationContextLocator.getApplicationContext();
         assert context != null;
@@ -346,7 +363,7 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
         // https://github.com/uPortal-Project/uPortal/issues/1903 #2
         String memberKey = ent.getKey();
         Integer type = EntityTypesLocator.getEntityTypes().getEntityIDFromType(ent.getLeafType());
-        String cacheKey = memberKey + ":" + type.intValue();
+        String cacheKey = getParentGroupsCacheKey(memberKey, type, null);
         List<IEntityGroup> list;
         Element el = parentGroupEntityCache.get(cacheKey);
         if (el == null) {
@@ -372,7 +389,7 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
         String memberKey = group.getLocalKey();
         String serviceName = group.getServiceName().toString();
         Integer type = EntityTypesLocator.getEntityTypes().getEntityIDFromType(group.getLeafType());
-        String cacheKey = memberKey + ":" + type.intValue() + ":" + serviceName;
+        String cacheKey = getParentGroupsCacheKey(memberKey, type, serviceName);
         Element el = parentGroupEntityGroupCache.get(cacheKey);
         List<IEntityGroup> list;
         if (el == null) {
@@ -403,6 +420,239 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
         }
     }
 
+    /**
+     * Find the groups that each of the group members belongs to. Members missing from the parent
+     * group caches are looked up with one query per {@link #MAX_IN_LIST_SIZE} members of the same
+     * kind, entity type and (for groups) service, rather than one query per member.
+     *
+     * @param members the group members in question
+     * @return the parent groups of each member
+     */
+    @Override
+    public Map<IGroupMember, List<IEntityGroup>> findParentGroupsByMember(
+            Collection<? extends IGroupMember> members) throws GroupsException {
+        final Map<IGroupMember, List<IEntityGroup>> result = new LinkedHashMap<>();
+        // Uncached members by batch, then by member key
+        final Map<ParentGroupsBatch, Map<String, List<IGroupMember>>> batches = new HashMap<>();
+
+        for (IGroupMember gm : members) {
+            final String memberKey;
+            final String serviceName;
+            final Ehcache cache;
+            if (gm.isGroup()) {
+                IEntityGroup group = (IEntityGroup) gm;
+                memberKey = group.getLocalKey();
+                serviceName = group.getServiceName().toString();
+                cache = parentGroupEntityGroupCache;
+            } else {
+                memberKey = gm.getKey();
+                serviceName = null;
+                cache = parentGroupEntityCache;
+            }
+            Integer type =
+                    EntityTypesLocator.getEntityTypes().getEntityIDFromType(gm.getLeafType());
+
+            Element el = cache.get(getParentGroupsCacheKey(memberKey, type, serviceName));
+            if (el != null) {
+                result.put(gm, (List) el.getObjectValue());
+            } else {
+                ParentGroupsBatch batch = new ParentGroupsBatch(type, serviceName);
+                Map<String, List<IGroupMember>> batchMembers = batches.get(batch);
+                if (batchMembers == null) {
+                    batchMembers = new LinkedHashMap<>();
+                    batches.put(batch, batchMembers);
+                }
+                List<IGroupMember> keyMembers = batchMembers.get(memberKey);
+                if (keyMembers == null) {
+                    keyMembers = new ArrayList<>(1);
+                    batchMembers.put(memberKey, keyMembers);
+                }
+                keyMembers.add(gm);
+            }
+        }
+
+        for (Map.Entry<ParentGroupsBatch, Map<String, List<IGroupMember>>> entry :
+                batches.entrySet()) {
+            final ParentGroupsBatch batch = entry.getKey();
+            final Ehcache cache =
+                    batch.serviceName != null
+                            ? parentGroupEntityGroupCache
+                            : parentGroupEntityCache;
+            final List<String> memberKeys = new ArrayList<>(entry.getValue().keySet());
+            for (int i = 0; i < memberKeys.size(); i += MAX_IN_LIST_SIZE) {
+                final List<String> chunk =
+                        memberKeys.subList(i, Math.min(i + MAX_IN_LIST_SIZE, memberKeys.size()));
+                final Map<String, List<IEntityGroup>> parents =
+                        findParentGroupsForMembers(batch, chunk);
+                if (closureTable != null && closureTable.isAvailable()) {
+                    cacheAncestorParentGroups(batch, chunk);
+                }
+                for (String memberKey : chunk) {
+                    final List<IEntityGroup> list =
+                            Collections.unmodifiableList(parents.get(memberKey));
+                    cache.put(
+                            new Element(
+                                    getParentGroupsCacheKey(
+                                            memberKey, batch.type, batch.serviceName),
+                                    list));
+                    for (IGroupMember gm : entry.getValue().get(memberKey)) {
+                        result.put(gm, list);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Caches the parent groups of every local ancestor of the members, found with one query of the
+     * closure table, so walking up from the members does not need a query per level.
+     *
+     * @param batch the entity type and, for group members, service name of the members
+     * @param memberKeys no more than {@link #MAX_IN_LIST_SIZE} member keys
+     */
+    private void cacheAncestorParentGroups(ParentGroupsBatch batch, List<String> memberKeys)
+            throws GroupsException {
+        Connection conn = null;
+        // Parent groups and type by ancestor key
+        Map<String, List<IEntityGroup>> parents = new HashMap<>();
+        Map<String, Integer> types = new HashMap<>();
+
+        try {
+            conn = RDBMServices.getConnection();
+            String sql =
+                    RDBMGroupClosureTable.getFindAncestorParentGroupsSql(
+                            getAllGroupColumnsWithTableAlias("P"), memberKeys.size());
+            PreparedStatement ps = conn.prepareStatement(sql);
+            try {
+                ps.setString(1, closureTable.getServiceName());
+                ps.setString(2, closureTable.getServiceName());
+                ps.setString(3, batch.serviceName != null ? MEMBER_IS_GROUP : MEMBER_IS_ENTITY);
+                ps.setString(
+                        4,
+                        batch.serviceName != null
+                                ? batch.serviceName
+                                : closureTable.getServiceName());
+                int param = 5;
+                for (String memberKey : memberKeys) {
+                    ps.setString(param++, memberKey);
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug(
+                            "RDBMEntityGroupStore.cacheAncestorParentGroups(): "
+                                    + ps
+                                    + " ("
+                                    + batch.serviceName
+                                    + ", "
+                                    + memberKeys
+                                    + ")");
+                ResultSet rs = ps.executeQuery();
+                try {
+                    while (rs.next()) {
+                        // null for an ancestor without parents
+                        IEntityGroup eg = instanceFromResultSet(rs);
+                        String ancestorKey = rs.getString(6);
+                        List<IEntityGroup> ancestorParents = parents.get(ancestorKey);
+                        if (ancestorParents == null) {
+                            ancestorParents = new ArrayList<>();
+                            parents.put(ancestorKey, ancestorParents);
+                            types.put(ancestorKey, rs.getInt(7));
+                        }
+                        if (eg != null) {
+                            ancestorParents.add(eg);
+                        }
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (Exception e) {
+            LOG.error("RDBMEntityGroupStore.cacheAncestorParentGroups(): " + e);
+            throw new GroupsException("Problem retrieving containing groups: " + e);
+        } finally {
+            RDBMServices.releaseConnection(conn);
+        }
+
+        for (Map.Entry<String, List<IEntityGroup>> entry : parents.entrySet()) {
+            String cacheKey =
+                    getParentGroupsCacheKey(
+                            entry.getKey(),
+                            types.get(entry.getKey()),
+                            closureTable.getServiceName());
+            parentGroupEntityGroupCache.put(
+                    new Element(cacheKey, Collections.unmodifiableList(entry.getValue())));
+        }
+    }
+
+    /**
+     * Find the groups associated with each of the member keys, all of the same kind, entity type
+     * and (for groups) service.
+     *
+     * @param batch the entity type and, for group members, service name of the members
+     * @param memberKeys no more than {@link #MAX_IN_LIST_SIZE} member keys
+     * @return list of groups (IEntityGroup) by member key, empty for members in no group
+     */
+    private Map<String, List<IEntityGroup>> findParentGroupsForMembers(
+            ParentGroupsBatch batch, List<String> memberKeys) throws GroupsException {
+        Connection conn = null;
+        Map<String, List<IEntityGroup>> groups = new HashMap<>();
+        for (String memberKey : memberKeys) {
+            groups.put(memberKey, new ArrayList<>());
+        }
+
+        try {
+            conn = RDBMServices.getConnection();
+            String sql =
+                    getFindParentGroupsForMembersSql(batch.serviceName != null, memberKeys.size());
+            PreparedStatement ps = conn.prepareStatement(sql);
+            try {
+                int param = 1;
+                if (batch.serviceName != null) {
+                    ps.setString(param++, batch.serviceName);
+                }
+                ps.setInt(param++, batch.type);
+                for (String memberKey : memberKeys) {
+                    ps.setString(param++, memberKey);
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug(
+                            "RDBMEntityGroupStore.findParentGroupsForMembers(): "
+                                    + ps
+                                    + " ("
+                                    + batch.serviceName
+                                    + ", "
+                                    + batch.type
+                                    + ", "
+                                    + memberKeys
+                                    + ")");
+                ResultSet rs = ps.executeQuery();
+                try {
+                    while (rs.next()) {
+                        IEntityGroup eg = instanceFromResultSet(rs);
+                        List<IEntityGroup> memberGroups = groups.get(rs.getString(6));
+                        if (memberGroups != null) {
+                            memberGroups.add(eg);
+                        }
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (Exception e) {
+            LOG.error("RDBMEntityGroupStore.findParentGroupsForMembers(): " + e);
+            throw new GroupsException("Problem retrieving containing groups: " + e);
+        } finally {
+            RDBMServices.releaseConnection(conn);
+        }
+
+        return groups;
+    }
+
     /**
      * Find the groups associated with this member key.
      *
@@ -662,6 +912,110 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
 
         return groups.iterator();
     }
+    /**
+     * Find the IUserGroups that are members of each of the groups, with one query per {@link
+     * #MAX_IN_LIST_SIZE} groups of the same service rather than one query per group.
+     *
+     * @param groups the groups in question
+     * @return the member groups of each group
+     */
+    @Override
+    public Map<IEntityGroup, List<IEntityGroup>> findMemberGroupsByGroup(
+            Collection<IEntityGroup> groups) throws GroupsException {
+        final Map<IEntityGroup, List<IEntityGroup>> result = new LinkedHashMap<>();
+        // Groups by service name, then by local key
+        final Map<String, Map<String, List<IEntityGroup>>> batches = new HashMap<>();
+        for (IEntityGroup group : groups) {
+            String serviceName = group.getServiceName().toString();
+            Map<String, List<IEntityGroup>> serviceGroups = batches.get(serviceName);
+            if (serviceGroups == null) {
+                serviceGroups = new LinkedHashMap<>();
+                batches.put(serviceName, serviceGroups);
+            }
+            List<IEntityGroup> keyGroups = serviceGroups.get(group.getLocalKey());
+            if (keyGroups == null) {
+                keyGroups = new ArrayList<>(1);
+                serviceGroups.put(group.getLocalKey(), keyGroups);
+            }
+            keyGroups.add(group);
+        }
+
+        for (Map.Entry<String, Map<String, List<IEntityGroup>>> entry : batches.entrySet()) {
+            final List<String> localKeys = new ArrayList<>(entry.getValue().keySet());
+            for (int i = 0; i < localKeys.size(); i += MAX_IN_LIST_SIZE) {
+                final List<String> chunk =
+                        localKeys.subList(i, Math.min(i + MAX_IN_LIST_SIZE, localKeys.size()));
+                final Map<String, List<IEntityGroup>> members =
+                        findMemberGroupsForGroups(entry.getKey(), chunk);
+                for (String localKey : chunk) {
+                    for (IEntityGroup group : entry.getValue().get(localKey)) {
+                        result.put(group, members.get(localKey));
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the member groups of each of the groups, all from the same service.
+     *
+     * @param serviceName the service of the groups
+     * @param localKeys no more than {@link #MAX_IN_LIST_SIZE} local group keys
+     * @return list of member groups (IEntityGroup) by local group key
+     */
+    private Map<String, List<IEntityGroup>> findMemberGroupsForGroups(
+            String serviceName, List<String> localKeys) throws GroupsException {
+        Connection conn = null;
+        Map<String, List<IEntityGroup>> groups = new HashMap<>();
+        for (String localKey : localKeys) {
+            groups.put(localKey, new ArrayList<>());
+        }
+
+        try {
+            conn = RDBMServices.getConnection();
+            String sql = getFindMemberGroupsForGroupsSql(localKeys.size());
+            PreparedStatement ps = conn.prepareStatement(sql);
+            try {
+                ps.setString(1, serviceName);
+                int param = 2;
+                for (String localKey : localKeys) {
+                    ps.setString(param++, localKey);
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug(
+                            "RDBMEntityGroupStore.findMemberGroupsForGroups(): "
+                                    + ps
+                                    + " ("
+                                    + serviceName
+                                    + ", "
+                                    + localKeys
+                                    + ")");
+                ResultSet rs = ps.executeQuery();
+                try {
+                    while (rs.next()) {
+                        IEntityGroup eg = instanceFromResultSet(rs);
+                        List<IEntityGroup> memberGroups = groups.get(rs.getString(6));
+                        if (memberGroups != null) {
+                            memberGroups.add(eg);
+                        }
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (Exception sqle) {
+            LOG.error("RDBMEntityGroupStore.findMemberGroupsForGroups(): " + sqle);
+            throw new GroupsException("Problem retrieving member groups: " + sqle);
+        } finally {
+            RDBMServices.releaseConnection(conn);
+        }
+
+        return groups;
+    }
     /** @return String */
     private static String getAllGroupColumns() {
 
@@ -700,6 +1054,29 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
         }
         return allGroupColumnsWithTableAlias;
     }
+
+    /** @return the group columns read by {@link #instanceFromResultSet}, qualified by the alias */
+    private static String getAllGroupColumnsWithTableAlias(String alias) {
+        return alias
+                + "."
+                + GROUP_ID_COLUMN
+                + ", "
+                + alias
+                + "."
+                + GROUP_CREATOR_COLUMN
+                + ", "
+                + alias
+                + "."
+                + GROUP_TYPE_COLUMN
+                + ", "
+                + alias
+                + "."
+                + GROUP_NAME_COLUMN
+                + ", "
+                + alias
+                + "."
+                + GROUP_DESCRIPTION_COLUMN;
+    }
     /** @return String */
     private static String getAllMemberColumns() {
         if (allMemberColumns == null) {
@@ -852,6 +1229,35 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
         return findParentGroupsForGroupSql;
     }
 
+    /**
+     * @param memberIsGroup whether the members are groups, identified by service and key
+     * @param keyCount the number of member keys in the IN list
+     * @return String
+     */
+    private static String getFindParentGroupsForMembersSql(boolean memberIsGroup, int keyCount) {
+        StringBuilder buff = new StringBuilder(500 + keyCount * 2);
+        buff.append("SELECT ");
+        buff.append(getAllGroupColumnsWithTableAlias());
+        buff.append(", " + memberAlias(MEMBER_MEMBER_KEY_COLUMN));
+        buff.append(" FROM " + GROUP_TABLE_WITH_ALIAS + ", " + MEMBER_TABLE_WITH_ALIAS);
+        buff.append(" WHERE ");
+        buff.append(groupAlias(GROUP_ID_COLUMN) + EQ);
+        buff.append(memberAlias(MEMBER_GROUP_ID_COLUMN));
+        if (memberIsGroup) {
+            buff.append(" AND ");
+            buff.append(memberAlias(MEMBER_MEMBER_SERVICE_COLUMN) + EQUALS_PARAM);
+        }
+        buff.append(" AND ");
+        buff.append(groupAlias(GROUP_TYPE_COLUMN) + EQUALS_PARAM);
+        buff.append(" AND ");
+        buff.append(memberAlias(MEMBER_IS_GROUP_COLUMN) + EQ);
+        buff.append(sqlQuote(memberIsGroup ? MEMBER_IS_GROUP : MEMBER_IS_ENTITY));
+        buff.append(" AND ");
+        buff.append(memberAlias(MEMBER_MEMBER_KEY_COLUMN));
+        appendInListParams(buff, keyCount);
+        return buff.toString();
+    }
+
     /** @return String */
     private static String getFindGroupSql() {
 
@@ -913,6 +1319,44 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
 
         return findMemberGroupsSql;
     }
+    /**
+     * @param keyCount the number of group keys in the IN list
+     * @return String
+     */
+    private static String getFindMemberGroupsForGroupsSql(int keyCount) {
+        StringBuilder buff = new StringBuilder(500 + keyCount * 2);
+        buff.append("SELECT ");
+        buff.append(getAllGroupColumnsWithTableAlias());
+        buff.append(", " + memberAlias(MEMBER_GROUP_ID_COLUMN));
+        buff.append(" FROM " + GROUP_TABLE_WITH_ALIAS + ", " + MEMBER_TABLE_WITH_ALIAS);
+        buff.append(" WHERE ");
+        buff.append(groupAlias(GROUP_ID_COLUMN) + EQ);
+        buff.append(memberAlias(MEMBER_MEMBER_KEY_COLUMN));
+        buff.append(" AND ");
+        buff.append(memberAlias(MEMBER_IS_GROUP_COLUMN) + EQ);
+        buff.append(sqlQuote(MEMBER_IS_GROUP));
+        buff.append(" AND ");
+        buff.append(memberAlias(MEMBER_MEMBER_SERVICE_COLUMN) + EQUALS_PARAM);
+        buff.append(" AND ");
+        buff.append(memberAlias(MEMBER_GROUP_ID_COLUMN));
+        appendInListParams(buff, keyCount);
+        return buff.toString();
+    }
+
+    private static void appendInListParams(StringBuilder buff, int paramCount) {
+        buff.append(" IN (");
+        for (int i = 0; i < paramCount; i++) {
+            buff.append(i == 0 ? "?" : ", ?");
+        }
+        buff.append(")");
+    }
+
+    private static String getParentGroupsCacheKey(
+            String memberKey, Integer type, String serviceName) {
+        String cacheKey = memberKey + ":" + type.intValue();
+        return serviceName != null ? cacheKey + ":" + serviceName : cacheKey;
+    }
+
     /** @return String */
     private static String getInsertGroupSql() {
         if (insertGroupSql == null) {
@@ -1119,6 +1563,9 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
             } finally {
                 ps.close();
             }
+            if (closureTable != null) {
+                closureTable.addGroup(conn, group.getLocalKey());
+            }
         } catch (SQLException sqle) {
             LOG.error("Error inserting an entity into the database. Group:" + group, sqle);
             throw sqle;
@@ -1152,6 +1599,9 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
             } finally {
                 stmnt.close();
             }
+            if (closureTable != null) {
+                closureTable.removeGroup(conn, group.getLocalKey());
+            }
             commit(conn);
 
         } catch (SQLException sqle) {
@@ -1270,6 +1720,8 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
     private void primUpdateMembers(EntityGroupImpl egi, Connection conn) throws SQLException {
         String groupKey = egi.getLocalKey();
         String memberKey, isGroup, serviceName = null;
+        // Added and removed member groups in the service of the closure table
+        List<String> changedMemberGroups = new ArrayList<>();
         try {
             if (egi.hasDeletes()) {
                 List deletedGroups = new ArrayList();
@@ -1312,6 +1764,7 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
                                                 + ", isGroup = T)");
 
                             psDeleteMemberGroup.executeUpdate();
+                            addClosureMember(changedMemberGroups, serviceName, memberKey);
                         } // for
                     } // try
                     finally {
@@ -1365,6 +1818,7 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
                             isGroup = MEMBER_IS_GROUP;
                             serviceName = addedGroup.getServiceName().toString();
                             memberKey = addedGroup.getLocalKey();
+                            addClosureMember(changedMemberGroups, serviceName, memberKey);
                         } else {
                             isGroup = MEMBER_IS_ENTITY;
                             serviceName = egi.getServiceName().toString();
@@ -1395,12 +1849,23 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
                 }
             }
 
+            if (!changedMemberGroups.isEmpty()) {
+                closureTable.updateMembers(conn, groupKey, changedMemberGroups);
+            }
+
         } catch (SQLException sqle) {
             LOG.error("Error inserting/deleting membership rows.", sqle);
             throw sqle;
         }
     }
 
+    /** Adds a changed member group to the list if the closure table holds its service */
+    private void addClosureMember(List<String> memberGroups, String serviceName, String memberKey) {
+        if (closureTable != null && closureTable.getServiceName().equals(serviceName)) {
+            memberGroups.add(memberKey);
+        }
+    }
+
     /**
      * @param conn Connection
      * @exception SQLException
@@ -1618,4 +2083,31 @@ public class RDBMEntityGroupStore implements IEntityGroupStore, IGroupConstants
             }
         }
     }
+
+    /** Members whose parent groups can be found by the same query: same entity type and service */
+    private static final class ParentGroupsBatch {
+        private final int type;
+        private final String serviceName;
+
+        ParentGroupsBatch(Integer type, String serviceName) {
+            this.type = type.intValue();
+            this.serviceName = serviceName;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type + (serviceName == null ? 0 : serviceName.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof ParentGroupsBatch)) return false;
+            ParentGroupsBatch other = (ParentGroupsBatch) obj;
+            return type == other.type
+                    && (serviceName == null
+                            ? other.serviceName == null
+                            : serviceName.equals(other.serviceName));
+        }
+    }
 }
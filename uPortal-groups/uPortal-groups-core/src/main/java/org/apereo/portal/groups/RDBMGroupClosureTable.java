@@ -0,0 +1,701 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apereo.portal.jdbc.RDBMServices;
+import org.apereo.portal.utils.SqlTransaction;
+
+/**
+ * Maintains <code>UP_GROUP_CLOSURE</code>, the transitive closure of the group-in-group
+ * memberships of one RDBM group service. There is a row for every group with itself (depth 0) and
+ * with each of its descendant groups in the same service, holding the length of the shortest path
+ * between them, so the ancestors of a member can be found with a single indexed join. The rows of
+ * each service are kept apart by the <code>GROUP_SERVICE</code> column.
+ *
+ * <p>When member groups are added to or removed from a group, only the rows relating the ancestors
+ * of the group to the descendants of the member groups can change. Those are recomputed in the
+ * transaction that makes the change, from the group-in-group memberships among the groups on paths
+ * between them, which the closure itself tells apart. Entity memberships are not part of the
+ * closure. Changes to the rows of a service are made one at a time, each holding the row of the
+ * service in <code>UP_GROUP_CLOSURE_LOCK</code> until its transaction ends.
+ *
+ * <p>Before first using the table, each JVM checks that its depth 0 and 1 rows match the groups
+ * and memberships of the service, and only rebuilds it if they do not, in case memberships were
+ * changed while it was not being maintained. If that fails, it is tried again a few minutes later.
+ */
+class RDBMGroupClosureTable {
+
+    private static final Log LOG = LogFactory.getLog(RDBMGroupClosureTable.class);
+
+    private static final String CLOSURE_TABLE = "UP_GROUP_CLOSURE";
+    private static final String LOCK_TABLE = "UP_GROUP_CLOSURE_LOCK";
+    private static final String GROUP_SERVICE_COLUMN = "GROUP_SERVICE";
+    private static final String ANCESTOR_ID_COLUMN = "ANCESTOR_ID";
+    private static final String DESCENDANT_ID_COLUMN = "DESCENDANT_ID";
+    private static final String PATH_DEPTH_COLUMN = "PATH_DEPTH";
+
+    static final String FIND_GROUP_IDS_SQL = "SELECT GROUP_ID FROM UP_GROUP";
+    static final String FIND_GROUP_MEMBER_GROUPS_SQL =
+            "SELECT M.GROUP_ID, M.MEMBER_KEY FROM UP_GROUP_MEMBERSHIP M, UP_GROUP G"
+                    + " WHERE M.MEMBER_IS_GROUP = 'T' AND M.MEMBER_SERVICE = ?"
+                    + " AND G.GROUP_ID = M.MEMBER_KEY";
+    static final String LOCK_SQL =
+            "SELECT "
+                    + GROUP_SERVICE_COLUMN
+                    + " FROM "
+                    + LOCK_TABLE
+                    + " WHERE "
+                    + GROUP_SERVICE_COLUMN
+                    + " = ? FOR UPDATE";
+    static final String INSERT_LOCK_SQL =
+            "INSERT INTO " + LOCK_TABLE + " (" + GROUP_SERVICE_COLUMN + ") VALUES (?)";
+    static final String FIND_DIRECT_ROWS_SQL =
+            "SELECT "
+                    + ANCESTOR_ID_COLUMN
+                    + ", "
+                    + DESCENDANT_ID_COLUMN
+                    + ", "
+                    + PATH_DEPTH_COLUMN
+                    + " FROM "
+                    + CLOSURE_TABLE
+                    + " WHERE "
+                    + GROUP_SERVICE_COLUMN
+                    + " = ? AND "
+                    + PATH_DEPTH_COLUMN
+                    + " <= 1";
+    static final String FIND_ANCESTOR_DEPTHS_SQL =
+            "SELECT "
+                    + ANCESTOR_ID_COLUMN
+                    + ", "
+                    + PATH_DEPTH_COLUMN
+                    + " FROM "
+                    + CLOSURE_TABLE
+                    + " WHERE "
+                    + GROUP_SERVICE_COLUMN
+                    + " = ? AND "
+                    + DESCENDANT_ID_COLUMN
+                    + " = ?";
+    static final String FIND_DESCENDANT_DEPTHS_SQL =
+            "SELECT "
+                    + DESCENDANT_ID_COLUMN
+                    + ", "
+                    + PATH_DEPTH_COLUMN
+                    + " FROM "
+                    + CLOSURE_TABLE
+                    + " WHERE "
+                    + GROUP_SERVICE_COLUMN
+                    + " = ? AND "
+                    + ANCESTOR_ID_COLUMN
+                    + " = ?";
+    static final String DELETE_CLOSURE_SQL =
+            "DELETE FROM " + CLOSURE_TABLE + " WHERE " + GROUP_SERVICE_COLUMN + " = ?";
+    static final String DELETE_GROUP_SQL =
+            "DELETE FROM "
+                    + CLOSURE_TABLE
+                    + " WHERE "
+                    + GROUP_SERVICE_COLUMN
+                    + " = ? AND ("
+                    + ANCESTOR_ID_COLUMN
+                    + " = ? OR "
+                    + DESCENDANT_ID_COLUMN
+                    + " = ?)";
+    static final String INSERT_ROW_SQL =
+            "INSERT INTO "
+                    + CLOSURE_TABLE
+                    + " ("
+                    + GROUP_SERVICE_COLUMN
+                    + ", "
+                    + ANCESTOR_ID_COLUMN
+                    + ", "
+                    + DESCENDANT_ID_COLUMN
+                    + ", "
+                    + PATH_DEPTH_COLUMN
+                    + ") VALUES (?, ?, ?, ?)";
+    static final String UPDATE_ROW_SQL =
+            "UPDATE "
+                    + CLOSURE_TABLE
+                    + " SET "
+                    + PATH_DEPTH_COLUMN
+                    + " = ? WHERE "
+                    + GROUP_SERVICE_COLUMN
+                    + " = ? AND "
+                    + ANCESTOR_ID_COLUMN
+                    + " = ? AND "
+                    + DESCENDANT_ID_COLUMN
+                    + " = ?";
+    static final String DELETE_ROW_SQL =
+            "DELETE FROM "
+                    + CLOSURE_TABLE
+                    + " WHERE "
+                    + GROUP_SERVICE_COLUMN
+                    + " = ? AND "
+                    + ANCESTOR_ID_COLUMN
+                    + " = ? AND "
+                    + DESCENDANT_ID_COLUMN
+                    + " = ?";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_IN_LIST_SIZE = 100;
+    private static final long RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+    private final String serviceName;
+    private volatile boolean built = false;
+    private volatile long retryTime = 0;
+
+    RDBMGroupClosureTable(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    /** @return The name of the group service whose memberships the table holds */
+    String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return true if the table has been checked by this JVM and can be queried, false if that
+     *     failed and memberships have to be walked one level at a time until it is tried again
+     */
+    boolean isAvailable() {
+        if (!built && System.currentTimeMillis() >= retryTime) {
+            build();
+        }
+        return built;
+    }
+
+    private synchronized void build() {
+        if (built || System.currentTimeMillis() < retryTime) {
+            return;
+        }
+
+        Connection conn = null;
+        try {
+            conn = RDBMServices.getConnection();
+            SqlTransaction.setAutoCommit(conn, false);
+            try {
+                lock(conn);
+                if (!isCurrent(conn)) {
+                    rebuild(conn);
+                }
+                SqlTransaction.commit(conn);
+                built = true;
+            } catch (SQLException sqle) {
+                SqlTransaction.rollback(conn);
+                throw sqle;
+            } finally {
+                SqlTransaction.setAutoCommit(conn, true);
+            }
+        } catch (SQLException sqle) {
+            retryTime = System.currentTimeMillis() + RETRY_INTERVAL;
+            LOG.error(
+                    "Failed to build "
+                            + CLOSURE_TABLE
+                            + " for group service "
+                            + serviceName
+                            + ", group ancestors will be found one level at a time until it is"
+                            + " tried again in "
+                            + TimeUnit.MILLISECONDS.toMinutes(RETRY_INTERVAL)
+                            + " minutes",
+                    sqle);
+        } finally {
+            RDBMServices.releaseConnection(conn);
+        }
+    }
+
+    /**
+     * The depth 1 rows of the closure are the direct group memberships, so the table is current if
+     * those and the depth 0 rows match the memberships and groups of the service.
+     */
+    private boolean isCurrent(Connection conn) throws SQLException {
+        final Map<String, List<String>> memberGroups = findMemberGroups(conn);
+        final Set<List<String>> expected = new HashSet<>();
+        for (Map.Entry<String, List<String>> group : memberGroups.entrySet()) {
+            expected.add(Collections.singletonList(group.getKey()));
+            for (String member : group.getValue()) {
+                // a group containing itself is still at depth 0
+                if (!member.equals(group.getKey())) {
+                    expected.add(Arrays.asList(group.getKey(), member));
+                }
+            }
+        }
+
+        final Set<List<String>> actual = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement(FIND_DIRECT_ROWS_SQL)) {
+            ps.setString(1, serviceName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    actual.add(
+                            rs.getInt(3) == 0
+                                    ? Collections.singletonList(rs.getString(1))
+                                    : Arrays.asList(rs.getString(1), rs.getString(2)));
+                }
+            }
+        }
+        return expected.equals(actual);
+    }
+
+    /**
+     * Waits for the row of the service in the lock table and holds it until the caller's
+     * transaction ends, so that each change to the rows of the service is computed from the
+     * memberships committed by the one before. The first transaction to find the row missing
+     * inserts it; one doing the same concurrently fails on the primary key and is rolled back.
+     */
+    private void lock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(LOCK_SQL)) {
+            ps.setString(1, serviceName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_LOCK_SQL)) {
+            ps.setString(1, serviceName);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Replaces the rows of the service with the closure of the current memberships, as part of the
+     * caller's transaction, which must hold the lock.
+     */
+    void rebuild(Connection conn) throws SQLException {
+        final long start = System.currentTimeMillis();
+        final Map<String, List<String>> memberGroups = findMemberGroups(conn);
+
+        int rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_CLOSURE_SQL)) {
+            ps.setString(1, serviceName);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_ROW_SQL)) {
+            for (String groupId : memberGroups.keySet()) {
+                for (Map.Entry<String, Integer> descendant :
+                        getDescendantDepths(groupId, memberGroups).entrySet()) {
+                    setRow(ps, 1, groupId, descendant.getKey());
+                    ps.setInt(4, descendant.getValue());
+                    ps.addBatch();
+                    if (++rows % BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+            }
+            if (rows % BATCH_SIZE != 0) {
+                ps.executeBatch();
+            }
+        }
+
+        if (LOG.isInfoEnabled())
+            LOG.info(
+                    "Rebuilt "
+                            + CLOSURE_TABLE
+                            + " for "
+                            + memberGroups.size()
+                            + " groups of service "
+                            + serviceName
+                            + ": "
+                            + rows
+                            + " rows in "
+                            + (System.currentTimeMillis() - start)
+                            + "ms");
+    }
+
+    /** Adds the row relating a new group to itself, as part of the caller's transaction. */
+    void addGroup(Connection conn, String groupId) throws SQLException {
+        lock(conn);
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_ROW_SQL)) {
+            setRow(ps, 1, groupId, groupId);
+            ps.setInt(4, 0);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Updates the rows relating the ancestors of the group to the descendants of the member groups
+     * after the member groups were added to or removed from the group, as part of the caller's
+     * transaction.
+     *
+     * @param memberGroupIds the keys of the added and removed member groups of this service
+     */
+    void updateMembers(Connection conn, String groupId, Collection<String> memberGroupIds)
+            throws SQLException {
+        lock(conn);
+        final Set<String> ancestors = new LinkedHashSet<>();
+        ancestors.add(groupId);
+        ancestors.addAll(findDepths(conn, FIND_ANCESTOR_DEPTHS_SQL, groupId).keySet());
+
+        final Set<String> descendants = new LinkedHashSet<>();
+        for (String memberGroupId : memberGroupIds) {
+            descendants.add(memberGroupId);
+            descendants.addAll(
+                    findDepths(conn, FIND_DESCENDANT_DEPTHS_SQL, memberGroupId).keySet());
+        }
+
+        updateDepths(conn, ancestors, descendants);
+    }
+
+    /**
+     * Removes the rows of a deleted group and updates the rows relating its ancestors to its
+     * descendants, as part of the caller's transaction. Must be called after the memberships of
+     * the group were deleted.
+     */
+    void removeGroup(Connection conn, String groupId) throws SQLException {
+        lock(conn);
+        final Set<String> ancestors =
+                new LinkedHashSet<>(findDepths(conn, FIND_ANCESTOR_DEPTHS_SQL, groupId).keySet());
+        ancestors.remove(groupId);
+        final Set<String> descendants =
+                new LinkedHashSet<>(
+                        findDepths(conn, FIND_DESCENDANT_DEPTHS_SQL, groupId).keySet());
+        descendants.remove(groupId);
+
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_GROUP_SQL)) {
+            setRow(ps, 1, groupId, groupId);
+            ps.executeUpdate();
+        }
+        updateDepths(conn, ancestors, descendants);
+    }
+
+    /**
+     * Only paths through a changed membership can have changed, so recomputing the rows relating
+     * the ancestors of the group to the descendants of its changed members is enough.
+     *
+     * <p>The rows are recomputed from the memberships among the groups that can be on a shortest
+     * path between them: the ancestors and descendants themselves, and the groups the rows still
+     * relate to both an ancestor and a descendant. A path that does not go through a changed
+     * membership was already in the closure, and one that does goes through the group, so its
+     * other groups are ancestors or descendants.
+     */
+    private void updateDepths(Connection conn, Set<String> ancestors, Set<String> descendants)
+            throws SQLException {
+        if (ancestors.isEmpty() || descendants.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Map<String, Integer>> currentDepths = new LinkedHashMap<>();
+        final Set<String> descendantsOfAncestors = new HashSet<>();
+        for (String ancestor : ancestors) {
+            final Map<String, Integer> depths =
+                    findDepths(conn, FIND_DESCENDANT_DEPTHS_SQL, ancestor);
+            currentDepths.put(ancestor, depths);
+            descendantsOfAncestors.addAll(depths.keySet());
+        }
+        final Set<String> subgraph = new HashSet<>(ancestors);
+        subgraph.addAll(descendants);
+        for (String groupId : findAncestorIds(conn, descendants)) {
+            if (descendantsOfAncestors.contains(groupId)) {
+                subgraph.add(groupId);
+            }
+        }
+
+        final Map<String, List<String>> memberGroups = findMemberGroups(conn, subgraph);
+        final DepthChanges changes = new DepthChanges();
+        for (String ancestor : ancestors) {
+            changes.compare(
+                    ancestor,
+                    currentDepths.get(ancestor),
+                    getDescendantDepths(ancestor, memberGroups),
+                    descendants);
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_ROW_SQL)) {
+            for (List<String> row : changes.deletes) {
+                setRow(ps, 1, row.get(0), row.get(1));
+                ps.addBatch();
+            }
+            executeBatch(ps, changes.deletes);
+        }
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_ROW_SQL)) {
+            for (Map.Entry<List<String>, Integer> row : changes.updates.entrySet()) {
+                ps.setInt(1, row.getValue());
+                setRow(ps, 2, row.getKey().get(0), row.getKey().get(1));
+                ps.addBatch();
+            }
+            executeBatch(ps, changes.updates.keySet());
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_ROW_SQL)) {
+            for (Map.Entry<List<String>, Integer> row : changes.inserts.entrySet()) {
+                setRow(ps, 1, row.getKey().get(0), row.getKey().get(1));
+                ps.setInt(4, row.getValue());
+                ps.addBatch();
+            }
+            executeBatch(ps, changes.inserts.keySet());
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug(
+                    "Updated "
+                            + CLOSURE_TABLE
+                            + " for "
+                            + ancestors.size()
+                            + " ancestors and "
+                            + descendants.size()
+                            + " descendants of service "
+                            + serviceName
+                            + ": "
+                            + changes.inserts.size()
+                            + " inserted, "
+                            + changes.updates.size()
+                            + " updated, "
+                            + changes.deletes.size()
+                            + " deleted");
+    }
+
+    private static void executeBatch(PreparedStatement ps, Collection<?> rows)
+            throws SQLException {
+        if (!rows.isEmpty()) {
+            ps.executeBatch();
+        }
+    }
+
+    /** Sets the service, ancestor and descendant parameters, starting at the given index */
+    private void setRow(PreparedStatement ps, int index, String ancestorId, String descendantId)
+            throws SQLException {
+        ps.setString(index, serviceName);
+        ps.setString(index + 1, ancestorId);
+        ps.setString(index + 2, descendantId);
+    }
+
+    /** @return The depths of the rows found by the query for the group, by related group */
+    private Map<String, Integer> findDepths(Connection conn, String sql, String groupId)
+            throws SQLException {
+        final Map<String, Integer> depths = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, serviceName);
+            ps.setString(2, groupId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    depths.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        return depths;
+    }
+
+    /** @return The groups the rows relate as ancestor to any of the groups, including themselves */
+    private Set<String> findAncestorIds(Connection conn, Collection<String> groupIds)
+            throws SQLException {
+        final Set<String> ancestorIds = new HashSet<>();
+        final List<String> ids = new ArrayList<>(groupIds);
+        for (int i = 0; i < ids.size(); i += MAX_IN_LIST_SIZE) {
+            final List<String> chunk = ids.subList(i, Math.min(i + MAX_IN_LIST_SIZE, ids.size()));
+            try (PreparedStatement ps =
+                    conn.prepareStatement(getFindAncestorIdsSql(chunk.size()))) {
+                ps.setString(1, serviceName);
+                int param = 2;
+                for (String id : chunk) {
+                    ps.setString(param++, id);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ancestorIds.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return ancestorIds;
+    }
+
+    /** @return Member groups by group, for the given groups and only among them */
+    private Map<String, List<String>> findMemberGroups(Connection conn, Set<String> groupIds)
+            throws SQLException {
+        final Map<String, List<String>> memberGroups = new LinkedHashMap<>();
+        final List<String> ids = new ArrayList<>(groupIds);
+        for (int i = 0; i < ids.size(); i += MAX_IN_LIST_SIZE) {
+            final List<String> chunk = ids.subList(i, Math.min(i + MAX_IN_LIST_SIZE, ids.size()));
+            try (PreparedStatement ps =
+                    conn.prepareStatement(getFindMemberGroupsOfGroupsSql(chunk.size()))) {
+                ps.setString(1, serviceName);
+                int param = 2;
+                for (String id : chunk) {
+                    ps.setString(param++, id);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (groupIds.contains(rs.getString(2))) {
+                            memberGroups
+                                    .computeIfAbsent(rs.getString(1), k -> new ArrayList<>())
+                                    .add(rs.getString(2));
+                        }
+                    }
+                }
+            }
+        }
+        return memberGroups;
+    }
+
+    /** @return Member groups by group, for every group */
+    private Map<String, List<String>> findMemberGroups(Connection conn) throws SQLException {
+        final Map<String, List<String>> memberGroups = new LinkedHashMap<>();
+        try (Statement stmnt = conn.createStatement();
+                ResultSet rs = stmnt.executeQuery(FIND_GROUP_IDS_SQL)) {
+            while (rs.next()) {
+                memberGroups.put(rs.getString(1), new ArrayList<>());
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(FIND_GROUP_MEMBER_GROUPS_SQL)) {
+            ps.setString(1, serviceName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final List<String> members = memberGroups.get(rs.getString(1));
+                    if (members != null) {
+                        members.add(rs.getString(2));
+                    }
+                }
+            }
+        }
+        return memberGroups;
+    }
+
+    /**
+     * @param keyCount the number of group keys in the IN list
+     * @return SQL selecting the ancestors of the groups of the service given as the first parameter
+     */
+    static String getFindAncestorIdsSql(int keyCount) {
+        final StringBuilder buff = new StringBuilder(200 + keyCount * 3);
+        buff.append("SELECT DISTINCT ").append(ANCESTOR_ID_COLUMN);
+        buff.append(" FROM ").append(CLOSURE_TABLE);
+        buff.append(" WHERE ").append(GROUP_SERVICE_COLUMN).append(" = ?");
+        buff.append(" AND ").append(DESCENDANT_ID_COLUMN);
+        appendInListParams(buff, keyCount);
+        return buff.toString();
+    }
+
+    /**
+     * @param keyCount the number of group keys in the IN list
+     * @return SQL selecting the member groups of the service given as the first parameter of the
+     *     groups
+     */
+    static String getFindMemberGroupsOfGroupsSql(int keyCount) {
+        final StringBuilder buff = new StringBuilder(200 + keyCount * 3);
+        buff.append(FIND_GROUP_MEMBER_GROUPS_SQL);
+        buff.append(" AND M.GROUP_ID");
+        appendInListParams(buff, keyCount);
+        return buff.toString();
+    }
+
+    private static void appendInListParams(StringBuilder buff, int paramCount) {
+        buff.append(" IN (");
+        for (int i = 0; i < paramCount; i++) {
+            buff.append(i == 0 ? "?" : ", ?");
+        }
+        buff.append(")");
+    }
+
+    /**
+     * Returns SQL selecting the parent groups of every ancestor of the members with the given
+     * keys, one row per ancestor and parent. Each row holds the 5 group columns of the parent,
+     * null for an ancestor without parents, followed by the key and type of the ancestor. The
+     * ancestors come from the closure, but their parents come from the memberships, so they are
+     * current even when the closure is not. The parameters are the service of the closure twice,
+     * the member is group flag, the member service and then the member keys.
+     *
+     * @param groupColumns the 5 group columns read by the group store, qualified by "P"
+     * @param keyCount the number of member keys in the IN list
+     */
+    static String getFindAncestorParentGroupsSql(String groupColumns, int keyCount) {
+        final StringBuilder buff = new StringBuilder(900 + keyCount * 3);
+        buff.append("SELECT DISTINCT ").append(groupColumns);
+        buff.append(", A.GROUP_ID, A.ENTITY_TYPE_ID");
+        buff.append(" FROM UP_GROUP_MEMBERSHIP M");
+        buff.append(" INNER JOIN ").append(CLOSURE_TABLE).append(" C");
+        buff.append(" ON C.").append(GROUP_SERVICE_COLUMN).append(" = ?");
+        buff.append(" AND C.").append(DESCENDANT_ID_COLUMN).append(" = M.GROUP_ID");
+        buff.append(" INNER JOIN UP_GROUP A ON A.GROUP_ID = C.").append(ANCESTOR_ID_COLUMN);
+        buff.append(" LEFT OUTER JOIN UP_GROUP_MEMBERSHIP D");
+        buff.append(" ON D.MEMBER_IS_GROUP = 'T' AND D.MEMBER_SERVICE = ?");
+        buff.append(" AND D.MEMBER_KEY = A.GROUP_ID");
+        buff.append(" LEFT OUTER JOIN UP_GROUP P ON P.GROUP_ID = D.GROUP_ID");
+        buff.append(" AND P.ENTITY_TYPE_ID = A.ENTITY_TYPE_ID");
+        buff.append(" WHERE M.MEMBER_IS_GROUP = ? AND M.MEMBER_SERVICE = ?");
+        buff.append(" AND M.MEMBER_KEY");
+        appendInListParams(buff, keyCount);
+        return buff.toString();
+    }
+
+    /** Breadth first, so each descendant gets the depth of its shortest path */
+    static Map<String, Integer> getDescendantDepths(
+            String groupId, Map<String, List<String>> memberGroups) {
+        final Map<String, Integer> depths = new LinkedHashMap<>();
+        final Deque<String> queue = new ArrayDeque<>();
+        depths.put(groupId, 0);
+        queue.add(groupId);
+        while (!queue.isEmpty()) {
+            final String group = queue.remove();
+            final int depth = depths.get(group);
+            final List<String> members = memberGroups.get(group);
+            for (String member : members != null ? members : Collections.<String>emptyList()) {
+                // a group seen before is either closer or part of a circular reference
+                if (!depths.containsKey(member)) {
+                    depths.put(member, depth + 1);
+                    queue.add(member);
+                }
+            }
+        }
+        return depths;
+    }
+
+    /** The rows to insert, update and delete, each row as its ancestor and descendant */
+    static final class DepthChanges {
+        final Map<List<String>, Integer> inserts = new LinkedHashMap<>();
+        final Map<List<String>, Integer> updates = new LinkedHashMap<>();
+        final List<List<String>> deletes = new ArrayList<>();
+
+        /**
+         * Adds the changes turning the current rows of the ancestor into the updated ones, for the
+         * given descendants only.
+         */
+        void compare(
+                String ancestor,
+                Map<String, Integer> current,
+                Map<String, Integer> updated,
+                Collection<String> descendants) {
+            for (String descendant : descendants) {
+                final Integer currentDepth = current.get(descendant);
+                final Integer updatedDepth = updated.get(descendant);
+                final List<String> row = Arrays.asList(ancestor, descendant);
+                if (currentDepth == null) {
+                    if (updatedDepth != null) {
+                        inserts.put(row, updatedDepth);
+                    }
+                } else if (updatedDepth == null) {
+                    deletes.add(row);
+                } else if (!currentDepth.equals(updatedDepth)) {
+                    updates.put(row, updatedDepth);
+                }
+            }
+        }
+    }
+}
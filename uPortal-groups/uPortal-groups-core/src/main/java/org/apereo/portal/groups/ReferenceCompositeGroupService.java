@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -64,6 +65,42 @@ public class ReferenceCompositeGroupService extends ReferenceComponentGroupServi
         }
         return allGroups.iterator();
     }
+    /**
+     * Returns the groups that contain each of the <code>IGroupMembers</code>. Asks each component
+     * service once for all of the members it might contain a membership for.
+     *
+     * @param members Collection of IGroupMember
+     */
+    @Override
+    public Map<IGroupMember, List<IEntityGroup>> findParentGroupsByMember(
+            Collection<? extends IGroupMember> members) throws GroupsException {
+        final Map<IGroupMember, List<IEntityGroup>> result = new LinkedHashMap<>();
+        for (IGroupMember gm : members) {
+            result.put(gm, new ArrayList<>());
+        }
+
+        for (IIndividualGroupService service :
+                (Collection<IIndividualGroupService>) getComponentServices().values()) {
+            final List<IGroupMember> serviceMembers = new ArrayList<>();
+            for (IGroupMember gm : members) {
+                if (!gm.isGroup()
+                        || service.isEditable()
+                        || getComponentService(((IEntityGroup) gm).getServiceName()) == service) {
+                    serviceMembers.add(gm);
+                }
+            }
+            if (!serviceMembers.isEmpty()) {
+                for (Map.Entry<IGroupMember, List<IEntityGroup>> entry :
+                        service.findParentGroupsByMember(serviceMembers).entrySet()) {
+                    final List<IEntityGroup> groups = result.get(entry.getKey());
+                    if (groups != null) {
+                        groups.addAll(entry.getValue());
+                    }
+                }
+            }
+        }
+        return result;
+    }
     /**
      * Returns a pre-existing <code>IEntityGroup</code> or null if the <code>IGroupMember</code>
      * does not exist.
@@ -22,6 +22,9 @@ public class ReferenceEntityGroupStoreFactory implements IEntityGroupStoreFactor
 
     private static final Log log = LogFactory.getLog(ReferenceEntityGroupStoreFactory.class);
 
+    /** Service descriptor element that turns on the group closure table for the service. */
+    public static final String CLOSURE_TABLE_ENABLED = "closure_table_enabled";
+
     /** ReferenceGroupServiceFactory constructor. */
     public ReferenceEntityGroupStoreFactory() {
         super();
@@ -45,7 +48,13 @@ public class ReferenceEntityGroupStoreFactory implements IEntityGroupStoreFactor
     @Override
     public IEntityGroupStore newGroupStore(ComponentGroupServiceDescriptor svcDescriptor)
             throws GroupsException {
-        return newInstance();
+        IEntityGroupStore store = newInstance();
+        if (svcDescriptor != null
+                && Boolean.parseBoolean((String) svcDescriptor.get(CLOSURE_TABLE_ENABLED))) {
+            ((RDBMEntityGroupStore) store)
+                    .setClosureTable(new RDBMGroupClosureTable(svcDescriptor.getName()));
+        }
+        return store;
     }
     /**
      * Return an instance of the group store implementation.
@@ -19,6 +19,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.apereo.portal.EntityIdentifier;
@@ -178,23 +179,50 @@ public class ReferenceIndividualGroupService extends ReferenceCompositeGroupServ
         Iterator it = getGroupStore().findParentGroups(gm);
         while (it.hasNext()) {
             group = (IEntityGroup) it.next();
-            if (group == null) {
-                log.error("null parent for group {}", gm.getKey());
-            } else {
-                group.setLocalGroupService(this);
-                groups.add(group);
-                if (cacheInUse()) {
-                    try {
-                        if (getGroupFromCache(group.getEntityIdentifier().getKey()) == null) {
-                            cacheAdd(group);
-                        }
-                    } catch (CachingException ce) {
-                        throw new GroupsException("Problem finding containing groups", ce);
+            addParentGroup(gm, group, groups);
+        }
+        return groups.iterator();
+    }
+
+    /**
+     * Returns and caches the containing groups for each of the <code>IGroupMembers</code>, which
+     * the group store may look up all at once.
+     *
+     * @param members Collection of IGroupMember
+     */
+    @Override
+    public Map<IGroupMember, List<IEntityGroup>> findParentGroupsByMember(
+            Collection<? extends IGroupMember> members) throws GroupsException {
+        log.debug("Finding containing groups for {} members", members.size());
+        Map<IGroupMember, List<IEntityGroup>> result = new LinkedHashMap<>();
+        for (Map.Entry<IGroupMember, List<IEntityGroup>> entry :
+                getGroupStore().findParentGroupsByMember(members).entrySet()) {
+            List<IEntityGroup> groups = new ArrayList<>(entry.getValue().size());
+            for (IEntityGroup group : entry.getValue()) {
+                addParentGroup(entry.getKey(), group, groups);
+            }
+            result.put(entry.getKey(), groups);
+        }
+        return result;
+    }
+
+    private void addParentGroup(IGroupMember gm, IEntityGroup group, Collection groups)
+            throws GroupsException {
+        if (group == null) {
+            log.error("null parent for group {}", gm.getKey());
+        } else {
+            group.setLocalGroupService(this);
+            groups.add(group);
+            if (cacheInUse()) {
+                try {
+                    if (getGroupFromCache(group.getEntityIdentifier().getKey()) == null) {
+                        cacheAdd(group);
                     }
+                } catch (CachingException ce) {
+                    throw new GroupsException("Problem finding containing groups", ce);
                 }
             }
         }
-        return groups.iterator();
     }
 
     /** Returns a pre-existing <code>IEntityGroup</code> or null if it does not exist. */
@@ -272,15 +300,18 @@ public class ReferenceIndividualGroupService extends ReferenceCompositeGroupServ
      */
     protected Iterator findLocalMemberGroups(IEntityGroup eg) throws GroupsException {
         Collection groups = new ArrayList(10);
-        IEntityGroup group = null;
         Iterator it = getGroupStore().findMemberGroups(eg);
         while (it.hasNext()) {
-            group = (IEntityGroup) it.next();
-            if (group == null) {
-                log.warn(
-                        "A null IEntityGroup object was part of a list groupStore.findMemberGroups");
-                continue;
-            }
+            addLocalMemberGroup((IEntityGroup) it.next(), groups);
+        }
+        return groups.iterator();
+    }
+
+    private void addLocalMemberGroup(IEntityGroup group, Collection groups)
+            throws GroupsException {
+        if (group == null) {
+            log.warn("A null IEntityGroup object was part of a list groupStore.findMemberGroups");
+        } else {
             group.setLocalGroupService(this);
             groups.add(group);
             if (cacheInUse()) {
@@ -293,7 +324,6 @@ public class ReferenceIndividualGroupService extends ReferenceCompositeGroupServ
                 }
             }
         }
-        return groups.iterator();
     }
 
     /** Finds the <code>IEntities</code> that are members of <code>group</code>. */
@@ -318,16 +348,24 @@ public class ReferenceIndividualGroupService extends ReferenceCompositeGroupServ
             groups.put(group.getKey(), group);
         }
 
+        addOtherMemberGroups(eg, groups);
+        return groups.values().iterator();
+    }
+
+    /**
+     * Asks the GroupService for the member groups of <code>eg</code> that are not yet in <code>
+     * groups</code>, which holds the member groups local to this service by key.
+     */
+    private void addOtherMemberGroups(IEntityGroup eg, Map groups) throws GroupsException {
         String[] memberGroupKeys = getGroupStore().findMemberGroupKeys(eg);
         for (int i = 0; i < memberGroupKeys.length; i++) {
             if (!groups.containsKey(memberGroupKeys[i])) {
-                group = GroupService.findGroup(memberGroupKeys[i]);
+                IEntityGroup group = GroupService.findGroup(memberGroupKeys[i]);
                 if (group != null) {
                     groups.put(group.getKey(), group);
                 }
             }
         }
-        return groups.values().iterator();
     }
 
     /**
@@ -350,6 +388,43 @@ public class ReferenceIndividualGroupService extends ReferenceCompositeGroupServ
         return members.iterator();
     }
 
+    /**
+     * Returns the members of each of the <code>IEntityGroups</code>. The member groups that are
+     * local to this service are looked up for all of the groups at once; member groups from other
+     * services and member entities are still found group by group.
+     *
+     * @param groups Collection of IEntityGroup
+     */
+    @Override
+    public Map<IEntityGroup, List<IGroupMember>> findMembersByGroup(
+            Collection<IEntityGroup> groups) throws GroupsException {
+        log.debug("Finding members for {} groups", groups.size());
+        Map<IEntityGroup, List<IEntityGroup>> localMemberGroups =
+                getGroupStore().findMemberGroupsByGroup(groups);
+        Map<IEntityGroup, List<IGroupMember>> result = new LinkedHashMap<>();
+        for (IEntityGroup eg : groups) {
+            Collection<IEntityGroup> local = new ArrayList<>();
+            List<IEntityGroup> found = localMemberGroups.get(eg);
+            if (found != null) {
+                for (IEntityGroup group : found) {
+                    addLocalMemberGroup(group, local);
+                }
+            }
+            Map memberGroups = new HashMap();
+            for (IEntityGroup group : local) {
+                memberGroups.put(group.getKey(), group);
+            }
+            addOtherMemberGroups(eg, memberGroups);
+
+            List<IGroupMember> members = new ArrayList<>(memberGroups.values());
+            for (Iterator it = findMemberEntities(eg); it.hasNext(); ) {
+                members.add((IGroupMember) it.next());
+            }
+            result.put(eg, members);
+        }
+        return result;
+    }
+
     /**
      * Returns an <code>IEntity</code> representing a portal entity. This does not guarantee that
      * the underlying entity actually exists.
@@ -0,0 +1,495 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.Test;
+
+public class RDBMGroupClosureTableTest {
+
+    private static final String SERVICE = "local";
+    private static final String OTHER_SERVICE = "other";
+
+    @Test
+    public void testDescendantDepthsUseShortestPath() {
+        final Map<String, List<String>> memberGroups = new HashMap<>();
+        memberGroups.put("a", Arrays.asList("b", "d"));
+        memberGroups.put("b", Collections.singletonList("c"));
+        memberGroups.put("c", Collections.singletonList("d"));
+
+        final Map<String, Integer> expected = new HashMap<>();
+        expected.put("a", 0);
+        expected.put("b", 1);
+        expected.put("d", 1);
+        expected.put("c", 2);
+        assertEquals(expected, RDBMGroupClosureTable.getDescendantDepths("a", memberGroups));
+    }
+
+    @Test
+    public void testDescendantDepthsWithCircularReference() {
+        final Map<String, List<String>> memberGroups = new HashMap<>();
+        memberGroups.put("a", Arrays.asList("a", "b"));
+        memberGroups.put("b", Collections.singletonList("a"));
+
+        final Map<String, Integer> expected = new HashMap<>();
+        expected.put("a", 0);
+        expected.put("b", 1);
+        assertEquals(expected, RDBMGroupClosureTable.getDescendantDepths("a", memberGroups));
+        expected.put("a", 1);
+        expected.put("b", 0);
+        assertEquals(expected, RDBMGroupClosureTable.getDescendantDepths("b", memberGroups));
+    }
+
+    @Test
+    public void testFindAncestorParentGroupsSql() {
+        final String sql =
+                RDBMGroupClosureTable.getFindAncestorParentGroupsSql(
+                        "P.GROUP_ID, P.CREATOR_ID, P.ENTITY_TYPE_ID, P.GROUP_NAME, P.DESCRIPTION",
+                        3);
+
+        // The service twice, the member is group flag, the member service and the 3 member keys
+        assertEquals(7, sql.length() - sql.replace("?", "").length());
+        assertTrue(sql, sql.contains("ON C.GROUP_SERVICE = ? AND C.DESCENDANT_ID = M.GROUP_ID"));
+        // Direct parents come from the memberships rather than the closure
+        assertTrue(
+                sql,
+                sql.contains(
+                        "ON D.MEMBER_IS_GROUP = 'T' AND D.MEMBER_SERVICE = ?"
+                                + " AND D.MEMBER_KEY = A.GROUP_ID"));
+        assertFalse(sql, sql.contains("PATH_DEPTH"));
+        assertTrue(sql, sql.endsWith("M.MEMBER_KEY IN (?, ?, ?)"));
+    }
+
+    @Test
+    public void testRebuildKeepsOtherServices() throws SQLException {
+        final FakeDatabase db = new FakeDatabase();
+        db.addGroups("a", "b", "c");
+        db.addMember("a", "b");
+        db.addMember("b", "c");
+        db.closure.put(Arrays.asList(OTHER_SERVICE, "x", "x"), 0);
+        db.closure.put(Arrays.asList(SERVICE, "stale", "stale"), 0);
+
+        new RDBMGroupClosureTable(SERVICE).rebuild(db.connection());
+
+        assertEquals(db.getExpectedClosure(), db.getClosure(SERVICE));
+        assertEquals(6, db.getClosure(SERVICE).size());
+        assertEquals(Integer.valueOf(2), db.closure.get(Arrays.asList(SERVICE, "a", "c")));
+        assertEquals(Integer.valueOf(0), db.closure.get(Arrays.asList(OTHER_SERVICE, "x", "x")));
+    }
+
+    @Test
+    public void testAddAndRemoveMemberGroup() throws SQLException {
+        final FakeDatabase db = new FakeDatabase();
+        db.addGroups("a", "b", "c");
+        db.addMember("b", "c");
+        final RDBMGroupClosureTable closureTable = new RDBMGroupClosureTable(SERVICE);
+        closureTable.rebuild(db.connection());
+
+        db.addMember("a", "b");
+        closureTable.updateMembers(db.connection(), "a", Collections.singletonList("b"));
+        assertEquals(Integer.valueOf(1), db.closure.get(Arrays.asList(SERVICE, "a", "b")));
+        assertEquals(Integer.valueOf(2), db.closure.get(Arrays.asList(SERVICE, "a", "c")));
+
+        // A shorter path to c
+        db.addMember("a", "c");
+        closureTable.updateMembers(db.connection(), "a", Collections.singletonList("c"));
+        assertEquals(Integer.valueOf(1), db.closure.get(Arrays.asList(SERVICE, "a", "c")));
+
+        db.removeMember("a", "b");
+        closureTable.updateMembers(db.connection(), "a", Collections.singletonList("b"));
+        assertEquals(db.getExpectedClosure(), db.getClosure(SERVICE));
+        assertEquals(Integer.valueOf(1), db.closure.get(Arrays.asList(SERVICE, "a", "c")));
+        assertTrue(!db.closure.containsKey(Arrays.asList(SERVICE, "a", "b")));
+    }
+
+    @Test
+    public void testUpdateKeepsShorterPathsAroundTheGroup() throws SQLException {
+        final FakeDatabase db = new FakeDatabase();
+        db.addGroups("a", "x", "g", "m", "d");
+        db.addMember("a", "x");
+        db.addMember("a", "g");
+        db.addMember("x", "d");
+        db.addMember("m", "d");
+        final RDBMGroupClosureTable closureTable = new RDBMGroupClosureTable(SERVICE);
+        closureTable.rebuild(db.connection());
+
+        // a reaches d through x, which is neither an ancestor of g nor a descendant of m
+        db.addMember("g", "m");
+        closureTable.updateMembers(db.connection(), "g", Collections.singletonList("m"));
+        assertEquals(db.getExpectedClosure(), db.getClosure(SERVICE));
+        assertEquals(Integer.valueOf(2), db.closure.get(Arrays.asList(SERVICE, "a", "d")));
+    }
+
+    @Test
+    public void testUpdateOnlyReadsMembershipsOfTheAffectedGroups() throws SQLException {
+        final FakeDatabase db = new FakeDatabase();
+        db.addGroups("a", "b", "c", "y", "z");
+        db.addMember("b", "c");
+        db.addMember("y", "z");
+        final RDBMGroupClosureTable closureTable = new RDBMGroupClosureTable(SERVICE);
+        closureTable.rebuild(db.connection());
+        db.membershipsRead.clear();
+
+        db.addMember("a", "b");
+        closureTable.updateMembers(db.connection(), "a", Collections.singletonList("b"));
+        assertEquals(db.getExpectedClosure(), db.getClosure(SERVICE));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), db.membershipsRead);
+    }
+
+    @Test
+    public void testChangesHoldTheServiceLock() throws SQLException {
+        final FakeDatabase db = new FakeDatabase();
+        db.addGroups("a", "b");
+        final RDBMGroupClosureTable closureTable = new RDBMGroupClosureTable(SERVICE);
+        closureTable.rebuild(db.connection());
+        assertTrue(db.locks.isEmpty());
+
+        // The first change inserts the lock row, later ones select it for update
+        db.addMember("a", "b");
+        closureTable.updateMembers(db.connection(), "a", Collections.singletonList("b"));
+        assertEquals(Collections.singleton(SERVICE), db.locks);
+        assertEquals(1, db.lockSelects);
+        db.addGroups("c");
+        closureTable.addGroup(db.connection(), "c");
+        db.removeGroup("b");
+        closureTable.removeGroup(db.connection(), "b");
+        assertEquals(3, db.lockSelects);
+        assertEquals(db.getExpectedClosure(), db.getClosure(SERVICE));
+    }
+
+    @Test
+    public void testRemoveGroup() throws SQLException {
+        final FakeDatabase db = new FakeDatabase();
+        db.addGroups("a", "b", "c");
+        db.addMember("a", "b");
+        db.addMember("b", "c");
+        final RDBMGroupClosureTable closureTable = new RDBMGroupClosureTable(SERVICE);
+        closureTable.rebuild(db.connection());
+
+        db.removeGroup("b");
+        closureTable.removeGroup(db.connection(), "b");
+
+        assertEquals(db.getExpectedClosure(), db.getClosure(SERVICE));
+        assertEquals(2, db.getClosure(SERVICE).size());
+    }
+
+    @Test
+    public void testIncrementalUpdatesMatchRebuild() throws SQLException {
+        final Random random = new Random(42);
+        final FakeDatabase db = new FakeDatabase();
+        final List<String> groups = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            groups.add("g" + i);
+        }
+        db.addGroups(groups.toArray(new String[0]));
+        for (int i = 0; i < 15; i++) {
+            db.addMember(
+                    groups.get(random.nextInt(groups.size())),
+                    groups.get(random.nextInt(groups.size())));
+        }
+        final RDBMGroupClosureTable closureTable = new RDBMGroupClosureTable(SERVICE);
+        closureTable.rebuild(db.connection());
+
+        for (int i = 0; i < 200; i++) {
+            final String group = groups.get(random.nextInt(groups.size()));
+            if (random.nextInt(20) == 0 && groups.size() > 2) {
+                groups.remove(group);
+                db.removeGroup(group);
+                closureTable.removeGroup(db.connection(), group);
+            } else {
+                final String member = groups.get(random.nextInt(groups.size()));
+                if (db.memberGroups.get(group).contains(member)) {
+                    db.removeMember(group, member);
+                } else {
+                    db.addMember(group, member);
+                }
+                closureTable.updateMembers(db.connection(), group, Collections.singleton(member));
+            }
+            assertEquals("After change " + i, db.getExpectedClosure(), db.getClosure(SERVICE));
+        }
+    }
+
+    /** Answers the statements of the closure table from groups and rows held in memory */
+    private static final class FakeDatabase {
+        private final Map<String, List<String>> memberGroups = new LinkedHashMap<>();
+        /** Depth by service, ancestor and descendant */
+        private final Map<List<String>, Integer> closure = new HashMap<>();
+        /** Services with a row in the lock table */
+        private final Set<String> locks = new HashSet<>();
+        /** Groups whose member groups were read for a subset of the groups */
+        private final Set<String> membershipsRead = new HashSet<>();
+
+        private int lockSelects = 0;
+
+        void addGroups(String... groups) {
+            for (String group : groups) {
+                memberGroups.put(group, new ArrayList<>());
+            }
+        }
+
+        void addMember(String group, String member) {
+            if (!memberGroups.get(group).contains(member)) {
+                memberGroups.get(group).add(member);
+            }
+        }
+
+        void removeMember(String group, String member) {
+            memberGroups.get(group).remove(member);
+        }
+
+        /** Like the group store, deletes the group and its memberships but not those in parents */
+        void removeGroup(String group) {
+            memberGroups.remove(group);
+        }
+
+        Map<List<String>, Integer> getClosure(String service) {
+            final Map<List<String>, Integer> rows = new HashMap<>();
+            for (Map.Entry<List<String>, Integer> row : closure.entrySet()) {
+                if (row.getKey().get(0).equals(service)) {
+                    rows.put(row.getKey().subList(1, 3), row.getValue());
+                }
+            }
+            return rows;
+        }
+
+        Map<List<String>, Integer> getExpectedClosure() {
+            final Map<String, List<String>> existingMemberGroups = new HashMap<>();
+            for (Map.Entry<String, List<String>> group : memberGroups.entrySet()) {
+                final List<String> members = new ArrayList<>(group.getValue());
+                members.retainAll(memberGroups.keySet());
+                existingMemberGroups.put(group.getKey(), members);
+            }
+            final Map<List<String>, Integer> rows = new HashMap<>();
+            for (String group : memberGroups.keySet()) {
+                for (Map.Entry<String, Integer> descendant :
+                        RDBMGroupClosureTable.getDescendantDepths(group, existingMemberGroups)
+                                .entrySet()) {
+                    rows.put(Arrays.asList(group, descendant.getKey()), descendant.getValue());
+                }
+            }
+            return rows;
+        }
+
+        Connection connection() throws SQLException {
+            final Connection conn = mock(Connection.class);
+            final Statement stmnt = mock(Statement.class);
+            when(conn.createStatement()).thenReturn(stmnt);
+            when(stmnt.executeQuery(anyString()))
+                    .thenAnswer(
+                            invocation ->
+                                    resultSet(
+                                            query(
+                                                    invocation.getArgument(0),
+                                                    Collections.emptyList())));
+            when(conn.prepareStatement(anyString()))
+                    .thenAnswer(invocation -> statement(invocation.getArgument(0)));
+            return conn;
+        }
+
+        private PreparedStatement statement(String sql) throws SQLException {
+            final PreparedStatement ps = mock(PreparedStatement.class);
+            final Map<Integer, Object> params = new TreeMap<>();
+            final List<List<Object>> batch = new ArrayList<>();
+            doAnswer(invocation -> params.put(invocation.getArgument(0), invocation.getArgument(1)))
+                    .when(ps)
+                    .setString(anyInt(), anyString());
+            doAnswer(invocation -> params.put(invocation.getArgument(0), invocation.getArgument(1)))
+                    .when(ps)
+                    .setInt(anyInt(), anyInt());
+            when(ps.executeQuery())
+                    .thenAnswer(
+                            invocation -> resultSet(query(sql, new ArrayList<>(params.values()))));
+            when(ps.executeUpdate())
+                    .thenAnswer(invocation -> update(sql, new ArrayList<>(params.values())));
+            doAnswer(invocation -> batch.add(new ArrayList<>(params.values())))
+                    .when(ps)
+                    .addBatch();
+            when(ps.executeBatch())
+                    .thenAnswer(
+                            invocation -> {
+                                final int[] counts = new int[batch.size()];
+                                for (int i = 0; i < counts.length; i++) {
+                                    counts[i] = update(sql, batch.get(i));
+                                }
+                                batch.clear();
+                                return counts;
+                            });
+            return ps;
+        }
+
+        private List<Object[]> query(String sql, List<Object> params) {
+            final List<Object[]> rows = new ArrayList<>();
+            if (sql.equals(RDBMGroupClosureTable.LOCK_SQL)) {
+                lockSelects++;
+                if (locks.contains(params.get(0))) {
+                    rows.add(new Object[] {params.get(0)});
+                }
+            } else if (sql.equals(
+                    RDBMGroupClosureTable.getFindMemberGroupsOfGroupsSql(params.size() - 1))) {
+                assertEquals(SERVICE, params.get(0));
+                for (Object group : params.subList(1, params.size())) {
+                    membershipsRead.add((String) group);
+                    for (String member :
+                            memberGroups.getOrDefault(group, Collections.emptyList())) {
+                        if (memberGroups.containsKey(member)) {
+                            rows.add(new Object[] {group, member});
+                        }
+                    }
+                }
+            } else if (sql.equals(
+                    RDBMGroupClosureTable.getFindAncestorIdsSql(params.size() - 1))) {
+                final Set<String> ancestors = new LinkedHashSet<>();
+                for (List<String> key : closure.keySet()) {
+                    if (key.get(0).equals(params.get(0))
+                            && params.subList(1, params.size()).contains(key.get(2))) {
+                        ancestors.add(key.get(1));
+                    }
+                }
+                for (String ancestor : ancestors) {
+                    rows.add(new Object[] {ancestor});
+                }
+            } else if (sql.equals(RDBMGroupClosureTable.FIND_GROUP_IDS_SQL)) {
+                for (String group : memberGroups.keySet()) {
+                    rows.add(new Object[] {group});
+                }
+            } else if (sql.equals(RDBMGroupClosureTable.FIND_GROUP_MEMBER_GROUPS_SQL)) {
+                assertEquals(SERVICE, params.get(0));
+                for (Map.Entry<String, List<String>> group : memberGroups.entrySet()) {
+                    for (String member : group.getValue()) {
+                        if (memberGroups.containsKey(member)) {
+                            rows.add(new Object[] {group.getKey(), member});
+                        }
+                    }
+                }
+            } else {
+                for (Map.Entry<List<String>, Integer> row : closure.entrySet()) {
+                    final List<String> key = row.getKey();
+                    if (!key.get(0).equals(params.get(0))) {
+                        continue;
+                    }
+                    if (sql.equals(RDBMGroupClosureTable.FIND_DIRECT_ROWS_SQL)) {
+                        if (row.getValue() <= 1) {
+                            rows.add(new Object[] {key.get(1), key.get(2), row.getValue()});
+                        }
+                    } else if (sql.equals(RDBMGroupClosureTable.FIND_ANCESTOR_DEPTHS_SQL)) {
+                        if (key.get(2).equals(params.get(1))) {
+                            rows.add(new Object[] {key.get(1), row.getValue()});
+                        }
+                    } else if (sql.equals(RDBMGroupClosureTable.FIND_DESCENDANT_DEPTHS_SQL)) {
+                        if (key.get(1).equals(params.get(1))) {
+                            rows.add(new Object[] {key.get(2), row.getValue()});
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Unexpected query: " + sql);
+                    }
+                }
+            }
+            return rows;
+        }
+
+        private int update(String sql, List<Object> params) throws SQLException {
+            if (sql.equals(RDBMGroupClosureTable.INSERT_LOCK_SQL)) {
+                if (!locks.add((String) params.get(0))) {
+                    throw new SQLException("Duplicate lock " + params.get(0));
+                }
+                return 1;
+            }
+            if (sql.equals(RDBMGroupClosureTable.INSERT_ROW_SQL)) {
+                final List<String> key = key(params.get(0), params.get(1), params.get(2));
+                if (closure.containsKey(key)) {
+                    throw new SQLException("Duplicate key " + key);
+                }
+                closure.put(key, (Integer) params.get(3));
+                return 1;
+            }
+            if (sql.equals(RDBMGroupClosureTable.UPDATE_ROW_SQL)) {
+                final List<String> key = key(params.get(1), params.get(2), params.get(3));
+                assertTrue("No row " + key, closure.containsKey(key));
+                closure.put(key, (Integer) params.get(0));
+                return 1;
+            }
+            if (sql.equals(RDBMGroupClosureTable.DELETE_ROW_SQL)) {
+                final List<String> key = key(params.get(0), params.get(1), params.get(2));
+                assertTrue("No row " + key, closure.containsKey(key));
+                closure.remove(key);
+                return 1;
+            }
+
+            final Set<List<String>> deleted = new LinkedHashSet<>();
+            for (List<String> key : closure.keySet()) {
+                if (!key.get(0).equals(params.get(0))) {
+                    continue;
+                }
+                if (sql.equals(RDBMGroupClosureTable.DELETE_CLOSURE_SQL)
+                        || (sql.equals(RDBMGroupClosureTable.DELETE_GROUP_SQL)
+                                && (key.get(1).equals(params.get(1))
+                                        || key.get(2).equals(params.get(2))))) {
+                    deleted.add(key);
+                } else if (!sql.equals(RDBMGroupClosureTable.DELETE_GROUP_SQL)) {
+                    throw new IllegalArgumentException("Unexpected update: " + sql);
+                }
+            }
+            for (Iterator<List<String>> keys = deleted.iterator(); keys.hasNext(); ) {
+                closure.remove(keys.next());
+            }
+            return deleted.size();
+        }
+
+        private static List<String> key(Object service, Object ancestor, Object descendant) {
+            return Arrays.asList((String) service, (String) ancestor, (String) descendant);
+        }
+
+        private static ResultSet resultSet(List<Object[]> rows) throws SQLException {
+            final ResultSet rs = mock(ResultSet.class);
+            final int[] row = {-1};
+            when(rs.next()).thenAnswer(invocation -> ++row[0] < rows.size());
+            when(rs.getString(anyInt()))
+                    .thenAnswer(
+                            invocation ->
+                                    rows.get(row[0])[(Integer) invocation.getArgument(0) - 1]);
+            when(rs.getInt(anyInt()))
+                    .thenAnswer(
+                            invocation ->
+                                    rows.get(row[0])[(Integer) invocation.getArgument(0) - 1]);
+            return rs;
+        }
+    }
+}
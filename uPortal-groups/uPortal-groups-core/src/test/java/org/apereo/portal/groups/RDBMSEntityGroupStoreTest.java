@@ -8,6 +8,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -18,9 +19,11 @@ import static org.mockito.Mockito.when;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import javax.naming.Name;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -53,7 +56,9 @@ public class RDBMSEntityGroupStoreTest {
     @Mock EntityTypes entityTypes;
     @Mock ResultSet rs;
     @Mock IEntity entity;
+    @Mock IEntity otherEntity;
     @Mock IEntityGroup entityGroup;
+    @Mock IEntityGroup otherEntityGroup;
     @Mock Name name;
 
     Cache groupSearchCache;
@@ -219,6 +224,63 @@ public class RDBMSEntityGroupStoreTest {
         }
     }
 
+    @Test
+    public void testFindParentGroupsByMemberQueriesUncachedEntitiesTogether() throws Exception {
+        String otherEntityKey = "other-entity-key";
+        when(otherEntity.getKey()).thenReturn(otherEntityKey);
+        // the one row returned is a parent of entity
+        when(rs.getString(6)).thenReturn(entityKey);
+        try (MockStaticUtil util = new MockStaticUtil()) {
+            store = new RDBMEntityGroupStore();
+            Map<IGroupMember, List<IEntityGroup>> parents =
+                    store.findParentGroupsByMember(Arrays.asList(entity, otherEntity));
+            verify(conn, times(1)).prepareStatement(contains("IN (?, ?)"));
+            verify(ps, times(1)).executeQuery();
+            assertEquals(1, parents.get(entity).size());
+            assertTrue(parents.get(otherEntity).isEmpty());
+            // both results are cached for findParentGroups(IEntity)
+            verify(parentGroupEntityCache, times(2)).put(any(Element.class));
+            assertEquals(
+                    parents.get(entity),
+                    parentGroupEntityCache.get(entityKey + ":0").getObjectValue());
+            assertEquals(
+                    Collections.emptyList(),
+                    parentGroupEntityCache.get(otherEntityKey + ":0").getObjectValue());
+        }
+    }
+
+    @Test
+    public void testFindParentGroupsByMemberForCacheHit() throws Exception {
+        List<IEntityGroup> expectedGroups = Collections.singletonList(entityGroup);
+        try (MockStaticUtil util = new MockStaticUtil()) {
+            parentGroupEntityCache.put(new Element(entityKey + ":0", expectedGroups));
+            store = new RDBMEntityGroupStore();
+            Map<IGroupMember, List<IEntityGroup>> parents =
+                    store.findParentGroupsByMember(Collections.singletonList(entity));
+            verify(ps, never()).executeQuery();
+            assertEquals(expectedGroups, parents.get(entity));
+        }
+    }
+
+    @Test
+    public void testFindMemberGroupsByGroupQueriesGroupsOfAServiceTogether() throws Exception {
+        when(otherEntityGroup.getLocalKey()).thenReturn("other-entity-local-key");
+        when(otherEntityGroup.getServiceName()).thenReturn(name);
+        // the one row returned is a member of entityGroup
+        when(rs.getString(6)).thenReturn(entityLocalKey);
+        try (MockStaticUtil util = new MockStaticUtil()) {
+            store = new RDBMEntityGroupStore();
+            Map<IEntityGroup, List<IEntityGroup>> members =
+                    store.findMemberGroupsByGroup(Arrays.asList(entityGroup, otherEntityGroup));
+            verify(conn, times(1)).prepareStatement(contains("IN (?, ?)"));
+            verify(ps, times(1)).executeQuery();
+            verify(ps).setString(1, serviceName);
+            assertEquals(1, members.get(entityGroup).size());
+            assertNotNull(members.get(entityGroup).get(0));
+            assertTrue(members.get(otherEntityGroup).isEmpty());
+        }
+    }
+
     private void verifyResults(Iterator<IEntityGroup> iterator, List<IEntityGroup> expectedGroups) {
         assertNotNull(iterator);
         for (IEntityGroup expectedGroup : expectedGroups) {
@@ -16,6 +16,7 @@ package org.apereo.portal.groups.pags.dao;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -75,6 +76,12 @@ public class EntityPersonAttributesGroupStore
      */
     private final Cache membershipCache;
 
+    /** Caches the PersonAttributesGroupIndex compiled from all PAGS group definitions */
+    private final Cache membershipIndexCache;
+
+    /** Caches the MembershipSnapshot of each person, by username */
+    private final Cache membershipSnapshotCache;
+
     public EntityPersonAttributesGroupStore() {
         super();
         ApplicationContext applicationContext = ApplicationContextLocator.getApplicationContext();
@@ -92,6 +99,12 @@ public class EntityPersonAttributesGroupStore
         this.membershipCache =
                 cacheManager.getCache(
                         "org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.membership");
+        this.membershipIndexCache =
+                cacheManager.getCache(
+                        "org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.membershipIndex");
+        this.membershipSnapshotCache =
+                cacheManager.getCache(
+                        "org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.membershipSnapshot");
     }
 
     @Override
@@ -117,6 +130,18 @@ public class EntityPersonAttributesGroupStore
             }
         }
 
+        if (!member.isGroup()) {
+            final MembershipSnapshot snapshot = getMembershipSnapshot(member);
+            final boolean answer = snapshot != null && snapshot.contains(group.getName());
+            logger.debug(
+                    "Answering if group {} contains member {}/{} : {}",
+                    group.getName(),
+                    member.getKey(),
+                    member.getLeafType().getSimpleName(),
+                    answer);
+            return answer;
+        }
+
         final MembershipCacheKey cacheKey =
                 new MembershipCacheKey(
                         group.getEntityIdentifier(), member.getUnderlyingEntityIdentifier());
@@ -129,33 +154,9 @@ public class EntityPersonAttributesGroupStore
                     member.getKey(),
                     member.getLeafType().getSimpleName());
 
-            boolean answer = false; // default
             final PagsGroup groupDef = convertEntityToGroupDef(group);
-            if (member.isGroup()) {
-                final String key = ((IEntityGroup) member).getLocalKey();
-                answer = groupDef.hasMember(key);
-            } else {
-                try {
-                    final IPersonAttributeDao pa =
-                            PersonAttributeDaoLocator.getPersonAttributeDao();
-                    final IPersonAttributes personAttributes = pa.getPerson(member.getKey(), null);
-
-                    if (personAttributes != null) {
-                        final RestrictedPerson rp = PersonFactory.createRestrictedPerson();
-                        rp.setAttributes(personAttributes.getAttributes());
-                        answer = groupDef.contains(rp);
-                    }
-                } catch (Exception ex) {
-                    logger.error(
-                            "Exception acquiring attributes for member "
-                                    + member
-                                    + " while checking if group "
-                                    + group
-                                    + " contains this member.",
-                            ex);
-                    return false;
-                }
-            }
+            final String key = ((IEntityGroup) member).getLocalKey();
+            final boolean answer = groupDef.hasMember(key);
             element = new Element(cacheKey, answer);
             membershipCache.put(element);
         }
@@ -254,18 +255,86 @@ public class EntityPersonAttributesGroupStore
     private Iterator<IEntityGroup> findParentGroupsForEntity(IEntity member)
             throws GroupsException {
 
-        Set<IPersonAttributesGroupDefinition> pagsGroups =
-                personAttributesGroupDefinitionDao.getPersonAttributesGroupDefinitions();
-        List<IEntityGroup> results = new ArrayList<IEntityGroup>();
-        for (IPersonAttributesGroupDefinition pagsGroup : pagsGroups) {
-            IEntityGroup group = convertPagsGroupToEntity(pagsGroup);
-            if (contains(group, member)) {
-                results.add(group);
-            }
+        final MembershipSnapshot snapshot = getMembershipSnapshot(member);
+        if (snapshot == null) {
+            return Collections.emptyIterator();
+        }
+
+        final List<IEntityGroup> groups = snapshot.index.getGroups();
+        final List<IEntityGroup> results = new ArrayList<IEntityGroup>();
+        for (int i = snapshot.containingGroups.nextSetBit(0);
+                i >= 0;
+                i = snapshot.containingGroups.nextSetBit(i + 1)) {
+            results.add(groups.get(i));
         }
         return results.iterator();
     }
 
+    /**
+     * Returns the PAGS groups containing the person, evaluated in one pass over the compiled index
+     * the first time the person is seen after authenticating and after any change to the PAGS
+     * group definitions.
+     *
+     * @return null if the person's attributes could not be retrieved
+     */
+    private MembershipSnapshot getMembershipSnapshot(IGroupMember member) {
+        final PersonAttributesGroupIndex index = getMembershipIndex();
+
+        final String cacheKey = member.getKey();
+        final Element element = membershipSnapshotCache.get(cacheKey);
+        if (element != null) {
+            final MembershipSnapshot snapshot = (MembershipSnapshot) element.getObjectValue();
+            if (snapshot.index == index) {
+                return snapshot;
+            }
+            // Compiled against definitions that have since changed
+        }
+
+        final RestrictedPerson rp;
+        try {
+            final IPersonAttributeDao pa = PersonAttributeDaoLocator.getPersonAttributeDao();
+            final IPersonAttributes personAttributes = pa.getPerson(member.getKey(), null);
+            if (personAttributes == null) {
+                return null;
+            }
+            rp = PersonFactory.createRestrictedPerson();
+            rp.setAttributes(personAttributes.getAttributes());
+        } catch (Exception ex) {
+            logger.error(
+                    "Exception acquiring attributes for member "
+                            + member
+                            + " while evaluating PAGS group membership.",
+                    ex);
+            return null;
+        }
+
+        final MembershipSnapshot snapshot =
+                new MembershipSnapshot(index, index.findContainingGroups(rp));
+        membershipSnapshotCache.put(new Element(cacheKey, snapshot));
+        return snapshot;
+    }
+
+    private PersonAttributesGroupIndex getMembershipIndex() {
+        final String cacheKey = PersonAttributesGroupIndex.class.getName();
+        Element element = membershipIndexCache.get(cacheKey);
+
+        if (element == null) {
+            final Set<IPersonAttributesGroupDefinition> pagsGroups =
+                    personAttributesGroupDefinitionDao.getPersonAttributesGroupDefinitions();
+            final List<IEntityGroup> groups = new ArrayList<IEntityGroup>(pagsGroups.size());
+            final List<PagsGroup> groupDefs = new ArrayList<PagsGroup>(pagsGroups.size());
+            for (IPersonAttributesGroupDefinition pagsGroup : pagsGroups) {
+                groups.add(convertPagsGroupToEntity(pagsGroup));
+                groupDefs.add(initGroupDef(pagsGroup));
+            }
+            logger.debug("Compiled membership index for {} PAGS groups", groups.size());
+            element = new Element(cacheKey, new PersonAttributesGroupIndex(groups, groupDefs));
+            membershipIndexCache.put(element);
+        }
+
+        return (PersonAttributesGroupIndex) element.getObjectValue();
+    }
+
     @Override
     public Iterator<IEntityGroup> findEntitiesForGroup(IEntityGroup group) throws GroupsException {
         // PAGS groups are synthetic;  we don't support this behavior.
@@ -522,4 +591,24 @@ public class EntityPersonAttributesGroupStore
                 pagsGroups.isEmpty() ? null : pagsGroups.iterator().next();
         return result;
     }
+
+    /**
+     * The groups containing a person, as of the compiled index they were evaluated against. A new
+     * index is compiled when the PAGS group definitions change, so comparing the index is enough to
+     * invalidate every snapshot at once.
+     */
+    private static final class MembershipSnapshot {
+        private final PersonAttributesGroupIndex index;
+        private final BitSet containingGroups;
+
+        MembershipSnapshot(PersonAttributesGroupIndex index, BitSet containingGroups) {
+            this.index = index;
+            this.containingGroups = containingGroups;
+        }
+
+        boolean contains(String groupName) {
+            final int groupIndex = this.index.getGroupIndex(groupName);
+            return groupIndex >= 0 && this.containingGroups.get(groupIndex);
+        }
+    }
 }
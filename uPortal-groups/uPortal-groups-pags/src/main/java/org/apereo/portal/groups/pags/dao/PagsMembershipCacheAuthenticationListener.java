@@ -45,6 +45,12 @@ public class PagsMembershipCacheAuthenticationListener implements IAuthenticatio
             value = "org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.membership")
     private Cache membershipCache;
 
+    @Autowired
+    @Qualifier(
+            value =
+                    "org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.membershipSnapshot")
+    private Cache membershipSnapshotCache;
+
     private Attribute<String> usernameSearchAttribute;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -64,6 +70,9 @@ public class PagsMembershipCacheAuthenticationListener implements IAuthenticatio
          */
         final long timestamp = System.currentTimeMillis();
 
+        // The snapshot of all the user's memberships is evaluated again on first use
+        membershipSnapshotCache.remove(user.getEntityIdentifier().getKey());
+
         /*
          * Query the membershipCache (ehcache) for elements that
          * reference the specified user and remove them.
@@ -0,0 +1,262 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups.pags.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apereo.portal.groups.IEntityGroup;
+import org.apereo.portal.groups.pags.IPersonTester;
+import org.apereo.portal.groups.pags.PagsGroup;
+import org.apereo.portal.groups.pags.TestGroup;
+import org.apereo.portal.groups.pags.testers.BaseAttributeTester;
+import org.apereo.portal.groups.pags.testers.EagerRegexTester;
+import org.apereo.portal.groups.pags.testers.LowercasedRegexTester;
+import org.apereo.portal.groups.pags.testers.PropertyRegexTester;
+import org.apereo.portal.groups.pags.testers.RegexTester;
+import org.apereo.portal.groups.pags.testers.StringEqualsIgnoreCaseTester;
+import org.apereo.portal.groups.pags.testers.StringEqualsTester;
+import org.apereo.portal.groups.pags.testers.ValueExistsTester;
+import org.apereo.portal.security.IPerson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled form of all PAGS group definitions, used to find every group a person is a member of in
+ * one pass. Each test group is indexed by the most selective of its tests that can only pass when
+ * the person has a particular value, or any value, for an attribute. Only the test groups indexed
+ * under the person's attributes, and those without such a test, are evaluated.
+ *
+ * <p>Tests are only used for indexing when their class is one of the known testers below, a
+ * subclass may change what a missing attribute means (see {@link
+ * org.apereo.portal.groups.pags.testers.InvertedRegexTester}).
+ */
+/* package-private */ final class PersonAttributesGroupIndex {
+    private static final Set<Class<?>> PRESENCE_TESTER_CLASSES =
+            Collections.unmodifiableSet(
+                    new HashSet<Class<?>>(
+                            Arrays.asList(
+                                    RegexTester.class,
+                                    EagerRegexTester.class,
+                                    LowercasedRegexTester.class,
+                                    PropertyRegexTester.class,
+                                    ValueExistsTester.class)));
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final List<IEntityGroup> groups;
+    private final Map<String, Integer> groupIndexes = new HashMap<>();
+    private final List<TestGroup> testGroups = new ArrayList<>();
+    private final List<Integer> testGroupOwners = new ArrayList<>();
+
+    /** Attribute name to value to the test groups that require the value */
+    private final Map<String, Map<String, BitSet>> valueIndex = new HashMap<>();
+
+    /** Attribute name to case folded value to the test groups that require the value */
+    private final Map<String, Map<String, BitSet>> foldedValueIndex = new HashMap<>();
+
+    /** Attribute name to the test groups that require any value for the attribute */
+    private final Map<String, BitSet> presenceIndex = new HashMap<>();
+
+    /** Test groups that have to be evaluated for every person */
+    private final BitSet unindexedTestGroups = new BitSet();
+
+    /**
+     * @param groups The PAGS groups
+     * @param groupDefs The compiled definition of each group, null for groups that could not be
+     *     compiled and so never have members
+     */
+    PersonAttributesGroupIndex(List<IEntityGroup> groups, List<PagsGroup> groupDefs) {
+        this.groups = Collections.unmodifiableList(new ArrayList<>(groups));
+        for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++) {
+            this.groupIndexes.put(groups.get(groupIndex).getName(), groupIndex);
+        }
+
+        for (int groupIndex = 0; groupIndex < groupDefs.size(); groupIndex++) {
+            final PagsGroup groupDef = groupDefs.get(groupIndex);
+            if (groupDef == null) {
+                continue;
+            }
+            for (final TestGroup testGroup : groupDef.getTestGroups()) {
+                this.addTestGroup(groupIndex, testGroup);
+            }
+        }
+    }
+
+    /** @return All PAGS groups in the index */
+    List<IEntityGroup> getGroups() {
+        return this.groups;
+    }
+
+    /** @return The index of the named group in {@link #getGroups()}, -1 if it is not indexed */
+    int getGroupIndex(String groupName) {
+        final Integer groupIndex = this.groupIndexes.get(groupName);
+        return groupIndex != null ? groupIndex : -1;
+    }
+
+    /**
+     * @return The indexes in {@link #getGroups()} of the groups that contain the person, as {@link
+     *     PagsGroup#contains(IPerson)} would answer for each group
+     */
+    BitSet findContainingGroups(IPerson person) {
+        final BitSet candidates = (BitSet) this.unindexedTestGroups.clone();
+
+        for (final Map.Entry<String, BitSet> presenceEntry : this.presenceIndex.entrySet()) {
+            final Object[] values = person.getAttributeValues(presenceEntry.getKey());
+            if (values != null && values.length > 0) {
+                candidates.or(presenceEntry.getValue());
+            }
+        }
+        addValueCandidates(person, this.valueIndex, false, candidates);
+        addValueCandidates(person, this.foldedValueIndex, true, candidates);
+
+        final BitSet containingGroups = new BitSet();
+        for (int testGroupIndex = candidates.nextSetBit(0);
+                testGroupIndex >= 0;
+                testGroupIndex = candidates.nextSetBit(testGroupIndex + 1)) {
+            final int groupIndex = this.testGroupOwners.get(testGroupIndex);
+            if (containingGroups.get(groupIndex)) {
+                // Test groups are or-ed, one passing is enough
+                continue;
+            }
+
+            try {
+                if (this.testGroups.get(testGroupIndex).test(person)) {
+                    containingGroups.set(groupIndex);
+                }
+            } catch (Exception e) {
+                logger.error(
+                        "Exception testing person {} for membership in group {}",
+                        person.getUserName(),
+                        this.groups.get(groupIndex).getName(),
+                        e);
+            }
+        }
+
+        logger.debug(
+                "Evaluated {} of {} test groups to find {} groups containing {}",
+                candidates.cardinality(),
+                this.testGroups.size(),
+                containingGroups.cardinality(),
+                person.getUserName());
+        return containingGroups;
+    }
+
+    private void addTestGroup(int groupIndex, TestGroup testGroup) {
+        final int testGroupIndex = this.testGroups.size();
+        this.testGroups.add(testGroup);
+        this.testGroupOwners.add(groupIndex);
+
+        BaseAttributeTester valueTester = null;
+        BaseAttributeTester foldedValueTester = null;
+        BaseAttributeTester presenceTester = null;
+        for (final IPersonTester tester : testGroup.getTests()) {
+            if (tester == null) {
+                // TestGroup.test fails for a missing tester, no person ever passes
+                return;
+            }
+
+            final Class<?> testerClass = tester.getClass();
+            if (testerClass == StringEqualsTester.class) {
+                valueTester = (BaseAttributeTester) tester;
+            } else if (testerClass == StringEqualsIgnoreCaseTester.class) {
+                foldedValueTester = (BaseAttributeTester) tester;
+            } else if (PRESENCE_TESTER_CLASSES.contains(testerClass)) {
+                presenceTester = (BaseAttributeTester) tester;
+            }
+        }
+
+        if (valueTester != null) {
+            getValueEntry(
+                            this.valueIndex,
+                            valueTester.getAttributeName(),
+                            valueTester.getTestValue())
+                    .set(testGroupIndex);
+        } else if (foldedValueTester != null) {
+            getValueEntry(
+                            this.foldedValueIndex,
+                            foldedValueTester.getAttributeName(),
+                            foldCase(foldedValueTester.getTestValue()))
+                    .set(testGroupIndex);
+        } else if (presenceTester != null) {
+            BitSet testGroupIndexes = this.presenceIndex.get(presenceTester.getAttributeName());
+            if (testGroupIndexes == null) {
+                testGroupIndexes = new BitSet();
+                this.presenceIndex.put(presenceTester.getAttributeName(), testGroupIndexes);
+            }
+            testGroupIndexes.set(testGroupIndex);
+        } else {
+            this.unindexedTestGroups.set(testGroupIndex);
+        }
+    }
+
+    private static BitSet getValueEntry(
+            Map<String, Map<String, BitSet>> index, String attributeName, String value) {
+        Map<String, BitSet> values = index.get(attributeName);
+        if (values == null) {
+            values = new HashMap<>();
+            index.put(attributeName, values);
+        }
+        BitSet testGroupIndexes = values.get(value);
+        if (testGroupIndexes == null) {
+            testGroupIndexes = new BitSet();
+            values.put(value, testGroupIndexes);
+        }
+        return testGroupIndexes;
+    }
+
+    private static void addValueCandidates(
+            IPerson person,
+            Map<String, Map<String, BitSet>> index,
+            boolean foldCase,
+            BitSet candidates) {
+        for (final Map.Entry<String, Map<String, BitSet>> attributeEntry : index.entrySet()) {
+            final Object[] values = person.getAttributeValues(attributeEntry.getKey());
+            if (values == null) {
+                continue;
+            }
+            for (final Object value : values) {
+                if (value instanceof String) {
+                    final String key = foldCase ? foldCase((String) value) : (String) value;
+                    final BitSet testGroupIndexes = attributeEntry.getValue().get(key);
+                    if (testGroupIndexes != null) {
+                        candidates.or(testGroupIndexes);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Two strings fold to the same value exactly when {@link String#equalsIgnoreCase(String)} is
+     * true for them, which compares the lower case of the upper case of each char.
+     */
+    static String foldCase(String value) {
+        if (value == null) {
+            return null;
+        }
+        final char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
@@ -24,13 +24,18 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.ParameterExpression;
 import javax.persistence.criteria.Root;
+import net.sf.ehcache.Ehcache;
 import org.apache.commons.lang.Validate;
 import org.apereo.portal.groups.pags.dao.IPersonAttributesGroupDefinition;
 import org.apereo.portal.groups.pags.dao.IPersonAttributesGroupDefinitionDao;
 import org.apereo.portal.jpa.BasePortalJpaDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Repository("personAttributesGroupDefinitionDao")
 public class JpaPersonAttributesGroupDefinitionDao extends BasePortalJpaDao
@@ -43,6 +48,24 @@ public class JpaPersonAttributesGroupDefinitionDao extends BasePortalJpaDao
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private Ehcache pagsGroupCache;
+    private Ehcache membershipIndexCache;
+
+    @Autowired
+    public void setPagsGroupCache(
+            @Qualifier("org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.pagsGroup")
+                    Ehcache pagsGroupCache) {
+        this.pagsGroupCache = pagsGroupCache;
+    }
+
+    @Autowired
+    public void setMembershipIndexCache(
+            @Qualifier(
+                            "org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.membershipIndex")
+                    Ehcache membershipIndexCache) {
+        this.membershipIndexCache = membershipIndexCache;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         this.nameParameter = this.createParameterExpression(String.class, "name");
@@ -134,6 +157,7 @@ public class JpaPersonAttributesGroupDefinitionDao extends BasePortalJpaDao
         }
 
         this.getEntityManager().persist(persistentDefinition);
+        this.purgeCompiledDefinitions();
         return persistentDefinition;
     }
 
@@ -150,6 +174,7 @@ public class JpaPersonAttributesGroupDefinitionDao extends BasePortalJpaDao
             persistentDefinition = entityManager.merge(definition);
         }
         entityManager.remove(persistentDefinition);
+        this.purgeCompiledDefinitions();
     }
 
     @PortalTransactionalReadOnly
@@ -197,6 +222,32 @@ public class JpaPersonAttributesGroupDefinitionDao extends BasePortalJpaDao
                 new PersonAttributesGroupDefinitionImpl(name, description);
 
         this.getEntityManager().persist(personAttributesGroupDefinition);
+        this.purgeCompiledDefinitions();
         return personAttributesGroupDefinition;
     }
+
+    /**
+     * Drops the definitions compiled by EntityPersonAttributesGroupStore so the change is seen by
+     * the next membership check instead of when the caches expire. Replacing the compiled index
+     * also invalidates the membership snapshots of every user. Waits for the change to commit, a
+     * check running in the meantime would otherwise compile and cache the old definitions again.
+     */
+    void purgeCompiledDefinitions() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCommit() {
+                            removeCompiledDefinitions();
+                        }
+                    });
+        } else {
+            removeCompiledDefinitions();
+        }
+    }
+
+    private void removeCompiledDefinitions() {
+        this.pagsGroupCache.removeAll();
+        this.membershipIndexCache.removeAll();
+    }
 }
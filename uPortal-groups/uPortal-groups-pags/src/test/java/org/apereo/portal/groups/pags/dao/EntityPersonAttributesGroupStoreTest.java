@@ -0,0 +1,220 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups.pags.dao;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.apereo.portal.EntityTypes;
+import org.apereo.portal.groups.IEntityGroup;
+import org.apereo.portal.groups.IGroupMember;
+import org.apereo.portal.groups.pags.testers.StringEqualsTester;
+import org.apereo.portal.security.IPerson;
+import org.apereo.portal.spring.locator.ApplicationContextLocator;
+import org.apereo.portal.spring.locator.EntityTypesLocator;
+import org.apereo.portal.spring.locator.PersonAttributeDaoLocator;
+import org.apereo.services.persondir.IPersonAttributeDao;
+import org.apereo.services.persondir.IPersonAttributes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+public class EntityPersonAttributesGroupStoreTest {
+
+    private static final String CACHE_PREFIX =
+            "org.apereo.portal.groups.pags.dao.EntityPersonAttributesGroupStore.";
+
+    private CacheManager cacheManager;
+
+    private IPersonAttributesGroupDefinitionDao definitionDao;
+
+    private IPersonAttributeDao personAttributeDao;
+
+    private ApplicationContextLocator applicationContextLocator;
+
+    private EntityTypesLocator entityTypesLocator;
+
+    private PersonAttributeDaoLocator personAttributeDaoLocator;
+
+    private EntityPersonAttributesGroupStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheManager = new CacheManager(new Configuration().name(getClass().getName()));
+        for (String name :
+                Arrays.asList(
+                        "entityGroup",
+                        "pagsGroup",
+                        "membership",
+                        "membershipIndex",
+                        "membershipSnapshot")) {
+            cacheManager.addCache(new Cache(new CacheConfiguration(CACHE_PREFIX + name, 100)));
+        }
+
+        definitionDao = mock(IPersonAttributesGroupDefinitionDao.class);
+        definitions(definition("math", "dept", "math"), definition("art", "dept", "art"));
+
+        personAttributeDao = mock(IPersonAttributeDao.class);
+        person("alice", "dept", "math");
+
+        final ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(
+                        "personAttributesGroupDefinitionDao",
+                        IPersonAttributesGroupDefinitionDao.class))
+                .thenReturn(definitionDao);
+        when(applicationContext.getBean("cacheManager", CacheManager.class))
+                .thenReturn(cacheManager);
+        final EntityTypes entityTypes = mock(EntityTypes.class);
+        when(entityTypes.getEntityIDFromType(IPerson.class)).thenReturn(1);
+
+        applicationContextLocator = new ApplicationContextLocator(applicationContext);
+        applicationContextLocator.afterPropertiesSet();
+        entityTypesLocator = new EntityTypesLocator(entityTypes);
+        entityTypesLocator.afterPropertiesSet();
+        personAttributeDaoLocator = new PersonAttributeDaoLocator(personAttributeDao);
+        personAttributeDaoLocator.afterPropertiesSet();
+
+        store = new EntityPersonAttributesGroupStore();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        personAttributeDaoLocator.destroy();
+        entityTypesLocator.destroy();
+        applicationContextLocator.destroy();
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testSnapshotAnswersEveryGroup() {
+        final IGroupMember alice = member("alice");
+
+        Assert.assertTrue(store.contains(group("math"), alice));
+        Assert.assertFalse(store.contains(group("art"), alice));
+        Assert.assertFalse(store.contains(group("unknown"), alice));
+        Assert.assertEquals(Collections.singletonList("math"), parentGroupNames(alice));
+
+        // One attribute lookup and one compiled index for all of the checks
+        verify(personAttributeDao, times(1)).getPerson("alice", null);
+        verify(definitionDao, times(1)).getPersonAttributesGroupDefinitions();
+    }
+
+    @Test
+    public void testSnapshotPerPerson() {
+        person("bob", "dept", "art");
+
+        Assert.assertTrue(store.contains(group("math"), member("alice")));
+        Assert.assertTrue(store.contains(group("art"), member("bob")));
+        Assert.assertFalse(store.contains(group("math"), member("bob")));
+        Assert.assertFalse(store.contains(group("math"), member("nobody")));
+
+        verify(definitionDao, times(1)).getPersonAttributesGroupDefinitions();
+    }
+
+    @Test
+    public void testNewIndexInvalidatesSnapshots() {
+        final IGroupMember alice = member("alice");
+        Assert.assertFalse(store.contains(group("art"), alice));
+
+        definitions(definition("math", "dept", "math"), definition("art", "dept", "math"));
+
+        // The compiled index is still cached, so is the snapshot
+        Assert.assertFalse(store.contains(group("art"), alice));
+        verify(personAttributeDao, times(1)).getPerson("alice", null);
+
+        // What JpaPersonAttributesGroupDefinitionDao does once a definition change commits
+        cacheManager.getCache(CACHE_PREFIX + "pagsGroup").removeAll();
+        cacheManager.getCache(CACHE_PREFIX + "membershipIndex").removeAll();
+
+        Assert.assertTrue(store.contains(group("art"), alice));
+        Assert.assertEquals(Arrays.asList("art", "math"), parentGroupNames(alice));
+        verify(personAttributeDao, times(2)).getPerson("alice", null);
+        verify(definitionDao, times(2)).getPersonAttributesGroupDefinitions();
+    }
+
+    private List<String> parentGroupNames(IGroupMember member) {
+        final List<String> result = new ArrayList<>();
+        for (Iterator<IEntityGroup> itr = store.findParentGroups(member); itr.hasNext(); ) {
+            result.add(itr.next().getName());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private void definitions(IPersonAttributesGroupDefinition... definitions) {
+        when(definitionDao.getPersonAttributesGroupDefinitions())
+                .thenReturn(new HashSet<>(Arrays.asList(definitions)));
+    }
+
+    private void person(String username, String attributeName, String value) {
+        final Map<String, List<Object>> attributes =
+                Collections.singletonMap(attributeName, Collections.singletonList(value));
+        final IPersonAttributes personAttributes = mock(IPersonAttributes.class);
+        when(personAttributes.getAttributes()).thenReturn(attributes);
+        when(personAttributeDao.getPerson(username, null)).thenReturn(personAttributes);
+    }
+
+    private static IGroupMember member(String username) {
+        final IGroupMember member = mock(IGroupMember.class);
+        when(member.getKey()).thenReturn(username);
+        when(member.getLeafType()).thenAnswer(invocation -> IPerson.class);
+        return member;
+    }
+
+    private static IEntityGroup group(String name) {
+        final IEntityGroup group = mock(IEntityGroup.class);
+        when(group.getName()).thenReturn(name);
+        return group;
+    }
+
+    private static IPersonAttributesGroupDefinition definition(
+            String name, String attributeName, String value) {
+        final IPersonAttributesGroupTestDefinition test =
+                mock(IPersonAttributesGroupTestDefinition.class);
+        when(test.getTesterClassName()).thenReturn(StringEqualsTester.class.getName());
+        when(test.getAttributeName()).thenReturn(attributeName);
+        when(test.getTestValue()).thenReturn(value);
+        final Set<IPersonAttributesGroupTestDefinition> tests = Collections.singleton(test);
+        final IPersonAttributesGroupTestGroupDefinition testGroup =
+                mock(IPersonAttributesGroupTestGroupDefinition.class);
+        when(testGroup.getTests()).thenReturn(tests);
+        final Set<IPersonAttributesGroupTestGroupDefinition> testGroups =
+                Collections.singleton(testGroup);
+
+        final IPersonAttributesGroupDefinition definition =
+                mock(IPersonAttributesGroupDefinition.class);
+        when(definition.getName()).thenReturn(name);
+        when(definition.getDescription()).thenReturn(name);
+        when(definition.getMembers()).thenReturn(Collections.emptySet());
+        when(definition.getTestGroups()).thenReturn(testGroups);
+        return definition;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups.pags.dao;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.apereo.portal.groups.IEntityGroup;
+import org.apereo.portal.groups.pags.IPersonTester;
+import org.apereo.portal.groups.pags.PagsGroup;
+import org.apereo.portal.groups.pags.TestGroup;
+import org.apereo.portal.groups.pags.TestPersonAttributesGroupTestDefinition;
+import org.apereo.portal.groups.pags.testers.InvertedRegexTester;
+import org.apereo.portal.groups.pags.testers.RegexTester;
+import org.apereo.portal.groups.pags.testers.StringEqualsIgnoreCaseTester;
+import org.apereo.portal.groups.pags.testers.StringEqualsTester;
+import org.apereo.portal.security.IPerson;
+import org.apereo.portal.security.provider.PersonImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersonAttributesGroupIndexTest {
+
+    @Test
+    public void testFindContainingGroupsMatchesPagsGroups() {
+        final List<PagsGroup> groupDefs =
+                Arrays.asList(
+                        group(new StringEqualsTester(definition("dept", "math"))),
+                        group(new StringEqualsIgnoreCaseTester(definition("dept", "MATH"))),
+                        group(
+                                new RegexTester(definition("title", "prof.*")),
+                                new StringEqualsTester(definition("dept", "math"))),
+                        group(new RegexTester(definition("title", "prof.*"))),
+                        group(new InvertedRegexTester(definition("title", "prof.*"))),
+                        // Two test groups, or-ed together
+                        anyOf(
+                                testGroup(new StringEqualsTester(definition("dept", "art"))),
+                                testGroup(new RegexTester(definition("title", "dean")))),
+                        new PagsGroup(),
+                        null);
+        final List<IEntityGroup> groups = new ArrayList<>();
+        for (int i = 0; i < groupDefs.size(); i++) {
+            groups.add(mock(IEntityGroup.class));
+        }
+        final PersonAttributesGroupIndex index = new PersonAttributesGroupIndex(groups, groupDefs);
+
+        final List<IPerson> people =
+                Arrays.asList(
+                        person("dept", "math", "title", "professor"),
+                        person("dept", "Math", "title", "lecturer"),
+                        person("dept", "art", "title", "dean"),
+                        person("dept", "history"),
+                        person());
+        for (final IPerson person : people) {
+            final BitSet containingGroups = index.findContainingGroups(person);
+            for (int i = 0; i < groupDefs.size(); i++) {
+                final PagsGroup groupDef = groupDefs.get(i);
+                final boolean expected = groupDef != null && groupDef.contains(person);
+                Assert.assertEquals(
+                        "group " + i + " for " + person.getAttributeMap(),
+                        expected,
+                        containingGroups.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testFoldCaseMatchesEqualsIgnoreCase() {
+        final String[] values = {
+            "math", "MATH", "Math", "stra\u00dfe", "STRASSE", "\u0130stanbul", "istanbul"
+        };
+        for (final String a : values) {
+            for (final String b : values) {
+                Assert.assertEquals(
+                        a + " / " + b,
+                        a.equalsIgnoreCase(b),
+                        PersonAttributesGroupIndex.foldCase(a)
+                                .equals(PersonAttributesGroupIndex.foldCase(b)));
+            }
+        }
+    }
+
+    private static TestPersonAttributesGroupTestDefinition definition(
+            String attributeName, String testValue) {
+        return new TestPersonAttributesGroupTestDefinition(attributeName, testValue);
+    }
+
+    private static TestGroup testGroup(IPersonTester... testers) {
+        final TestGroup testGroup = new TestGroup();
+        for (final IPersonTester tester : testers) {
+            testGroup.addTest(tester);
+        }
+        return testGroup;
+    }
+
+    private static PagsGroup group(IPersonTester... testers) {
+        return anyOf(testGroup(testers));
+    }
+
+    private static PagsGroup anyOf(TestGroup... testGroups) {
+        final PagsGroup group = new PagsGroup();
+        for (final TestGroup testGroup : testGroups) {
+            group.addTestGroup(testGroup);
+        }
+        return group;
+    }
+
+    private static IPerson person(String... attributes) {
+        final IPerson person = new PersonImpl();
+        for (int i = 0; i < attributes.length; i += 2) {
+            person.setAttribute(attributes[i], attributes[i + 1]);
+        }
+        return person;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups.pags.dao.jpa;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import net.sf.ehcache.Ehcache;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class JpaPersonAttributesGroupDefinitionDaoTest {
+
+    private Ehcache pagsGroupCache;
+
+    private Ehcache membershipIndexCache;
+
+    private JpaPersonAttributesGroupDefinitionDao dao;
+
+    @Before
+    public void setUp() {
+        pagsGroupCache = mock(Ehcache.class);
+        membershipIndexCache = mock(Ehcache.class);
+        dao = new JpaPersonAttributesGroupDefinitionDao();
+        dao.setPagsGroupCache(pagsGroupCache);
+        dao.setMembershipIndexCache(membershipIndexCache);
+    }
+
+    @Test
+    public void testPurgeWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            dao.purgeCompiledDefinitions();
+            verify(pagsGroupCache, never()).removeAll();
+            verify(membershipIndexCache, never()).removeAll();
+
+            for (TransactionSynchronization synchronization :
+                    TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(pagsGroupCache).removeAll();
+        verify(membershipIndexCache).removeAll();
+    }
+
+    @Test
+    public void testPurgeWithoutTransaction() {
+        dao.purgeCompiledDefinitions();
+
+        verify(pagsGroupCache).removeAll();
+        verify(membershipIndexCache).removeAll();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups.smartldap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable search index over the upper case group names of a SmartLdap groups tree. Names are
+ * kept in sorted arrays so prefix and suffix searches are a binary search for the first match
+ * followed by a scan over the matching range, and every name is listed under each of its
+ * trigrams so substring searches only verify the names containing the query's rarest trigram.
+ *
+ * <p>All queries are literal and must already be upper case, matching the keys of the {@code
+ * keysByUpperCaseName} map the index was built from.
+ */
+final class GroupNameSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int[] NO_NAMES = new int[0];
+
+    // Instance Members.
+    private final Map<String, List<String>> keysByUpperCaseName;
+    private final String[] names;
+    private final String[] reversedNames;
+    private final Map<String, int[]> namesByGram;
+
+    /*
+     * Public API.
+     */
+
+    public GroupNameSearchIndex(Map<String, List<String>> keysByUpperCaseName) {
+
+        // Assertions.
+        if (keysByUpperCaseName == null) {
+            String msg = "Argument 'keysByUpperCaseName' cannot be null.";
+            throw new IllegalArgumentException(msg);
+        }
+
+        // Instance Members.
+        this.keysByUpperCaseName = keysByUpperCaseName;
+        this.names = keysByUpperCaseName.keySet().toArray(new String[0]);
+        Arrays.sort(this.names);
+        this.reversedNames = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            reversedNames[i] = reverse(names[i]);
+        }
+        Arrays.sort(this.reversedNames);
+        this.namesByGram = indexGrams(names);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /** @return Keys of the groups whose name equals the query */
+    public List<String> findEqualTo(String query) {
+        final List<String> keys = keysByUpperCaseName.get(query);
+        return keys != null ? keys : Collections.<String>emptyList();
+    }
+
+    /** @return Keys of the groups whose name starts with the query */
+    public List<String> findStartingWith(String query) {
+        final List<String> result = new ArrayList<>();
+        for (int i = firstAtOrAfter(names, query);
+                i < names.length && names[i].startsWith(query);
+                i++) {
+            result.addAll(keysByUpperCaseName.get(names[i]));
+        }
+        return result;
+    }
+
+    /** @return Keys of the groups whose name ends with the query */
+    public List<String> findEndingWith(String query) {
+        final String reversedQuery = reverse(query);
+        final List<String> result = new ArrayList<>();
+        for (int i = firstAtOrAfter(reversedNames, reversedQuery);
+                i < reversedNames.length && reversedNames[i].startsWith(reversedQuery);
+                i++) {
+            result.addAll(keysByUpperCaseName.get(reverse(reversedNames[i])));
+        }
+        return result;
+    }
+
+    /** @return Keys of the groups whose name contains the query */
+    public List<String> findContaining(String query) {
+        final List<String> result = new ArrayList<>();
+        if (query.length() < GRAM_LENGTH) {
+            // Too short to have a trigram, every name is a candidate
+            for (final String name : names) {
+                if (name.contains(query)) {
+                    result.addAll(keysByUpperCaseName.get(name));
+                }
+            }
+            return result;
+        }
+
+        // Names containing the query contain all of its trigrams, only verify the shortest list
+        int[] candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            final int[] gramNames = namesByGram.get(query.substring(i, i + GRAM_LENGTH));
+            if (gramNames == null) {
+                return result;
+            }
+            if (candidates == null || gramNames.length < candidates.length) {
+                candidates = gramNames;
+            }
+        }
+        for (final int candidate : candidates) {
+            if (names[candidate].contains(query)) {
+                result.addAll(keysByUpperCaseName.get(names[candidate]));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Implementation.
+     */
+
+    private static int firstAtOrAfter(String[] sorted, String query) {
+        final int index = Arrays.binarySearch(sorted, query);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    private static String reverse(String s) {
+        return new StringBuilder(s).reverse().toString();
+    }
+
+    /** Lists the ordinal of every name under each distinct trigram of the name, in order. */
+    private static Map<String, int[]> indexGrams(String[] names) {
+        final Map<String, GramNames> gramNames = new HashMap<>();
+        for (int n = 0; n < names.length; n++) {
+            final String name = names[n];
+            for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+                final String gram = name.substring(i, i + GRAM_LENGTH);
+                GramNames list = gramNames.get(gram);
+                if (list == null) {
+                    list = new GramNames();
+                    gramNames.put(gram, list);
+                }
+                list.add(n);
+            }
+        }
+
+        final Map<String, int[]> result = new HashMap<>(gramNames.size() * 4 / 3 + 1);
+        for (final Map.Entry<String, GramNames> entry : gramNames.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return result;
+    }
+
+    /** Growable list of name ordinals, ignoring repeats of the last added ordinal */
+    private static final class GramNames {
+
+        private int[] ordinals = new int[4];
+        private int size = 0;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        int[] toArray() {
+            return size == 0 ? NO_NAMES : Arrays.copyOf(ordinals, size);
+        }
+    }
+}
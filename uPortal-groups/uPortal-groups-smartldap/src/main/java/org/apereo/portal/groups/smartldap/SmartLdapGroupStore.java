@@ -23,6 +23,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import org.apache.commons.lang3.StringUtils;
@@ -50,11 +52,13 @@ import org.danann.cernunnos.runtime.ScriptRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.ldap.core.AttributesMapper;
 import org.springframework.ldap.core.ContextMapper;
 import org.springframework.ldap.core.ContextSource;
 
-public final class SmartLdapGroupStore implements IEntityGroupStore {
+@ManagedResource("uPortal:section=Groups,name=SmartLdapGroupStore")
+public final class SmartLdapGroupStore implements IEntityGroupStore, SmartLdapGroupStoreMXBean {
 
     // Instance Members.
     private String memberOfAttributeName = "memberOf"; // default
@@ -139,6 +143,14 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
     /** Timestamp (milliseconds) of the last tree refresh. */
     private volatile long lastTreeRefreshTime = 0;
 
+    /** Timestamp (milliseconds) at which the tree currently served was built. */
+    private volatile long groupsTreeBuiltTime = 0;
+
+    private volatile long lastRefreshDuration = 0;
+    private final AtomicBoolean refreshInProgress = new AtomicBoolean();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong failedRefreshCount = new AtomicLong();
+
     // Cernunnos tech...
     private final ScriptRunner runner = new ScriptRunner();
     private final Task initTask =
@@ -178,8 +190,11 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
      *   <li>Map of all 'keys' (DNs) of SmartLdap managed groups indexed by group name in upper
      *       case. Includes ROOT_GROUP.
      * </ul>
+     *
+     * <p>The tree is never modified once built; a refresh builds a new one and replaces this
+     * reference, so each call should read it once through {@link #getGroupsTree()}.
      */
-    private GroupsTree groupsTree;
+    private volatile GroupsTree groupsTree;
 
     /*
      * Public API.
@@ -225,15 +240,13 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
     @Override
     public IEntityGroup find(String key) throws GroupsException {
 
-        if (isTreeRefreshRequired()) {
-            refreshTree();
-        }
+        final GroupsTree tree = getGroupsTree();
 
         log.debug("Invoking find() for key:  {}", key);
 
         // All of our groups (incl. ROOT_GROUP)
         // are indexed in the 'groups' map by key...
-        return groupsTree.getGroups().get(key);
+        return tree.getGroups().get(key);
     }
 
     /**
@@ -245,9 +258,7 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
      */
     @Override
     public Iterator findParentGroups(IGroupMember gm) throws GroupsException {
-        if (isTreeRefreshRequired()) {
-            refreshTree();
-        }
+        final GroupsTree tree = getGroupsTree();
         log.debug("Invoking findParentGroups() for group member: {}", gm.getKey());
         Set<IEntityGroup> result = new HashSet<>();
         final IEntityGroup root = getRootGroup();
@@ -258,15 +269,15 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
                     gm.getKey(),
                     group.getLocalKey(),
                     group.getName());
-            getParentGroups(group.getLocalKey(), result);
+            getParentGroups(tree, group.getLocalKey(), result);
         } else if (!gm.isGroup() && gm.getLeafType().equals(root.getLeafType())) {
-            if ((groupsTree != null) && (groupsTree.getGroups() != null)) {
+            if ((tree != null) && (tree.getGroups() != null)) {
                 Object[] groupKeys = getPersonGroupMemberKeys(gm);
                 for (Object o : groupKeys) {
                     String s = (String) o;
-                    IEntityGroup group = groupsTree.getGroups().get(s);
+                    IEntityGroup group = tree.getGroups().get(s);
                     result.add(group);
-                    result.addAll(getParentGroups(s, new HashSet<>()));
+                    result.addAll(getParentGroups(tree, s, new HashSet<>()));
                 }
             } else if (log.isDebugEnabled()) {
                 log.debug("Unable to find groups for member: [{}]", gm.getKey());
@@ -289,19 +300,20 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
         return keys != null ? keys : new Object[] {};
     }
 
-    private Set<IEntityGroup> getParentGroups(String key, Set<IEntityGroup> groups) {
+    private Set<IEntityGroup> getParentGroups(
+            GroupsTree tree, String key, Set<IEntityGroup> groups) {
         // groups is an ongoing collection to avoid recursion
         log.debug("Getting parents of group: {}", key);
-        IEntityGroup group = groupsTree.getGroups().get(key);
+        IEntityGroup group = tree.getGroups().get(key);
         if (group == null) {
             log.warn("SmartLdap group not found for key: {}", key);
             return groups;
         }
-        List<String> parentKeys = groupsTree.getParents().get(key);
+        List<String> parentKeys = tree.getParents().get(key);
         parentKeys = parentKeys != null ? parentKeys : Collections.emptyList();
         log.debug("Parent keys for {}: {}", key, String.join(",", parentKeys));
         for (String parentKey : parentKeys) {
-            IEntityGroup parent = groupsTree.getGroups().get(parentKey);
+            IEntityGroup parent = tree.getGroups().get(parentKey);
             if (parent == null) {
                 log.warn("Group tree inconsistent -- missing parent: {}", parentKey);
             } else if (groups.contains(parent)) {
@@ -311,7 +323,7 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
                         parentKey);
             } else {
                 groups.add(parent);
-                getParentGroups(parentKey, groups);
+                getParentGroups(tree, parentKey, groups);
             }
         }
         return groups;
@@ -327,9 +339,7 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
     @Override
     public Iterator findEntitiesForGroup(IEntityGroup group) throws GroupsException {
 
-        if (isTreeRefreshRequired()) {
-            refreshTree();
-        }
+        final GroupsTree tree = getGroupsTree();
 
         log.debug("Invoking findEntitiesForGroup() for group:  {}", group.getLocalKey());
 
@@ -338,7 +348,7 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
 
         List<IEntity> result = new ArrayList<IEntity>();
         if (displayPersonMembers) {
-            List<String> list = groupsTree.getPersonChildren().get(group.getLocalKey());
+            List<String> list = tree.getPersonChildren().get(group.getLocalKey());
             if (list != null) {
                 // should only reach this code if its a SmartLdap managed group...
                 for (String s : list) {
@@ -369,10 +379,6 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
     @Override
     public String[] findMemberGroupKeys(IEntityGroup group) throws GroupsException {
 
-        if (isTreeRefreshRequired()) {
-            refreshTree();
-        }
-
         log.debug("Invoking findMemberGroupKeys() for group:  {}", group.getLocalKey());
 
         List<String> result = new ArrayList<>();
@@ -395,19 +401,17 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
     @Override
     public Iterator findMemberGroups(IEntityGroup group) throws GroupsException {
 
-        if (isTreeRefreshRequired()) {
-            refreshTree();
-        }
+        final GroupsTree tree = getGroupsTree();
 
         log.debug("Invoking findMemberGroups() for group:  {}", group.getLocalKey());
 
         List<IEntityGroup> result = new ArrayList<>();
 
-        List<String> list = groupsTree.getChildren().get(group.getLocalKey());
+        List<String> list = tree.getChildren().get(group.getLocalKey());
         if (list != null) {
             // should only reach this code if its a SmartLdap managed group...
             for (String s : list) {
-                result.add(groupsTree.getGroups().get(s));
+                result.add(tree.getGroups().get(s));
             }
         }
 
@@ -432,9 +436,7 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
     public EntityIdentifier[] searchForGroups(String query, SearchMethod method, Class leaftype)
             throws GroupsException {
 
-        if (isTreeRefreshRequired()) {
-            refreshTree();
-        }
+        final GroupsTree tree = getGroupsTree();
 
         log.debug(
                 "Invoking searchForGroups():  query={}, method={}, leaftype=",
@@ -448,47 +450,26 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
             return new EntityIdentifier[0];
         }
 
-        // We need to escape regex special characters that appear in the query string...
-        final String[][] specials =
-                new String[][] {
-                    /* backslash must come first! */
-                    new String[] {"\\", "\\\\"},
-                    new String[] {"[", "\\["},
-                    /* closing ']' isn't needed b/c it's a normal character w/o a preceding '[' */
-                    new String[] {"{", "\\{"},
-                    /* closing '}' isn't needed b/c it's a normal character w/o a preceding '{' */
-                    new String[] {"^", "\\^"},
-                    new String[] {"$", "\\$"},
-                    new String[] {".", "\\."},
-                    new String[] {"|", "\\|"},
-                    new String[] {"?", "\\?"},
-                    new String[] {"*", "\\*"},
-                    new String[] {"+", "\\+"},
-                    new String[] {"(", "\\("},
-                    new String[] {")", "\\)"}
-                };
-        for (String[] s : specials) {
-            query = query.replace(s[0], s[1]);
-        }
-
-        // Establish the regex pattern to match on...
-        String regex;
+        // The index is built with the tree, so searching is a lookup instead of a regex per group
+        final String upperCaseQuery = query.toUpperCase();
+        final GroupNameSearchIndex index = tree != null ? tree.getNameIndex() : null;
+        List<String> keys;
         switch (method) {
             case DISCRETE:
             case DISCRETE_CI:
-                regex = query.toUpperCase();
+                keys = index != null ? index.findEqualTo(upperCaseQuery) : null;
                 break;
             case STARTS_WITH:
             case STARTS_WITH_CI:
-                regex = query.toUpperCase() + ".*";
+                keys = index != null ? index.findStartingWith(upperCaseQuery) : null;
                 break;
             case ENDS_WITH:
             case ENDS_WITH_CI:
-                regex = ".*" + query.toUpperCase();
+                keys = index != null ? index.findEndingWith(upperCaseQuery) : null;
                 break;
             case CONTAINS:
             case CONTAINS_CI:
-                regex = ".*" + query.toUpperCase() + ".*";
+                keys = index != null ? index.findContaining(upperCaseQuery) : null;
                 break;
             default:
                 String msg = "Unsupported search method:  " + method;
@@ -496,15 +477,9 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
         }
 
         List<EntityIdentifier> result = new ArrayList<>();
-        if (groupsTree != null) {
-            for (Map.Entry<String, List<String>> y :
-                    groupsTree.getKeysByUpperCaseName().entrySet()) {
-                if (y.getKey().matches(regex)) {
-                    List<String> keys = y.getValue();
-                    for (String k : keys) {
-                        result.add(new EntityIdentifier(k, IEntityGroup.class));
-                    }
-                }
+        if (keys != null) {
+            for (String k : keys) {
+                result.add(new EntityIdentifier(k, IEntityGroup.class));
             }
         } else if (log.isDebugEnabled()) {
             log.debug("Unable to find groups for query: [{}]", query);
@@ -587,6 +562,43 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
         return result;
     }
 
+    @Override
+    public int getGroupCount() {
+        final GroupsTree tree = groupsTree;
+        return tree != null ? tree.getGroups().size() : 0;
+    }
+
+    @Override
+    public long getGroupsTreeAge() {
+        final long builtTime = groupsTreeBuiltTime;
+        return builtTime != 0 ? System.currentTimeMillis() - builtTime : -1;
+    }
+
+    @Override
+    public long getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    @Override
+    public long getFailedRefreshCount() {
+        return failedRefreshCount.get();
+    }
+
+    @Override
+    public boolean isRefreshInProgress() {
+        return refreshInProgress.get();
+    }
+
+    @Override
+    public long getGroupsTreeRefreshIntervalSeconds() {
+        return groupsTreeRefreshIntervalSeconds;
+    }
+
     /*
      * Implementation.
      */
@@ -604,12 +616,23 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
         }
     }
 
-    private boolean isTreeRefreshRequired() {
-
-        if (groupsTree == null) {
-            // Of course we need it
-            return true;
+    /**
+     * Returns the groups tree to serve for the current call. Only the first call waits for a tree
+     * to be built; after that an expired tree keeps being served while its replacement is built
+     * in the background.
+     */
+    private GroupsTree getGroupsTree() {
+        final GroupsTree tree = groupsTree;
+        if (tree == null) {
+            return buildInitialTree();
+        }
+        if (isTreeRefreshRequired()) {
+            refreshTree();
         }
+        return tree;
+    }
+
+    private boolean isTreeRefreshRequired() {
 
         if (groupsTreeRefreshIntervalSeconds <= 0) {
             // SmartLdap refresh feature may be disabled by setting
@@ -626,51 +649,66 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
     }
 
     /**
-     * Verifies that the collection of groups needs rebuilding and, if so, spawns a new worker
-     * <code>Thread</code> for that purpose.
+     * Builds the first groups tree on the calling thread; there is nothing to serve until it
+     * exists. Callers waiting to enter this method use the tree the first caller built.
      */
-    private synchronized void refreshTree() {
+    private synchronized GroupsTree buildInitialTree() {
 
-        if (!isTreeRefreshRequired()) {
-            // The groupsTree was already re-built while
-            // we were waiting to enter this method.
+        if (groupsTree == null) {
+            log.info("Building groups tree for SmartLdap");
+            lastTreeRefreshTime = System.currentTimeMillis();
+            replaceGroupsTree();
+        }
+
+        return groupsTree;
+    }
+
+    /**
+     * Spawns a worker <code>Thread</code> to rebuild the collection of groups, unless one is
+     * already running. Readers are never blocked by the refresh.
+     */
+    private void refreshTree() {
+
+        if (!refreshInProgress.compareAndSet(false, true)) {
+            // Another request already started the refresh
             return;
         }
 
         log.info("Refreshing groups tree for SmartLdap");
 
-        // We must join the builder thread if
-        // we don't have an existing groupsTree.
-        final boolean doJoin = groupsTree == null;
+        // Even if the refresh thread fails, don't try
+        // again for another groupsTreeRefreshIntervalSeconds.
+        lastTreeRefreshTime = System.currentTimeMillis();
 
-        // In most cases, re-build the tree in a separate thread;  the current
-        // request can proceed with the newly-expired groupsTree.
         Thread refresh =
                 new Thread("SmartLdap Refresh Worker") {
                     @Override
                     public void run() {
-                        // Replace the old with the new...
                         try {
-                            groupsTree = buildGroupsTree();
-                        } catch (Throwable t) {
-                            log.error("SmartLdapGroupStore failed to build the groups tree", t);
+                            replaceGroupsTree();
+                        } finally {
+                            refreshInProgress.set(false);
                         }
                     }
                 };
         refresh.setDaemon(true);
         refresh.start();
-        if (doJoin) {
-            try {
-                log.info("Joining the SmartLdap Refresh Worker Thread");
-                refresh.join();
-            } catch (InterruptedException ie) {
-                throw new RuntimeException(ie);
-            }
-        }
+    }
 
-        // Even if the refresh thread failed, don't try
-        // again for another groupsTreeRefreshIntervalSeconds.
-        lastTreeRefreshTime = System.currentTimeMillis();
+    /** Builds a new tree off to the side and replaces the old with the new once complete. */
+    private void replaceGroupsTree() {
+        final long start = System.currentTimeMillis();
+        try {
+            final GroupsTree tree = buildGroupsTree();
+            final long end = System.currentTimeMillis();
+            groupsTree = tree;
+            groupsTreeBuiltTime = end;
+            lastRefreshDuration = end - start;
+            refreshCount.incrementAndGet();
+        } catch (Throwable t) {
+            failedRefreshCount.incrementAndGet();
+            log.error("SmartLdapGroupStore failed to build the groups tree", t);
+        }
     }
 
     private String getContainingFolder(final String groupName) {
@@ -994,6 +1032,7 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
         private final Map<String, List<String>> children;
         private final Map<String, List<String>> personChildren;
         private final Map<String, List<String>> keysByUpperCaseName;
+        private final GroupNameSearchIndex nameIndex;
 
         /*
          * Public API.
@@ -1034,6 +1073,7 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
             this.children = children;
             this.personChildren = personChildren;
             this.keysByUpperCaseName = keysByUpperCaseName;
+            this.nameIndex = new GroupNameSearchIndex(keysByUpperCaseName);
         }
 
         public Map<String, IEntityGroup> getGroups() {
@@ -1055,6 +1095,10 @@ public final class SmartLdapGroupStore implements IEntityGroupStore {
         public Map<String, List<String>> getKeysByUpperCaseName() {
             return keysByUpperCaseName;
         }
+
+        public GroupNameSearchIndex getNameIndex() {
+            return nameIndex;
+        }
     }
 
     private static final class SubQueryCounter {
@@ -0,0 +1,40 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups.smartldap;
+
+/** JMX stats for the SmartLdap groups tree and its background refresh */
+public interface SmartLdapGroupStoreMXBean {
+
+    /** @return Number of groups in the tree currently served, including the root group */
+    int getGroupCount();
+
+    /** @return Milliseconds since the tree currently served was built, -1 if there is none */
+    long getGroupsTreeAge();
+
+    /** @return Milliseconds the last successful build of the tree took */
+    long getLastRefreshDuration();
+
+    /** @return Number of times the tree was built successfully */
+    long getRefreshCount();
+
+    /** @return Number of times building the tree failed, leaving the previous tree in place */
+    long getFailedRefreshCount();
+
+    /** @return true if a replacement tree is being built in the background */
+    boolean isRefreshInProgress();
+
+    /** @return Seconds after which the tree is rebuilt, zero or less if it never is */
+    long getGroupsTreeRefreshIntervalSeconds();
+}
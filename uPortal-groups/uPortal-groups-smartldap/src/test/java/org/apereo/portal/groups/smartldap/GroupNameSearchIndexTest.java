@@ -0,0 +1,142 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.groups.smartldap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class GroupNameSearchIndexTest {
+
+    private static final Map<String, List<String>> KEYS_BY_NAME = new LinkedHashMap<>();
+
+    static {
+        KEYS_BY_NAME.put("STUDENTS", Arrays.asList("cn=students", "cn=students,ou=alumni"));
+        KEYS_BY_NAME.put("STAFF", Collections.singletonList("cn=staff"));
+        KEYS_BY_NAME.put("FACULTY", Collections.singletonList("cn=faculty"));
+        KEYS_BY_NAME.put("FACULTY STAFF", Collections.singletonList("cn=facultystaff"));
+        KEYS_BY_NAME.put("DENTAL STUDENTS", Collections.singletonList("cn=dental"));
+        KEYS_BY_NAME.put("ABCABC", Collections.singletonList("cn=abcabc"));
+        KEYS_BY_NAME.put("AB", Collections.singletonList("cn=ab"));
+    }
+
+    private final GroupNameSearchIndex index = new GroupNameSearchIndex(KEYS_BY_NAME);
+
+    @Test
+    public void testFindEqualTo() {
+        assertEquals(KEYS_BY_NAME.get("STUDENTS"), index.findEqualTo("STUDENTS"));
+        assertEquals(Collections.emptyList(), index.findEqualTo("STUDENT"));
+    }
+
+    @Test
+    public void testFindStartingWith() {
+        assertKeys(
+                Arrays.asList("cn=staff", "cn=students", "cn=students,ou=alumni"),
+                "ST",
+                index.findStartingWith("ST"));
+        assertKeys(
+                Collections.singletonList("cn=facultystaff"),
+                "FACULTY ",
+                index.findStartingWith("FACULTY "));
+        assertKeys(Collections.<String>emptyList(), "ZZ", index.findStartingWith("ZZ"));
+        assertEquals(8, index.findStartingWith("").size());
+    }
+
+    @Test
+    public void testFindEndingWith() {
+        assertKeys(
+                Arrays.asList("cn=dental", "cn=students", "cn=students,ou=alumni"),
+                "STUDENTS",
+                index.findEndingWith("STUDENTS"));
+        assertKeys(
+                Arrays.asList("cn=facultystaff", "cn=staff"),
+                "STAFF",
+                index.findEndingWith("STAFF"));
+        assertKeys(Collections.<String>emptyList(), "STUDENT", index.findEndingWith("STUDENT"));
+    }
+
+    @Test
+    public void testFindContaining() {
+        assertKeys(
+                Arrays.asList("cn=dental", "cn=students", "cn=students,ou=alumni"),
+                "DENT",
+                index.findContaining("DENT"));
+        // Every trigram of the query is indexed but no single name contains the whole query
+        assertKeys(
+                Collections.<String>emptyList(),
+                "FACULTY STUDENTS",
+                index.findContaining("FACULTY STUDENTS"));
+        // A name listed under a trigram it contains more than once is only returned once
+        assertKeys(Collections.singletonList("cn=abcabc"), "CAB", index.findContaining("CAB"));
+        assertKeys(Collections.<String>emptyList(), "XYZ", index.findContaining("XYZ"));
+    }
+
+    @Test
+    public void testFindContainingShortQuery() {
+        // Shorter than a trigram, so every name is scanned, including names shorter than one
+        assertKeys(Arrays.asList("cn=ab", "cn=abcabc"), "AB", index.findContaining("AB"));
+        assertKeys(Arrays.asList("cn=facultystaff", "cn=faculty"), "Y", index.findContaining("Y"));
+        assertEquals(8, index.findContaining("").size());
+    }
+
+    @Test
+    public void testMatchesScanOfEveryName() {
+        // Every substring of every name, plus some that match nothing
+        final TreeSet<String> queries = new TreeSet<>(Arrays.asList("Q", "QQQ", "STUDENTSS"));
+        for (final String name : KEYS_BY_NAME.keySet()) {
+            for (int start = 0; start < name.length(); start++) {
+                for (int end = start + 1; end <= name.length(); end++) {
+                    queries.add(name.substring(start, end));
+                }
+            }
+        }
+
+        for (final String query : queries) {
+            final List<String> startingWith = new ArrayList<>();
+            final List<String> endingWith = new ArrayList<>();
+            final List<String> containing = new ArrayList<>();
+            for (final Map.Entry<String, List<String>> entry : KEYS_BY_NAME.entrySet()) {
+                if (entry.getKey().startsWith(query)) {
+                    startingWith.addAll(entry.getValue());
+                }
+                if (entry.getKey().endsWith(query)) {
+                    endingWith.addAll(entry.getValue());
+                }
+                if (entry.getKey().contains(query)) {
+                    containing.addAll(entry.getValue());
+                }
+            }
+
+            assertKeys(startingWith, query, index.findStartingWith(query));
+            assertKeys(endingWith, query, index.findEndingWith(query));
+            assertKeys(containing, query, index.findContaining(query));
+        }
+    }
+
+    private static void assertKeys(List<String> expected, String query, List<String> actual) {
+        final List<String> sortedExpected = new ArrayList<>(expected);
+        Collections.sort(sortedExpected);
+        final List<String> sortedActual = new ArrayList<>(actual);
+        Collections.sort(sortedActual);
+        assertEquals("Keys for '" + query + "'", sortedExpected, sortedActual);
+    }
+}
@@ -14,12 +14,28 @@
  */
 package org.apereo.portal.i18n;
 
+import com.google.common.collect.ImmutableMap;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apereo.portal.i18n.dao.IMessageDao;
+import org.apereo.portal.i18n.dao.MessageChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.MessageSource;
 import org.springframework.context.support.AbstractMessageSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * DB based {@link MessageSource}. This is used for enabling i18n on database entities that does not
@@ -35,10 +51,33 @@ import org.springframework.context.support.AbstractMessageSource;
  * look up for a message. Of course, it can be set up the other way round - if resource bundle
  * message source will be set as parent to this message source, then this message source will become
  * the primary one.
+ *
+ * <p>All messages of a locale are loaded the first time the locale is asked for, together with the
+ * messages of its less specific locales (<code>en_US</code> falls back to <code>en</code>), into an
+ * immutable bundle with pre-parsed {@link MessageFormat}s. Lookups never reach the {@link
+ * IMessageDao}, when a message is changed through it the bundles that include the message's locale
+ * are reloaded and swapped in once the change has been committed. Changes made on other portal
+ * nodes, or outside of the DAO, are picked up when a bundle is reloaded after it expires; one
+ * lookup reloads the expired bundle while the others keep using it.
  */
-public class DatabaseMessageSource extends AbstractMessageSource implements MessageSource {
+public class DatabaseMessageSource extends AbstractMessageSource
+        implements MessageSource, ApplicationListener<MessageChangeEvent> {
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<Locale, LocaleMessages> bundles = new ConcurrentHashMap<>();
 
     private IMessageDao messageDao;
+    private volatile long cacheMillis = TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * Seconds a loaded bundle is used before it is reloaded, defaults to 60. A negative value keeps
+     * bundles until their messages are changed through the {@link IMessageDao}.
+     */
+    @Value("${org.apereo.portal.i18n.DatabaseMessageSource.cacheSeconds:60}")
+    public void setCacheSeconds(int cacheSeconds) {
+        this.cacheMillis = cacheSeconds < 0 ? -1 : TimeUnit.SECONDS.toMillis(cacheSeconds);
+    }
 
     @Autowired
     public void setMessageDao(IMessageDao messageDao) {
@@ -51,8 +90,7 @@ public class DatabaseMessageSource extends AbstractMessageSource implements Mess
             return null;
         }
 
-        Message message = messageDao.getMessage(code, locale);
-        return message != null ? new MessageFormat(message.getValue(), locale) : null;
+        return getMessages(locale).getMessageFormat(code);
     }
 
     @Override
@@ -61,7 +99,126 @@ public class DatabaseMessageSource extends AbstractMessageSource implements Mess
             return null;
         }
 
-        Message message = messageDao.getMessage(code, locale);
-        return message != null ? message.getValue() : null;
+        return getMessages(locale).getValue(code);
+    }
+
+    @Override
+    public void onApplicationEvent(MessageChangeEvent event) {
+        final Locale changedLocale = event.getLocale();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCommit() {
+                            reloadMessages(changedLocale);
+                        }
+                    });
+        } else {
+            reloadMessages(changedLocale);
+        }
+    }
+
+    /** Replaces the loaded bundles that include the messages of the changed locale. */
+    protected void reloadMessages(Locale changedLocale) {
+        for (final Locale locale : this.bundles.keySet()) {
+            if (getLocaleChain(locale).contains(changedLocale)) {
+                logger.debug("Reloading messages for {} after {} changed", locale, changedLocale);
+                this.bundles.computeIfPresent(locale, (l, messages) -> loadMessages(l));
+            }
+        }
+    }
+
+    private LocaleMessages getMessages(Locale locale) {
+        final LocaleMessages messages = this.bundles.get(locale);
+        if (messages == null) {
+            return this.bundles.computeIfAbsent(locale, this::loadMessages);
+        }
+
+        // Only the first lookup to see the bundle expired reloads it
+        if (messages.isExpired(this.cacheMillis) && messages.reloading.compareAndSet(false, true)) {
+            try {
+                final LocaleMessages reloaded = loadMessages(locale);
+                if (this.bundles.replace(locale, messages, reloaded)) {
+                    return reloaded;
+                }
+            } catch (RuntimeException e) {
+                messages.reloading.set(false);
+                logger.warn("Failed to reload messages for {}, using the expired ones", locale, e);
+            }
+        }
+        return messages;
+    }
+
+    private LocaleMessages loadMessages(Locale locale) {
+        final List<Locale> localeChain = getLocaleChain(locale);
+
+        // Least specific locale first so the more specific messages replace its values
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (int i = localeChain.size() - 1; i >= 0; i--) {
+            for (final Message message : this.messageDao.getMessagesByLocale(localeChain.get(i))) {
+                if (message.getValue() != null) {
+                    values.put(message.getCode(), message.getValue());
+                }
+            }
+        }
+
+        final ImmutableMap.Builder<String, MessageFormat> messageFormats = ImmutableMap.builder();
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            try {
+                messageFormats.put(entry.getKey(), new MessageFormat(entry.getValue(), locale));
+            } catch (IllegalArgumentException e) {
+                logger.warn(
+                        "Message '{}' for {} is not a valid MessageFormat pattern: {}",
+                        entry.getKey(),
+                        locale,
+                        e.getMessage());
+            }
+        }
+
+        logger.debug("Loaded {} messages for {}", values.size(), locale);
+        return new LocaleMessages(ImmutableMap.copyOf(values), messageFormats.build());
+    }
+
+    /** @return The locale followed by its less specific locales, most specific first */
+    static List<Locale> getLocaleChain(Locale locale) {
+        final List<Locale> localeChain = new ArrayList<>(3);
+        localeChain.add(locale);
+        if (!locale.getVariant().isEmpty()) {
+            localeChain.add(new Locale(locale.getLanguage(), locale.getCountry()));
+        }
+        if (!locale.getCountry().isEmpty()) {
+            localeChain.add(new Locale(locale.getLanguage()));
+        }
+        return localeChain;
+    }
+
+    /**
+     * Messages of one locale. The formats are shared between threads, {@link AbstractMessageSource}
+     * synchronizes on them while formatting.
+     */
+    private static final class LocaleMessages {
+        private final ImmutableMap<String, String> values;
+        private final ImmutableMap<String, MessageFormat> messageFormats;
+        private final long loaded = System.currentTimeMillis();
+        private final AtomicBoolean reloading = new AtomicBoolean();
+
+        LocaleMessages(
+                ImmutableMap<String, String> values,
+                ImmutableMap<String, MessageFormat> messageFormats) {
+            this.values = values;
+            this.messageFormats = messageFormats;
+        }
+
+        boolean isExpired(long cacheMillis) {
+            return cacheMillis >= 0 && System.currentTimeMillis() - this.loaded >= cacheMillis;
+        }
+
+        String getValue(String code) {
+            return this.values.get(code);
+        }
+
+        MessageFormat getMessageFormat(String code) {
+            return this.messageFormats.get(code);
+        }
     }
 }
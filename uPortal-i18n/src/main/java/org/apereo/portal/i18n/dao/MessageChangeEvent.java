@@ -0,0 +1,50 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.i18n.dao;
+
+import java.util.Locale;
+import org.apache.commons.lang.Validate;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event : a message of the indicated locale was created, updated or deleted. Published while the
+ * change is still part of the current transaction, listeners that read the messages back should do
+ * so after the transaction has had a chance to commit.
+ */
+public class MessageChangeEvent extends ApplicationEvent {
+
+    private final Locale locale;
+
+    /**
+     * @param source the component that published the event (never <code>null</code>)
+     * @param locale non-null locale of the changed message
+     */
+    public MessageChangeEvent(Object source, Locale locale) {
+        super(source);
+
+        Validate.notNull(locale, "locale can not be null");
+
+        this.locale = locale;
+    }
+
+    public Locale getLocale() {
+        return this.locale;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageChangeEvent [locale=" + this.locale + "]";
+    }
+}
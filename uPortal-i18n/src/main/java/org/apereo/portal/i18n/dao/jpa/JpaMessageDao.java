@@ -28,12 +28,16 @@ import javax.persistence.criteria.Root;
 import org.apache.commons.lang.Validate;
 import org.apereo.portal.i18n.Message;
 import org.apereo.portal.i18n.dao.IMessageDao;
+import org.apereo.portal.i18n.dao.MessageChangeEvent;
 import org.apereo.portal.jpa.BasePortalJpaDao;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public class JpaMessageDao extends BasePortalJpaDao implements IMessageDao {
+public class JpaMessageDao extends BasePortalJpaDao
+        implements IMessageDao, ApplicationEventPublisherAware {
     private CriteriaQuery<MessageImpl> findMessageByCodeAndLocaleQuery;
     private CriteriaQuery<MessageImpl> findMessageByCodeQuery;
     private CriteriaQuery<MessageImpl> findMessageByLocaleQuery;
@@ -41,6 +45,12 @@ public class JpaMessageDao extends BasePortalJpaDao implements IMessageDao {
 
     private ParameterExpression<String> codeParameter;
     private ParameterExpression<Locale> localeParameter;
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
 
     @Override
     public void afterPropertiesSet() throws Exception {
@@ -132,6 +142,7 @@ public class JpaMessageDao extends BasePortalJpaDao implements IMessageDao {
         final Message msg = new MessageImpl(code, locale, value);
 
         this.getEntityManager().persist(msg);
+        this.publishChange(msg);
 
         return msg;
     }
@@ -142,6 +153,7 @@ public class JpaMessageDao extends BasePortalJpaDao implements IMessageDao {
         Validate.notNull(message, "message can not be null");
 
         this.getEntityManager().persist(message);
+        this.publishChange(message);
 
         return message;
     }
@@ -159,6 +171,7 @@ public class JpaMessageDao extends BasePortalJpaDao implements IMessageDao {
             msg = entityManager.merge(message);
         }
         entityManager.remove(msg);
+        this.publishChange(msg);
     }
 
     @Override
@@ -193,4 +206,11 @@ public class JpaMessageDao extends BasePortalJpaDao implements IMessageDao {
         final List<String> codes = query.getResultList();
         return new LinkedHashSet<String>(codes);
     }
+
+    private void publishChange(Message message) {
+        if (this.applicationEventPublisher != null && message.getLocale() != null) {
+            this.applicationEventPublisher.publishEvent(
+                    new MessageChangeEvent(this, message.getLocale()));
+        }
+    }
 }
@@ -0,0 +1,142 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.i18n;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import org.apereo.portal.i18n.dao.IMessageDao;
+import org.apereo.portal.i18n.dao.MessageChangeEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatabaseMessageSourceTest {
+
+    private static final Locale EN = new Locale("en");
+    private static final Locale EN_US = new Locale("en", "US");
+    private static final Locale FR = new Locale("fr");
+
+    private IMessageDao messageDao;
+    private DatabaseMessageSource messageSource;
+
+    @Before
+    public void setUp() {
+        messageDao = mock(IMessageDao.class);
+        final Set<Message> enMessages =
+                messages(
+                        message("tab.home", EN, "Home"),
+                        message("tab.welcome", EN, "Welcome {0}"));
+        final Set<Message> enUsMessages = messages(message("tab.home", EN_US, "Home Page"));
+        when(messageDao.getMessagesByLocale(EN)).thenReturn(enMessages);
+        when(messageDao.getMessagesByLocale(EN_US)).thenReturn(enUsMessages);
+        when(messageDao.getMessagesByLocale(FR)).thenReturn(Collections.<Message>emptySet());
+
+        messageSource = new DatabaseMessageSource();
+        messageSource.setMessageDao(messageDao);
+    }
+
+    @Test
+    public void testLocaleLoadedOnce() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("Home", messageSource.getMessage("tab.home", null, null, EN));
+            assertEquals("Welcome Bob", messageSource.getMessage("tab.welcome", args("Bob"), EN));
+            assertEquals("missing", messageSource.getMessage("tab.none", null, "missing", EN));
+            assertEquals("missing", messageSource.getMessage("tab.home", null, "missing", FR));
+        }
+
+        verify(messageDao, times(1)).getMessagesByLocale(EN);
+        verify(messageDao, times(1)).getMessagesByLocale(FR);
+        verify(messageDao, never()).getMessage("tab.home", EN);
+    }
+
+    @Test
+    public void testLocaleFallback() {
+        assertEquals("Home Page", messageSource.getMessage("tab.home", null, null, EN_US));
+        assertEquals("Welcome Bob", messageSource.getMessage("tab.welcome", args("Bob"), EN_US));
+
+        assertEquals(
+                Arrays.asList(new Locale("en", "US", "POSIX"), EN_US, EN),
+                DatabaseMessageSource.getLocaleChain(new Locale("en", "US", "POSIX")));
+        assertEquals(Collections.singletonList(EN), DatabaseMessageSource.getLocaleChain(EN));
+    }
+
+    @Test
+    public void testChangeSwapsBundles() {
+        assertEquals("Welcome Bob", messageSource.getMessage("tab.welcome", args("Bob"), EN_US));
+        assertEquals("missing", messageSource.getMessage("tab.home", null, "missing", FR));
+
+        final Set<Message> changedMessages = messages(message("tab.welcome", EN, "Hello {0}"));
+        when(messageDao.getMessagesByLocale(EN)).thenReturn(changedMessages);
+        messageSource.onApplicationEvent(new MessageChangeEvent(messageDao, EN));
+
+        assertEquals("Hello Bob", messageSource.getMessage("tab.welcome", args("Bob"), EN_US));
+        assertEquals("Hello Bob", messageSource.getMessage("tab.welcome", args("Bob"), EN));
+        assertEquals("Home Page", messageSource.getMessage("tab.home", null, null, EN_US));
+
+        // Once for the initial load of en_US, once more when its bundle was swapped
+        verify(messageDao, times(2)).getMessagesByLocale(EN_US);
+        verify(messageDao, times(1)).getMessagesByLocale(FR);
+    }
+
+    @Test
+    public void testExpiredBundleReloaded() {
+        messageSource.setCacheSeconds(0);
+        assertEquals("Home", messageSource.getMessage("tab.home", null, null, EN));
+
+        // Changed on another node, no event is seen here
+        final Set<Message> changedMessages = messages(message("tab.home", EN, "Start"));
+        when(messageDao.getMessagesByLocale(EN)).thenReturn(changedMessages);
+
+        assertEquals("Start", messageSource.getMessage("tab.home", null, null, EN));
+        verify(messageDao, times(2)).getMessagesByLocale(EN);
+    }
+
+    @Test
+    public void testBundleKeptWithoutExpiry() {
+        messageSource.setCacheSeconds(-1);
+        assertEquals("Home", messageSource.getMessage("tab.home", null, null, EN));
+
+        final Set<Message> changedMessages = messages(message("tab.home", EN, "Start"));
+        when(messageDao.getMessagesByLocale(EN)).thenReturn(changedMessages);
+
+        assertEquals("Home", messageSource.getMessage("tab.home", null, null, EN));
+        verify(messageDao, times(1)).getMessagesByLocale(EN);
+    }
+
+    private static Object[] args(Object... args) {
+        return args;
+    }
+
+    private static Set<Message> messages(Message... messages) {
+        return new LinkedHashSet<>(Arrays.asList(messages));
+    }
+
+    private static Message message(String code, Locale locale, String value) {
+        final Message message = mock(Message.class);
+        when(message.getCode()).thenReturn(code);
+        when(message.getLocale()).thenReturn(locale);
+        when(message.getValue()).thenReturn(value);
+        return message;
+    }
+}
@@ -17,20 +17,27 @@ package org.apereo.portal.index;
 import com.google.common.hash.Hashing;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apereo.portal.portlet.dao.PortletDefinitionChangeEvent;
 import org.apereo.portal.portlet.om.IPortletDefinition;
 import org.apereo.portal.portlet.om.IPortletDefinitionParameter;
 import org.apereo.portal.portlet.registry.IPortletDefinitionRegistry;
@@ -38,7 +45,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+/**
+ * Maintains the Lucene index of portlet definitions. Portlets saved or deleted on this node are
+ * re-indexed shortly after their transaction commits, the whole index is rebuilt periodically to
+ * pick up changes made on other nodes or outside the portlet definition DAO. Each update opens its
+ * own {@link IndexWriter} so the index is only locked while it is being written.
+ */
 @Component
 public class PortalSearchIndexer {
 
@@ -48,6 +62,15 @@ public class PortalSearchIndexer {
 
     @Autowired private Directory directory;
 
+    /** Fnames of the portlets changed since they were last indexed */
+    private final Set<String> pendingFnames = ConcurrentHashMap.newKeySet();
+
+    /** Keeps full and incremental updates from writing the index at the same time */
+    private final Object indexLock = new Object();
+
+    /** Searchers over the last commit, created once the index exists */
+    private volatile SearcherManager searcherManager;
+
     @Autowired(required = false)
     private Set<ISearchContentExtractor> searchContentExtractors = Collections.emptySet();
 
@@ -63,6 +86,14 @@ public class PortalSearchIndexer {
         }
     }
 
+    @PreDestroy
+    public void destroy() throws IOException {
+        final SearcherManager manager = searcherManager;
+        if (manager != null) {
+            manager.close();
+        }
+    }
+
     /** Called by Quatrz. */
     public void updateIndex() {
         logger.debug("Updating Lucene index files ...");
@@ -71,19 +102,97 @@ public class PortalSearchIndexer {
             return;
         }
 
-        final IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new StandardAnalyzer());
-        indexWriterConfig
-                .setCommitOnClose(true)
-                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-
-        try (IndexWriter indexWriter = new IndexWriter(directory, indexWriterConfig)) {
+        try {
             final List<IPortletDefinition> portlets = portletRegistry.getAllPortletDefinitions();
-            portlets.forEach(portlet -> indexPortlet(portlet, indexWriter));
+            synchronized (indexLock) {
+                try (IndexWriter indexWriter = openIndexWriter()) {
+                    // Rebuild from scratch so deleted portlets drop out of the index as well
+                    indexWriter.deleteAll();
+                    for (IPortletDefinition portlet : portlets) {
+                        try {
+                            indexPortlet(portlet, indexWriter);
+                        } catch (IOException ioe) {
+                            logger.warn(
+                                    "Unable to index portlet with fname='{}'",
+                                    portlet.getFName(),
+                                    ioe);
+                        }
+                    }
+                }
+                refreshSearchers();
+            }
         } catch (Exception e) {
             logger.error("Unable to update index", e);
         }
     }
 
+    /**
+     * Queues a changed portlet for {@link #indexPendingPortlets()}. Runs after the transaction that
+     * made the change commits so the portlet is read back as it was saved.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPortletDefinitionChange(PortletDefinitionChangeEvent event) {
+        if (isEnabled()) {
+            pendingFnames.add(event.getFname());
+        }
+    }
+
+    /**
+     * Called by Quatrz. Indexes the portlets changed since the last call, a portlet that can not be
+     * indexed stays queued for the next call.
+     */
+    public void indexPendingPortlets() {
+        if (!isEnabled() || pendingFnames.isEmpty()) {
+            return;
+        }
+
+        synchronized (indexLock) {
+            final List<String> indexedFnames = new ArrayList<>();
+            try (IndexWriter indexWriter = openIndexWriter()) {
+                for (String fname : new ArrayList<>(pendingFnames)) {
+                    /*
+                     * Dequeue before reading the portlet back, a change committed while it is
+                     * being indexed queues it again instead of being lost.
+                     */
+                    pendingFnames.remove(fname);
+                    try {
+                        indexPendingPortlet(fname, indexWriter);
+                        indexedFnames.add(fname);
+                    } catch (Exception e) {
+                        pendingFnames.add(fname);
+                        logger.warn("Unable to index changed portlet '{}'", fname, e);
+                    }
+                }
+            } catch (Exception e) {
+                // Nothing was committed, index the portlets again next time
+                pendingFnames.addAll(indexedFnames);
+                logger.error("Unable to update index with changed portlets", e);
+                return;
+            }
+
+            try {
+                refreshSearchers();
+            } catch (IOException ioe) {
+                logger.warn("Unable to refresh index searchers", ioe);
+            }
+        }
+    }
+
+    /**
+     * Acquires a searcher over the current index, it must be handed back to {@link
+     * #releaseSearcher(IndexSearcher)} when the search is done.
+     *
+     * @return the searcher, or <code>null</code> if nothing has been indexed yet
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        final SearcherManager manager = searcherManager;
+        return manager != null ? manager.acquire() : null;
+    }
+
+    public void releaseSearcher(IndexSearcher searcher) throws IOException {
+        searcherManager.release(searcher);
+    }
+
     private boolean isEnabled() {
         /*
          * Use of a Directory class that doesn't extend from FSDirectory is a signal to disable
@@ -92,47 +201,66 @@ public class PortalSearchIndexer {
         return directory instanceof FSDirectory;
     }
 
-    private void indexPortlet(IPortletDefinition portlet, IndexWriter indexWriter) {
-        // Unique identifier, hashed to eliminate special character concerns, such as hyphens
-        final String fnameHash =
-                Hashing.sha256().hashString(portlet.getFName(), StandardCharsets.UTF_8).toString();
-        try {
-            final Document doc = new Document();
-            doc.add(new TextField(LUCENE_DOC_ID_FIELD, fnameHash, Field.Store.YES));
+    private IndexWriter openIndexWriter() throws IOException {
+        final IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new StandardAnalyzer());
+        indexWriterConfig
+                .setCommitOnClose(true)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        return new IndexWriter(directory, indexWriterConfig);
+    }
+
+    /** Makes the last commit visible to searches. Call holding the index lock. */
+    private void refreshSearchers() throws IOException {
+        if (searcherManager == null) {
+            if (DirectoryReader.indexExists(directory)) {
+                searcherManager = new SearcherManager(directory, null);
+            }
+        } else {
+            searcherManager.maybeRefresh();
+        }
+    }
+
+    /** Unique identifier, hashed to eliminate special character concerns, such as hyphens */
+    private static String hashFname(String fname) {
+        return Hashing.sha256().hashString(fname, StandardCharsets.UTF_8).toString();
+    }
+
+    private void indexPendingPortlet(String fname, IndexWriter indexWriter) throws IOException {
+        final IPortletDefinition portlet = portletRegistry.getPortletDefinitionByFname(fname);
+        if (portlet != null) {
+            indexPortlet(portlet, indexWriter);
+        } else {
+            indexWriter.deleteDocuments(new Term(LUCENE_DOC_ID_FIELD, hashFname(fname)));
+            logger.debug("Removed deleted portlet '{}' from the index", fname);
+        }
+    }
+
+    private void indexPortlet(IPortletDefinition portlet, IndexWriter indexWriter)
+            throws IOException {
+        final String fnameHash = hashFname(portlet.getFName());
+        final Document doc = new Document();
+        doc.add(new TextField(LUCENE_DOC_ID_FIELD, fnameHash, Field.Store.YES));
+        doc.add(new TextField(SearchField.FNAME.getValue(), portlet.getFName(), Field.Store.YES));
+        doc.add(new TextField(SearchField.NAME.getValue(), portlet.getName(), Field.Store.YES));
+        doc.add(new TextField(SearchField.TITLE.getValue(), portlet.getTitle(), Field.Store.YES));
+        final String description = portlet.getDescription();
+        if (StringUtils.isNotBlank(description)) {
             doc.add(
                     new TextField(
-                            SearchField.FNAME.getValue(), portlet.getFName(), Field.Store.YES));
-            doc.add(new TextField(SearchField.NAME.getValue(), portlet.getName(), Field.Store.YES));
+                            SearchField.DESCRIPTION.getValue(), description, Field.Store.YES));
+        }
+        final IPortletDefinitionParameter keywords = portlet.getParameter("keywords");
+        if (keywords != null && StringUtils.isNotBlank(keywords.getValue())) {
             doc.add(
                     new TextField(
-                            SearchField.TITLE.getValue(), portlet.getTitle(), Field.Store.YES));
-            final String description = portlet.getDescription();
-            if (StringUtils.isNotBlank(description)) {
-                doc.add(
-                        new TextField(
-                                SearchField.DESCRIPTION.getValue(), description, Field.Store.YES));
-            }
-            final IPortletDefinitionParameter keywords = portlet.getParameter("keywords");
-            if (keywords != null && StringUtils.isNotBlank(keywords.getValue())) {
-                doc.add(
-                        new TextField(
-                                SearchField.KEYWORDS.getValue(),
-                                keywords.getValue(),
-                                Field.Store.YES));
-            }
-            final String content = extractContent(portlet);
-            if (StringUtils.isNotBlank(content)) {
-                doc.add(new TextField(SearchField.CONTENT.getValue(), content, Field.Store.YES));
-            }
-
-            indexWriter.updateDocument(new Term(LUCENE_DOC_ID_FIELD, fnameHash), doc);
-        } catch (IOException ioe) {
-            logger.warn(
-                    "Unable to index portlet with fname='{}' and hash='{}'",
-                    portlet.getFName(),
-                    fnameHash);
-            return;
+                            SearchField.KEYWORDS.getValue(), keywords.getValue(), Field.Store.YES));
+        }
+        final String content = extractContent(portlet);
+        if (StringUtils.isNotBlank(content)) {
+            doc.add(new TextField(SearchField.CONTENT.getValue(), content, Field.Store.YES));
         }
+
+        indexWriter.updateDocument(new Term(LUCENE_DOC_ID_FIELD, fnameHash), doc);
         logger.debug("Indexed portlet '{}' (hash='{}')", portlet.getFName(), fnameHash);
     }
 
@@ -14,26 +14,36 @@
  */
 package org.apereo.portal.index;
 
+/**
+ * Indexed portlet fields. The boost weighs matches in the field against matches in the others when
+ * searching, a title match ranks above the same match in the content.
+ */
 public enum SearchField {
-    FNAME("fname"),
+    FNAME("fname", 2.0f),
 
-    NAME("name"),
+    NAME("name", 3.0f),
 
-    TITLE("title"),
+    TITLE("title", 4.0f),
 
-    DESCRIPTION("description"),
+    DESCRIPTION("description", 1.5f),
 
-    KEYWORDS("keywords"),
+    KEYWORDS("keywords", 2.5f),
 
-    CONTENT("content");
+    CONTENT("content", 1.0f);
 
     private final String value;
+    private final float boost;
 
-    SearchField(String value) {
+    SearchField(String value, float boost) {
         this.value = value;
+        this.boost = boost;
     }
 
     public String getValue() {
         return value;
     }
+
+    public float getBoost() {
+        return boost;
+    }
 }
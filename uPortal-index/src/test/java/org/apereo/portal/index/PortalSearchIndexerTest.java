@@ -0,0 +1,177 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apereo.portal.portlet.dao.PortletDefinitionChangeEvent;
+import org.apereo.portal.portlet.dao.PortletDefinitionChangeEvent.ChangeType;
+import org.apereo.portal.portlet.om.IPortletDefinition;
+import org.apereo.portal.portlet.registry.IPortletDefinitionRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PortalSearchIndexerTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<IPortletDefinition> portlets = new ArrayList<>();
+
+    private IPortletDefinitionRegistry portletRegistry;
+
+    private Directory directory;
+
+    private PortalSearchIndexer indexer;
+
+    @Before
+    public void setUp() throws IOException {
+        portletRegistry = mock(IPortletDefinitionRegistry.class);
+        when(portletRegistry.getAllPortletDefinitions()).thenAnswer(invocation -> portlets);
+        when(portletRegistry.getPortletDefinitionByFname(anyString()))
+                .thenAnswer(
+                        invocation ->
+                                portlets.stream()
+                                        .filter(p -> p.getFName().equals(invocation.getArgument(0)))
+                                        .findFirst()
+                                        .orElse(null));
+
+        directory = FSDirectory.open(folder.getRoot().toPath());
+
+        indexer = new PortalSearchIndexer();
+        ReflectionTestUtils.setField(indexer, "portletRegistry", portletRegistry);
+        ReflectionTestUtils.setField(indexer, "directory", directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexer.destroy();
+        directory.close();
+    }
+
+    @Test
+    public void testNothingIndexed() throws IOException {
+        assertNull(indexer.acquireSearcher());
+    }
+
+    @Test
+    public void testUpdateIndex() throws IOException {
+        portlets.add(portlet("weather", "Weather"));
+        portlets.add(portlet("news", "News"));
+        indexer.updateIndex();
+
+        assertEquals(1, count("weather"));
+        assertEquals(1, count("news"));
+
+        portlets.remove(1);
+        indexer.updateIndex();
+
+        assertEquals(1, count("weather"));
+        assertEquals(0, count("news"));
+    }
+
+    @Test
+    public void testIndexPendingPortlets() throws IOException {
+        portlets.add(portlet("weather", "Weather"));
+        indexer.updateIndex();
+
+        portlets.add(portlet("news", "News"));
+        indexer.onPortletDefinitionChange(change("news", ChangeType.SAVED));
+        assertEquals(0, count("news"));
+
+        indexer.indexPendingPortlets();
+        assertEquals(1, count("news"));
+
+        portlets.remove(0);
+        indexer.onPortletDefinitionChange(change("weather", ChangeType.DELETED));
+        indexer.indexPendingPortlets();
+        assertEquals(0, count("weather"));
+        assertEquals(1, count("news"));
+    }
+
+    @Test
+    public void testFailedPortletStaysPending() throws IOException {
+        final IPortletDefinition broken = portlet("news", "News");
+        when(broken.getTitle()).thenThrow(new IllegalStateException("unavailable"));
+        portlets.add(portlet("weather", "Weather"));
+        portlets.add(broken);
+
+        indexer.onPortletDefinitionChange(change("weather", ChangeType.SAVED));
+        indexer.onPortletDefinitionChange(change("news", ChangeType.SAVED));
+        indexer.indexPendingPortlets();
+        assertEquals(1, count("weather"));
+        assertEquals(0, count("news"));
+
+        portlets.set(1, portlet("news", "News"));
+        indexer.indexPendingPortlets();
+        assertEquals(1, count("weather"));
+        assertEquals(1, count("news"));
+    }
+
+    @Test
+    public void testLockedIndexKeepsPortletsPending() throws IOException {
+        portlets.add(portlet("weather", "Weather"));
+        indexer.onPortletDefinitionChange(change("weather", ChangeType.SAVED));
+
+        try (IndexWriter other =
+                new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            indexer.updateIndex();
+            indexer.indexPendingPortlets();
+        }
+        assertNull(indexer.acquireSearcher());
+
+        indexer.indexPendingPortlets();
+        assertEquals(1, count("weather"));
+    }
+
+    private int count(String fname) throws IOException {
+        final IndexSearcher searcher = indexer.acquireSearcher();
+        try {
+            return searcher.count(new TermQuery(new Term(SearchField.FNAME.getValue(), fname)));
+        } finally {
+            indexer.releaseSearcher(searcher);
+        }
+    }
+
+    private static PortletDefinitionChangeEvent change(String fname, ChangeType changeType) {
+        return new PortletDefinitionChangeEvent(PortalSearchIndexerTest.class, fname, changeType);
+    }
+
+    private static IPortletDefinition portlet(String fname, String title) {
+        final IPortletDefinition portlet = mock(IPortletDefinition.class);
+        when(portlet.getFName()).thenReturn(fname);
+        when(portlet.getName()).thenReturn(title);
+        when(portlet.getTitle()).thenReturn(title);
+        return portlet;
+    }
+}
@@ -198,6 +198,27 @@ public interface IPortalDataHandlerService {
      */
     public void exportAllData(File directory, BatchExportOptions options);
 
+    /**
+     * Export all the portal data for each type into a single archive, written as the data is
+     * exported instead of to a directory first. Each file is stored under a directory named for
+     * its type, as {@link #exportAllDataOfType(Set, File, BatchExportOptions)} would write it.
+     *
+     * @param typeIds TypeIds from {@link #getExportPortalDataTypes()} to export all data for
+     * @param archive Archive file to create, a .zip, .jar, .tar, .tar.gz or .tgz file
+     * @param options Optional set of options to better control the export
+     */
+    public void exportAllDataOfTypeToArchive(
+            Set<String> typeIds, File archive, BatchExportOptions options);
+
+    /**
+     * Export all portal data for all data type into a single archive
+     *
+     * @param archive Archive file to create, a .zip, .jar, .tar, .tar.gz or .tgz file
+     * @param options Optional set of options to better control the export
+     * @see #exportAllDataOfTypeToArchive(Set, File, BatchExportOptions)
+     */
+    public void exportAllDataToArchive(File archive, BatchExportOptions options);
+
     /**
      * Delete the portal data for the specified type and id.
      *
@@ -45,6 +45,16 @@ public interface IPortalDataType extends Ordered {
      */
     List<PortalDataKey> getDataKeyImportOrder();
 
+    /**
+     * @return The type ids of the data types that data of this type refers to and that must be
+     *     imported before it, or null if it must wait for every data type ordered before it. Only
+     *     data types ordered before this one are considered, so dependencies can let data be
+     *     imported earlier but never change the order. Defaults to null.
+     */
+    default Set<String> getImportDependencies() {
+        return null;
+    }
+
     /**
      * Post processes the resolved {@link PortalDataKey}, allows for data that needs to be retyped
      * based on file name, returning multiple data keys for data that needs a multi-pass import, and
@@ -0,0 +1,30 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.io.xml;
+
+import javax.xml.stream.XMLEventReader;
+
+/**
+ * Defines an importer that can read its data incrementally from a StAX reader instead of having it
+ * unmarshalled into a single object first, so the memory used by an import does not grow with the
+ * size of the data.
+ */
+public interface IStreamingDataImporter<T> extends IDataImporter<T> {
+    /**
+     * @param xmlEventReader Reader positioned at the start of the data, it cannot be reset
+     * @param systemId The url, file name or other system identifier for the data
+     */
+    public void importData(XMLEventReader xmlEventReader, String systemId);
+}
@@ -17,13 +17,17 @@ package org.apereo.portal.io.xml;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.nio.file.Files;
@@ -35,14 +39,18 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -62,14 +70,20 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
 import org.apache.commons.compress.archivers.cpio.CpioArchiveInputStream;
 import org.apache.commons.compress.archivers.jar.JarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.compressors.CompressorInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.compress.compressors.pack200.Pack200CompressorInputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 import org.apache.commons.io.FileUtils;
@@ -117,6 +131,9 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
 
     private static final String REPORT_FORMAT = "%s,%s,%.2fms\n";
 
+    /** Maximum number of exports submitted to the thread pool but not yet reported on */
+    private static final int MAX_QUEUED_EXPORTS = 1000;
+
     private static final MediaType MT_JAVA_ARCHIVE = MediaType.application("java-archive");
     private static final MediaType MT_CPIO = MediaType.application("x-cpio");
     private static final MediaType MT_AR = MediaType.application("x-archive");
@@ -142,6 +159,8 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
     private List<PortalDataKey> dataKeyImportOrder = Collections.emptyList();
     // Map to lookup the associated IPortalDataType for each known PortalDataKey
     private Map<PortalDataKey, IPortalDataType> dataKeyTypes = Collections.emptyMap();
+    // PortalDataKeys whose data must be imported before the data of each PortalDataKey
+    private Map<PortalDataKey, Set<PortalDataKey>> dataKeyPrerequisites = Collections.emptyMap();
 
     // Ant path matcher patterns that a file must match when scanning directories (unless a pattern
     // is explicitly specified)
@@ -217,6 +236,37 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
         dataKeyImportOrder.trimToSize();
         this.dataKeyImportOrder = Collections.unmodifiableList(dataKeyImportOrder);
         this.dataKeyTypes = Collections.unmodifiableMap(dataKeyTypes);
+        this.dataKeyPrerequisites = getDataKeyPrerequisites(dataKeyImportOrder, dataKeyTypes);
+    }
+
+    /**
+     * Determines which of the earlier PortalDataKeys in the import order the data of each
+     * PortalDataKey has to wait for: the earlier keys of its own data type and those of the types
+     * named by {@link IPortalDataType#getImportDependencies()}, or every earlier key if the type
+     * does not declare its dependencies.
+     */
+    @VisibleForTesting
+    static Map<PortalDataKey, Set<PortalDataKey>> getDataKeyPrerequisites(
+            List<PortalDataKey> dataKeyImportOrder,
+            Map<PortalDataKey, IPortalDataType> dataKeyTypes) {
+        final Map<PortalDataKey, Set<PortalDataKey>> dataKeyPrerequisites = new LinkedHashMap<>();
+        for (int i = 0; i < dataKeyImportOrder.size(); i++) {
+            final PortalDataKey portalDataKey = dataKeyImportOrder.get(i);
+            final IPortalDataType portalDataType = dataKeyTypes.get(portalDataKey);
+            final Set<String> dependencies = portalDataType.getImportDependencies();
+
+            final Set<PortalDataKey> prerequisites = new LinkedHashSet<>();
+            for (final PortalDataKey earlierDataKey : dataKeyImportOrder.subList(0, i)) {
+                final IPortalDataType earlierDataType = dataKeyTypes.get(earlierDataKey);
+                if (dependencies == null
+                        || earlierDataType.equals(portalDataType)
+                        || dependencies.contains(earlierDataType.getTypeId())) {
+                    prerequisites.add(earlierDataKey);
+                }
+            }
+            dataKeyPrerequisites.put(portalDataKey, Collections.unmodifiableSet(prerequisites));
+        }
+        return Collections.unmodifiableMap(dataKeyPrerequisites);
     }
 
     /** Ant path matching patterns that files must match to be included */
@@ -608,72 +658,107 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
             final ConcurrentMap<PortalDataKey, Queue<Resource>> dataToImport =
                     fileProcessor.getDataToImport();
 
-            // Import the data files
+            // Files to import for each key in import order, removed once their import starts
+            final Map<PortalDataKey, Queue<Resource>> pendingImports = new LinkedHashMap<>();
             for (final PortalDataKey portalDataKey : this.dataKeyImportOrder) {
                 final Queue<Resource> files = dataToImport.remove(portalDataKey);
-                if (files == null) {
-                    continue;
+                if (files != null && !files.isEmpty()) {
+                    pendingImports.put(portalDataKey, files);
                 }
+            }
 
-                final Queue<ImportFuture<?>> importFutures = new LinkedList<>();
-                final List<FutureHolder<?>> failedFutures = new LinkedList<>();
-
-                final int fileCount = files.size();
-                logger.info("Importing {} files of type {}", fileCount, portalDataKey);
-                reportWriter.println(portalDataKey + "," + fileCount);
-
-                while (!files.isEmpty()) {
-                    final Resource file = files.poll();
+            // Import the files of each key as soon as the keys it depends on have been imported,
+            // rather than waiting for every key before it
+            final ImportProgress progress = new ImportProgress(logger, resourceCount);
+            final Map<PortalDataKey, RunningImport> runningImports = new LinkedHashMap<>();
+            final CompletionService<Object> completionService =
+                    new ExecutorCompletionService<>(this.importExportThreadPool);
+            try {
+                while (true) {
+                    for (final Iterator<Map.Entry<PortalDataKey, Queue<Resource>>> pendingItr =
+                                    pendingImports.entrySet().iterator();
+                            pendingItr.hasNext(); ) {
+                        final Map.Entry<PortalDataKey, Queue<Resource>> pendingImport =
+                                pendingItr.next();
+                        final PortalDataKey portalDataKey = pendingImport.getKey();
+                        if (isReadyToImport(portalDataKey, pendingImports, runningImports)) {
+                            pendingItr.remove();
+                            runningImports.put(
+                                    portalDataKey,
+                                    startImport(
+                                            portalDataKey,
+                                            pendingImport.getValue(),
+                                            completionService,
+                                            directoryUriStr,
+                                            reportWriter));
+                        }
+                    }
 
-                    // Check for completed futures on every iteration, needed to fail as fast as
-                    // possible on an import exception
-                    final List<FutureHolder<?>> newFailed =
-                            waitForFutures(importFutures, reportWriter, logDirectory, false);
-                    failedFutures.addAll(newFailed);
+                    if (runningImports.isEmpty()) {
+                        break;
+                    }
 
-                    final AtomicLong importTime = new AtomicLong(-1);
+                    // Wait for the next file to finish importing, if none does within maxWait
+                    // wait on all of them so the ones that are stuck time out
+                    final boolean wait;
+                    if (this.maxWait > 0) {
+                        wait = completionService.poll(this.maxWait, this.maxWaitTimeUnit) == null;
+                    } else {
+                        completionService.take();
+                        wait = false;
+                    }
 
-                    // Create import task
-                    final Callable<Object> task =
-                            new CallableWithoutResult() {
-                                @Override
-                                protected void callWithoutResult() {
-                                    IMPORT_BASE_DIR.set(directoryUriStr);
-                                    importTime.set(System.nanoTime());
-                                    try {
-                                        importData(file, portalDataKey);
-                                    } finally {
-                                        importTime.set(System.nanoTime() - importTime.get());
-                                        IMPORT_BASE_DIR.remove();
-                                    }
-                                }
-                            };
+                    for (final Iterator<Map.Entry<PortalDataKey, RunningImport>> runningItr =
+                                    runningImports.entrySet().iterator();
+                            runningItr.hasNext(); ) {
+                        final Map.Entry<PortalDataKey, RunningImport> runningImport =
+                                runningItr.next();
+                        final PortalDataKey portalDataKey = runningImport.getKey();
+                        final RunningImport importing = runningImport.getValue();
+
+                        final int running = importing.importFutures.size();
+                        final List<FutureHolder<?>> newFailed =
+                                waitForFutures(
+                                        importing.importFutures, reportWriter, logDirectory, wait);
+                        importing.failedFutures.addAll(newFailed);
+                        progress.imported(running - importing.importFutures.size());
+
+                        if (!importing.importFutures.isEmpty()) {
+                            continue;
+                        }
 
-                    // Submit the import task
-                    final Future<?> importFuture = this.importExportThreadPool.submit(task);
+                        runningItr.remove();
+                        final long importMillis =
+                                TimeUnit.NANOSECONDS.toMillis(
+                                        System.nanoTime() - importing.startTime);
+                        logger.info(
+                                "Imported {} files of type {} in {}ms ({} files/s)",
+                                importing.fileCount,
+                                portalDataKey,
+                                importMillis,
+                                importing.fileCount * 1000 / Math.max(importMillis, 1));
+
+                        if (failOnError && !importing.failedFutures.isEmpty()) {
+                            throw new RuntimeException(
+                                    importing.failedFutures.size()
+                                            + " "
+                                            + portalDataKey
+                                            + " entities failed to import.\n\n"
+                                            + "\tPer-entity exception logs and a full report can be found in "
+                                            + logDirectory.toURI() // location clickable in some shells
+                                            + "\n");
+                        }
 
-                    // Add the future for tracking
-                    importFutures.offer(
-                            new ImportFuture(importFuture, file, portalDataKey, importTime));
+                        reportWriter.flush();
+                    }
                 }
-
-                // Wait for all of the imports on of this type to complete
-                final List<FutureHolder<?>> newFailed =
-                        waitForFutures(importFutures, reportWriter, logDirectory, true);
-                failedFutures.addAll(newFailed);
-
-                if (failOnError && !failedFutures.isEmpty()) {
-                    throw new RuntimeException(
-                            failedFutures.size()
-                                    + " "
-                                    + portalDataKey
-                                    + " entities failed to import.\n\n"
-                                    + "\tPer-entity exception logs and a full report can be found in "
-                                    + logDirectory.toURI() // location clickable in some shells
-                                    + "\n");
+            } finally {
+                // Only left running if an import failed and failOnError is set
+                for (final RunningImport runningImport : runningImports.values()) {
+                    for (final ImportFuture<?> importFuture : runningImport.importFutures) {
+                        importFuture.getFuture().cancel(true);
+                    }
                 }
-
-                reportWriter.flush();
             }
 
             if (!dataToImport.isEmpty()) {
@@ -691,6 +776,64 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
         }
     }
 
+    /**
+     * @return true if none of the PortalDataKeys the data of the key depends on are still waiting
+     *     to be imported or being imported
+     */
+    private boolean isReadyToImport(
+            PortalDataKey portalDataKey,
+            Map<PortalDataKey, ?> pendingImports,
+            Map<PortalDataKey, ?> runningImports) {
+        for (final PortalDataKey prerequisite : this.dataKeyPrerequisites.get(portalDataKey)) {
+            if (pendingImports.containsKey(prerequisite)
+                    || runningImports.containsKey(prerequisite)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Submits an import task for each of the files of one PortalDataKey */
+    private RunningImport startImport(
+            final PortalDataKey portalDataKey,
+            final Queue<Resource> files,
+            final CompletionService<Object> completionService,
+            final String directoryUriStr,
+            final PrintWriter reportWriter) {
+        final int fileCount = files.size();
+        logger.info("Importing {} files of type {}", fileCount, portalDataKey);
+        reportWriter.println(portalDataKey + "," + fileCount);
+
+        final RunningImport runningImport = new RunningImport(fileCount);
+        for (final Resource file : files) {
+            final AtomicLong importTime = new AtomicLong(-1);
+
+            // Create import task
+            final Callable<Object> task =
+                    new CallableWithoutResult() {
+                        @Override
+                        protected void callWithoutResult() {
+                            IMPORT_BASE_DIR.set(directoryUriStr);
+                            importTime.set(System.nanoTime());
+                            try {
+                                importData(file, portalDataKey);
+                            } finally {
+                                importTime.set(System.nanoTime() - importTime.get());
+                                IMPORT_BASE_DIR.remove();
+                            }
+                        }
+                    };
+
+            // Submit the import task
+            final Future<Object> importFuture = completionService.submit(task);
+
+            // Add the future for tracking
+            runningImport.importFutures.offer(
+                    new ImportFuture<>(importFuture, file, portalDataKey, importTime));
+        }
+        return runningImport;
+    }
+
     /** Determine directory to log import/export reports to */
     private File determineLogDirectory(final BatchOptions options, String operation) {
         File logDirectoryParent = options != null ? options.getLogDirectoryParent() : null;
@@ -751,12 +894,14 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
                         systemId, portalDataKey, bufferedXmlEventReader);
         bufferedXmlEventReader.reset();
 
-        // If only a single result from post processing import
+        // If only a single result from post processing import, the data is not read again after
+        // that unless the reader came from the caller
         if (postProcessedPortalDataKeys.size() == 1) {
             this.importOrUpgradeData(
                     systemId,
                     DataAccessUtils.singleResult(postProcessedPortalDataKeys),
-                    bufferedXmlEventReader);
+                    bufferedXmlEventReader,
+                    !isCallerReader(source, bufferedXmlEventReader));
         }
         // If multiple results from post processing ordering is needed
         else {
@@ -766,7 +911,7 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
                     // Reset the to start of the XML document for each import/upgrade call
                     bufferedXmlEventReader.reset();
                     this.importOrUpgradeData(
-                            systemId, orderedPortalDataKey, bufferedXmlEventReader);
+                            systemId, orderedPortalDataKey, bufferedXmlEventReader, false);
                 }
             }
         }
@@ -805,12 +950,37 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
         return systemId;
     }
 
-    /** Run the import/update process on the data */
+    /** @return true if the reader is a buffered reader passed in by the caller of importData */
+    private static boolean isCallerReader(
+            Source source, BufferedXMLEventReader bufferedXmlEventReader) {
+        return source instanceof StAXSource
+                && ((StAXSource) source).getXMLEventReader() == bufferedXmlEventReader;
+    }
+
+    /**
+     * Run the import/update process on the data
+     *
+     * @param lastRead true if the data is not read again afterwards, allowing importers that
+     *     support it to stream the data without it being buffered
+     */
     private void importOrUpgradeData(
-            String systemId, PortalDataKey portalDataKey, XMLEventReader xmlEventReader) {
+            String systemId,
+            PortalDataKey portalDataKey,
+            BufferedXMLEventReader xmlEventReader,
+            boolean lastRead) {
         // See if there is a registered importer for the data, if so import
         final IDataImporter<Object> dataImporterExporter =
                 this.portalDataImporters.get(portalDataKey);
+        if (dataImporterExporter instanceof IStreamingDataImporter && lastRead) {
+            this.logger.debug("Streaming import: {}", getPartialSystemId(systemId));
+            // Nothing reads the data again, stop buffering it so memory use does not grow with
+            // the size of the data
+            xmlEventReader.release();
+            ((IStreamingDataImporter<Object>) dataImporterExporter)
+                    .importData(xmlEventReader, systemId);
+            this.logger.info("Imported : {}", getPartialSystemId(systemId));
+            return;
+        }
         if (dataImporterExporter != null) {
             this.logger.debug("Importing: {}", getPartialSystemId(systemId));
             final Object data = unmarshallData(xmlEventReader, dataImporterExporter);
@@ -1006,7 +1176,86 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
 
     @Override
     public void exportAllDataOfType(
-            Set<String> typeIds, File directory, BatchExportOptions options) {
+            Set<String> typeIds, final File directory, BatchExportOptions options) {
+        this.exportAllDataOfType(
+                typeIds,
+                options,
+                new ExportDestination() {
+                    @Override
+                    public String getLocation(String typeId) {
+                        return new File(directory, typeId).toString();
+                    }
+
+                    @Override
+                    public void exportData(String typeId, String dataId) {
+                        JaxbPortalDataHandlerService.this.exportData(
+                                typeId, dataId, new File(directory, typeId));
+                    }
+                });
+    }
+
+    @Override
+    public void exportAllData(File directory, BatchExportOptions options) {
+        this.exportAllDataOfType(getExportAllTypeIds(), directory, options);
+    }
+
+    @Override
+    public void exportAllDataOfTypeToArchive(
+            Set<String> typeIds, File archive, BatchExportOptions options) {
+        final File parentDirectory = archive.getAbsoluteFile().getParentFile();
+        parentDirectory.mkdirs();
+
+        // Write to a temp file so a failed export does not leave a partial archive behind
+        final File archiveTempFile;
+        try {
+            archiveTempFile = File.createTempFile(archive.getName(), ".tmp", parentDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create temp file to export to " + archive, e);
+        }
+
+        try {
+            try (final ArchiveExportDestination destination =
+                    new ArchiveExportDestination(archive.getName(), archiveTempFile)) {
+                this.exportAllDataOfType(typeIds, options, destination);
+            }
+
+            if (archive.exists()) {
+                logger.warn("Export archive already exists, it will be overwritten: {}", archive);
+                archive.delete();
+            }
+            FileUtils.moveFile(archiveTempFile, archive);
+            logger.info("Exported: {}", archive);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write export archive " + archive, e);
+        } finally {
+            FileUtils.deleteQuietly(archiveTempFile);
+        }
+    }
+
+    @Override
+    public void exportAllDataToArchive(File archive, BatchExportOptions options) {
+        this.exportAllDataOfTypeToArchive(getExportAllTypeIds(), archive, options);
+    }
+
+    private Set<String> getExportAllTypeIds() {
+        final Set<IPortalDataType> portalDataTypes;
+        if (this.exportAllPortalDataTypes != null) {
+            portalDataTypes = this.exportAllPortalDataTypes;
+        } else {
+            portalDataTypes = this.exportPortalDataTypes;
+        }
+
+        final Set<String> typeIds = new LinkedHashSet<>();
+        for (final IPortalDataType portalDataType : portalDataTypes) {
+            typeIds.add(portalDataType.getTypeId());
+        }
+        return typeIds;
+    }
+
+    private void exportAllDataOfType(
+            Set<String> typeIds,
+            BatchExportOptions options,
+            final ExportDestination destination) {
         final Queue<ExportFuture<?>> exportFutures = new ConcurrentLinkedQueue<>();
         final boolean failOnError = options != null ? options.isFailOnError() : true;
 
@@ -1026,10 +1275,10 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
             for (final String typeId : typeIds) {
                 final List<FutureHolder<?>> failedFutures = new LinkedList<>();
 
-                final File typeDir = new File(directory, typeId);
-                logger.info("Adding all data of type {} to export queue: {}", typeId, typeDir);
+                final String location = destination.getLocation(typeId);
+                logger.info("Adding all data of type {} to export queue: {}", typeId, location);
 
-                reportWriter.println(typeId + "," + typeDir);
+                reportWriter.println(typeId + "," + location);
 
                 final Iterable<? extends IPortalData> dataForType = this.getPortalData(typeId);
                 for (final IPortalData data : dataForType) {
@@ -1041,6 +1290,15 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
                             waitForFutures(exportFutures, reportWriter, logDirectory, false);
                     failedFutures.addAll(newFailed);
 
+                    // Wait for the oldest export once enough are queued, so data that is paged
+                    // in is not all read into the queue ahead of the exports
+                    while (exportFutures.size() >= MAX_QUEUED_EXPORTS) {
+                        final Queue<ExportFuture<?>> oldestFuture = new LinkedList<>();
+                        oldestFuture.offer(exportFutures.poll());
+                        failedFutures.addAll(
+                                waitForFutures(oldestFuture, reportWriter, logDirectory, true));
+                    }
+
                     final AtomicLong exportTime = new AtomicLong(-1);
 
                     // Create export task
@@ -1050,7 +1308,7 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
                                 protected void callWithoutResult() {
                                     exportTime.set(System.nanoTime());
                                     try {
-                                        exportData(typeId, dataId, typeDir);
+                                        destination.exportData(typeId, dataId);
                                     } finally {
                                         exportTime.set(System.nanoTime() - exportTime.get());
                                     }
@@ -1089,22 +1347,6 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
         }
     }
 
-    @Override
-    public void exportAllData(File directory, BatchExportOptions options) {
-        final Set<IPortalDataType> portalDataTypes;
-        if (this.exportAllPortalDataTypes != null) {
-            portalDataTypes = this.exportAllPortalDataTypes;
-        } else {
-            portalDataTypes = this.exportPortalDataTypes;
-        }
-
-        final Set<String> typeIds = new LinkedHashSet<>();
-        for (final IPortalDataType portalDataType : portalDataTypes) {
-            typeIds.add(portalDataType.getTypeId());
-        }
-        this.exportAllDataOfType(typeIds, directory, options);
-    }
-
     private IDataExporter<Object> getPortalDataExporter(String typeId) {
         final IDataExporter<Object> dataExporter = this.portalDataExporters.get(typeId);
         if (dataExporter == null) {
@@ -1300,6 +1542,153 @@ public class JaxbPortalDataHandlerService implements IPortalDataHandlerService {
         }
     }
 
+    /** The files of one PortalDataKey that are being imported */
+    private static class RunningImport {
+        private final Queue<ImportFuture<?>> importFutures = new LinkedList<>();
+        private final List<FutureHolder<?>> failedFutures = new LinkedList<>();
+        private final int fileCount;
+        private final long startTime = System.nanoTime();
+
+        public RunningImport(int fileCount) {
+            this.fileCount = fileCount;
+        }
+    }
+
+    /** Periodically logs how many of the files have been imported and at what rate */
+    private static class ImportProgress {
+        private static final long LOG_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+        private final Logger logger;
+        private final long fileCount;
+        private final long startTime = System.nanoTime();
+        private long importedCount;
+        private long lastLogTime = startTime;
+
+        public ImportProgress(Logger logger, long fileCount) {
+            this.logger = logger;
+            this.fileCount = fileCount;
+        }
+
+        public void imported(int count) {
+            this.importedCount += count;
+            final long now = System.nanoTime();
+            if (now - this.lastLogTime >= LOG_INTERVAL || this.importedCount == this.fileCount) {
+                this.lastLogTime = now;
+                final long millis = Math.max(TimeUnit.NANOSECONDS.toMillis(now - startTime), 1);
+                logger.info(
+                        "Imported {} of {} files ({}%), {} files/s",
+                        this.importedCount,
+                        this.fileCount,
+                        this.importedCount * 100 / Math.max(this.fileCount, 1),
+                        this.importedCount * 1000 / millis);
+            }
+        }
+    }
+
+    /** Where exportAllDataOfType writes the exported data */
+    private interface ExportDestination {
+        /** @return Where data of the type is written, for logging and the export report */
+        String getLocation(String typeId);
+
+        /** Export a single piece of data, called from multiple threads at once */
+        void exportData(String typeId, String dataId);
+    }
+
+    /**
+     * Writes each exported file into an archive as soon as it has been exported. Files are
+     * marshalled into memory by the export threads in parallel and only writing them to the
+     * archive is serialized, so memory use is bounded by the number of export threads.
+     */
+    private class ArchiveExportDestination implements ExportDestination, Closeable {
+        private final String archiveName;
+        private final ArchiveOutputStream archiveStream;
+        private final Set<String> entryNames = ConcurrentHashMap.newKeySet();
+
+        public ArchiveExportDestination(String archiveName, File archiveFile) throws IOException {
+            this.archiveName = archiveName;
+
+            final String name = archiveName.toLowerCase(Locale.ROOT);
+            final OutputStream fileStream =
+                    new BufferedOutputStream(new FileOutputStream(archiveFile));
+            if (name.endsWith(".zip") || name.endsWith(".jar")) {
+                this.archiveStream = new ZipArchiveOutputStream(fileStream);
+            } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                this.archiveStream =
+                        createTarArchiveStream(new GzipCompressorOutputStream(fileStream));
+            } else if (name.endsWith(".tar")) {
+                this.archiveStream = createTarArchiveStream(fileStream);
+            } else {
+                fileStream.close();
+                throw new IllegalArgumentException(
+                        "Unsupported export archive type, must be a .zip, .jar, .tar, .tar.gz or"
+                                + " .tgz file: "
+                                + archiveName);
+            }
+        }
+
+        private ArchiveOutputStream createTarArchiveStream(OutputStream outputStream) {
+            final TarArchiveOutputStream tarStream = new TarArchiveOutputStream(outputStream);
+            tarStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            return tarStream;
+        }
+
+        @Override
+        public String getLocation(String typeId) {
+            return this.archiveName + "!/" + typeId;
+        }
+
+        @Override
+        public void exportData(String typeId, String dataId) {
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            final String fileName =
+                    JaxbPortalDataHandlerService.this.exportData(
+                            typeId, dataId, new StreamResult(data));
+            if (fileName == null) {
+                logger.info("Skipped: type={} id={}", typeId, dataId);
+                return;
+            }
+
+            final String entryName = typeId + "/" + fileName + "." + typeId + ".xml";
+            if (!this.entryNames.add(entryName)) {
+                logger.warn(
+                        "Exporting {} {} but {} was already written to {}, it will be skipped",
+                        typeId,
+                        dataId,
+                        entryName,
+                        this.archiveName);
+                return;
+            }
+            this.writeEntry(entryName, data.toByteArray());
+            logger.info("Exported: {}!/{}", this.archiveName, entryName);
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized void writeEntry(String entryName, byte[] data) {
+            final ArchiveEntry entry;
+            if (this.archiveStream instanceof ZipArchiveOutputStream) {
+                entry = new ZipArchiveEntry(entryName);
+            } else {
+                final TarArchiveEntry tarEntry = new TarArchiveEntry(entryName);
+                tarEntry.setSize(data.length);
+                entry = tarEntry;
+            }
+
+            try {
+                this.archiveStream.putArchiveEntry(entry);
+                this.archiveStream.write(data);
+                this.archiveStream.closeArchiveEntry();
+            } catch (IOException e) {
+                throw new RuntimeException(
+                        "Failed to write " + entryName + " to " + this.archiveName, e);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            this.archiveStream.close();
+        }
+    }
+
     private static class ExportFuture<T> extends FutureHolder<T> {
         private final String typeId;
         private final String dataId;
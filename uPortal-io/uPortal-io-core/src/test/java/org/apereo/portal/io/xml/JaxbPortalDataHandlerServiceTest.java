@@ -23,8 +23,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
+import javax.xml.namespace.QName;
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -113,4 +121,56 @@ public class JaxbPortalDataHandlerServiceTest {
             throw new RuntimeException(e);
         }
     }
+
+    @Test
+    public void testGetDataKeyPrerequisites() {
+        final PortalDataKey users = new PortalDataKey(new QName("user"), null, "1.0");
+        final PortalDataKey groups = new PortalDataKey(new QName("group"), null, "1.0");
+        final PortalDataKey groupMembers = new PortalDataKey(new QName("group"), null, "2.0");
+        final PortalDataKey layouts = new PortalDataKey(new QName("layout"), null, "1.0");
+
+        final Map<PortalDataKey, IPortalDataType> dataKeyTypes = new LinkedHashMap<>();
+        dataKeyTypes.put(users, new TestPortalDataType("user", null, users));
+        final IPortalDataType groupType =
+                new TestPortalDataType(
+                        "group", Collections.<String>emptySet(), groups, groupMembers);
+        dataKeyTypes.put(groups, groupType);
+        dataKeyTypes.put(groupMembers, groupType);
+        dataKeyTypes.put(layouts, new TestPortalDataType("layout", null, layouts));
+        final List<PortalDataKey> importOrder = Arrays.asList(users, groups, groupMembers, layouts);
+
+        final Map<PortalDataKey, Set<PortalDataKey>> prerequisites =
+                JaxbPortalDataHandlerService.getDataKeyPrerequisites(importOrder, dataKeyTypes);
+
+        assertEquals(Collections.emptySet(), prerequisites.get(users));
+        // Groups declare no dependencies so only wait for their own earlier keys
+        assertEquals(Collections.emptySet(), prerequisites.get(groups));
+        assertEquals(Collections.singleton(groups), prerequisites.get(groupMembers));
+        // Layouts declare none so wait for everything before them
+        assertEquals(
+                new LinkedHashSet<>(Arrays.asList(users, groups, groupMembers)),
+                prerequisites.get(layouts));
+    }
+
+    private static class TestPortalDataType extends AbstractPortalDataType {
+        private final Set<String> importDependencies;
+        private final List<PortalDataKey> dataKeys;
+
+        TestPortalDataType(
+                String typeId, Set<String> importDependencies, PortalDataKey... dataKeys) {
+            super(0, new QName(typeId));
+            this.importDependencies = importDependencies;
+            this.dataKeys = Arrays.asList(dataKeys);
+        }
+
+        @Override
+        public List<PortalDataKey> getDataKeyImportOrder() {
+            return this.dataKeys;
+        }
+
+        @Override
+        public Set<String> getImportDependencies() {
+            return this.importDependencies;
+        }
+    }
 }
@@ -15,21 +15,27 @@
 package org.apereo.portal.io.xml.crn;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.Source;
 import javax.xml.transform.stax.StAXSource;
-import org.apereo.portal.io.xml.IDataImporter;
+import org.apereo.portal.io.xml.IStreamingDataImporter;
 import org.apereo.portal.io.xml.PortalDataKey;
 import org.apereo.portal.utils.Tuple;
 import org.apereo.portal.utils.threading.NoopLock;
 import org.codehaus.staxmate.dom.DOMConverter;
+import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.dom4j.io.DOMReader;
+import org.dom4j.io.STAXEventReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.oxm.Unmarshaller;
@@ -37,13 +43,29 @@ import org.springframework.oxm.XmlMappingException;
 import org.springframework.util.xml.FixedXMLEventStreamReader;
 import org.w3c.dom.Document;
 
-/** Generic dom4j import impl */
+/**
+ * Generic dom4j import impl.
+ *
+ * <p>If a streaming element name is set, the children of the root element with that name are read
+ * from the StAX reader and imported a chunk at a time. Each chunk is imported as a copy of the root
+ * element that holds the other children of the root, which must come first, and that chunk of the
+ * repeated children. This is only correct for imports that treat each repeated child on its own.
+ * Each chunk is imported by its own call to {@link #importDataElement(Tuple)} and so in its own
+ * transaction, if a chunk fails the chunks before it stay imported and the import is left partial.
+ *
+ * <p>Only the membership (v2.6) and permission set (v3.1) imports stream. The group_membership
+ * imports (v3.0, v3.2 and v5.0) read the whole document: their members are nested in a {@code
+ * <children>} element rather than repeated children of the root, and their MEMBERS pass replaces
+ * all members of the group, so each chunk would remove the members added by the chunks before it.
+ */
 public abstract class AbstractDom4jImporter
-        implements IDataImporter<Tuple<String, Element>>, Unmarshaller {
+        implements IStreamingDataImporter<Tuple<String, Element>>, Unmarshaller {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
     private Set<PortalDataKey> dataKeys;
     private Lock lock = NoopLock.INSTANCE;
+    private String streamingElementName;
+    private int streamingChunkSize = 1000;
 
     public void setDataKeys(Set<PortalDataKey> dataKeys) {
         this.dataKeys = dataKeys;
@@ -58,6 +80,19 @@ public abstract class AbstractDom4jImporter
         }
     }
 
+    /**
+     * Name of the repeated children of the root element to import in chunks, null by default. A
+     * failure part way through a chunked import leaves the earlier chunks imported.
+     */
+    public void setStreamingElementName(String streamingElementName) {
+        this.streamingElementName = streamingElementName;
+    }
+
+    /** Number of repeated children to import at a time, defaults to 1000 */
+    public void setStreamingChunkSize(int streamingChunkSize) {
+        this.streamingChunkSize = streamingChunkSize;
+    }
+
     @Override
     public Set<PortalDataKey> getImportDataKeys() {
         return this.dataKeys;
@@ -75,6 +110,80 @@ public abstract class AbstractDom4jImporter
         }
     }
 
+    @Override
+    public void importData(XMLEventReader xmlEventReader, String systemId) {
+        try {
+            if (this.streamingElementName == null) {
+                final Element node = convertToElement(new StAXSource(xmlEventReader));
+                this.importData(new Tuple<String, Element>(systemId, node));
+            } else {
+                this.importChunks(xmlEventReader, systemId);
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Failed to read StAX Reader for " + systemId, e);
+        }
+    }
+
+    private void importChunks(XMLEventReader xmlEventReader, String systemId)
+            throws XMLStreamException {
+        final STAXEventReader staxEventReader = new STAXEventReader();
+
+        // Skip to the root element
+        while (!xmlEventReader.peek().isStartElement()) {
+            xmlEventReader.nextEvent();
+        }
+        final StartElement rootElement = xmlEventReader.nextEvent().asStartElement();
+        final Element root = staxEventReader.createElement(rootElement);
+
+        final List<Element> chunk = new ArrayList<>(this.streamingChunkSize);
+        int chunks = 0;
+        for (XMLEvent event = xmlEventReader.peek();
+                !event.isEndElement();
+                event = xmlEventReader.peek()) {
+            if (!event.isStartElement()) {
+                xmlEventReader.nextEvent();
+                continue;
+            }
+
+            final Element child = staxEventReader.readElement(xmlEventReader);
+            if (!this.streamingElementName.equals(child.getName())) {
+                if (chunks > 0) {
+                    throw new IllegalStateException(
+                            "<"
+                                    + child.getName()
+                                    + "> must come before the <"
+                                    + this.streamingElementName
+                                    + "> elements in "
+                                    + systemId);
+                }
+                root.add(child);
+            } else {
+                chunk.add(child);
+                if (chunk.size() == this.streamingChunkSize) {
+                    this.importChunk(root, chunk, systemId);
+                    chunk.clear();
+                    chunks++;
+                }
+            }
+        }
+
+        // The last chunk, or the whole document if there were no repeated elements
+        if (!chunk.isEmpty() || chunks == 0) {
+            this.importChunk(root, chunk, systemId);
+            chunks++;
+        }
+        logger.debug("Imported {} in {} chunks", systemId, chunks);
+    }
+
+    private void importChunk(Element root, List<Element> chunk, String systemId) {
+        final Element chunkRoot = root.createCopy();
+        for (final Element element : chunk) {
+            chunkRoot.add(element);
+        }
+        DocumentHelper.createDocument(chunkRoot).setName(systemId);
+        this.importData(new Tuple<String, Element>(systemId, chunkRoot));
+    }
+
     protected abstract void importDataElement(Tuple<String, Element> data);
 
     @Override
@@ -33,6 +33,10 @@ public class GroupMembershipPortalDataType extends AbstractPortalDataType
 
     public static final int ORDER = 60;
 
+    /** Groups refer to entity types, PAGS groups and other groups, not to users */
+    private static final Set<String> IMPORT_DEPENDENCIES =
+            ImmutableSet.of("pags-group", "entity-type", "group");
+
     public static final QName LEGACY_GROUP_QNAME = new QName("group");
 
     public static final String TYPE_ID = "group-membership";
@@ -137,6 +141,11 @@ public class GroupMembershipPortalDataType extends AbstractPortalDataType
         return PORTAL_DATA_KEYS;
     }
 
+    @Override
+    public Set<String> getImportDependencies() {
+        return IMPORT_DEPENDENCIES;
+    }
+
     @Override
     public String getTitleCode() {
         return "Group with Members";
@@ -14,8 +14,10 @@
  */
 package org.apereo.portal.io.xml.group;
 
+import com.google.common.collect.ImmutableSet;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import javax.xml.namespace.QName;
 import org.apereo.portal.io.xml.AbstractPortalDataType;
 import org.apereo.portal.io.xml.PortalDataKey;
@@ -27,6 +29,10 @@ public class GroupPortalDataType extends AbstractPortalDataType {
 
     public static final int ORDER = 50;
 
+    /** Groups refer to entity types and PAGS groups, not to users */
+    private static final Set<String> IMPORT_DEPENDENCIES =
+            ImmutableSet.of("pags-group", "entity-type");
+
     public static final QName LEGACY_GROUP_QNAME = new QName("group");
 
     public static final PortalDataKey IMPORT_26_DATA_KEY =
@@ -46,6 +52,11 @@ public class GroupPortalDataType extends AbstractPortalDataType {
         return PORTAL_DATA_KEYS;
     }
 
+    @Override
+    public Set<String> getImportDependencies() {
+        return IMPORT_DEPENDENCIES;
+    }
+
     @Override
     public String getTitleCode() {
         return "Group";
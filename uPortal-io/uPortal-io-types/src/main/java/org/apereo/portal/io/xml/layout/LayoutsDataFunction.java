@@ -15,8 +15,6 @@
 package org.apereo.portal.io.xml.layout;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Lists;
-import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -24,14 +22,14 @@ import javax.annotation.Resource;
 import javax.sql.DataSource;
 import org.apereo.portal.io.xml.IPortalData;
 import org.apereo.portal.io.xml.IPortalDataType;
-import org.apereo.portal.io.xml.SimpleStringPortalData;
+import org.apereo.portal.io.xml.user.UserNamePortalDataIterable;
 import org.apereo.portal.jpa.BasePortalJpaDao;
 import org.apereo.portal.layout.dlm.ConfigurationLoader;
 import org.apereo.portal.layout.dlm.FragmentDefinition;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 /** Lists each fragment owner in the portal */
 public class LayoutsDataFunction
@@ -39,7 +37,7 @@ public class LayoutsDataFunction
     private ConfigurationLoader configurationLoader;
     private DataSource dataSource;
 
-    private NamedParameterJdbcOperations jdbcOperations;
+    private JdbcOperations jdbcOperations;
 
     @Resource(name = BasePortalJpaDao.PERSISTENCE_UNIT_NAME)
     public void setDataSource(DataSource dataSource) {
@@ -56,7 +54,7 @@ public class LayoutsDataFunction
      */
     @Override
     public void afterPropertiesSet() throws Exception {
-        this.jdbcOperations = new NamedParameterJdbcTemplate(this.dataSource);
+        this.jdbcOperations = new JdbcTemplate(this.dataSource);
     }
 
     @Override
@@ -67,19 +65,7 @@ public class LayoutsDataFunction
             fragmentOwners.add(fragmentDefinition.getOwnerId());
         }
 
-        final List<String> userList =
-                this.jdbcOperations.queryForList(
-                        "SELECT USER_NAME FROM UP_USER WHERE USER_NAME NOT IN (:userNames)",
-                        Collections.singletonMap("userNames", fragmentOwners),
-                        String.class);
-
-        return Lists.transform(
-                userList,
-                new Function<String, IPortalData>() {
-                    @Override
-                    public IPortalData apply(final String userName) {
-                        return new SimpleStringPortalData(userName, null, null);
-                    }
-                });
+        return new UserNamePortalDataIterable(
+                this.jdbcOperations, fragmentOwners, UserNamePortalDataIterable.DEFAULT_PAGE_SIZE);
     }
 }
@@ -14,8 +14,10 @@
  */
 package org.apereo.portal.io.xml.portlet;
 
+import com.google.common.collect.ImmutableSet;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import javax.xml.namespace.QName;
 import org.apereo.portal.io.xml.AbstractPortalDataType;
 import org.apereo.portal.io.xml.IExportAllPortalDataType;
@@ -30,6 +32,16 @@ public class PortletPortalDataType extends AbstractPortalDataType
 
     public static final int ORDER = 90;
 
+    /** Portlets refer to their type, categories and the groups they are published to */
+    private static final Set<String> IMPORT_DEPENDENCIES =
+            ImmutableSet.of(
+                    "portlet-type",
+                    "pags-group",
+                    "entity-type",
+                    "group",
+                    "group-membership",
+                    "membership");
+
     public static final QName PORTLET_DEFINITION_QNAME =
             new QName(
                     "https://source.jasig.org/schemas/uportal/io/portlet-definition",
@@ -103,6 +115,11 @@ public class PortletPortalDataType extends AbstractPortalDataType
         return PORTAL_DATA_KEYS;
     }
 
+    @Override
+    public Set<String> getImportDependencies() {
+        return IMPORT_DEPENDENCIES;
+    }
+
     @Override
     public String getTitleCode() {
         return "Portlet Definition";
@@ -14,8 +14,10 @@
  */
 package org.apereo.portal.io.xml.portlettype;
 
+import com.google.common.collect.ImmutableSet;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import javax.xml.namespace.QName;
 import org.apereo.portal.io.xml.AbstractPortalDataType;
 import org.apereo.portal.io.xml.IExportAllPortalDataType;
@@ -28,6 +30,9 @@ public class PortletTypePortalDataType extends AbstractPortalDataType
 
     public static final int ORDER = 80;
 
+    /** Portlet types refer to no other portal data */
+    private static final Set<String> IMPORT_DEPENDENCIES = ImmutableSet.of();
+
     public static final QName PORTLET_TYPE_QNAME =
             new QName("https://source.jasig.org/schemas/uportal/io/portlet-type", "portlet-type");
 
@@ -45,6 +50,11 @@ public class PortletTypePortalDataType extends AbstractPortalDataType
         return PORTAL_DATA_KEYS;
     }
 
+    @Override
+    public Set<String> getImportDependencies() {
+        return IMPORT_DEPENDENCIES;
+    }
+
     @Override
     public String getTitleCode() {
         return "Portlet Type";
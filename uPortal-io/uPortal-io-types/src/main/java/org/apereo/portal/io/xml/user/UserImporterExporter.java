@@ -14,9 +14,7 @@
  */
 package org.apereo.portal.io.xml.user;
 
-import com.google.common.base.Function;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -30,7 +28,6 @@ import org.apereo.portal.io.xml.AbstractJaxbDataHandler;
 import org.apereo.portal.io.xml.IPortalData;
 import org.apereo.portal.io.xml.IPortalDataType;
 import org.apereo.portal.io.xml.PortalDataKey;
-import org.apereo.portal.io.xml.SimpleStringPortalData;
 import org.apereo.portal.jpa.BasePortalJpaDao;
 import org.apereo.portal.persondir.ILocalAccountDao;
 import org.apereo.portal.persondir.ILocalAccountPerson;
@@ -93,13 +90,7 @@ public class UserImporterExporter extends AbstractJaxbDataHandler<UserType> {
 
     @Override
     public Iterable<? extends IPortalData> getPortalData() {
-        final List<String> userList =
-                this.jdbcOperations.queryForList("SELECT USER_NAME FROM UP_USER", String.class);
-
-        return Lists.transform(
-                userList,
-                (Function<String, IPortalData>)
-                        userName -> new SimpleStringPortalData(userName, null, null));
+        return new UserNamePortalDataIterable(this.jdbcOperations);
     }
 
     @Transactional
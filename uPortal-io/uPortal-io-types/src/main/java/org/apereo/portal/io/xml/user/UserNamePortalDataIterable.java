@@ -0,0 +1,104 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.io.xml.user;
+
+import com.google.common.collect.AbstractIterator;
+import java.sql.PreparedStatement;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.apereo.portal.io.xml.IPortalData;
+import org.apereo.portal.io.xml.SimpleStringPortalData;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+
+/**
+ * Lists the user names in UP_USER a page at a time, ordered by name. Each page is read with a
+ * keyset query starting after the last name of the previous page so exporting every user never
+ * holds more than one page of names in memory.
+ */
+public class UserNamePortalDataIterable implements Iterable<IPortalData> {
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private static final String FIRST_PAGE_SQL = "SELECT USER_NAME FROM UP_USER ORDER BY USER_NAME";
+    private static final String NEXT_PAGE_SQL =
+            "SELECT USER_NAME FROM UP_USER WHERE USER_NAME > ? ORDER BY USER_NAME";
+
+    private final JdbcOperations jdbcOperations;
+    private final Set<String> excludedUserNames;
+    private final int pageSize;
+
+    public UserNamePortalDataIterable(JdbcOperations jdbcOperations) {
+        this(jdbcOperations, Collections.<String>emptySet(), DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param excludedUserNames User names to skip, the set is expected to be small
+     * @param pageSize Number of names read per query
+     */
+    public UserNamePortalDataIterable(
+            JdbcOperations jdbcOperations, Set<String> excludedUserNames, int pageSize) {
+        this.jdbcOperations = jdbcOperations;
+        this.excludedUserNames = excludedUserNames;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Iterator<IPortalData> iterator() {
+        return new AbstractIterator<IPortalData>() {
+            private Iterator<String> page = Collections.<String>emptyIterator();
+            private String lastUserName;
+            private boolean lastPage;
+
+            @Override
+            protected IPortalData computeNext() {
+                while (true) {
+                    while (this.page.hasNext()) {
+                        final String userName = this.page.next();
+                        this.lastUserName = userName;
+                        if (!excludedUserNames.contains(userName)) {
+                            return new SimpleStringPortalData(userName, null, null);
+                        }
+                    }
+
+                    if (this.lastPage) {
+                        return endOfData();
+                    }
+
+                    final List<String> userNames = readPage(this.lastUserName);
+                    this.lastPage = userNames.size() < pageSize;
+                    this.page = userNames.iterator();
+                }
+            }
+        };
+    }
+
+    private List<String> readPage(final String afterUserName) {
+        return this.jdbcOperations.query(
+                con -> {
+                    final PreparedStatement ps;
+                    if (afterUserName == null) {
+                        ps = con.prepareStatement(FIRST_PAGE_SQL);
+                    } else {
+                        ps = con.prepareStatement(NEXT_PAGE_SQL);
+                        ps.setString(1, afterUserName);
+                    }
+                    ps.setMaxRows(this.pageSize);
+                    return ps;
+                },
+                new SingleColumnRowMapper<>(String.class));
+    }
+}
@@ -82,6 +82,7 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
     private IPortalLayoutEventFactory portalEventFactory;
     private IAuthorizationService authorizationService;
     private IUserIdentityStore userIdentityStore;
+    private UserLayoutWriteBehindQueue userLayoutWriteBehindQueue;
 
     protected final IPerson owner;
     protected final IUserProfile profile;
@@ -148,6 +149,12 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
         this.distributedLayoutStore = distributedLayoutStore;
     }
 
+    @Autowired
+    public void setUserLayoutWriteBehindQueue(
+            UserLayoutWriteBehindQueue userLayoutWriteBehindQueue) {
+        this.userLayoutWriteBehindQueue = userLayoutWriteBehindQueue;
+    }
+
     @Autowired
     public void setPortalEventFactory(IPortalLayoutEventFactory portalEventFactory) {
         this.portalEventFactory = portalEventFactory;
@@ -157,6 +164,8 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
     public void afterPropertiesSet() throws Exception {
         // Ensure a new layout gets loaded whenever a user logs in except for guest users
         if (!owner.isGuest()) {
+            // Changes from an earlier session may not have been written yet
+            this.userLayoutWriteBehindQueue.flush(owner.getUserName());
             this.layoutCachingService.removeCachedLayout(owner, profile);
         }
 
@@ -297,6 +306,7 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
         try {
             // Clear the loaded document first if this is a forced reload
             if (reload) {
+                this.userLayoutWriteBehindQueue.flush(owner.getUserName());
                 this.layoutCachingService.removeCachedLayout(owner, profile);
             }
 
@@ -323,8 +333,21 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
         }
     }
 
+    /**
+     * Saves the layout, or defers the save when layout saves are written behind. Layouts of
+     * fragment owners are always saved right away so the fragment is updated for its users.
+     */
     @Override
     public synchronized void saveUserLayout() throws PortalException {
+        if (this.userLayoutWriteBehindQueue.isEnabled() && !this.isFragmentOwner) {
+            this.userLayoutWriteBehindQueue.saveLater(
+                    this.owner.getUserName(), this.profile.getProfileId(), this::writeUserLayout);
+        } else {
+            this.writeUserLayout();
+        }
+    }
+
+    private synchronized void writeUserLayout() throws PortalException {
         Document uld = this.getUserLayoutDOM();
 
         if (uld == null) {
@@ -394,7 +417,7 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
     }
 
     @Override
-    public IUserLayoutNodeDescription addNode(
+    public synchronized IUserLayoutNodeDescription addNode(
             IUserLayoutNodeDescription node, String parentId, String nextSiblingId)
             throws PortalException {
         boolean isChannel = false;
@@ -451,7 +474,7 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
     }
 
     @Override
-    public boolean moveNode(String nodeId, String parentId, String nextSiblingId)
+    public synchronized boolean moveNode(String nodeId, String parentId, String nextSiblingId)
             throws PortalException {
         IUserLayoutNodeDescription parent = this.getNode(parentId);
         IUserLayoutNodeDescription node = this.getNode(nodeId);
@@ -489,7 +512,7 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
     }
 
     @Override
-    public boolean deleteNode(String nodeId) throws PortalException {
+    public synchronized boolean deleteNode(String nodeId) throws PortalException {
         if (canDeleteNode(nodeId)) {
             IUserLayoutNodeDescription nodeDescription = this.getNode(nodeId);
             String parentNodeId = this.getParentId(nodeId);
@@ -1399,6 +1422,9 @@ public class DistributedLayoutManager implements IUserLayoutManager, Initializin
 
         boolean layoutWasReset = false;
 
+        // A pending save of the old layout must not be written over the reset one
+        this.userLayoutWriteBehindQueue.discard(userName);
+
         try {
             userIdentityStore.removePortalUID(person.getID());
             userIdentityStore.getPortalUID(person, true);
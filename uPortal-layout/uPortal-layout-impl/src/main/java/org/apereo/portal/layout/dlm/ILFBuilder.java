@@ -58,6 +58,54 @@ public class ILFBuilder {
         // the implementation class to set the identifier for that node
         // in the document.
 
+        Document result = createILF(PLF);
+
+        // build the auth principal for determining if pushed channels can be
+        // used by this user
+        EntityIdentifier ei = person.getEntityIdentifier();
+        AuthorizationServiceFacade authS = AuthorizationServiceFacade.instance();
+        IAuthorizationPrincipal ap = authS.newPrincipal(ei.getKey(), ei.getType());
+
+        // now merge fragments one at a time into ILF document
+
+        for (final Document document : sequence) {
+            mergeFragment(document, result, ap);
+        }
+        return result;
+    }
+
+    /**
+     * Constructs an ILF from fragments that were already merged for a user with the same channel
+     * permissions, see {@link #createMergedFragments(List, IAuthorizationPrincipal)}. The merged
+     * fragments are only read so the same document can be shared between threads.
+     */
+    public static Document constructILF(Document PLF, Document mergedFragments) {
+        Document result = createILF(PLF);
+        Element mergedRoot = (Element) mergedFragments.getDocumentElement().getFirstChild();
+        Element ilfRoot = (Element) result.getDocumentElement().getFirstChild();
+        copyChildren(mergedRoot, ilfRoot);
+        return result;
+    }
+
+    /**
+     * Merges the fragments into a document that holds only their incorporated elements, under an
+     * empty layout and root folder, for use with {@link #constructILF(Document, Document)}.
+     */
+    public static Document createMergedFragments(
+            List<Document> sequence, IAuthorizationPrincipal ap) {
+        Document result = DocumentFactory.getThreadDocument();
+        Element layout = result.createElement("layout");
+        result.appendChild(layout);
+        layout.appendChild(result.createElement(Constants.ELM_FOLDER));
+
+        for (final Document document : sequence) {
+            mergeFragment(document, result, ap);
+        }
+        return result;
+    }
+
+    /** Creates an ILF document holding copies of the PLF's layout and root folder elements */
+    private static Document createILF(Document PLF) {
         Document result = DocumentFactory.getThreadDocument();
         Element plfLayout = PLF.getDocumentElement();
         Element ilfLayout = (Element) result.importNode(plfLayout, false);
@@ -68,19 +116,25 @@ public class ILFBuilder {
 
         if (ilfRoot.getAttribute(Constants.ATT_ID) != null)
             ilfRoot.setIdAttribute(Constants.ATT_ID, true);
+        return result;
+    }
 
-        // build the auth principal for determining if pushed channels can be
-        // used by this user
-        EntityIdentifier ei = person.getEntityIdentifier();
-        AuthorizationServiceFacade authS = AuthorizationServiceFacade.instance();
-        IAuthorizationPrincipal ap = authS.newPrincipal(ei.getKey(), ei.getType());
+    /** Copies all children of source into dest, registering their identifiers */
+    private static void copyChildren(Element source, Element dest) {
+        Document destDoc = dest.getOwnerDocument();
 
-        // now merge fragments one at a time into ILF document
+        Node item = source.getFirstChild();
+        while (item != null) {
+            if (item instanceof Element) {
+                Element newChild = (Element) destDoc.importNode(item, false);
+                dest.appendChild(newChild);
+                String id = newChild.getAttribute(Constants.ATT_ID);
+                if (id != null && !id.equals("")) newChild.setIdAttribute(Constants.ATT_ID, true);
+                copyChildren((Element) item, newChild);
+            }
 
-        for (final Document document : sequence) {
-            mergeFragment(document, result, ap);
+            item = item.getNextSibling();
         }
-        return result;
     }
 
     /**
@@ -0,0 +1,234 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.dlm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.apereo.portal.EntityIdentifier;
+import org.apereo.portal.security.IAuthorizationPrincipal;
+import org.apereo.portal.security.IPerson;
+import org.apereo.portal.services.AuthorizationServiceFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Caches the result of merging a set of fragment layouts so users that share the same applicable
+ * fragments, locale and channel permissions only pay for copying the merged elements into their
+ * ILF instead of re-running the merge and a permission check per incorporated channel.
+ *
+ * <p>Entries are keyed by the identity of the fragment layout documents, which {@link
+ * FragmentActivator} replaces whenever a fragment's layout or its locale changes, and by the set of
+ * channels in those layouts the user is not allowed to render.
+ */
+@ManagedResource("uPortal:section=Layout,name=MergedFragmentLayoutCache")
+@Service
+public class MergedFragmentLayoutCache implements MergedFragmentLayoutCacheMXBean {
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private Ehcache mergedFragmentsCache;
+
+    @Autowired
+    public void setMergedFragmentsCache(
+            @Qualifier("org.apereo.portal.layout.dlm.MergedFragmentLayoutCache.mergedFragments")
+                    Ehcache mergedFragmentsCache) {
+        this.mergedFragmentsCache = mergedFragmentsCache;
+    }
+
+    /**
+     * Equivalent to {@link ILFBuilder#constructILF(Document, List, IPerson)}, reusing the merged
+     * fragments of earlier users with the same fragments and channel permissions.
+     */
+    public Document constructILF(
+            Document PLF,
+            List<FragmentDefinition> fragmentDefinitions,
+            List<Document> applicableLayouts,
+            Locale locale,
+            IPerson person) {
+        final EntityIdentifier ei = person.getEntityIdentifier();
+        final IAuthorizationPrincipal ap =
+                AuthorizationServiceFacade.instance().newPrincipal(ei.getKey(), ei.getType());
+
+        final Set<String> deniedChannelIds = new TreeSet<>();
+        for (final String channelId : getChannelIds(applicableLayouts)) {
+            if (!ap.canRender(channelId)) {
+                deniedChannelIds.add(channelId);
+            }
+        }
+
+        final MergedFragmentsKey key = new MergedFragmentsKey(applicableLayouts, deniedChannelIds);
+        final Element element = this.mergedFragmentsCache.get(key);
+        MergedFragments mergedFragments;
+        if (element != null) {
+            mergedFragments = (MergedFragments) element.getObjectValue();
+            this.hitCount.incrementAndGet();
+            mergedFragments.hits.incrementAndGet();
+        } else {
+            this.missCount.incrementAndGet();
+            final Document document = ILFBuilder.createMergedFragments(applicableLayouts, ap);
+            final String signature =
+                    getSignature(fragmentDefinitions, locale, deniedChannelIds.size());
+            logger.debug("Merged fragments for new fragment set {}", signature);
+            mergedFragments = new MergedFragments(document, signature);
+            this.mergedFragmentsCache.put(new Element(key, mergedFragments));
+        }
+
+        return ILFBuilder.constructILF(PLF, mergedFragments.document);
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hits = this.hitCount.get();
+        final long lookups = hits + this.missCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public Map<String, Long> getHitCountsBySignature() {
+        final Map<String, Long> hitCounts = new LinkedHashMap<>();
+        for (final Object key : this.mergedFragmentsCache.getKeys()) {
+            final Element element = this.mergedFragmentsCache.getQuiet(key);
+            if (element != null) {
+                final MergedFragments mergedFragments = (MergedFragments) element.getObjectValue();
+                final Long hits = hitCounts.get(mergedFragments.signature);
+                hitCounts.put(
+                        mergedFragments.signature,
+                        mergedFragments.hits.get() + (hits != null ? hits : 0));
+            }
+        }
+        return hitCounts;
+    }
+
+    private static Set<String> getChannelIds(List<Document> layouts) {
+        final Set<String> channelIds = new LinkedHashSet<>();
+        for (final Document layout : layouts) {
+            addChannelIds(layout.getDocumentElement(), channelIds);
+        }
+        return channelIds;
+    }
+
+    /**
+     * Walks siblings rather than using NodeLists, the fragment layouts are shared between threads
+     * and sibling navigation does not touch the node list caches of the DOM implementation.
+     */
+    private static void addChannelIds(Node node, Set<String> channelIds) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof org.w3c.dom.Element) {
+                final org.w3c.dom.Element element = (org.w3c.dom.Element) child;
+                if (Constants.ELM_CHANNEL.equals(element.getTagName())) {
+                    channelIds.add(element.getAttribute("chanID"));
+                } else {
+                    addChannelIds(element, channelIds);
+                }
+            }
+        }
+    }
+
+    private static String getSignature(
+            List<FragmentDefinition> fragmentDefinitions, Locale locale, int deniedChannels) {
+        final StringBuilder signature = new StringBuilder();
+        for (final FragmentDefinition fragmentDefinition : fragmentDefinitions) {
+            if (signature.length() > 0) {
+                signature.append(',');
+            }
+            signature.append(fragmentDefinition.getName());
+        }
+        signature.append(" [").append(locale).append(", ");
+        signature.append(deniedChannels).append(" denied channels]");
+        return signature.toString();
+    }
+
+    /** Identifies merged fragments by layout document identity and denied channels */
+    private static final class MergedFragmentsKey {
+        private final List<Document> layouts;
+        private final Set<String> deniedChannelIds;
+        private final int hash;
+
+        MergedFragmentsKey(List<Document> layouts, Set<String> deniedChannelIds) {
+            this.layouts = Collections.unmodifiableList(new ArrayList<>(layouts));
+            this.deniedChannelIds = deniedChannelIds;
+
+            int hash = deniedChannelIds.hashCode();
+            for (final Document layout : this.layouts) {
+                hash = 31 * hash + System.identityHashCode(layout);
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MergedFragmentsKey)) {
+                return false;
+            }
+            final MergedFragmentsKey other = (MergedFragmentsKey) obj;
+            if (this.hash != other.hash || this.layouts.size() != other.layouts.size()) {
+                return false;
+            }
+            for (int i = 0; i < this.layouts.size(); i++) {
+                if (this.layouts.get(i) != other.layouts.get(i)) {
+                    return false;
+                }
+            }
+            return this.deniedChannelIds.equals(other.deniedChannelIds);
+        }
+    }
+
+    private static final class MergedFragments {
+        private final Document document;
+        private final String signature;
+        private final AtomicLong hits = new AtomicLong();
+
+        MergedFragments(Document document, String signature) {
+            this.document = document;
+            this.signature = signature;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.dlm;
+
+import java.util.Map;
+
+public interface MergedFragmentLayoutCacheMXBean {
+
+    /** @return Number of ILFs constructed from already merged fragments */
+    long getHitCount();
+
+    /** @return Number of ILFs that required merging the fragments */
+    long getMissCount();
+
+    /** @return Hits divided by all lookups, 0 if there were none */
+    double getHitRatio();
+
+    /**
+     * @return Number of hits for each currently cached fragment set, keyed by the fragment names,
+     *     locale and the number of channels the users of the entry cannot render
+     */
+    Map<String, Long> getHitCountsBySignature();
+}
@@ -16,8 +16,6 @@ package org.apereo.portal.layout.dlm;
 
 import com.google.common.cache.Cache;
 import java.io.StringWriter;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -43,6 +41,7 @@ import org.apereo.portal.layout.dao.IStylesheetUserPreferencesDao;
 import org.apereo.portal.layout.om.IStylesheetDescriptor;
 import org.apereo.portal.layout.om.IStylesheetUserPreferences;
 import org.apereo.portal.layout.simple.RDBMUserLayoutStore;
+import org.apereo.portal.layout.simple.UserLayoutRows;
 import org.apereo.portal.portlet.dao.IPortletEntityDao;
 import org.apereo.portal.portlet.dao.jpa.PortletPreferenceImpl;
 import org.apereo.portal.portlet.om.IPortletDefinition;
@@ -124,6 +123,7 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
     private IPortletEntityDao portletEntityDao;
     private IPortalDataHandlerService portalDataHandlerService;
     private IFragmentDefinitionUtils fragmentUtils;
+    private MergedFragmentLayoutCache mergedFragmentLayoutCache;
 
     @Autowired private NodeReferenceFactory nodeReferenceFactory;
 
@@ -153,6 +153,11 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
         this.stylesheetUserPreferencesDao = stylesheetUserPreferencesDao;
     }
 
+    @Autowired
+    public void setMergedFragmentLayoutCache(MergedFragmentLayoutCache mergedFragmentLayoutCache) {
+        this.mergedFragmentLayoutCache = mergedFragmentLayoutCache;
+    }
+
     @Autowired
     public void setFragmentDefinitionUtils(IFragmentDefinitionUtils utils) {
         this.fragmentUtils = utils;
@@ -1276,7 +1281,14 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
                     this.fragmentUtils.getFragmentDefinitionUserViewLayouts(
                             applicableFragmentDefinitions, locale);
             final IntegrationResult integrationResult = new IntegrationResult();
-            ILF = this.createCompositeILF(person, PLF, applicableLayouts, integrationResult);
+            ILF =
+                    this.createCompositeILF(
+                            person,
+                            PLF,
+                            applicableFragmentDefinitions,
+                            applicableLayouts,
+                            locale,
+                            integrationResult);
             // push optimizations made during merge back into db.
             if (integrationResult.isChangedPLF()) {
                 if (logger.isDebugEnabled()) {
@@ -1309,14 +1321,20 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
 
     /**
      * Creates a composite ILF (incorporated layouts fragment) by first using the applicable
-     * fragment layouts, then merging in the PLF (personal layout fragment).
+     * fragment layouts, then merging in the PLF (personal layout fragment). The merge of the
+     * fragment layouts is shared with other users that have the same fragments and channel
+     * permissions.
      */
     private Document createCompositeILF(
             final IPerson person,
             final Document PLF,
+            final List<FragmentDefinition> applicableFragmentDefinitions,
             final List<Document> applicableLayouts,
+            final Locale locale,
             final IntegrationResult integrationResult) {
-        final Document ILF = ILFBuilder.constructILF(PLF, applicableLayouts, person);
+        final Document ILF =
+                this.mergedFragmentLayoutCache.constructILF(
+                        PLF, applicableFragmentDefinitions, applicableLayouts, locale, person);
         PLFIntegrator.mergePLFintoILF(PLF, ILF, integrationResult);
         if (logger.isDebugEnabled()) {
             logger.debug(
@@ -1690,14 +1708,13 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
     }
 
     @Override
-    protected int saveStructure(Node node, PreparedStatement structStmt, PreparedStatement parmStmt)
-            throws SQLException {
+    protected int saveStructure(Node node, UserLayoutRows rows) {
         if (node == null) { // No more
             return 0;
         }
         if (node.getNodeName().equals("parameter")) {
             // parameter, skip it and go on to the next node
-            return this.saveStructure(node.getNextSibling(), structStmt, parmStmt);
+            return this.saveStructure(node.getNextSibling(), rows);
         }
         if (!(node instanceof Element)) {
             return 0;
@@ -1739,36 +1756,26 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
         }
 
         if (node.hasChildNodes()) {
-            childStructId = this.saveStructure(node.getFirstChild(), structStmt, parmStmt);
-        }
-        nextStructId = this.saveStructure(node.getNextSibling(), structStmt, parmStmt);
-        structStmt.clearParameters();
-        structStmt.setInt(1, saveStructId);
-        structStmt.setInt(2, nextStructId);
-        structStmt.setInt(3, childStructId);
-
-        final String externalId = structure.getAttribute("external_id");
-        if (externalId != null && externalId.trim().length() > 0) {
-            final Integer eID = new Integer(externalId);
-            structStmt.setInt(4, eID.intValue());
-        } else {
-            structStmt.setNull(4, java.sql.Types.NUMERIC);
-        }
-        if (isChannel) {
-            structStmt.setInt(5, chanId);
-            structStmt.setNull(6, java.sql.Types.VARCHAR);
-        } else {
-            structStmt.setNull(5, java.sql.Types.NUMERIC);
-            structStmt.setString(6, structure.getAttribute("name"));
-        }
-        final String structType = structure.getAttribute("type");
-        structStmt.setString(7, structType);
-        structStmt.setString(8, RDBMServices.dbFlag(xmlBool(structure.getAttribute("hidden"))));
-        structStmt.setString(9, RDBMServices.dbFlag(xmlBool(structure.getAttribute("immutable"))));
-        structStmt.setString(
-                10, RDBMServices.dbFlag(xmlBool(structure.getAttribute("unremovable"))));
-        logger.debug(structStmt.toString());
-        structStmt.executeUpdate();
+            childStructId = this.saveStructure(node.getFirstChild(), rows);
+        }
+        nextStructId = this.saveStructure(node.getNextSibling(), rows);
+
+        final String externalIdAttribute = structure.getAttribute("external_id");
+        String externalId = null;
+        if (externalIdAttribute != null && externalIdAttribute.trim().length() > 0) {
+            externalId = Integer.valueOf(externalIdAttribute).toString();
+        }
+        rows.addStruct(
+                saveStructId,
+                nextStructId,
+                childStructId,
+                externalId,
+                isChannel ? chanId : null,
+                isChannel ? null : structure.getAttribute("name"),
+                structure.getAttribute("type"),
+                RDBMServices.dbFlag(xmlBool(structure.getAttribute("hidden"))),
+                RDBMServices.dbFlag(xmlBool(structure.getAttribute("immutable"))),
+                RDBMServices.dbFlag(xmlBool(structure.getAttribute("unremovable"))));
 
         // code to persist extension attributes for dlm
         final NamedNodeMap attribs = node.getAttributes();
@@ -1781,12 +1788,7 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
                     && !name.equals(Constants.ATT_FRAGMENT)
                     && !name.equals(Constants.ATT_PRECEDENCE)) {
                 // a cp extension attribute. Push into param table.
-                parmStmt.clearParameters();
-                parmStmt.setInt(1, saveStructId);
-                parmStmt.setString(2, name);
-                parmStmt.setString(3, attrib.getNodeValue());
-                logger.debug(parmStmt.toString());
-                parmStmt.executeUpdate();
+                rows.addParam(saveStructId, name, attrib.getNodeValue());
             }
         }
         final NodeList parameters = node.getChildNodes();
@@ -1806,12 +1808,7 @@ public class RDBMDistributedLayoutStore extends RDBMUserLayoutStore {
                         // override only for adhoc or if diff from chan def
                         final IPortletDefinitionParameter cp = portletDef.getParameter(parmName);
                         if (cp == null || !cp.getValue().equals(parmValue)) {
-                            parmStmt.clearParameters();
-                            parmStmt.setInt(1, saveStructId);
-                            parmStmt.setString(2, parmName);
-                            parmStmt.setString(3, parmValue);
-                            logger.debug(parmStmt.toString());
-                            parmStmt.executeUpdate();
+                            rows.addParam(saveStructId, parmName, parmValue);
                         }
                     }
                 }
@@ -0,0 +1,290 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.dlm;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpSession;
+import org.apereo.portal.events.LogoutEvent;
+import org.apereo.portal.jpa.BasePortalJpaDao;
+import org.apereo.portal.security.IPerson;
+import org.apereo.portal.security.IPersonManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.security.web.session.HttpSessionDestroyedEvent;
+import org.springframework.stereotype.Service;
+
+/**
+ * Defers user layout saves so a burst of edits, like a user rearranging their tabs, results in one
+ * write of the layout instead of one per edit. Edits are applied to the in-memory layout right
+ * away, only writing it to the database is deferred.
+ *
+ * <p>A pending save is written once no further save has been requested for the same user and
+ * profile for the configured delay. Pending saves of a user are also written synchronously when
+ * the user logs out, their session ends or they log in again, and all pending saves are written
+ * when the portal shuts down, which is why this bean depends on the portal database beans so it is
+ * destroyed before them. A failed write is retried a few times before the changes are given up on,
+ * which is logged as an error. Edits made within the delay before the JVM dies without shutting
+ * down are lost.
+ */
+@ManagedResource("uPortal:section=Layout,name=UserLayoutWriteBehindQueue")
+@Service
+@DependsOn({
+    "transactionManager",
+    BasePortalJpaDao.PERSISTENCE_UNIT_NAME,
+    BasePortalJpaDao.PERSISTENCE_UNIT_NAME + "EntityManagerFactory"
+})
+public class UserLayoutWriteBehindQueue implements UserLayoutWriteBehindQueueMXBean {
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<String, PendingSave> pendingSaves = new ConcurrentHashMap<>();
+    private final AtomicLong saveRequests = new AtomicLong();
+    private final AtomicLong coalescedSaves = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    private boolean enabled = false;
+    private long delay = 2000;
+    private int threads = 2;
+    private ScheduledThreadPoolExecutor executorService;
+
+    @Value("${org.apereo.portal.layout.dlm.UserLayoutWriteBehindQueue.enabled:false}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Value("${org.apereo.portal.layout.dlm.UserLayoutWriteBehindQueue.delay:2000}")
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    @Value("${org.apereo.portal.layout.dlm.UserLayoutWriteBehindQueue.threads:2}")
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (this.enabled) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.executorService =
+                    new ScheduledThreadPoolExecutor(
+                            this.threads,
+                            runnable -> {
+                                final Thread thread =
+                                        new Thread(
+                                                runnable,
+                                                "uP-LayoutWriteBehind-"
+                                                        + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            // Saves still waiting out their delay are written by destroy() instead
+            this.executorService.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            logger.info("Layout saves are written behind with a delay of {}ms", this.delay);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (this.executorService != null) {
+            // Let writes that are already running finish rather than interrupting them
+            this.executorService.shutdown();
+            try {
+                if (!this.executorService.awaitTermination(
+                        SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warn(
+                            "Layout writes still running after {} seconds, writing the pending"
+                                    + " saves anyway",
+                            SHUTDOWN_WAIT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (final String key : this.pendingSaves.keySet()) {
+            this.write(key, false);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.executorService != null;
+    }
+
+    @Override
+    public long getDelay() {
+        return this.delay;
+    }
+
+    /**
+     * Defers the save of the layout of the user and profile, replacing any save of it that is
+     * already pending. Must only be called when {@link #isEnabled()}.
+     *
+     * @param save Writes the current in-memory layout to the database
+     */
+    public void saveLater(String userName, int profileId, Runnable save) {
+        this.saveRequests.incrementAndGet();
+
+        final String key = userName + ":" + profileId;
+        final PendingSave pendingSave = new PendingSave(userName, save);
+        final PendingSave replaced = this.pendingSaves.put(key, pendingSave);
+        if (replaced != null) {
+            this.coalescedSaves.incrementAndGet();
+        }
+        this.schedule(key, pendingSave);
+    }
+
+    /** Synchronously writes the pending layout saves of the user, if there are any */
+    public void flush(String userName) {
+        for (final Map.Entry<String, PendingSave> entry : this.pendingSaves.entrySet()) {
+            if (entry.getValue().userName.equals(userName)) {
+                this.write(entry.getKey(), false);
+            }
+        }
+    }
+
+    /**
+     * Drops the pending layout saves of the user without writing them, used when the layout in the
+     * database is replaced and the pending in-memory layout must not be written over it. A write
+     * that is already running is not stopped.
+     */
+    public void discard(String userName) {
+        for (final Map.Entry<String, PendingSave> entry : this.pendingSaves.entrySet()) {
+            if (entry.getValue().userName.equals(userName)
+                    && this.pendingSaves.remove(entry.getKey(), entry.getValue())) {
+                logger.info("Discarded the pending save of layout {}", entry.getKey());
+            }
+        }
+    }
+
+    @EventListener
+    public void onLogout(LogoutEvent event) {
+        this.flush(event.getUserName());
+    }
+
+    @EventListener
+    public void onSessionDestroyed(HttpSessionDestroyedEvent event) {
+        final HttpSession session = event.getSession();
+        final IPerson person = (IPerson) session.getAttribute(IPersonManager.PERSON_SESSION_KEY);
+        if (person != null) {
+            this.flush(person.getUserName());
+        }
+    }
+
+    @Override
+    public long getSaveRequests() {
+        return this.saveRequests.get();
+    }
+
+    @Override
+    public long getCoalescedSaves() {
+        return this.coalescedSaves.get();
+    }
+
+    @Override
+    public long getWrites() {
+        return this.writes.get();
+    }
+
+    @Override
+    public long getFailedWrites() {
+        return this.failedWrites.get();
+    }
+
+    @Override
+    public int getPendingSaves() {
+        return this.pendingSaves.size();
+    }
+
+    private void schedule(final String key, final PendingSave pendingSave) {
+        try {
+            this.executorService.schedule(
+                    () -> {
+                        // Only write if no later save replaced this one, the later one has its own
+                        // scheduled write
+                        if (this.pendingSaves.get(key) == pendingSave) {
+                            this.write(key, true);
+                        }
+                    },
+                    this.delay,
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the save stays pending and is written by destroy()
+            logger.debug("Not scheduling the save of layout {} while shutting down", key);
+        }
+    }
+
+    private void write(String key, boolean retry) {
+        final PendingSave pendingSave = this.pendingSaves.remove(key);
+        if (pendingSave == null) {
+            // Already written by another thread
+            return;
+        }
+
+        try {
+            pendingSave.save.run();
+            this.writes.incrementAndGet();
+        } catch (RuntimeException e) {
+            this.failedWrites.incrementAndGet();
+            final int attempts = pendingSave.attempts.incrementAndGet();
+            if (retry
+                    && attempts < MAX_WRITE_ATTEMPTS
+                    && this.pendingSaves.putIfAbsent(key, pendingSave) == null) {
+                logger.warn(
+                        "Failed to write layout {} on attempt {}, it will be retried",
+                        key,
+                        attempts,
+                        e);
+                this.schedule(key, pendingSave);
+            } else if (this.pendingSaves.containsKey(key)) {
+                logger.warn(
+                        "Failed to write layout {}, a newer pending save will write it", key, e);
+            } else {
+                logger.error(
+                        "Failed to write layout {} after {} attempts, the changes are lost",
+                        key,
+                        attempts,
+                        e);
+            }
+        }
+    }
+
+    private static final class PendingSave {
+        private final String userName;
+        private final Runnable save;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        PendingSave(String userName, Runnable save) {
+            this.userName = userName;
+            this.save = save;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.dlm;
+
+public interface UserLayoutWriteBehindQueueMXBean {
+
+    /** @return If layout saves are deferred and coalesced */
+    boolean isEnabled();
+
+    /** @return Milliseconds a layout save is deferred to coalesce it with following saves */
+    long getDelay();
+
+    /** @return Number of layout saves requested while write-behind was enabled */
+    long getSaveRequests();
+
+    /** @return Number of requested saves folded into a save that was already pending */
+    long getCoalescedSaves();
+
+    /** @return Number of layouts written to the database */
+    long getWrites();
+
+    /** @return Number of layout writes that failed */
+    long getFailedWrites();
+
+    /** @return Number of layouts waiting to be written */
+    int getPendingSaves();
+}
@@ -73,11 +73,21 @@ public class GroupMembershipEvaluator extends Evaluator {
                             + "supported at this time.");
         }
         this.groupName = name;
-        this.groupKey = getGroupKey();
+        this.groupKey = findGroupKey();
+    }
+
+    /** @return The key of the group this evaluator tests membership of */
+    public String getGroupKey() {
+        return groupKey;
+    }
+
+    /** @return true if membership of any descendant group also satisfies this evaluator */
+    public boolean isDeepMemberOfMode() {
+        return evaluatorMode == DEEP_MEMBER_OF_MODE;
     }
 
     // Internal search, thus case sensitive.
-    private String getGroupKey() {
+    private String findGroupKey() {
         EntityIdentifier[] groups = null;
         try {
             groups =
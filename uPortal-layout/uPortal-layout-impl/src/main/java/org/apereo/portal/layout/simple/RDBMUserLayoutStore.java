@@ -1085,9 +1085,12 @@ public abstract class RDBMUserLayoutStore implements IUserLayoutStore, Initializ
 
     protected abstract Element getStructure(Document doc, LayoutStructure ls);
 
-    protected abstract int saveStructure(
-            Node node, PreparedStatement structStmt, PreparedStatement parmStmt)
-            throws SQLException;
+    /**
+     * Adds the rows of the node, its children and its following siblings to the layout rows.
+     *
+     * @return The struct id of the node, or 0 if there is no node to save
+     */
+    protected abstract int saveStructure(Node node, UserLayoutRows rows);
 
     /** Save the user layout. */
     @Override
@@ -1132,64 +1135,23 @@ public abstract class RDBMUserLayoutStore implements IUserLayoutStore, Initializ
                                                 firstLayout = true;
                                             }
 
-                                            String sql =
-                                                    "DELETE FROM UP_LAYOUT_PARAM WHERE USER_ID=? AND LAYOUT_ID=?";
-                                            PreparedStatement pstmt = con.prepareStatement(sql);
-                                            try {
-                                                pstmt.clearParameters();
-                                                pstmt.setInt(1, userId);
-                                                pstmt.setInt(2, layoutId);
-                                                logger.debug(sql);
-                                                pstmt.executeUpdate();
-                                            } finally {
-                                                pstmt.close();
-                                            }
-
-                                            sql =
-                                                    "DELETE FROM UP_LAYOUT_STRUCT WHERE USER_ID=? AND LAYOUT_ID=?";
-                                            pstmt = con.prepareStatement(sql);
-                                            try {
-                                                pstmt.clearParameters();
-                                                pstmt.setInt(1, userId);
-                                                pstmt.setInt(2, layoutId);
-                                                logger.debug(sql);
-                                                pstmt.executeUpdate();
-                                            } finally {
-                                                pstmt.close();
-                                            }
-
-                                            int firstStructId;
-                                            try (PreparedStatement structStmt =
-                                                            con.prepareStatement(
-                                                                    "INSERT INTO UP_LAYOUT_STRUCT "
-                                                                            + "(USER_ID, LAYOUT_ID, STRUCT_ID, NEXT_STRUCT_ID, CHLD_STRUCT_ID,EXTERNAL_ID,CHAN_ID,NAME,TYPE,HIDDEN,IMMUTABLE,UNREMOVABLE) "
-                                                                            + "VALUES ("
-                                                                            + userId
-                                                                            + ","
-                                                                            + layoutId
-                                                                            + ",?,?,?,?,?,?,?,?,?,?)");
-                                                    PreparedStatement parmStmt =
-                                                            con.prepareStatement(
-                                                                    "INSERT INTO UP_LAYOUT_PARAM "
-                                                                            + "(USER_ID, LAYOUT_ID, STRUCT_ID, STRUCT_PARM_NM, STRUCT_PARM_VAL) "
-                                                                            + "VALUES ("
-                                                                            + userId
-                                                                            + ","
-                                                                            + layoutId
-                                                                            + ",?,?,?)")) {
-                                                firstStructId =
-                                                        saveStructure(
-                                                                layoutXML
-                                                                        .getFirstChild()
-                                                                        .getFirstChild(),
-                                                                structStmt,
-                                                                parmStmt);
-                                            }
+                                            // Only write the rows that changed since the
+                                            // layout was last saved
+                                            final UserLayoutRows layoutRows = new UserLayoutRows();
+                                            final Node rootNode =
+                                                    layoutXML.getFirstChild().getFirstChild();
+                                            final int firstStructId =
+                                                    saveStructure(rootNode, layoutRows);
+                                            layoutRows.save(
+                                                    con,
+                                                    userId,
+                                                    layoutId,
+                                                    UserLayoutRows.load(con, userId, layoutId));
 
                                             // Check to see if the user has a matching layout
-                                            sql =
+                                            String sql =
                                                     "SELECT * FROM UP_USER_LAYOUT WHERE USER_ID=? AND LAYOUT_ID=?";
-                                            pstmt = con.prepareStatement(sql);
+                                            PreparedStatement pstmt = con.prepareStatement(sql);
                                             try {
                                                 pstmt.clearParameters();
                                                 pstmt.setInt(1, userId);
@@ -0,0 +1,301 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.simple;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apereo.portal.utils.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The UP_LAYOUT_STRUCT and UP_LAYOUT_PARAM rows of one user layout. A layout is saved by building
+ * its rows and writing only the ones that differ from the rows already in the database, so small
+ * edits to a large layout result in a handful of statements rather than deleting and re-inserting
+ * every node.
+ */
+public class UserLayoutRows {
+    private static final String SELECT_STRUCT_SQL =
+            "SELECT STRUCT_ID, NEXT_STRUCT_ID, CHLD_STRUCT_ID, EXTERNAL_ID, CHAN_ID, NAME, TYPE, "
+                    + "HIDDEN, IMMUTABLE, UNREMOVABLE "
+                    + "FROM UP_LAYOUT_STRUCT WHERE USER_ID=? AND LAYOUT_ID=?";
+    private static final String INSERT_STRUCT_SQL =
+            "INSERT INTO UP_LAYOUT_STRUCT (NEXT_STRUCT_ID, CHLD_STRUCT_ID, EXTERNAL_ID, CHAN_ID, "
+                    + "NAME, TYPE, HIDDEN, IMMUTABLE, UNREMOVABLE, USER_ID, LAYOUT_ID, STRUCT_ID) "
+                    + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?)";
+    private static final String UPDATE_STRUCT_SQL =
+            "UPDATE UP_LAYOUT_STRUCT SET NEXT_STRUCT_ID=?, CHLD_STRUCT_ID=?, EXTERNAL_ID=?, "
+                    + "CHAN_ID=?, NAME=?, TYPE=?, HIDDEN=?, IMMUTABLE=?, UNREMOVABLE=? "
+                    + "WHERE USER_ID=? AND LAYOUT_ID=? AND STRUCT_ID=?";
+    private static final String DELETE_STRUCT_SQL =
+            "DELETE FROM UP_LAYOUT_STRUCT WHERE USER_ID=? AND LAYOUT_ID=? AND STRUCT_ID=?";
+
+    private static final String SELECT_PARAM_SQL =
+            "SELECT STRUCT_ID, STRUCT_PARM_NM, STRUCT_PARM_VAL "
+                    + "FROM UP_LAYOUT_PARAM WHERE USER_ID=? AND LAYOUT_ID=?";
+    private static final String INSERT_PARAM_SQL =
+            "INSERT INTO UP_LAYOUT_PARAM (STRUCT_PARM_VAL, USER_ID, LAYOUT_ID, STRUCT_ID, "
+                    + "STRUCT_PARM_NM) VALUES (?,?,?,?,?)";
+    private static final String UPDATE_PARAM_SQL =
+            "UPDATE UP_LAYOUT_PARAM SET STRUCT_PARM_VAL=? "
+                    + "WHERE USER_ID=? AND LAYOUT_ID=? AND STRUCT_ID=? AND STRUCT_PARM_NM=?";
+    private static final String DELETE_PARAM_SQL =
+            "DELETE FROM UP_LAYOUT_PARAM "
+                    + "WHERE USER_ID=? AND LAYOUT_ID=? AND STRUCT_ID=? AND STRUCT_PARM_NM=?";
+
+    private static final int[] STRUCT_COLUMN_TYPES = {
+        Types.INTEGER, // NEXT_STRUCT_ID
+        Types.INTEGER, // CHLD_STRUCT_ID
+        Types.VARCHAR, // EXTERNAL_ID
+        Types.INTEGER, // CHAN_ID
+        Types.VARCHAR, // NAME
+        Types.VARCHAR, // TYPE
+        Types.VARCHAR, // HIDDEN
+        Types.VARCHAR, // IMMUTABLE
+        Types.VARCHAR // UNREMOVABLE
+    };
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(UserLayoutRows.class);
+
+    /** Column values of each UP_LAYOUT_STRUCT row in STRUCT_COLUMN_TYPES order, by STRUCT_ID */
+    private final Map<Integer, List<Object>> structs = new LinkedHashMap<>();
+
+    /** STRUCT_PARM_VAL of each UP_LAYOUT_PARAM row, by STRUCT_ID and STRUCT_PARM_NM */
+    private final Map<Tuple<Integer, String>, String> params = new LinkedHashMap<>();
+
+    /** Reads the rows currently stored for the layout. */
+    public static UserLayoutRows load(Connection con, int userId, int layoutId)
+            throws SQLException {
+        final UserLayoutRows rows = new UserLayoutRows();
+
+        try (PreparedStatement ps = con.prepareStatement(SELECT_STRUCT_SQL)) {
+            ps.setInt(1, userId);
+            ps.setInt(2, layoutId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    final List<Object> values = new ArrayList<>(STRUCT_COLUMN_TYPES.length);
+                    for (int i = 0; i < STRUCT_COLUMN_TYPES.length; i++) {
+                        final int column = i + 2;
+                        if (STRUCT_COLUMN_TYPES[i] == Types.INTEGER) {
+                            final int value = rs.getInt(column);
+                            values.add(rs.wasNull() ? null : value);
+                        } else {
+                            values.add(rs.getString(column));
+                        }
+                    }
+                    rows.structs.put(rs.getInt(1), values);
+                }
+            }
+        }
+
+        try (PreparedStatement ps = con.prepareStatement(SELECT_PARAM_SQL)) {
+            ps.setInt(1, userId);
+            ps.setInt(2, layoutId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.params.put(new Tuple<>(rs.getInt(1), rs.getString(2)), rs.getString(3));
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    /** Adds the UP_LAYOUT_STRUCT row of a layout node, <code>null</code> values are NULL columns */
+    public void addStruct(
+            int structId,
+            int nextStructId,
+            int childStructId,
+            String externalId,
+            Integer chanId,
+            String name,
+            String type,
+            String hidden,
+            String immutable,
+            String unremovable) {
+        this.structs.put(
+                structId,
+                Arrays.asList(
+                        nextStructId,
+                        childStructId,
+                        externalId,
+                        chanId,
+                        name,
+                        type,
+                        hidden,
+                        immutable,
+                        unremovable));
+    }
+
+    /** Adds a UP_LAYOUT_PARAM row of a layout node */
+    public void addParam(int structId, String name, String value) {
+        this.params.put(new Tuple<>(structId, name), value);
+    }
+
+    /**
+     * Writes the differences between these rows and the persisted rows of the layout.
+     *
+     * @param persisted The rows currently stored for the layout, as returned by {@link #load}
+     * @return The number of rows inserted, updated or deleted
+     */
+    public int save(Connection con, int userId, int layoutId, UserLayoutRows persisted)
+            throws SQLException {
+        int changes = 0;
+
+        // Parameters first, they belong to the struct rows that may be deleted
+        try (BatchWriter deletes = new BatchWriter(con, DELETE_PARAM_SQL)) {
+            for (final Tuple<Integer, String> key : persisted.params.keySet()) {
+                if (!this.params.containsKey(key)) {
+                    deletes.add(userId, layoutId, key.first, key.second);
+                }
+            }
+            changes += deletes.getCount();
+        }
+        try (BatchWriter deletes = new BatchWriter(con, DELETE_STRUCT_SQL)) {
+            for (final Integer structId : persisted.structs.keySet()) {
+                if (!this.structs.containsKey(structId)) {
+                    deletes.add(userId, layoutId, structId);
+                }
+            }
+            changes += deletes.getCount();
+        }
+
+        try (BatchWriter updates = new BatchWriter(con, UPDATE_STRUCT_SQL);
+                BatchWriter inserts = new BatchWriter(con, INSERT_STRUCT_SQL)) {
+            for (final Map.Entry<Integer, List<Object>> struct : this.structs.entrySet()) {
+                final List<Object> persistedValues = persisted.structs.get(struct.getKey());
+                if (persistedValues == null) {
+                    inserts.addStruct(struct.getValue(), userId, layoutId, struct.getKey());
+                } else if (!persistedValues.equals(struct.getValue())) {
+                    updates.addStruct(struct.getValue(), userId, layoutId, struct.getKey());
+                }
+            }
+            changes += updates.getCount() + inserts.getCount();
+        }
+
+        try (BatchWriter updates = new BatchWriter(con, UPDATE_PARAM_SQL);
+                BatchWriter inserts = new BatchWriter(con, INSERT_PARAM_SQL)) {
+            for (final Map.Entry<Tuple<Integer, String>, String> param : this.params.entrySet()) {
+                final Tuple<Integer, String> key = param.getKey();
+                final String persistedValue = persisted.params.get(key);
+                if (persistedValue == null) {
+                    inserts.add(param.getValue(), userId, layoutId, key.first, key.second);
+                } else if (!persistedValue.equals(param.getValue())) {
+                    updates.add(param.getValue(), userId, layoutId, key.first, key.second);
+                }
+            }
+            changes += updates.getCount() + inserts.getCount();
+        }
+
+        logger.debug(
+                "Saved layout {} of user {}, {} of {} struct and {} param rows changed",
+                layoutId,
+                userId,
+                changes,
+                this.structs.size(),
+                this.params.size());
+        return changes;
+    }
+
+    /**
+     * Adds rows to a JDBC batch, executing it every {@link #BATCH_SIZE} rows and when closed. The
+     * statement is only prepared once the first row is added.
+     */
+    private static final class BatchWriter implements AutoCloseable {
+        private final Connection con;
+        private final String sql;
+        private PreparedStatement ps;
+        private int count;
+
+        BatchWriter(Connection con, String sql) {
+            this.con = con;
+            this.sql = sql;
+        }
+
+        /** Adds a row of the struct column values followed by the key columns */
+        void addStruct(List<Object> values, int userId, int layoutId, int structId)
+                throws SQLException {
+            final PreparedStatement ps = this.getStatement();
+            for (int i = 0; i < STRUCT_COLUMN_TYPES.length; i++) {
+                final Object value = values.get(i);
+                if (value == null) {
+                    ps.setNull(i + 1, STRUCT_COLUMN_TYPES[i]);
+                } else {
+                    ps.setObject(i + 1, value, STRUCT_COLUMN_TYPES[i]);
+                }
+            }
+            final int keyIndex = STRUCT_COLUMN_TYPES.length;
+            ps.setInt(keyIndex + 1, userId);
+            ps.setInt(keyIndex + 2, layoutId);
+            ps.setInt(keyIndex + 3, structId);
+            this.addBatch();
+        }
+
+        /** Adds a row of non-null Integer and String values */
+        void add(Object... values) throws SQLException {
+            final PreparedStatement ps = this.getStatement();
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] instanceof Integer) {
+                    ps.setInt(i + 1, (Integer) values[i]);
+                } else {
+                    ps.setString(i + 1, (String) values[i]);
+                }
+            }
+            this.addBatch();
+        }
+
+        int getCount() {
+            return this.count;
+        }
+
+        private PreparedStatement getStatement() throws SQLException {
+            if (this.ps == null) {
+                this.ps = this.con.prepareStatement(this.sql);
+            }
+            return this.ps;
+        }
+
+        private void addBatch() throws SQLException {
+            logger.debug(this.sql);
+            this.ps.addBatch();
+            if (++this.count % BATCH_SIZE == 0) {
+                this.ps.executeBatch();
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (this.ps != null) {
+                try {
+                    if (this.count % BATCH_SIZE != 0) {
+                        this.ps.executeBatch();
+                    }
+                } finally {
+                    this.ps.close();
+                }
+            }
+        }
+    }
+}
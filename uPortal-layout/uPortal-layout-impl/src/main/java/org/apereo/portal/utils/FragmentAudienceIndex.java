@@ -0,0 +1,376 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.utils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.apereo.portal.groups.GroupsException;
+import org.apereo.portal.groups.IEntityGroup;
+import org.apereo.portal.groups.IGroupMember;
+import org.apereo.portal.layout.dlm.Evaluator;
+import org.apereo.portal.layout.dlm.FragmentDefinition;
+import org.apereo.portal.layout.dlm.providers.AllUsersEvaluatorFactory;
+import org.apereo.portal.layout.dlm.providers.AttributeEvaluator;
+import org.apereo.portal.layout.dlm.providers.EvaluatorGroup;
+import org.apereo.portal.layout.dlm.providers.GroupMembershipEvaluator;
+import org.apereo.portal.layout.dlm.providers.GuestUserEvaluatorFactory;
+import org.apereo.portal.layout.dlm.providers.Paren;
+import org.apereo.portal.security.IPerson;
+import org.apereo.portal.services.GroupService;
+
+/**
+ * Compiled form of the audiences of a list of {@link FragmentDefinition}s.
+ *
+ * <p>Fragments whose audience can only be satisfied by members of specific groups are indexed by
+ * those group keys so only the fragments targeting one of the user's groups are evaluated. {@link
+ * GroupMembershipEvaluator}s are answered from the user's parent and ancestor group keys, which are
+ * resolved at most once per {@link PersonAudience}, instead of searching the group hierarchy once
+ * per evaluator. All other evaluators are delegated to {@link Evaluator#isApplicable(IPerson)}.
+ */
+final class FragmentAudienceIndex {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<FragmentDefinition> definitions;
+    private final long signature;
+    private final Map<String, List<Integer>> fragmentsByGroupKey;
+    private final BitSet unindexedFragments = new BitSet();
+    private final BitSet requestDependentFragments = new BitSet();
+
+    FragmentAudienceIndex(List<FragmentDefinition> definitions, long signature) {
+        this.definitions = new ArrayList<FragmentDefinition>(definitions);
+        this.signature = signature;
+
+        final Map<String, List<Integer>> fragmentsByGroupKey = new HashMap<String, List<Integer>>();
+        for (int index = 0; index < this.definitions.size(); index++) {
+            final FragmentDefinition definition = this.definitions.get(index);
+
+            if (!isPersonDependentOnly(definition)) {
+                this.requestDependentFragments.set(index);
+            }
+
+            final Set<String> requiredGroupKeys = getRequiredGroupKeys(definition);
+            if (requiredGroupKeys == null) {
+                this.unindexedFragments.set(index);
+            } else {
+                for (final String groupKey : requiredGroupKeys) {
+                    List<Integer> fragments = fragmentsByGroupKey.get(groupKey);
+                    if (fragments == null) {
+                        fragments = new ArrayList<Integer>();
+                        fragmentsByGroupKey.put(groupKey, fragments);
+                    }
+                    fragments.add(index);
+                }
+            }
+        }
+        this.fragmentsByGroupKey = fragmentsByGroupKey;
+    }
+
+    /**
+     * Computes a 64 bit hash that changes whenever the name, precedence or audience of any of the
+     * definitions changes.
+     */
+    static long computeSignature(List<FragmentDefinition> definitions) {
+        long signature = FNV_OFFSET_BASIS;
+        for (final FragmentDefinition definition : definitions) {
+            signature = hash(signature, Objects.hashCode(definition.getName()));
+            signature = hash(signature, Double.hashCode(definition.getPrecedence()));
+            signature = hashEvaluators(signature, definition.getEvaluators());
+        }
+        return signature;
+    }
+
+    long getSignature() {
+        return this.signature;
+    }
+
+    List<FragmentDefinition> getDefinitions() {
+        return this.definitions;
+    }
+
+    /**
+     * @return true if the audience of the fragment at the index depends on more than the person,
+     *     for example on the current request, and its result must not be reused
+     */
+    boolean isRequestDependent(int index) {
+        return this.requestDependentFragments.get(index);
+    }
+
+    /** @return The indexes of the fragments that could apply to the person */
+    BitSet getCandidates(PersonAudience audience) {
+        final BitSet candidates = (BitSet) this.unindexedFragments.clone();
+        if (!this.fragmentsByGroupKey.isEmpty()) {
+            for (final String groupKey : audience.getAncestorGroupKeys()) {
+                final List<Integer> fragments = this.fragmentsByGroupKey.get(groupKey);
+                if (fragments != null) {
+                    for (final Integer index : fragments) {
+                        candidates.set(index);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /** Equivalent to {@link FragmentDefinition#isApplicable(IPerson)} for the fragment at index */
+    boolean isApplicable(int index, PersonAudience audience) {
+        final FragmentDefinition definition = this.definitions.get(index);
+        final List<Evaluator> evaluators = definition.getEvaluators();
+        if (evaluators == null) {
+            return false;
+        }
+
+        try {
+            return isAnyApplicable(evaluators, audience);
+        } catch (Exception e) {
+            throw new RuntimeException(
+                    "Failed to evaluate whether fragment '"
+                            + definition.getName()
+                            + "' is applicable to user '"
+                            + audience.getPerson().getUserName()
+                            + "'",
+                    e);
+        }
+    }
+
+    private static boolean isAnyApplicable(List<Evaluator> evaluators, PersonAudience audience) {
+        for (final Evaluator evaluator : evaluators) {
+            if (isApplicable(evaluator, audience)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isApplicable(Evaluator evaluator, PersonAudience audience) {
+        if (evaluator instanceof GroupMembershipEvaluator) {
+            final GroupMembershipEvaluator groupEvaluator = (GroupMembershipEvaluator) evaluator;
+            final String groupKey = groupEvaluator.getGroupKey();
+            if (groupKey == null) {
+                return false;
+            }
+            if (groupEvaluator.isDeepMemberOfMode()) {
+                return audience.getAncestorGroupKeys().contains(groupKey);
+            }
+            return audience.getParentGroupKeys().contains(groupKey);
+        }
+
+        if (evaluator instanceof Paren) {
+            final Paren paren = (Paren) evaluator;
+            switch (paren.getType()) {
+                case AND:
+                    for (final Evaluator child : paren.getEvaluators()) {
+                        if (!isApplicable(child, audience)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                case NOT:
+                    return !isAnyApplicable(paren.getEvaluators(), audience);
+                default:
+                    return isAnyApplicable(paren.getEvaluators(), audience);
+            }
+        }
+
+        return evaluator.isApplicable(audience.getPerson());
+    }
+
+    /**
+     * @return The group keys of which the user must be a (deep) member for the evaluator to be
+     *     applicable, null if the evaluator can be applicable regardless of group membership
+     */
+    private static Set<String> getRequiredGroupKeys(Evaluator evaluator) {
+        if (evaluator instanceof GroupMembershipEvaluator) {
+            final String groupKey = ((GroupMembershipEvaluator) evaluator).getGroupKey();
+            if (groupKey == null) {
+                return Collections.emptySet();
+            }
+            return Collections.singleton(groupKey);
+        }
+
+        if (evaluator instanceof FragmentDefinition) {
+            final List<Evaluator> evaluators = ((FragmentDefinition) evaluator).getEvaluators();
+            if (evaluators == null) {
+                return Collections.emptySet();
+            }
+            return getRequiredGroupKeys(evaluators);
+        }
+
+        if (evaluator instanceof Paren) {
+            final Paren paren = (Paren) evaluator;
+            switch (paren.getType()) {
+                case OR:
+                    return getRequiredGroupKeys(paren.getEvaluators());
+                case AND:
+                    // Membership of any one operand's groups is required, use the most selective
+                    Set<String> requiredGroupKeys = null;
+                    for (final Evaluator child : paren.getEvaluators()) {
+                        final Set<String> childGroupKeys = getRequiredGroupKeys(child);
+                        if (childGroupKeys != null
+                                && (requiredGroupKeys == null
+                                        || childGroupKeys.size() < requiredGroupKeys.size())) {
+                            requiredGroupKeys = childGroupKeys;
+                        }
+                    }
+                    return requiredGroupKeys;
+                default:
+                    return null;
+            }
+        }
+
+        return null;
+    }
+
+    /** Union of the required group keys of OR-ed evaluators */
+    private static Set<String> getRequiredGroupKeys(List<Evaluator> evaluators) {
+        final Set<String> requiredGroupKeys = new HashSet<String>();
+        for (final Evaluator evaluator : evaluators) {
+            final Set<String> groupKeys = getRequiredGroupKeys(evaluator);
+            if (groupKeys == null) {
+                return null;
+            }
+            requiredGroupKeys.addAll(groupKeys);
+        }
+        return requiredGroupKeys;
+    }
+
+    /** @return true if the evaluator's result only depends on the person and its groups */
+    private static boolean isPersonDependentOnly(Evaluator evaluator) {
+        if (evaluator instanceof EvaluatorGroup) {
+            final List<Evaluator> evaluators = ((EvaluatorGroup) evaluator).getEvaluators();
+            if (evaluators != null) {
+                for (final Evaluator child : evaluators) {
+                    if (!isPersonDependentOnly(child)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        return evaluator instanceof GroupMembershipEvaluator
+                || evaluator instanceof AttributeEvaluator
+                || evaluator instanceof AllUsersEvaluatorFactory
+                || evaluator instanceof GuestUserEvaluatorFactory;
+    }
+
+    /** FNV-1a step, mixes the value into the hash */
+    private static long hash(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    private static long hashEvaluators(long signature, List<Evaluator> evaluators) {
+        // Opening and closing markers keep nested and sibling evaluators apart
+        signature = hash(signature, '(');
+        if (evaluators != null) {
+            for (final Evaluator evaluator : evaluators) {
+                signature = hashEvaluator(signature, evaluator);
+            }
+        }
+        return hash(signature, ')');
+    }
+
+    private static long hashEvaluator(long signature, Evaluator evaluator) {
+        signature = hash(signature, evaluator.getClass().getName().hashCode());
+        if (evaluator instanceof GroupMembershipEvaluator) {
+            final GroupMembershipEvaluator groupEvaluator = (GroupMembershipEvaluator) evaluator;
+            signature = hash(signature, Boolean.hashCode(groupEvaluator.isDeepMemberOfMode()));
+            return hash(signature, Objects.hashCode(groupEvaluator.getGroupKey()));
+        }
+        if (evaluator instanceof EvaluatorGroup) {
+            if (evaluator instanceof Paren) {
+                signature = hash(signature, ((Paren) evaluator).getType().ordinal());
+            }
+            return hashEvaluators(signature, ((EvaluatorGroup) evaluator).getEvaluators());
+        }
+        try {
+            return hash(signature, Objects.hashCode(evaluator.getSummary()));
+        } catch (UnsupportedOperationException e) {
+            return hash(signature, Long.hashCode(evaluator.getId()));
+        }
+    }
+
+    /**
+     * The person a set of fragments is being evaluated for, group memberships are resolved lazily
+     * and only once.
+     */
+    static final class PersonAudience {
+        private final IPerson person;
+        private IGroupMember groupMember;
+        private Set<String> parentGroupKeys;
+        private Set<String> ancestorGroupKeys;
+
+        PersonAudience(IPerson person) {
+            this.person = person;
+        }
+
+        IPerson getPerson() {
+            return this.person;
+        }
+
+        Set<String> getParentGroupKeys() {
+            if (this.parentGroupKeys == null) {
+                try {
+                    this.parentGroupKeys = getGroupKeys(this.getGroupMember().getParentGroups());
+                } catch (GroupsException e) {
+                    throw new RuntimeException(
+                            "Unable to determine the groups of user '"
+                                    + this.person.getUserName()
+                                    + "'",
+                            e);
+                }
+            }
+            return this.parentGroupKeys;
+        }
+
+        Set<String> getAncestorGroupKeys() {
+            if (this.ancestorGroupKeys == null) {
+                try {
+                    this.ancestorGroupKeys =
+                            getGroupKeys(this.getGroupMember().getAncestorGroups());
+                } catch (GroupsException e) {
+                    throw new RuntimeException(
+                            "Unable to determine the groups of user '"
+                                    + this.person.getUserName()
+                                    + "'",
+                            e);
+                }
+            }
+            return this.ancestorGroupKeys;
+        }
+
+        private IGroupMember getGroupMember() throws GroupsException {
+            if (this.groupMember == null) {
+                this.groupMember = GroupService.getGroupMember(this.person.getEntityIdentifier());
+            }
+            return this.groupMember;
+        }
+
+        private static Set<String> getGroupKeys(Set<IEntityGroup> groups) {
+            final Set<String> groupKeys = new HashSet<String>(groups.size() * 2);
+            for (final IEntityGroup group : groups) {
+                groupKeys.add(group.getKey());
+            }
+            return groupKeys;
+        }
+    }
+}
@@ -15,20 +15,26 @@
 package org.apereo.portal.utils;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
 import org.apereo.portal.layout.dlm.ConfigurationLoader;
 import org.apereo.portal.layout.dlm.FragmentActivator;
 import org.apereo.portal.layout.dlm.FragmentDefinition;
 import org.apereo.portal.layout.dlm.UserView;
 import org.apereo.portal.security.IPerson;
+import org.apereo.portal.utils.cache.CacheKey;
+import org.apereo.portal.utils.cache.UsernameTaggedCacheEntryPurger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.w3c.dom.Document;
 
@@ -43,6 +49,8 @@ public class FragmentDefinitionUtils implements IFragmentDefinitionUtils {
 
     private ConfigurationLoader configurationLoader;
     private FragmentActivator fragmentActivator;
+    private Ehcache applicableFragmentsCache;
+    private volatile FragmentAudienceIndex audienceIndex;
 
     @Autowired
     public void setConfigurationLoader(ConfigurationLoader configurationLoader) {
@@ -54,6 +62,13 @@ public class FragmentDefinitionUtils implements IFragmentDefinitionUtils {
         this.fragmentActivator = fragmentActivator;
     }
 
+    @Autowired
+    public void setApplicableFragmentsCache(
+            @Qualifier("org.apereo.portal.utils.FragmentDefinitionUtils.applicableFragments")
+                    Ehcache applicableFragmentsCache) {
+        this.applicableFragmentsCache = applicableFragmentsCache;
+    }
+
     @Override
     public final List<FragmentDefinition> getFragmentDefinitions() {
         return this.configurationLoader.getFragments();
@@ -74,25 +89,94 @@ public class FragmentDefinitionUtils implements IFragmentDefinitionUtils {
         return this.configurationLoader.getFragmentByOwnerId(ownerId);
     }
 
+    /**
+     * Evaluates the fragment audiences through a {@link FragmentAudienceIndex} compiled from the
+     * current definitions. The results of audiences that only depend on the person are cached per
+     * user, tagged with the username so they are purged at login and logout, and keyed by a hash
+     * of the definitions so any change to the fragments invalidates them.
+     */
     @Override
     public List<FragmentDefinition> getFragmentDefinitionsApplicableToPerson(final IPerson person) {
         final List<FragmentDefinition> result = new ArrayList<FragmentDefinition>();
         final List<FragmentDefinition> definitions = this.configurationLoader.getFragments();
+        if (definitions == null) {
+            return result;
+        }
         logger.debug("About to check applicability of {} fragments", definitions.size());
 
-        if (definitions != null) {
-            for (final FragmentDefinition fragmentDefinition : definitions) {
+        final FragmentAudienceIndex audienceIndex = this.getAudienceIndex(definitions);
+        final FragmentAudienceIndex.PersonAudience audience =
+                new FragmentAudienceIndex.PersonAudience(person);
+
+        // Guests share a username but not necessarily their attributes, never cache their results
+        final CacheKey cacheKey =
+                person.isGuest()
+                        ? null
+                        : this.getApplicableFragmentsCacheKey(person, audienceIndex);
+        BitSet applicableFragments = null;
+        if (cacheKey != null) {
+            final Element element = this.applicableFragmentsCache.get(cacheKey);
+            if (element != null) {
+                applicableFragments = (BitSet) element.getObjectValue();
+            }
+        }
+
+        if (applicableFragments == null) {
+            applicableFragments = new BitSet();
+            final BitSet candidates = audienceIndex.getCandidates(audience);
+            for (int index = candidates.nextSetBit(0);
+                    index >= 0;
+                    index = candidates.nextSetBit(index + 1)) {
+                if (!audienceIndex.isRequestDependent(index)
+                        && audienceIndex.isApplicable(index, audience)) {
+                    applicableFragments.set(index);
+                }
+            }
+            if (cacheKey != null) {
+                this.applicableFragmentsCache.put(new Element(cacheKey, applicableFragments));
+            }
+        }
+
+        final List<FragmentDefinition> indexedDefinitions = audienceIndex.getDefinitions();
+        for (int index = 0; index < indexedDefinitions.size(); index++) {
+            final FragmentDefinition fragmentDefinition = indexedDefinitions.get(index);
+            final boolean isApplicable;
+            if (audienceIndex.isRequestDependent(index)) {
                 logger.debug(
                         "Checking applicability of the following fragment: {}",
                         fragmentDefinition.getName());
-                if (fragmentDefinition.isApplicable(person)) {
-                    result.add(fragmentDefinition);
-                }
+                isApplicable = audienceIndex.isApplicable(index, audience);
+            } else {
+                isApplicable = applicableFragments.get(index);
+            }
+            if (isApplicable) {
+                result.add(fragmentDefinition);
             }
         }
         return result;
     }
 
+    /** Returns the compiled audiences of the definitions, recompiling only if they changed */
+    private FragmentAudienceIndex getAudienceIndex(final List<FragmentDefinition> definitions) {
+        final long signature = FragmentAudienceIndex.computeSignature(definitions);
+        FragmentAudienceIndex audienceIndex = this.audienceIndex;
+        if (audienceIndex == null || audienceIndex.getSignature() != signature) {
+            logger.debug("Compiling the audiences of {} fragments", definitions.size());
+            audienceIndex = new FragmentAudienceIndex(definitions, signature);
+            this.audienceIndex = audienceIndex;
+        }
+        return audienceIndex;
+    }
+
+    private CacheKey getApplicableFragmentsCacheKey(
+            final IPerson person, final FragmentAudienceIndex audienceIndex) {
+        return CacheKey.buildTagged(
+                FragmentDefinitionUtils.class.getName(),
+                UsernameTaggedCacheEntryPurger.createCacheEntryTag(person.getUserName()),
+                person.getUserName(),
+                audienceIndex.getSignature());
+    }
+
     @Override
     public List<UserView> getFragmentDefinitionUserViews(final Locale locale) {
         return this.getFragmentDefinitionUserViews(this.getFragmentDefinitions(), locale);
@@ -0,0 +1,79 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.dlm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import org.apereo.portal.security.IAuthorizationPrincipal;
+import org.apereo.portal.utils.DocumentFactory;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class ILFBuilderTest {
+
+    @Test
+    public void testConstructILFFromMergedFragments() {
+        final Document fragment = createLayout("u10l1s1");
+        final Element tab = appendElement(fragment, fragmentRoot(fragment), "folder", "u10l1s2");
+        appendElement(fragment, tab, "channel", "u10l1n3").setAttribute("chanID", "1");
+        appendElement(fragment, tab, "channel", "u10l1n4").setAttribute("chanID", "2");
+
+        final IAuthorizationPrincipal ap = mock(IAuthorizationPrincipal.class);
+        when(ap.canRender("1")).thenReturn(true);
+        when(ap.canRender("2")).thenReturn(false);
+
+        final Document merged = ILFBuilder.createMergedFragments(Arrays.asList(fragment), ap);
+        final Document ILF = ILFBuilder.constructILF(createLayout("s1"), merged);
+
+        final Element ilfRoot = fragmentRoot(ILF);
+        assertEquals("s1", ilfRoot.getAttribute(Constants.ATT_ID));
+        assertSame(ilfRoot, ILF.getElementById("s1"));
+
+        final Element ilfTab = ILF.getElementById("u10l1s2");
+        assertNotNull(ilfTab);
+        assertSame(ilfRoot, ilfTab.getParentNode());
+        assertNotNull(ILF.getElementById("u10l1n3"));
+        assertEquals(1, ILF.getElementsByTagName("channel").getLength());
+
+        // The merged fragments are left untouched for the next user
+        assertEquals(1, merged.getElementsByTagName("channel").getLength());
+    }
+
+    private static Document createLayout(String rootId) {
+        final Document layout = DocumentFactory.getThreadDocument();
+        final Element layoutElement = layout.createElement("layout");
+        layout.appendChild(layoutElement);
+        appendElement(layout, layoutElement, "folder", rootId);
+        return layout;
+    }
+
+    private static Element fragmentRoot(Document layout) {
+        return (Element) layout.getDocumentElement().getFirstChild();
+    }
+
+    private static Element appendElement(
+            Document document, Element parent, String name, String id) {
+        final Element element = document.createElement(name);
+        element.setAttribute(Constants.ATT_ID, id);
+        parent.appendChild(element);
+        return element;
+    }
+}
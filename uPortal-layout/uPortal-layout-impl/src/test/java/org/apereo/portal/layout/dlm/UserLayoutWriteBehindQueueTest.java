@@ -0,0 +1,161 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.dlm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UserLayoutWriteBehindQueueTest {
+
+    private UserLayoutWriteBehindQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new UserLayoutWriteBehindQueue();
+        queue.setEnabled(true);
+        queue.setDelay(100);
+        queue.init();
+    }
+
+    @After
+    public void tearDown() {
+        queue.destroy();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        final UserLayoutWriteBehindQueue disabledQueue = new UserLayoutWriteBehindQueue();
+        disabledQueue.init();
+        assertFalse(disabledQueue.isEnabled());
+    }
+
+    @Test
+    public void testSavesAreCoalesced() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        final CountDownLatch written = new CountDownLatch(1);
+        final Runnable save =
+                () -> {
+                    writes.incrementAndGet();
+                    written.countDown();
+                };
+
+        queue.saveLater("student", 1, save);
+        queue.saveLater("student", 1, save);
+        queue.saveLater("student", 1, save);
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        assertEquals(1, writes.get());
+        assertEquals(3, queue.getSaveRequests());
+        assertEquals(2, queue.getCoalescedSaves());
+        assertEquals(1, queue.getWrites());
+        assertEquals(0, queue.getPendingSaves());
+    }
+
+    @Test
+    public void testFlush() {
+        queue.setDelay(60000);
+        final AtomicInteger studentWrites = new AtomicInteger();
+        final AtomicInteger staffWrites = new AtomicInteger();
+
+        queue.saveLater("student", 1, studentWrites::incrementAndGet);
+        queue.saveLater("student", 2, studentWrites::incrementAndGet);
+        queue.saveLater("staff", 1, staffWrites::incrementAndGet);
+
+        queue.flush("student");
+        assertEquals(2, studentWrites.get());
+        assertEquals(0, staffWrites.get());
+        assertEquals(1, queue.getPendingSaves());
+
+        queue.destroy();
+        assertEquals(1, staffWrites.get());
+        assertEquals(0, queue.getPendingSaves());
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch written = new CountDownLatch(1);
+
+        queue.saveLater(
+                "student",
+                1,
+                () -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("Database unavailable");
+                    }
+                    written.countDown();
+                });
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+        assertEquals(1, queue.getFailedWrites());
+        assertEquals(1, queue.getWrites());
+    }
+
+    @Test
+    public void testDiscard() {
+        queue.setDelay(60000);
+        final AtomicInteger studentWrites = new AtomicInteger();
+        final AtomicInteger staffWrites = new AtomicInteger();
+
+        queue.saveLater("student", 1, studentWrites::incrementAndGet);
+        queue.saveLater("student", 2, studentWrites::incrementAndGet);
+        queue.saveLater("staff", 1, staffWrites::incrementAndGet);
+
+        queue.discard("student");
+        assertEquals(1, queue.getPendingSaves());
+
+        queue.destroy();
+        assertEquals(0, studentWrites.get());
+        assertEquals(1, staffWrites.get());
+    }
+
+    @Test
+    public void testDestroyWaitsForRunningWrite() throws Exception {
+        queue.setDelay(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final AtomicBoolean completed = new AtomicBoolean();
+
+        queue.saveLater(
+                "student",
+                1,
+                () -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(300);
+                        completed.set(true);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                    }
+                });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        queue.destroy();
+        assertFalse(interrupted.get());
+        assertTrue(completed.get());
+        assertEquals(1, queue.getWrites());
+    }
+}
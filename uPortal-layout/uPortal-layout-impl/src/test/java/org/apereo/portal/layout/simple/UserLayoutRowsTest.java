@@ -0,0 +1,96 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.layout.simple;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class UserLayoutRowsTest {
+
+    @Test
+    public void testSaveWritesOnlyChangedRows() throws Exception {
+        final UserLayoutRows persisted = new UserLayoutRows();
+        persisted.addStruct(1, 0, 2, null, null, "Root", "root", "N", "N", "N");
+        persisted.addStruct(2, 3, 0, null, null, "Tab", "regular", "N", "N", "N");
+        persisted.addStruct(3, 0, 0, null, 10, null, null, "N", "N", "N");
+        persisted.addParam(2, "dlm:moveAllowed", "false");
+        persisted.addParam(3, "width", "100%");
+
+        final UserLayoutRows layout = new UserLayoutRows();
+        layout.addStruct(1, 0, 2, null, null, "Root", "root", "N", "N", "N");
+        layout.addStruct(2, 4, 0, null, null, "Renamed Tab", "regular", "N", "N", "N");
+        layout.addStruct(4, 0, 0, null, 11, null, null, "N", "N", "N");
+        layout.addParam(2, "dlm:moveAllowed", "true");
+
+        final Map<String, PreparedStatement> statements = new HashMap<>();
+        final Connection con = mock(Connection.class);
+        when(con.prepareStatement(anyString()))
+                .thenAnswer(
+                        invocation ->
+                                statements.computeIfAbsent(
+                                        invocation.getArgument(0),
+                                        sql -> mock(PreparedStatement.class)));
+
+        assertEquals(5, layout.save(con, 5, 1, persisted));
+
+        assertEquals(5, statements.size());
+        verifyBatched(statements, "DELETE FROM UP_LAYOUT_PARAM", 1);
+        verifyBatched(statements, "DELETE FROM UP_LAYOUT_STRUCT", 1);
+        verifyBatched(statements, "UPDATE UP_LAYOUT_STRUCT", 1);
+        verifyBatched(statements, "INSERT INTO UP_LAYOUT_STRUCT", 1);
+        verifyBatched(statements, "UPDATE UP_LAYOUT_PARAM", 1);
+    }
+
+    @Test
+    public void testSaveUnchangedLayout() throws Exception {
+        final UserLayoutRows persisted = new UserLayoutRows();
+        persisted.addStruct(1, 0, 0, "7", 10, null, null, "N", "Y", "N");
+        persisted.addParam(1, "width", "100%");
+
+        final UserLayoutRows layout = new UserLayoutRows();
+        layout.addStruct(1, 0, 0, "7", 10, null, null, "N", "Y", "N");
+        layout.addParam(1, "width", "100%");
+
+        final Connection con = mock(Connection.class);
+        assertEquals(0, layout.save(con, 5, 1, persisted));
+        verify(con, times(0)).prepareStatement(anyString());
+    }
+
+    private static void verifyBatched(
+            Map<String, PreparedStatement> statements, String sqlPrefix, int rows)
+            throws Exception {
+        PreparedStatement statement = null;
+        for (final Map.Entry<String, PreparedStatement> entry : statements.entrySet()) {
+            if (entry.getKey().startsWith(sqlPrefix)) {
+                statement = entry.getValue();
+            }
+        }
+        assertNotNull(sqlPrefix + " was not prepared", statement);
+        verify(statement, times(rows)).addBatch();
+        verify(statement).executeBatch();
+        verify(statement).close();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apereo.portal.layout.dlm.Evaluator;
+import org.apereo.portal.layout.dlm.EvaluatorFactory;
+import org.apereo.portal.layout.dlm.FragmentDefinition;
+import org.apereo.portal.layout.dlm.providers.AllUsersEvaluatorFactory;
+import org.apereo.portal.layout.dlm.providers.Paren;
+import org.apereo.portal.security.IPerson;
+import org.apereo.portal.security.provider.PersonImpl;
+import org.dom4j.Element;
+
+public class FragmentAudienceIndexTest extends TestCase {
+
+    public void testIsApplicable() {
+        final IPerson p = new PersonImpl();
+
+        final FragmentDefinition all = new TestFragmentDefinition("all");
+        all.addEvaluator(new AllUsersEvaluatorFactory());
+
+        final FragmentDefinition notAll = new TestFragmentDefinition("notAll");
+        final Paren notParen = new Paren(Paren.Type.NOT);
+        notParen.addEvaluator(new AllUsersEvaluatorFactory());
+        notAll.addEvaluator(notParen);
+
+        final FragmentDefinition andRequest = new TestFragmentDefinition("andRequest");
+        final Paren andParen = new Paren(Paren.Type.AND);
+        andParen.addEvaluator(new AllUsersEvaluatorFactory());
+        andParen.addEvaluator(new RequestEvaluator());
+        andRequest.addEvaluator(andParen);
+
+        final FragmentDefinition none = new TestFragmentDefinition("none");
+
+        final List<FragmentDefinition> definitions = Arrays.asList(all, notAll, andRequest, none);
+        final FragmentAudienceIndex index =
+                new FragmentAudienceIndex(
+                        definitions, FragmentAudienceIndex.computeSignature(definitions));
+        final FragmentAudienceIndex.PersonAudience audience =
+                new FragmentAudienceIndex.PersonAudience(p);
+
+        final BitSet candidates = index.getCandidates(audience);
+        for (int i = 0; i < definitions.size(); i++) {
+            final FragmentDefinition definition = definitions.get(i);
+            assertEquals(
+                    definition.getName() + " should match FragmentDefinition.isApplicable",
+                    definition.isApplicable(p),
+                    index.isApplicable(i, audience));
+        }
+
+        // A fragment without an audience applies to nobody and is never a candidate
+        assertTrue(candidates.get(0));
+        assertTrue(candidates.get(1));
+        assertTrue(candidates.get(2));
+        assertFalse(candidates.get(3));
+        assertFalse(index.isApplicable(3, audience));
+
+        assertFalse(index.isRequestDependent(0));
+        assertFalse(index.isRequestDependent(1));
+        assertTrue(index.isRequestDependent(2));
+        assertFalse(index.isRequestDependent(3));
+    }
+
+    public void testSignatureChangesWithAudience() {
+        final FragmentDefinition fragment = new TestFragmentDefinition("fragment");
+        fragment.addEvaluator(new AllUsersEvaluatorFactory());
+        final List<FragmentDefinition> definitions = Arrays.asList(fragment);
+
+        final long signature = FragmentAudienceIndex.computeSignature(definitions);
+        assertEquals(signature, FragmentAudienceIndex.computeSignature(definitions));
+
+        fragment.addEvaluator(new RequestEvaluator());
+        final long changedAudience = FragmentAudienceIndex.computeSignature(definitions);
+        assertFalse(signature == changedAudience);
+
+        final FragmentDefinition renamed = new TestFragmentDefinition("renamed");
+        renamed.addEvaluator(new AllUsersEvaluatorFactory());
+        renamed.addEvaluator(new RequestEvaluator());
+        assertFalse(
+                changedAudience == FragmentAudienceIndex.computeSignature(Arrays.asList(renamed)));
+    }
+
+    private static class TestFragmentDefinition extends FragmentDefinition {
+        TestFragmentDefinition(String name) {
+            super(name);
+        }
+    }
+
+    private static class RequestEvaluator extends Evaluator {
+
+        @Override
+        public Class<? extends EvaluatorFactory> getFactoryClass() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isApplicable(IPerson person) {
+            return true;
+        }
+
+        @Override
+        public void toElement(Element parent) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getSummary() {
+            return "(REQUEST)";
+        }
+    }
+}
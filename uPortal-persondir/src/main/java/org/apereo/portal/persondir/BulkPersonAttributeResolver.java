@@ -0,0 +1,230 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.persondir;
+
+import java.io.Serializable;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang3.StringUtils;
+import org.apereo.services.persondir.IPersonAttributeDao;
+import org.apereo.services.persondir.IPersonAttributeDaoFilter;
+import org.apereo.services.persondir.IPersonAttributes;
+import org.apereo.services.persondir.support.IUsernameAttributeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ReflectionUtils;
+import org.springmodules.cache.key.CacheKeyGenerator;
+
+/**
+ * Resolves the attributes of many users at once, for lists of users like search results and group
+ * members.
+ *
+ * <p>The users whose attributes are not cached yet are found with {@link
+ * ConcurrentMergingPersonAttributeDao#getPeopleWithUsernames(Collection)}, one query per batch of
+ * users for every source that supports it. Each user found is put into the user info cache under
+ * the key a {@code getPerson} of the user is cached under, so the attributes are then resolved
+ * from the cache by the regular person attribute DAO chain, including its overrides and
+ * post-processing.
+ */
+public class BulkPersonAttributeResolver {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** The method the caching DAO generates the cache key of a getPerson query for */
+    private static final Method GET_PEOPLE_METHOD =
+            ReflectionUtils.findMethod(
+                    IPersonAttributeDao.class,
+                    "getPeopleWithMultivaluedAttributes",
+                    Map.class,
+                    IPersonAttributeDaoFilter.class);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private IPersonAttributeDao personAttributeDao;
+    private ConcurrentMergingPersonAttributeDao mergingPersonAttributeDao;
+    private Map<Serializable, Set<IPersonAttributes>> userInfoCache;
+    private CacheKeyGenerator cacheKeyGenerator;
+    private IUsernameAttributeProvider usernameAttributeProvider;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** The root of the person attribute DAO chain, answers the queries for single users */
+    public void setPersonAttributeDao(IPersonAttributeDao personAttributeDao) {
+        Validate.notNull(personAttributeDao, "personAttributeDao can not be null");
+        this.personAttributeDao = personAttributeDao;
+    }
+
+    /** The DAO below the cache that finds the users not cached yet */
+    public void setMergingPersonAttributeDao(
+            ConcurrentMergingPersonAttributeDao mergingPersonAttributeDao) {
+        Validate.notNull(mergingPersonAttributeDao, "mergingPersonAttributeDao can not be null");
+        this.mergingPersonAttributeDao = mergingPersonAttributeDao;
+    }
+
+    /** The cache of the caching DAO between the root and the merging DAO */
+    public void setUserInfoCache(Map<Serializable, Set<IPersonAttributes>> userInfoCache) {
+        Validate.notNull(userInfoCache, "userInfoCache can not be null");
+        this.userInfoCache = userInfoCache;
+    }
+
+    /** The cache key generator of the caching DAO */
+    public void setCacheKeyGenerator(CacheKeyGenerator cacheKeyGenerator) {
+        Validate.notNull(cacheKeyGenerator, "cacheKeyGenerator can not be null");
+        this.cacheKeyGenerator = cacheKeyGenerator;
+    }
+
+    public void setUsernameAttributeProvider(IUsernameAttributeProvider usernameAttributeProvider) {
+        this.usernameAttributeProvider = usernameAttributeProvider;
+    }
+
+    /** Maximum number of users found with one query, defaults to {@link #DEFAULT_BATCH_SIZE} */
+    public void setBatchSize(int batchSize) {
+        Validate.isTrue(batchSize > 0, "batchSize must be greater than 0");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Equivalent to calling {@link IPersonAttributeDao#getPerson(String,
+     * IPersonAttributeDaoFilter)} for each of the users.
+     *
+     * @return The attributes of the users that exist, keyed by username in the order of the
+     *     usernames
+     */
+    public Map<String, IPersonAttributes> getPeople(Collection<String> usernames) {
+        this.prefetch(usernames);
+
+        final Map<String, IPersonAttributes> people = new LinkedHashMap<>();
+        for (final String username : usernames) {
+            if (StringUtils.isNotEmpty(username) && !people.containsKey(username)) {
+                final IPersonAttributes person = this.personAttributeDao.getPerson(username, null);
+                if (person != null) {
+                    people.put(username, person);
+                }
+            }
+        }
+        return people;
+    }
+
+    /**
+     * Caches the attributes of the users that are not cached yet, so looking up each of them
+     * afterwards does not query the attribute sources. Users that are not found or not answered by
+     * every source are left to be looked up one at a time.
+     */
+    public void prefetch(Collection<String> usernames) {
+        final Map<String, Serializable> missingCacheKeys = new LinkedHashMap<>();
+        for (final String username : usernames) {
+            if (StringUtils.isEmpty(username) || missingCacheKeys.containsKey(username)) {
+                continue;
+            }
+            final Serializable cacheKey = this.getCacheKey(username);
+            if (cacheKey != null && this.userInfoCache.get(cacheKey) == null) {
+                missingCacheKeys.put(username, cacheKey);
+            }
+        }
+
+        // A single user is resolved just as fast by getPerson
+        if (missingCacheKeys.size() < 2) {
+            return;
+        }
+
+        final List<String> missingUsernames = new ArrayList<>(missingCacheKeys.keySet());
+        int cached = 0;
+        for (int i = 0; i < missingUsernames.size(); i += this.batchSize) {
+            final List<String> batch =
+                    missingUsernames.subList(
+                            i, Math.min(missingUsernames.size(), i + this.batchSize));
+            // Leaves out the users a source failed for rather than caching partial attributes
+            final Set<IPersonAttributes> people =
+                    this.mergingPersonAttributeDao.getPeopleWithUsernames(batch);
+
+            final Map<String, IPersonAttributes> peopleByName = new HashMap<>();
+            for (final IPersonAttributes person : people) {
+                if (person.getName() != null) {
+                    peopleByName.put(person.getName(), person);
+                    peopleByName.putIfAbsent(person.getName().toLowerCase(Locale.ROOT), person);
+                }
+            }
+
+            for (final String username : batch) {
+                IPersonAttributes person = peopleByName.get(username);
+                if (person == null) {
+                    person = peopleByName.get(username.toLowerCase(Locale.ROOT));
+                }
+                if (person != null) {
+                    this.userInfoCache.put(
+                            missingCacheKeys.get(username), Collections.singleton(person));
+                    cached++;
+                }
+            }
+        }
+
+        logger.debug(
+                "Cached the attributes of {} of {} users that were not cached yet",
+                cached,
+                missingUsernames.size());
+    }
+
+    private Serializable getCacheKey(String username) {
+        final Map<String, List<Object>> seed =
+                Collections.singletonMap(
+                        this.usernameAttributeProvider.getUsernameAttribute(),
+                        Collections.singletonList(username));
+        return this.cacheKeyGenerator.generateKey(new GetPeopleMethodInvocation(seed));
+    }
+
+    /** The invocation the caching DAO generates the cache key of a query from */
+    private static final class GetPeopleMethodInvocation implements MethodInvocation {
+        private final Object[] arguments;
+
+        GetPeopleMethodInvocation(Map<String, List<Object>> seed) {
+            this.arguments = new Object[] {seed, null};
+        }
+
+        @Override
+        public Method getMethod() {
+            return GET_PEOPLE_METHOD;
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return this.arguments;
+        }
+
+        @Override
+        public Object proceed() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object getThis() {
+            return null;
+        }
+
+        @Override
+        public AccessibleObject getStaticPart() {
+            return GET_PEOPLE_METHOD;
+        }
+    }
+}
@@ -0,0 +1,666 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.persondir;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang.Validate;
+import org.apereo.services.persondir.IPersonAttributeDao;
+import org.apereo.services.persondir.IPersonAttributeDaoFilter;
+import org.apereo.services.persondir.IPersonAttributes;
+import org.apereo.services.persondir.support.AbstractFlatteningPersonAttributeDao;
+import org.apereo.services.persondir.support.IUsernameAttributeProvider;
+import org.apereo.services.persondir.support.NamedPersonImpl;
+import org.apereo.services.persondir.support.merger.IAttributeMerger;
+import org.apereo.services.persondir.support.merger.MultivaluedAttributeMerger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Merges the attributes of several independent person attribute sources like the {@code
+ * MergingPersonAttributeDaoImpl} of Person Directory, but queries the sources in parallel so
+ * resolving the attributes of a user takes as long as the slowest source instead of the sum of
+ * all of them.
+ *
+ * <p>Each source is given its own timeout, counted from the moment its query starts. A source that
+ * fails or does not answer in time is logged and left out of the result like a failing source is
+ * by {@code MergingPersonAttributeDaoImpl}, the result is then {@link #isIncomplete(Set)
+ * incomplete} and must not be cached as the attributes of the people. The answers are always
+ * merged in the order of the sources, so the result does not depend on which source answers
+ * first. The request attributes of the calling thread are made available to the sources, some of
+ * them need the current portal request.
+ *
+ * <p>Queries wait for one of the threads in a bounded queue. When the queue is full the calling
+ * thread queries the source itself, which slows the callers down instead of piling up queries
+ * that would time out before they start.
+ */
+@ManagedResource("uPortal:section=PersonDirectory,name=MergingPersonAttributeDao")
+public class ConcurrentMergingPersonAttributeDao extends AbstractFlatteningPersonAttributeDao
+        implements ConcurrentMergingPersonAttributeDaoMXBean {
+
+    private static final String QUERY_TYPE_PROPERTY = "queryType";
+    private static final String QUERY_TYPE_OR = "OR";
+
+    /** Stands for the answer of a source that failed or timed out */
+    private static final Set<IPersonAttributes> NO_ANSWER =
+            Collections.unmodifiableSet(new HashSet<>());
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private volatile List<Source> sources = Collections.emptyList();
+    private Map<IPersonAttributeDao, Long> sourceTimeouts = Collections.emptyMap();
+    private IAttributeMerger attrMerger = new MultivaluedAttributeMerger();
+    private IUsernameAttributeProvider usernameAttributeProvider;
+    private long timeout = 5000;
+    private int threads = 20;
+    private int queueSize = 100;
+    private ExecutorService executorService;
+
+    /** The sources to merge, in the order their attributes are merged */
+    public void setPersonAttributeDaos(List<IPersonAttributeDao> personAttributeDaos) {
+        Validate.notNull(personAttributeDaos, "personAttributeDaos can not be null");
+        final List<Source> sources = new ArrayList<>(personAttributeDaos.size());
+        for (final IPersonAttributeDao personAttributeDao : personAttributeDaos) {
+            final String name =
+                    sources.size() + ":" + personAttributeDao.getClass().getSimpleName();
+            sources.add(new Source(name, personAttributeDao));
+        }
+        this.sources = Collections.unmodifiableList(sources);
+    }
+
+    /** Timeouts in milliseconds for sources that should not use the default timeout */
+    public void setSourceTimeouts(Map<IPersonAttributeDao, Long> sourceTimeouts) {
+        Validate.notNull(sourceTimeouts, "sourceTimeouts can not be null");
+        this.sourceTimeouts = new IdentityHashMap<>(sourceTimeouts);
+    }
+
+    public void setMerger(IAttributeMerger attrMerger) {
+        Validate.notNull(attrMerger, "attrMerger can not be null");
+        this.attrMerger = attrMerger;
+    }
+
+    public void setUsernameAttributeProvider(IUsernameAttributeProvider usernameAttributeProvider) {
+        this.usernameAttributeProvider = usernameAttributeProvider;
+    }
+
+    /** Default maximum time in milliseconds to wait for the answer of a source */
+    @Value("${org.apereo.portal.persondir.ConcurrentMergingPersonAttributeDao.timeout:5000}")
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Maximum number of sources queried at the same time by all users, 0 queries the sources one
+     * after the other in the calling thread
+     */
+    @Value("${org.apereo.portal.persondir.ConcurrentMergingPersonAttributeDao.threads:20}")
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Maximum number of queries waiting for one of the threads, further queries are made by the
+     * calling thread
+     */
+    @Value("${org.apereo.portal.persondir.ConcurrentMergingPersonAttributeDao.queueSize:100}")
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (this.threads > 0) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            final BlockingQueue<Runnable> queue =
+                    this.queueSize > 0
+                            ? new ArrayBlockingQueue<>(this.queueSize)
+                            : new SynchronousQueue<>();
+            final ThreadPoolExecutor executor =
+                    new ThreadPoolExecutor(
+                            this.threads,
+                            this.threads,
+                            60,
+                            TimeUnit.SECONDS,
+                            queue,
+                            runnable -> {
+                                final Thread thread =
+                                        new Thread(
+                                                runnable,
+                                                "uP-PersonAttributeSource-"
+                                                        + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            },
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            this.executorService = executor;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (this.executorService != null) {
+            this.executorService.shutdownNow();
+        }
+    }
+
+    @Override
+    public IPersonAttributes getPerson(String uid, IPersonAttributeDaoFilter filter) {
+        Validate.notNull(uid, "uid may not be null.");
+
+        final Map<String, List<Object>> seed =
+                Collections.singletonMap(
+                        this.usernameAttributeProvider.getUsernameAttribute(),
+                        Collections.singletonList(uid));
+        final IPersonAttributes person =
+                DataAccessUtils.singleResult(this.getPeopleWithMultivaluedAttributes(seed, filter));
+        if (person == null) {
+            return null;
+        }
+
+        // Force the name of the person if the sources did not provide it
+        if (person.getName() == null) {
+            return new NamedPersonImpl(uid, person.getAttributes());
+        }
+        return person;
+    }
+
+    @Override
+    public Set<IPersonAttributes> getPeopleWithMultivaluedAttributes(
+            Map<String, List<Object>> query, IPersonAttributeDaoFilter filter) {
+        Validate.notNull(query, "query may not be null.");
+
+        final List<SourceQuery> queries = new ArrayList<>();
+        for (final Source source : this.getSources(filter)) {
+            queries.add(
+                    new SourceQuery(
+                            source,
+                            personAttributeDao ->
+                                    personAttributeDao.getPeopleWithMultivaluedAttributes(
+                                            query, filter)));
+        }
+        return this.merge(this.queryAll(queries));
+    }
+
+    /**
+     * Finds the people with any of the usernames. Sources that can match several usernames at
+     * once, the local accounts and LDAP and JDBC sources with an OR query type, are queried once
+     * for all of them. The other sources are queried once per username, all of these queries in
+     * parallel and each with the timeout of the source.
+     *
+     * @return The people found, without the users a source failed for, did not answer in time for
+     *     or returned people without their username for. The attributes of these users would be
+     *     incomplete, they are left to be looked up one at a time.
+     */
+    public Set<IPersonAttributes> getPeopleWithUsernames(Collection<String> usernames) {
+        Validate.notNull(usernames, "usernames may not be null.");
+
+        final String usernameAttribute = this.usernameAttributeProvider.getUsernameAttribute();
+        final Map<String, String> usernamesByLowerCase = new LinkedHashMap<>();
+        for (final String username : usernames) {
+            usernamesByLowerCase.putIfAbsent(username.toLowerCase(Locale.ROOT), username);
+        }
+        final List<Object> allUsernames = new ArrayList<>(usernamesByLowerCase.values());
+
+        final List<Source> sources = this.sources;
+        final boolean[] batched = new boolean[sources.size()];
+        final List<SourceQuery> queries = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            final Source source = sources.get(i);
+            batched[i] = isMultipleUsernameQuerySupported(source.personAttributeDao);
+            final List<List<Object>> queryUsernames =
+                    batched[i]
+                            ? Collections.singletonList(allUsernames)
+                            : allUsernames.stream()
+                                    .map(Collections::singletonList)
+                                    .collect(Collectors.toList());
+            for (final List<Object> values : queryUsernames) {
+                queries.add(
+                        new SourceQuery(
+                                source,
+                                personAttributeDao ->
+                                        personAttributeDao.getPeopleWithMultivaluedAttributes(
+                                                Collections.singletonMap(
+                                                        usernameAttribute, values),
+                                                null)));
+            }
+        }
+        final Iterator<Set<IPersonAttributes>> answers = this.queryAll(queries).iterator();
+
+        // The answers of the sources for each user, in the order of the sources
+        final Map<String, List<Set<IPersonAttributes>>> answersByUsername = new LinkedHashMap<>();
+        for (final String username : usernamesByLowerCase.values()) {
+            answersByUsername.put(username, new ArrayList<>(sources.size()));
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            if (batched[i]) {
+                final Map<String, Set<IPersonAttributes>> peopleByUsername =
+                        groupByUsername(answers.next(), usernameAttribute, usernamesByLowerCase);
+                for (final Map.Entry<String, List<Set<IPersonAttributes>>> userAnswers :
+                        answersByUsername.entrySet()) {
+                    userAnswers
+                            .getValue()
+                            .add(
+                                    peopleByUsername != null
+                                            ? peopleByUsername.getOrDefault(
+                                                    userAnswers.getKey(), Collections.emptySet())
+                                            : NO_ANSWER);
+                }
+            } else {
+                for (final List<Set<IPersonAttributes>> userAnswers : answersByUsername.values()) {
+                    userAnswers.add(answers.next());
+                }
+            }
+        }
+
+        final Set<IPersonAttributes> people = new LinkedHashSet<>();
+        for (final Map.Entry<String, List<Set<IPersonAttributes>>> userAnswers :
+                answersByUsername.entrySet()) {
+            final Set<IPersonAttributes> merged = this.merge(userAnswers.getValue());
+            if (isIncomplete(merged)) {
+                logger.debug(
+                        "Left out user {}, not every person attribute source answered",
+                        userAnswers.getKey());
+            } else if (merged != null) {
+                people.addAll(merged);
+            }
+        }
+        return people;
+    }
+
+    @Override
+    public Set<String> getPossibleUserAttributeNames(IPersonAttributeDaoFilter filter) {
+        Set<String> attrNames = null;
+        for (final Source source : this.getSources(filter)) {
+            final Set<String> currentAttrNames;
+            try {
+                currentAttrNames = source.personAttributeDao.getPossibleUserAttributeNames(filter);
+            } catch (RuntimeException e) {
+                logger.warn("Person attribute source {} failed", source.name, e);
+                continue;
+            }
+            if (currentAttrNames != null) {
+                if (attrNames == null) {
+                    attrNames = new LinkedHashSet<>();
+                }
+                attrNames =
+                        this.attrMerger.mergePossibleUserAttributeNames(
+                                attrNames, currentAttrNames);
+            }
+        }
+        return attrNames;
+    }
+
+    @Override
+    public Set<String> getAvailableQueryAttributes(IPersonAttributeDaoFilter filter) {
+        Set<String> queryAttrs = new LinkedHashSet<>();
+        for (final Source source : this.getSources(filter)) {
+            final Set<String> currentQueryAttrs;
+            try {
+                currentQueryAttrs = source.personAttributeDao.getAvailableQueryAttributes(filter);
+            } catch (RuntimeException e) {
+                logger.warn("Person attribute source {} failed", source.name, e);
+                continue;
+            }
+            if (currentQueryAttrs != null) {
+                queryAttrs =
+                        this.attrMerger.mergeAvailableQueryAttributes(
+                                queryAttrs, currentQueryAttrs);
+            }
+        }
+        return queryAttrs;
+    }
+
+    @Override
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    @Override
+    public Map<String, Long> getQueryCounts() {
+        return this.getStatistics(source -> source.queries.get());
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencies() {
+        return this.getStatistics(
+                source -> {
+                    final long queries = source.queries.get();
+                    return queries == 0 ? 0 : (double) source.totalNanos.get() / queries / 1000000;
+                });
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencies() {
+        return this.getStatistics(source -> TimeUnit.NANOSECONDS.toMillis(source.maxNanos.get()));
+    }
+
+    @Override
+    public Map<String, Long> getTimeoutCounts() {
+        return this.getStatistics(source -> source.timeouts.get());
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        return this.getStatistics(source -> source.failures.get());
+    }
+
+    private List<Source> getSources(IPersonAttributeDaoFilter filter) {
+        final List<Source> sources = this.sources;
+        if (filter == null) {
+            return sources;
+        }
+
+        final List<Source> chosenSources = new ArrayList<>(sources.size());
+        for (final Source source : sources) {
+            if (filter.choosePersonAttributeDao(source.personAttributeDao)) {
+                chosenSources.add(source);
+            }
+        }
+        return chosenSources;
+    }
+
+    /**
+     * Sources whose query for a list of usernames finds the people with any of them. The query
+     * type of the LDAP and JDBC sources of Person Directory also applies to the values of one
+     * attribute, with the default AND such a query finds nobody.
+     */
+    private static boolean isMultipleUsernameQuerySupported(
+            IPersonAttributeDao personAttributeDao) {
+        if (personAttributeDao instanceof LocalAccountPersonAttributeDao) {
+            return true;
+        }
+        final BeanWrapper beanWrapper = new BeanWrapperImpl(personAttributeDao);
+        return beanWrapper.isReadableProperty(QUERY_TYPE_PROPERTY)
+                && QUERY_TYPE_OR.equals(
+                        String.valueOf(beanWrapper.getPropertyValue(QUERY_TYPE_PROPERTY)));
+    }
+
+    /**
+     * Groups the people found by a query for several usernames by their username attribute, and
+     * names them after it. The LDAP and JDBC sources of Person Directory name every person found
+     * after the first username of the query, merged by name they would all become the same person.
+     *
+     * @return The people named after the queried username they have, by that username. Null if
+     *     the source did not answer or a person has no username attribute with one of the queried
+     *     usernames and can not be told apart from the others.
+     */
+    private static Map<String, Set<IPersonAttributes>> groupByUsername(
+            Set<IPersonAttributes> people,
+            String usernameAttribute,
+            Map<String, String> usernamesByLowerCase) {
+        if (people == NO_ANSWER) {
+            return null;
+        }
+
+        final Map<String, Set<IPersonAttributes>> peopleByUsername = new HashMap<>();
+        if (people == null) {
+            return peopleByUsername;
+        }
+        for (final IPersonAttributes person : people) {
+            final Object value = person.getAttributeValue(usernameAttribute);
+            final String username =
+                    value != null
+                            ? usernamesByLowerCase.get(value.toString().toLowerCase(Locale.ROOT))
+                            : null;
+            if (username == null) {
+                return null;
+            }
+            peopleByUsername
+                    .computeIfAbsent(username, key -> new LinkedHashSet<>())
+                    .add(new NamedPersonImpl(username, person.getAttributes()));
+        }
+        return peopleByUsername;
+    }
+
+    /**
+     * Whether the people were merged without the answer of a source that failed or did not answer
+     * in time. Such a result is returned to the caller, but caching it would keep the attributes
+     * of the source away from the people until the cache entry expires.
+     */
+    public static boolean isIncomplete(Set<IPersonAttributes> people) {
+        return people instanceof IncompletePeople;
+    }
+
+    /**
+     * Merges the answers in the order of the sources like {@code MergingPersonAttributeDaoImpl}
+     *
+     * @return The merged people, {@link #isIncomplete(Set) incomplete} and never null if a source
+     *     did not answer
+     */
+    private Set<IPersonAttributes> merge(List<Set<IPersonAttributes>> answers) {
+        Set<IPersonAttributes> resultPeople = null;
+        boolean complete = true;
+        for (final Set<IPersonAttributes> currentPeople : answers) {
+            if (currentPeople == NO_ANSWER) {
+                complete = false;
+            } else if (currentPeople != null) {
+                if (resultPeople == null) {
+                    resultPeople = new LinkedHashSet<>(currentPeople);
+                } else {
+                    resultPeople = this.attrMerger.mergeResults(resultPeople, currentPeople);
+                }
+            }
+        }
+        if (complete) {
+            return resultPeople;
+        }
+        return resultPeople != null
+                ? new IncompletePeople(resultPeople)
+                : new IncompletePeople(Collections.emptySet());
+    }
+
+    /**
+     * Makes the queries in parallel, unless there is only one of them.
+     *
+     * @return The answers in the order of the queries, {@link #NO_ANSWER} for queries that failed
+     *     or timed out
+     */
+    private List<Set<IPersonAttributes>> queryAll(List<SourceQuery> queries) {
+        final List<Set<IPersonAttributes>> answers = new ArrayList<>(queries.size());
+        if (this.executorService == null || queries.size() < 2) {
+            for (final SourceQuery query : queries) {
+                try {
+                    answers.add(query.call());
+                } catch (RuntimeException e) {
+                    logger.warn("Person attribute source {} failed", query.source.name, e);
+                    answers.add(NO_ANSWER);
+                }
+            }
+            return answers;
+        }
+
+        final long submitted = System.nanoTime();
+        final List<Future<Set<IPersonAttributes>>> futures = new ArrayList<>(queries.size());
+        for (final SourceQuery query : queries) {
+            futures.add(this.executorService.submit(query));
+        }
+
+        for (int i = 0; i < queries.size(); i++) {
+            final SourceQuery query = queries.get(i);
+            final Source source = query.source;
+            final Future<Set<IPersonAttributes>> future = futures.get(i);
+            final long sourceTimeout =
+                    this.sourceTimeouts.getOrDefault(source.personAttributeDao, this.timeout);
+            try {
+                answers.add(
+                        await(
+                                query,
+                                future,
+                                submitted,
+                                TimeUnit.MILLISECONDS.toNanos(sourceTimeout)));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                source.timeouts.incrementAndGet();
+                logger.warn(
+                        "Person attribute source {} did not answer within {}ms, it is left out",
+                        source.name,
+                        sourceTimeout);
+                answers.add(NO_ANSWER);
+            } catch (ExecutionException e) {
+                logger.warn("Person attribute source {} failed", source.name, e.getCause());
+                answers.add(NO_ANSWER);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (final Future<Set<IPersonAttributes>> pending : futures) {
+                    pending.cancel(true);
+                }
+                throw new IllegalStateException(
+                        "Interrupted while waiting for person attribute sources", e);
+            }
+        }
+        return answers;
+    }
+
+    /**
+     * Waits for the answer of a source until its timeout elapsed since its query started. A query
+     * that is still waiting for a thread when its timeout elapsed since it was submitted is given
+     * up as well.
+     */
+    private static Set<IPersonAttributes> await(
+            SourceQuery sourceQuery,
+            Future<Set<IPersonAttributes>> future,
+            long submitted,
+            long timeoutNanos)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = submitted + timeoutNanos;
+        boolean started = false;
+        while (true) {
+            try {
+                return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                final long startNanos = sourceQuery.startNanos;
+                if (started || startNanos == SourceQuery.NOT_STARTED) {
+                    throw e;
+                }
+                started = true;
+                deadline = startNanos + timeoutNanos;
+            }
+        }
+    }
+
+    private <T> Map<String, T> getStatistics(Function<Source, T> statistic) {
+        final Map<String, T> statistics = new LinkedHashMap<>();
+        for (final Source source : this.sources) {
+            statistics.put(source.name, statistic.apply(source));
+        }
+        return statistics;
+    }
+
+    private static final class Source {
+        private final String name;
+        private final IPersonAttributeDao personAttributeDao;
+        private final AtomicLong queries = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        Source(String name, IPersonAttributeDao personAttributeDao) {
+            this.name = name;
+            this.personAttributeDao = personAttributeDao;
+        }
+
+        <T> T query(Function<IPersonAttributeDao, T> query) {
+            final long start = System.nanoTime();
+            try {
+                return query.apply(this.personAttributeDao);
+            } catch (RuntimeException e) {
+                this.failures.incrementAndGet();
+                throw e;
+            } finally {
+                final long nanos = System.nanoTime() - start;
+                this.queries.incrementAndGet();
+                this.totalNanos.addAndGet(nanos);
+                this.maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+    }
+
+    /**
+     * The query of a source made by one of the threads, or by the calling thread when the queue is
+     * full
+     */
+    private static final class SourceQuery implements Callable<Set<IPersonAttributes>> {
+        static final long NOT_STARTED = Long.MIN_VALUE;
+
+        private final Source source;
+        private final Function<IPersonAttributeDao, Set<IPersonAttributes>> query;
+        private final RequestAttributes requestAttributes;
+        private volatile long startNanos = NOT_STARTED;
+
+        /** The query of the source on behalf of the calling thread and its request */
+        SourceQuery(Source source, Function<IPersonAttributeDao, Set<IPersonAttributes>> query) {
+            this.source = source;
+            this.query = query;
+            this.requestAttributes = RequestContextHolder.getRequestAttributes();
+        }
+
+        @Override
+        public Set<IPersonAttributes> call() {
+            this.startNanos = System.nanoTime();
+            final RequestAttributes previous = RequestContextHolder.getRequestAttributes();
+            RequestContextHolder.setRequestAttributes(this.requestAttributes);
+            try {
+                return this.source.query(this.query);
+            } finally {
+                RequestContextHolder.setRequestAttributes(previous);
+            }
+        }
+    }
+
+    /** The people merged without the answer of every source */
+    private static final class IncompletePeople extends LinkedHashSet<IPersonAttributes> {
+        private static final long serialVersionUID = 1L;
+
+        IncompletePeople(Collection<IPersonAttributes> people) {
+            super(people);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.persondir;
+
+import java.util.Map;
+
+public interface ConcurrentMergingPersonAttributeDaoMXBean {
+
+    /** @return Maximum time in milliseconds to wait for a source that has no timeout of its own */
+    long getTimeout();
+
+    /** @return Number of queries of each source, keyed by the position and type of the source */
+    Map<String, Long> getQueryCounts();
+
+    /** @return Mean time in milliseconds each source took to answer, including failures */
+    Map<String, Double> getMeanLatencies();
+
+    /** @return Longest time in milliseconds each source took to answer, including failures */
+    Map<String, Long> getMaxLatencies();
+
+    /** @return Number of queries each source did not answer within its timeout */
+    Map<String, Long> getTimeoutCounts();
+
+    /** @return Number of queries each source failed with an exception */
+    Map<String, Long> getFailureCounts();
+}
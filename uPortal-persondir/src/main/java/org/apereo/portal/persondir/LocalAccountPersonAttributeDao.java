@@ -200,8 +200,15 @@ public class LocalAccountPersonAttributeDao extends AbstractDefaultAttributePers
             String attrName = queryEntry.getKey();
 
             if (userNameAttribute.equals(attrName)) {
-                String value = queryEntry.getValue().get(0).toString();
-                queryBuilder.setUserName(value);
+                final List<Object> values = queryEntry.getValue();
+                queryBuilder.setUserName(values.get(0).toString());
+                if (values.size() > 1) {
+                    final List<String> userNames = new ArrayList<String>();
+                    for (Object o : values.subList(1, values.size())) {
+                        userNames.add(o.toString());
+                    }
+                    queryBuilder.setUserNames(userNames);
+                }
             } else {
                 List<String> values = new ArrayList<String>();
                 for (Object o : queryEntry.getValue()) {
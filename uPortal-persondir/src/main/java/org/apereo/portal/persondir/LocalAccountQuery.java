@@ -14,6 +14,7 @@
  */
 package org.apereo.portal.persondir;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +24,8 @@ public class LocalAccountQuery {
 
     private String username;
 
+    private List<String> usernames = Collections.emptyList();
+
     private final Map<String, List<String>> attributes = new HashMap<String, List<String>>();
 
     public String getName() {
@@ -33,6 +36,15 @@ public class LocalAccountQuery {
         this.username = name;
     }
 
+    /** @return Usernames of which any matches, in addition to the one of {@link #getName()} */
+    public List<String> getUserNames() {
+        return usernames;
+    }
+
+    public void setUserNames(List<String> names) {
+        this.usernames = names;
+    }
+
     public Map<String, List<String>> getAttributes() {
         return attributes;
     }
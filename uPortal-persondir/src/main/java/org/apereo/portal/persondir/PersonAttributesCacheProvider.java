@@ -0,0 +1,52 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.persondir;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import net.sf.ehcache.Ehcache;
+import org.apereo.portal.utils.cache.MapCacheProvider;
+import org.apereo.services.persondir.IPersonAttributes;
+
+/**
+ * The user info cache of the caching person attribute DAO, which does not cache the {@link
+ * ConcurrentMergingPersonAttributeDao#isIncomplete(Set) incomplete} results of a merge some
+ * sources were left out of. The people are looked up again by the next query instead of missing
+ * the attributes of these sources until the cache entry expires.
+ */
+public class PersonAttributesCacheProvider
+        extends MapCacheProvider<Serializable, Set<IPersonAttributes>> {
+
+    public PersonAttributesCacheProvider(Ehcache cache) {
+        super(cache);
+    }
+
+    @Override
+    public Set<IPersonAttributes> put(Serializable key, Set<IPersonAttributes> value) {
+        if (ConcurrentMergingPersonAttributeDao.isIncomplete(value)) {
+            return this.get(key);
+        }
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends Serializable, ? extends Set<IPersonAttributes>> t) {
+        for (final Map.Entry<? extends Serializable, ? extends Set<IPersonAttributes>> e :
+                t.entrySet()) {
+            this.put(e.getKey(), e.getValue());
+        }
+    }
+}
@@ -205,6 +205,16 @@ public class JpaLocalAccountDaoImpl extends BasePortalJpaDao implements ILocalAc
             params.put(this.nameParameter, query.getName());
         }
 
+        // and any further usernames
+        int nameCount = 0;
+        for (final String name : query.getUserNames()) {
+            final ParameterExpression<String> nameParam =
+                    this.createParameterExpression(String.class, "name" + nameCount);
+            whereParts.add(cb.equal(accountRoot.get(LocalAccountPersonImpl_.name), nameParam));
+            params.put(nameParam, name);
+            nameCount++;
+        }
+
         // Build Predicate for each attribute being queried
         int paramCount = 0;
         for (Map.Entry<String, List<String>> entry : query.getAttributes().entrySet()) {
@@ -0,0 +1,128 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.persondir;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apereo.portal.utils.cache.PersonDirectoryCacheKeyGenerator;
+import org.apereo.services.persondir.IPersonAttributes;
+import org.apereo.services.persondir.support.CachingPersonAttributeDaoImpl;
+import org.apereo.services.persondir.support.NamedPersonImpl;
+import org.apereo.services.persondir.support.SimpleUsernameAttributeProvider;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkPersonAttributeResolverTest {
+
+    private final Map<Serializable, Set<IPersonAttributes>> userInfoCache = new HashMap<>();
+    private final ConcurrentMergingPersonAttributeDao mergingPersonAttributeDao =
+            mock(ConcurrentMergingPersonAttributeDao.class);
+    private final CachingPersonAttributeDaoImpl cachingPersonAttributeDao =
+            new CachingPersonAttributeDaoImpl();
+    private final BulkPersonAttributeResolver resolver = new BulkPersonAttributeResolver();
+
+    @Before
+    public void setUp() {
+        final SimpleUsernameAttributeProvider usernameAttributeProvider =
+                new SimpleUsernameAttributeProvider();
+        // The cache key generator of the caching DAO in PersonDirectoryConfiguration
+        final PersonDirectoryCacheKeyGenerator cacheKeyGenerator =
+                new PersonDirectoryCacheKeyGenerator();
+        cacheKeyGenerator.setUsernameAttributeProvider(usernameAttributeProvider);
+        cacheKeyGenerator.setIgnoreEmptyAttributes(true);
+
+        cachingPersonAttributeDao.setUsernameAttributeProvider(usernameAttributeProvider);
+        cachingPersonAttributeDao.setCacheNullResults(true);
+        cachingPersonAttributeDao.setCacheKeyGenerator(cacheKeyGenerator);
+        cachingPersonAttributeDao.setUserInfoCache(userInfoCache);
+        cachingPersonAttributeDao.setCachedPersonAttributesDao(mergingPersonAttributeDao);
+
+        resolver.setPersonAttributeDao(cachingPersonAttributeDao);
+        resolver.setMergingPersonAttributeDao(mergingPersonAttributeDao);
+        resolver.setUserInfoCache(userInfoCache);
+        resolver.setCacheKeyGenerator(cacheKeyGenerator);
+        resolver.setUsernameAttributeProvider(usernameAttributeProvider);
+    }
+
+    @Test
+    public void testPrefetchedUsersAreServedFromTheCache() {
+        when(mergingPersonAttributeDao.getPeopleWithUsernames(
+                        Arrays.asList("student", "Staff", "unknown")))
+                .thenReturn(new LinkedHashSet<>(Arrays.asList(person("student"), person("staff"))));
+
+        final Map<String, IPersonAttributes> people =
+                resolver.getPeople(Arrays.asList("student", "Staff", "student", "unknown"));
+
+        Assert.assertEquals(Arrays.asList("student", "Staff"), new ArrayList<>(people.keySet()));
+        Assert.assertEquals("staff", people.get("Staff").getName());
+        // Only the unknown user was looked up by the caching DAO
+        verify(mergingPersonAttributeDao, times(1))
+                .getPeopleWithMultivaluedAttributes(any(), any());
+    }
+
+    @Test
+    public void testPrefetchOnlyQueriesMisses() {
+        when(mergingPersonAttributeDao.getPeopleWithMultivaluedAttributes(any(), any()))
+                .thenReturn(Collections.singleton(person("cached")));
+        cachingPersonAttributeDao.getPerson("cached", null);
+        when(mergingPersonAttributeDao.getPeopleWithUsernames(Arrays.asList("student", "staff")))
+                .thenReturn(new LinkedHashSet<>(Arrays.asList(person("student"), person("staff"))));
+
+        resolver.prefetch(Arrays.asList("cached", "student", "staff"));
+
+        verify(mergingPersonAttributeDao)
+                .getPeopleWithUsernames(Arrays.asList("student", "staff"));
+        Assert.assertEquals(3, userInfoCache.size());
+    }
+
+    @Test
+    public void testPrefetchLeavesUsersNotAnsweredToGetPerson() {
+        when(mergingPersonAttributeDao.getPeopleWithUsernames(any()))
+                .thenReturn(Collections.singleton(person("student")));
+
+        resolver.prefetch(Arrays.asList("student", "staff"));
+
+        Assert.assertEquals(1, userInfoCache.size());
+        Assert.assertEquals(
+                "student", cachingPersonAttributeDao.getPerson("student", null).getName());
+        verify(mergingPersonAttributeDao, never()).getPeopleWithMultivaluedAttributes(any(), any());
+    }
+
+    @Test
+    public void testPrefetchLeavesSingleUserToGetPerson() {
+        resolver.prefetch(Collections.singletonList("student"));
+
+        verify(mergingPersonAttributeDao, never()).getPeopleWithUsernames(any());
+    }
+
+    private static IPersonAttributes person(String username) {
+        return new NamedPersonImpl(
+                username, Collections.singletonMap("sn", Collections.singletonList(username)));
+    }
+}
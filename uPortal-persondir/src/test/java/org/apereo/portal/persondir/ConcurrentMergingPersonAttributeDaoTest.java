@@ -0,0 +1,386 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.persondir;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.apereo.portal.utils.cache.PersonDirectoryCacheKeyGenerator;
+import org.apereo.services.persondir.IPersonAttributeDao;
+import org.apereo.services.persondir.IPersonAttributeDaoFilter;
+import org.apereo.services.persondir.IPersonAttributes;
+import org.apereo.services.persondir.support.AbstractFlatteningPersonAttributeDao;
+import org.apereo.services.persondir.support.CachingPersonAttributeDaoImpl;
+import org.apereo.services.persondir.support.NamedPersonImpl;
+import org.apereo.services.persondir.support.SimpleUsernameAttributeProvider;
+import org.apereo.services.persondir.support.merger.NoncollidingAttributeAdder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentMergingPersonAttributeDaoTest {
+
+    private static final String USERNAME = "student";
+    private static final long SLOW_SOURCE_DELAY = 500;
+
+    private final ConcurrentMergingPersonAttributeDao dao =
+            new ConcurrentMergingPersonAttributeDao();
+
+    @Before
+    public void setUp() {
+        dao.setUsernameAttributeProvider(new SimpleUsernameAttributeProvider());
+        dao.setMerger(new NoncollidingAttributeAdder());
+        dao.setTimeout(5000);
+        dao.init();
+    }
+
+    @After
+    public void tearDown() {
+        dao.destroy();
+    }
+
+    @Test
+    public void testSourcesAreQueriedInParallel() {
+        dao.setPersonAttributeDaos(
+                Arrays.asList(
+                        source(SLOW_SOURCE_DELAY, "mail", "student@ldap.example.edu"),
+                        source(SLOW_SOURCE_DELAY, "mail", "student@sis.example.edu"),
+                        source(SLOW_SOURCE_DELAY, "sn", "Student")));
+
+        final long start = System.currentTimeMillis();
+        final IPersonAttributes person = dao.getPerson(USERNAME, null);
+        final long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertTrue("Sources took " + elapsed + "ms", elapsed < 2 * SLOW_SOURCE_DELAY);
+        Assert.assertEquals(USERNAME, person.getName());
+        // The first source wins, no matter which one answered first
+        Assert.assertEquals("student@ldap.example.edu", person.getAttributeValue("mail"));
+        Assert.assertEquals("Student", person.getAttributeValue("sn"));
+        Assert.assertEquals(
+                Arrays.asList(1L, 1L, 1L), new ArrayList<>(dao.getQueryCounts().values()));
+    }
+
+    @Test
+    public void testTimeoutStartsWhenQueryStarts() {
+        dao.destroy();
+        dao.setThreads(1);
+        dao.init();
+        dao.setPersonAttributeDaos(
+                Arrays.asList(
+                        source(SLOW_SOURCE_DELAY, "mail", "student@ldap.example.edu"),
+                        source(SLOW_SOURCE_DELAY, "sn", "Student")));
+        dao.setTimeout(SLOW_SOURCE_DELAY * 3 / 2);
+
+        final IPersonAttributes person = dao.getPerson(USERNAME, null);
+
+        // The second source waited for the only thread longer than its timeout
+        Assert.assertEquals("student@ldap.example.edu", person.getAttributeValue("mail"));
+        Assert.assertEquals("Student", person.getAttributeValue("sn"));
+        Assert.assertEquals(
+                Arrays.asList(0L, 0L), new ArrayList<>(dao.getTimeoutCounts().values()));
+    }
+
+    @Test
+    public void testCallerQueriesSourceWhenQueueIsFull() {
+        dao.destroy();
+        dao.setThreads(1);
+        dao.setQueueSize(1);
+        dao.init();
+        final Set<String> threadNames = Collections.synchronizedSet(new LinkedHashSet<>());
+        final List<IPersonAttributeDao> sources = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final IPersonAttributeDao source = mock(IPersonAttributeDao.class);
+            when(source.getPeopleWithMultivaluedAttributes(any(), any()))
+                    .thenAnswer(
+                            invocation -> {
+                                threadNames.add(Thread.currentThread().getName());
+                                Thread.sleep(SLOW_SOURCE_DELAY / 5);
+                                return Collections.singleton(person(USERNAME, "sn", "Student"));
+                            });
+            sources.add(source);
+        }
+        dao.setPersonAttributeDaos(sources);
+
+        final IPersonAttributes person = dao.getPerson(USERNAME, null);
+
+        Assert.assertEquals("Student", person.getAttributeValue("sn"));
+        Assert.assertTrue(threadNames.contains(Thread.currentThread().getName()));
+        Assert.assertEquals(
+                Arrays.asList(0L, 0L, 0L), new ArrayList<>(dao.getTimeoutCounts().values()));
+    }
+
+    @Test
+    public void testSlowSourceIsLeftOut() {
+        final IPersonAttributeDao slowSource = source(SLOW_SOURCE_DELAY * 10, "sn", "Slow");
+        dao.setPersonAttributeDaos(
+                Arrays.asList(slowSource, source(0, "mail", "student@ldap.example.edu")));
+        dao.setSourceTimeouts(Collections.singletonMap(slowSource, SLOW_SOURCE_DELAY));
+
+        final IPersonAttributes person = dao.getPerson(USERNAME, null);
+
+        Assert.assertEquals("student@ldap.example.edu", person.getAttributeValue("mail"));
+        Assert.assertNull(person.getAttributeValue("sn"));
+        Assert.assertEquals(
+                Arrays.asList(1L, 0L), new ArrayList<>(dao.getTimeoutCounts().values()));
+    }
+
+    @Test
+    public void testFailingSourceIsLeftOut() {
+        final IPersonAttributeDao failingSource = mock(IPersonAttributeDao.class);
+        when(failingSource.getPeopleWithMultivaluedAttributes(any(), any()))
+                .thenThrow(new IllegalStateException("LDAP server unavailable"));
+        dao.setPersonAttributeDaos(
+                Arrays.asList(failingSource, source(0, "mail", "student@ldap.example.edu")));
+
+        final Set<IPersonAttributes> people =
+                dao.getPeopleWithMultivaluedAttributes(
+                        Collections.singletonMap(
+                                "username", Collections.singletonList((Object) USERNAME)),
+                        null);
+
+        Assert.assertEquals(1, people.size());
+        Assert.assertEquals(
+                "student@ldap.example.edu", people.iterator().next().getAttributeValue("mail"));
+        Assert.assertTrue(ConcurrentMergingPersonAttributeDao.isIncomplete(people));
+        Assert.assertEquals(
+                Arrays.asList(1L, 0L), new ArrayList<>(dao.getFailureCounts().values()));
+    }
+
+    @Test
+    public void testIncompletePersonIsNotCached() {
+        final IPersonAttributeDao failingSource = mock(IPersonAttributeDao.class);
+        when(failingSource.getPeopleWithMultivaluedAttributes(any(), any()))
+                .thenThrow(new IllegalStateException("LDAP server unavailable"));
+        dao.setPersonAttributeDaos(
+                Arrays.asList(failingSource, source(0, "mail", "student@ldap.example.edu")));
+
+        final CacheManager cacheManager =
+                new CacheManager(new Configuration().name(getClass().getSimpleName()));
+        try {
+            final Cache cache = new Cache(new CacheConfiguration("userInfoCache", 100));
+            cacheManager.addCache(cache);
+            final PersonDirectoryCacheKeyGenerator cacheKeyGenerator =
+                    new PersonDirectoryCacheKeyGenerator();
+            cacheKeyGenerator.setIgnoreEmptyAttributes(true);
+            final CachingPersonAttributeDaoImpl cachingDao = new CachingPersonAttributeDaoImpl();
+            cachingDao.setUsernameAttributeProvider(new SimpleUsernameAttributeProvider());
+            cachingDao.setCacheNullResults(true);
+            cachingDao.setCacheKeyGenerator(cacheKeyGenerator);
+            cachingDao.setUserInfoCache(new PersonAttributesCacheProvider(cache));
+            cachingDao.setCachedPersonAttributesDao(dao);
+
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(
+                        "student@ldap.example.edu",
+                        cachingDao.getPerson(USERNAME, null).getAttributeValue("mail"));
+            }
+
+            // Both lookups queried the sources instead of caching the person without the LDAP
+            verify(failingSource, times(2)).getPeopleWithMultivaluedAttributes(any(), any());
+            Assert.assertEquals(0, cache.getSize());
+        } finally {
+            cacheManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testPeopleWithUsernames() {
+        final OrQuerySource orQuerySource = new OrQuerySource();
+        orQuerySource.addPerson("student", "sn", "Student");
+        orQuerySource.addPerson("Staff", "sn", "Staff");
+        final IPersonAttributeDao ldap = mock(IPersonAttributeDao.class);
+        when(ldap.getPeopleWithMultivaluedAttributes(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            final Map<String, List<Object>> query = invocation.getArgument(0);
+                            final String username = (String) query.get("username").get(0);
+                            return Collections.singleton(
+                                    person(username, "mail", username + "@example.edu"));
+                        });
+        dao.setPersonAttributeDaos(Arrays.asList(orQuerySource, ldap));
+
+        final Set<IPersonAttributes> people =
+                dao.getPeopleWithUsernames(Arrays.asList("student", "staff", "unknown"));
+
+        // Each person keeps its own attributes although the source named all of them "student"
+        final Map<String, IPersonAttributes> peopleByName = new HashMap<>();
+        for (final IPersonAttributes person : people) {
+            peopleByName.put(person.getName(), person);
+        }
+        Assert.assertEquals(3, peopleByName.size());
+        Assert.assertEquals("Student", peopleByName.get("student").getAttributeValue("sn"));
+        Assert.assertEquals("Staff", peopleByName.get("staff").getAttributeValue("sn"));
+        Assert.assertNull(peopleByName.get("unknown").getAttributeValue("sn"));
+        for (final IPersonAttributes person : people) {
+            Assert.assertEquals(
+                    person.getName() + "@example.edu", person.getAttributeValue("mail"));
+        }
+        // The OR query source finds both people with one query, the other one is queried per user
+        Assert.assertEquals(1, orQuerySource.queries);
+        verify(ldap, times(3)).getPeopleWithMultivaluedAttributes(any(), any());
+    }
+
+    @Test
+    public void testPeopleWithoutUsernameAreNotAnswered() {
+        final OrQuerySource orQuerySource = new OrQuerySource();
+        orQuerySource.addPerson("student", "sn", "Student");
+        orQuerySource.people.put(
+                "staff",
+                Collections.singletonMap("sn", Collections.singletonList((Object) "Staff")));
+        dao.setPersonAttributeDaos(Collections.singletonList(orQuerySource));
+
+        Assert.assertTrue(dao.getPeopleWithUsernames(Arrays.asList("student", "staff")).isEmpty());
+    }
+
+    @Test
+    public void testUserTheSourceFailedForIsLeftOut() {
+        final IPersonAttributeDao ldap = mock(IPersonAttributeDao.class);
+        when(ldap.getPeopleWithMultivaluedAttributes(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            final Map<String, List<Object>> query = invocation.getArgument(0);
+                            final String username = (String) query.get("username").get(0);
+                            if ("staff".equals(username)) {
+                                throw new IllegalStateException("LDAP server unavailable");
+                            }
+                            return Collections.singleton(
+                                    person(username, "mail", username + "@example.edu"));
+                        });
+        dao.setPersonAttributeDaos(Collections.singletonList(ldap));
+
+        final Set<IPersonAttributes> people =
+                dao.getPeopleWithUsernames(Arrays.asList("student", "staff", "faculty"));
+
+        final List<String> names = new ArrayList<>();
+        for (final IPersonAttributes person : people) {
+            names.add(person.getName());
+        }
+        Assert.assertEquals(Arrays.asList("student", "faculty"), names);
+    }
+
+    @Test
+    public void testUsersAreQueriedInParallel() {
+        final IPersonAttributeDao ldap = mock(IPersonAttributeDao.class);
+        when(ldap.getPeopleWithMultivaluedAttributes(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            Thread.sleep(SLOW_SOURCE_DELAY);
+                            final Map<String, List<Object>> query = invocation.getArgument(0);
+                            final String username = (String) query.get("username").get(0);
+                            return Collections.singleton(person(username, "sn", username));
+                        });
+        dao.setPersonAttributeDaos(Collections.singletonList(ldap));
+        dao.setTimeout(SLOW_SOURCE_DELAY * 3 / 2);
+
+        final long start = System.currentTimeMillis();
+        final Set<IPersonAttributes> people =
+                dao.getPeopleWithUsernames(Arrays.asList("student", "staff", "faculty"));
+        final long elapsed = System.currentTimeMillis() - start;
+
+        // Each query of the source has its own timeout, which is not multiplied by the users
+        Assert.assertTrue("Queries took " + elapsed + "ms", elapsed < 2 * SLOW_SOURCE_DELAY);
+        Assert.assertEquals(3, people.size());
+        Assert.assertEquals(
+                Collections.singletonList(3L), new ArrayList<>(dao.getQueryCounts().values()));
+    }
+
+    private static IPersonAttributes person(String username, String attribute, String value) {
+        return new NamedPersonImpl(
+                username,
+                Collections.singletonMap(attribute, Collections.singletonList(value)));
+    }
+
+    private static IPersonAttributeDao source(long delay, String attribute, String value) {
+        final IPersonAttributeDao source = mock(IPersonAttributeDao.class);
+        when(source.getPeopleWithMultivaluedAttributes(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            Thread.sleep(delay);
+                            return Collections.singleton(person(USERNAME, attribute, value));
+                        });
+        return source;
+    }
+
+    /**
+     * A source with an OR query type that names the people it finds like the {@code
+     * SingleRowJdbcPersonAttributeDao} and LDAP sources of Person Directory do, after the first
+     * username of the query.
+     */
+    public static final class OrQuerySource extends AbstractFlatteningPersonAttributeDao {
+        private final Map<String, Map<String, List<Object>>> people = new LinkedHashMap<>();
+        private int queries;
+
+        void addPerson(String username, String attribute, String value) {
+            final Map<String, List<Object>> attributes = new LinkedHashMap<>();
+            attributes.put("username", Collections.singletonList(username));
+            attributes.put(attribute, Collections.singletonList(value));
+            this.people.put(username.toLowerCase(Locale.ROOT), attributes);
+        }
+
+        public String getQueryType() {
+            return "OR";
+        }
+
+        @Override
+        public IPersonAttributes getPerson(String uid, IPersonAttributeDaoFilter filter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<IPersonAttributes> getPeopleWithMultivaluedAttributes(
+                Map<String, List<Object>> query, IPersonAttributeDaoFilter filter) {
+            this.queries++;
+            final List<Object> usernames = query.get("username");
+            final String queryUsername = (String) usernames.get(0);
+            final Set<IPersonAttributes> found = new LinkedHashSet<>();
+            for (final Object username : usernames) {
+                final Map<String, List<Object>> attributes =
+                        this.people.get(((String) username).toLowerCase(Locale.ROOT));
+                if (attributes != null) {
+                    found.add(new NamedPersonImpl(queryUsername, attributes));
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public Set<String> getPossibleUserAttributeNames(IPersonAttributeDaoFilter filter) {
+            return null;
+        }
+
+        @Override
+        public Set<String> getAvailableQueryAttributes(IPersonAttributeDaoFilter filter) {
+            return null;
+        }
+    }
+}
@@ -94,6 +94,24 @@ public interface IPortletExecutionManager {
             HttpServletRequest request,
             HttpServletResponse response);
 
+    /**
+     * @return true if the specified portlet has finished rendering it's output for the HEAD during
+     *     this request, retrieving that output will not block.
+     */
+    boolean isPortletRenderHeaderComplete(
+            IPortletWindowId portletWindowId,
+            HttpServletRequest request,
+            HttpServletResponse response);
+
+    /**
+     * @return true if the specified portlet has finished rendering it's output for the BODY during
+     *     this request, retrieving that output, title, link or new item count will not block.
+     */
+    boolean isPortletRenderComplete(
+            IPortletWindowId portletWindowId,
+            HttpServletRequest request,
+            HttpServletResponse response);
+
     /**
      * @param portletWindowId
      * @param request
@@ -0,0 +1,45 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.portlet.rendering.worker;
+
+import java.util.Map;
+
+/** JMX stats for PortletConcurrencyLimiter */
+public interface PortletConcurrencyLimiterMXBean {
+
+    /** @return Number of workers currently holding an execution permit, by portlet */
+    Map<String, Integer> getActiveExecutionCounts();
+
+    /** @return Number of workers denied execution because their portlet stayed at its limit */
+    long getDeniedExecutionCount();
+
+    /**
+     * @param maxConcurrentExecutionsByFname The number of workers of a single portlet that may be
+     *     submitted or executing at once, zero or less disables the limit
+     */
+    void setMaxConcurrentExecutionsByFname(int maxConcurrentExecutionsByFname);
+
+    /** @return The number of workers of a single portlet that may be submitted or executing */
+    int getMaxConcurrentExecutionsByFname();
+
+    /**
+     * @param maxConcurrentExecutionsWaitTime Milliseconds a worker waits for its portlet to drop
+     *     below the limit before it is denied, zero or less denies it immediately
+     */
+    void setMaxConcurrentExecutionsWaitTime(long maxConcurrentExecutionsWaitTime);
+
+    /** @return Milliseconds a worker waits for its portlet to drop below the limit */
+    long getMaxConcurrentExecutionsWaitTime();
+}
@@ -14,6 +14,7 @@
  */
 package org.apereo.portal.rendering;
 
+import java.io.IOException;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -31,7 +32,11 @@ import org.apereo.portal.portlet.rendering.IPortletExecutionManager;
 import org.apereo.portal.utils.cache.CacheKey;
 import org.springframework.beans.factory.annotation.Autowired;
 
-/** Inserts the results of portlet's rendering into the character stream */
+/**
+ * Inserts the results of portlet's rendering into the character stream. Before waiting on a portlet
+ * that has not finished rendering the response is flushed, so everything up to that portlet reaches
+ * the browser while it renders instead of being held behind the slowest portlet on the page.
+ */
 public class PortletRenderingIncorporationComponent extends CharacterPipelineComponentWrapper {
     private IPortletExecutionManager portletExecutionManager;
 
@@ -83,6 +88,31 @@ public class PortletRenderingIncorporationComponent extends CharacterPipelineCom
             this.response = response;
         }
 
+        /** Flush the response if getting the portlet's HEAD output would block */
+        private void flushIfRenderingHeader(IPortletWindowId portletWindowId) {
+            if (!portletExecutionManager.isPortletRenderHeaderComplete(
+                    portletWindowId, this.request, this.response)) {
+                this.flushBeforeWaiting(portletWindowId);
+            }
+        }
+
+        /** Flush the response if getting the portlet's render result would block */
+        private void flushIfRendering(IPortletWindowId portletWindowId) {
+            if (!portletExecutionManager.isPortletRenderComplete(
+                    portletWindowId, this.request, this.response)) {
+                this.flushBeforeWaiting(portletWindowId);
+            }
+        }
+
+        private void flushBeforeWaiting(IPortletWindowId portletWindowId) {
+            try {
+                this.response.flushBuffer();
+            } catch (IOException e) {
+                // Rendering continues, any problem with the client will show up again on write
+                logger.debug("Failed to flush response before waiting on {}", portletWindowId, e);
+            }
+        }
+
         @Override
         protected CharacterEvent filterEvent(CharacterEvent event, boolean peek) {
             switch (event.getEventType()) {
@@ -93,6 +123,8 @@ public class PortletRenderingIncorporationComponent extends CharacterPipelineCom
                         final IPortletWindowId portletWindowId =
                                 headerPlaceholderEvent.getPortletWindowId();
 
+                        this.flushIfRenderingHeader(portletWindowId);
+
                         final String output =
                                 portletExecutionManager.getPortletHeadOutput(
                                         portletWindowId, this.request, this.response);
@@ -105,6 +137,7 @@ public class PortletRenderingIncorporationComponent extends CharacterPipelineCom
                                 (PortletContentPlaceholderEvent) event;
                         final IPortletWindowId portletWindowId =
                                 contentPlaceholderEvent.getPortletWindowId();
+                        this.flushIfRendering(portletWindowId);
 
                         final String output =
                                 portletExecutionManager.getPortletOutput(
@@ -118,6 +151,7 @@ public class PortletRenderingIncorporationComponent extends CharacterPipelineCom
                                 (PortletTitlePlaceholderEvent) event;
                         final IPortletWindowId portletWindowId =
                                 titlePlaceholderEvent.getPortletWindowId();
+                        this.flushIfRendering(portletWindowId);
 
                         final String title =
                                 portletExecutionManager.getPortletTitle(
@@ -131,6 +165,7 @@ public class PortletRenderingIncorporationComponent extends CharacterPipelineCom
                                 (PortletNewItemCountPlaceholderEvent) event;
                         final IPortletWindowId portletWindowId =
                                 newItemCountPlaceholderEvent.getPortletWindowId();
+                        this.flushIfRendering(portletWindowId);
 
                         final int newItemCount =
                                 portletExecutionManager.getPortletNewItemCount(
@@ -144,6 +179,7 @@ public class PortletRenderingIncorporationComponent extends CharacterPipelineCom
                                 (PortletLinkPlaceholderEvent) event;
                         final IPortletWindowId portletWindowId =
                                 linkPlaceholderEvent.getPortletWindowId();
+                        this.flushIfRendering(portletWindowId);
                         final String defaultPortletUrl =
                                 linkPlaceholderEvent.getDefaultPortletUrl();
 
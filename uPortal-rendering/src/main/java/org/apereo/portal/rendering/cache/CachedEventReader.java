@@ -15,19 +15,24 @@
 package org.apereo.portal.rendering.cache;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-/** Holder class for an event cache and output properties */
+/**
+ * Holder class for an event cache and output properties. The events are held in an array backed
+ * list sized exactly to the number of events to keep cached entries as small as possible.
+ */
 class CachedEventReader<E> implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private final List<E> eventCache;
     private final Map<String, String> outputProperties;
 
+    @SuppressWarnings("unchecked")
     public CachedEventReader(List<E> eventCache, Map<String, String> outputProperties) {
-        this.eventCache = Collections.unmodifiableList(eventCache);
+        this.eventCache = Collections.unmodifiableList(Arrays.asList((E[]) eventCache.toArray()));
         this.outputProperties = Collections.unmodifiableMap(outputProperties);
     }
 
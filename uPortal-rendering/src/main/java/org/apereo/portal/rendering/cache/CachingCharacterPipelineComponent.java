@@ -14,10 +14,15 @@
  */
 package org.apereo.portal.rendering.cache;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ListIterator;
 import org.apereo.portal.character.stream.CharacterEventBufferReader;
 import org.apereo.portal.character.stream.CharacterEventReader;
+import org.apereo.portal.character.stream.events.CharacterDataEvent;
+import org.apereo.portal.character.stream.events.CharacterDataEventImpl;
 import org.apereo.portal.character.stream.events.CharacterEvent;
+import org.apereo.portal.character.stream.events.CharacterEventTypes;
 import org.apereo.portal.rendering.CharacterPipelineComponent;
 
 /** component that can cache character pipeline events */
@@ -25,6 +30,53 @@ public class CachingCharacterPipelineComponent
         extends CachingPipelineComponent<CharacterEventReader, CharacterEvent>
         implements CharacterPipelineComponent {
 
+    /**
+     * Coalesces runs of adjacent {@link CharacterDataEvent}s into a single interned event, only
+     * the placeholder events between them need to remain distinct for replay. The {@link
+     * CharacterDataEventImpl#EMPTY_CHARACTER_DATA} chunk points are kept and never merged across,
+     * the data between them is what the theme cache shares between users.
+     */
+    @Override
+    protected List<CharacterEvent> bufferEvents(Iterable<CharacterEvent> events) {
+        final List<CharacterEvent> eventBuffer = new ArrayList<CharacterEvent>();
+        final StringBuilder data = new StringBuilder();
+        CharacterDataEvent firstDataEvent = null;
+        int dataEventCount = 0;
+        for (final CharacterEvent event : events) {
+            if (event.getEventType() == CharacterEventTypes.CHARACTER
+                    && event != CharacterDataEventImpl.EMPTY_CHARACTER_DATA) {
+                final CharacterDataEvent dataEvent = (CharacterDataEvent) event;
+                if (dataEventCount == 0) {
+                    firstDataEvent = dataEvent;
+                }
+                data.append(dataEvent.getData());
+                dataEventCount++;
+                continue;
+            }
+
+            addDataEvent(eventBuffer, firstDataEvent, dataEventCount, data);
+            dataEventCount = 0;
+            data.setLength(0);
+
+            eventBuffer.add(event);
+        }
+        addDataEvent(eventBuffer, firstDataEvent, dataEventCount, data);
+
+        return eventBuffer;
+    }
+
+    private void addDataEvent(
+            List<CharacterEvent> eventBuffer,
+            CharacterDataEvent firstDataEvent,
+            int dataEventCount,
+            StringBuilder data) {
+        if (dataEventCount == 1) {
+            eventBuffer.add(firstDataEvent);
+        } else if (dataEventCount > 1 && data.length() > 0) {
+            eventBuffer.add(CharacterDataEventImpl.create(data.toString()));
+        }
+    }
+
     @Override
     protected CharacterEventReader createEventReader(ListIterator<CharacterEvent> eventCache) {
         return new CharacterEventBufferReader(eventCache);
@@ -14,11 +14,18 @@
  */
 package org.apereo.portal.rendering.cache;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import net.sf.ehcache.Ehcache;
@@ -33,12 +40,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+import org.springframework.jmx.support.ObjectNameManager;
 
-/** Component that caches events from a wrapped component */
+/**
+ * Component that caches events from a wrapped component. Concurrent cache misses on the same key
+ * are coalesced so that the wrapped component is only called once per key.
+ *
+ * <p>There is a caching component per cached pipeline step, each is registered over JMX as
+ * uPortal:section=Rendering,name=<i>bean name</i>.
+ */
+@ManagedResource
 public abstract class CachingPipelineComponent<R, E> extends PipelineComponentWrapper<R, E>
-        implements BeanNameAware {
+        implements BeanNameAware, SelfNaming, CachingPipelineComponentMXBean {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final ConcurrentMap<CacheKey, FutureTask<CachedEventReader<E>>> inFlightMisses =
+            new ConcurrentHashMap<CacheKey, FutureTask<CachedEventReader<E>>>();
+    private final AtomicLong cacheMissCount = new AtomicLong();
+    private final AtomicLong coalescedMissCount = new AtomicLong();
+
     private ResourcesElementsProvider resourcesElementsProvider;
     private Ehcache cache;
     private String beanName;
@@ -57,6 +79,11 @@ public abstract class CachingPipelineComponent<R, E> extends PipelineComponentWr
         this.beanName = name;
     }
 
+    @Override
+    public ObjectName getObjectName() throws MalformedObjectNameException {
+        return ObjectNameManager.getInstance("uPortal:section=Rendering,name=" + this.beanName);
+    }
+
     @Override
     public final CacheKey getCacheKey(HttpServletRequest request, HttpServletResponse response) {
         return this.wrappedComponent.getCacheKey(request, response);
@@ -78,7 +105,7 @@ public abstract class CachingPipelineComponent<R, E> extends PipelineComponentWr
 
         // Get the key for this request from the target component and see if there is a cache entry
         final CacheKey cacheKey = this.wrappedComponent.getCacheKey(request, response);
-        Element element = this.cache.get(cacheKey);
+        final Element element = this.cache.get(cacheKey);
         CachedEventReader<E> cachedEventReader = null;
         if (element != null) {
             cachedEventReader = (CachedEventReader<E>) element.getObjectValue();
@@ -86,31 +113,7 @@ public abstract class CachingPipelineComponent<R, E> extends PipelineComponentWr
 
         // If there was a cached reader return it immediately
         if (cachedEventReader == null) {
-            // No cached data for key, call target component to get events and an updated cache key
-            logger.debug(
-                    "{} - No cached events found for key {}, calling parent",
-                    this.beanName,
-                    cacheKey);
-            final PipelineEventReader<R, E> pipelineEventReader =
-                    this.wrappedComponent.getEventReader(request, response);
-
-            // Copy the events from the reader into a buffer to be cached
-            final List<E> eventCache = new LinkedList<E>();
-            for (final E event : pipelineEventReader) {
-                // TODO add de-duplication logic here
-                eventCache.add(event);
-            }
-
-            final Map<String, String> outputProperties = pipelineEventReader.getOutputProperties();
-            cachedEventReader =
-                    new CachedEventReader<E>(
-                            eventCache, new LinkedHashMap<String, String>(outputProperties));
-
-            // Cache the buffer
-            element = new Element(cacheKey, cachedEventReader);
-            this.cache.put(element);
-            logger.debug(
-                    "{} - Cached {} events for key {}", this.beanName, eventCache.size(), cacheKey);
+            cachedEventReader = this.loadCachedEventReader(cacheKey, request, response);
         } else {
             logger.debug("{} - Found cached events for key {}", this.beanName, cacheKey);
         }
@@ -122,6 +125,108 @@ public abstract class CachingPipelineComponent<R, E> extends PipelineComponentWr
         return new PipelineEventReaderImpl<R, E>(eventReader, outputProperties);
     }
 
+    @Override
+    public long getCacheMissCount() {
+        return this.cacheMissCount.get();
+    }
+
+    @Override
+    public long getCoalescedMissCount() {
+        return this.coalescedMissCount.get();
+    }
+
+    @Override
+    public int getInFlightMissCount() {
+        return this.inFlightMisses.size();
+    }
+
+    /**
+     * Load the events for a key that is not in the cache. Only the first thread to miss on a key
+     * calls the wrapped component, concurrent misses on the same key wait for and share its result.
+     */
+    private CachedEventReader<E> loadCachedEventReader(
+            final CacheKey cacheKey,
+            final HttpServletRequest request,
+            final HttpServletResponse response) {
+        final FutureTask<CachedEventReader<E>> loadTask =
+                new FutureTask<CachedEventReader<E>>(
+                        () -> this.createCachedEventReader(cacheKey, request, response));
+
+        final FutureTask<CachedEventReader<E>> inFlightTask =
+                this.inFlightMisses.putIfAbsent(cacheKey, loadTask);
+        if (inFlightTask == null) {
+            this.cacheMissCount.incrementAndGet();
+            try {
+                loadTask.run();
+            } finally {
+                this.inFlightMisses.remove(cacheKey, loadTask);
+            }
+            return this.getLoadResult(loadTask);
+        }
+
+        this.coalescedMissCount.incrementAndGet();
+        logger.debug(
+                "{} - Events for key {} are already being loaded, waiting for the result",
+                this.beanName,
+                cacheKey);
+        return this.getLoadResult(inFlightTask);
+    }
+
+    private CachedEventReader<E> getLoadResult(FutureTask<CachedEventReader<E>> loadTask) {
+        try {
+            return loadTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for pipeline events", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to load pipeline events", cause);
+        }
+    }
+
+    private CachedEventReader<E> createCachedEventReader(
+            CacheKey cacheKey, HttpServletRequest request, HttpServletResponse response) {
+        // No cached data for key, call target component to get events and an updated cache key
+        logger.debug(
+                "{} - No cached events found for key {}, calling parent", this.beanName, cacheKey);
+        final PipelineEventReader<R, E> pipelineEventReader =
+                this.wrappedComponent.getEventReader(request, response);
+
+        // Copy the events from the reader into a buffer to be cached
+        final List<E> eventCache = this.bufferEvents(pipelineEventReader);
+
+        final Map<String, String> outputProperties = pipelineEventReader.getOutputProperties();
+        final CachedEventReader<E> cachedEventReader =
+                new CachedEventReader<E>(
+                        eventCache, new LinkedHashMap<String, String>(outputProperties));
+
+        // Cache the buffer
+        this.cache.put(new Element(cacheKey, cachedEventReader));
+        logger.debug(
+                "{} - Cached {} events for key {}", this.beanName, eventCache.size(), cacheKey);
+
+        return cachedEventReader;
+    }
+
+    /**
+     * Copy the events from the reader into a buffer to be cached. Subclasses can override this to
+     * de-duplicate or coalesce events before they are stored, the returned list is copied into a
+     * compact array backed list by {@link CachedEventReader}.
+     */
+    protected List<E> bufferEvents(Iterable<E> events) {
+        final List<E> eventBuffer = new ArrayList<E>();
+        for (final E event : events) {
+            eventBuffer.add(event);
+        }
+        return eventBuffer;
+    }
+
     // Ugly!!! Needed because XMLEventReader implements Iterator but does not parameterize it
     protected abstract R createEventReader(ListIterator<E> eventCache);
 }
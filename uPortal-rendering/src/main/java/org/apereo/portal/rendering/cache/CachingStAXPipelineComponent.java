@@ -14,8 +14,14 @@
  */
 package org.apereo.portal.rendering.cache;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.XMLEvent;
 import org.apereo.portal.rendering.StAXPipelineComponent;
 import org.apereo.portal.xml.stream.XMLEventBufferReader;
@@ -24,6 +30,30 @@ import org.apereo.portal.xml.stream.XMLEventBufferReader;
 public class CachingStAXPipelineComponent extends CachingPipelineComponent<XMLEventReader, XMLEvent>
         implements StAXPipelineComponent {
 
+    /**
+     * Shares a single instance of each distinct character data event within the buffer, layouts
+     * repeat the same indentation whitespace and attribute-like text content many times.
+     */
+    @Override
+    protected List<XMLEvent> bufferEvents(Iterable<XMLEvent> events) {
+        final List<XMLEvent> eventBuffer = new ArrayList<XMLEvent>();
+        final Map<String, XMLEvent> characterEvents = new HashMap<String, XMLEvent>();
+        for (XMLEvent event : events) {
+            if (event.getEventType() == XMLStreamConstants.CHARACTERS) {
+                final Characters characters = event.asCharacters();
+                if (!characters.isCData() && !characters.isIgnorableWhiteSpace()) {
+                    final XMLEvent existingEvent =
+                            characterEvents.putIfAbsent(characters.getData(), event);
+                    if (existingEvent != null) {
+                        event = existingEvent;
+                    }
+                }
+            }
+            eventBuffer.add(event);
+        }
+        return eventBuffer;
+    }
+
     @Override
     protected XMLEventReader createEventReader(ListIterator<XMLEvent> eventCache) {
         return new XMLEventBufferReader(eventCache);
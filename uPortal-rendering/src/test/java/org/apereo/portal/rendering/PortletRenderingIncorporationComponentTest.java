@@ -0,0 +1,100 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apereo.portal.character.stream.CharacterEventBufferReader;
+import org.apereo.portal.character.stream.CharacterEventReader;
+import org.apereo.portal.character.stream.events.CharacterDataEvent;
+import org.apereo.portal.character.stream.events.CharacterDataEventImpl;
+import org.apereo.portal.character.stream.events.CharacterEvent;
+import org.apereo.portal.character.stream.events.PortletContentPlaceholderEventImpl;
+import org.apereo.portal.portlet.om.IPortletWindowId;
+import org.apereo.portal.portlet.rendering.IPortletExecutionManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+/** Unit tests for PortletRenderingIncorporationComponent. */
+public class PortletRenderingIncorporationComponentTest {
+
+    @Mock private HttpServletRequest request;
+
+    @Mock private HttpServletResponse response;
+
+    @Mock private IPortletExecutionManager portletExecutionManager;
+
+    @Mock private CharacterPipelineComponent wrappedComponent;
+
+    @Mock private IPortletWindowId completePortletWindowId;
+
+    @Mock private IPortletWindowId renderingPortletWindowId;
+
+    @Before
+    public void beforeTests() {
+        initMocks(this);
+    }
+
+    /** Test that the response is flushed only before waiting on a portlet that is rendering */
+    @Test
+    public void flushesOnlyBeforeRenderingPortlets() throws IOException {
+        final List<CharacterEvent> events =
+                Arrays.asList(
+                        CharacterDataEventImpl.create("<div>"),
+                        new PortletContentPlaceholderEventImpl(completePortletWindowId),
+                        new PortletContentPlaceholderEventImpl(renderingPortletWindowId),
+                        CharacterDataEventImpl.create("</div>"));
+        when(wrappedComponent.getEventReader(request, response))
+                .thenReturn(
+                        new PipelineEventReaderImpl<CharacterEventReader, CharacterEvent>(
+                                new CharacterEventBufferReader(events.listIterator()),
+                                Collections.<String, String>emptyMap()));
+
+        when(portletExecutionManager.isPortletRenderComplete(
+                        completePortletWindowId, request, response))
+                .thenReturn(true);
+        when(portletExecutionManager.getPortletOutput(completePortletWindowId, request, response))
+                .thenReturn("complete");
+        when(portletExecutionManager.isPortletRenderComplete(
+                        renderingPortletWindowId, request, response))
+                .thenReturn(false);
+        when(portletExecutionManager.getPortletOutput(renderingPortletWindowId, request, response))
+                .thenReturn("rendering");
+
+        final PortletRenderingIncorporationComponent component =
+                new PortletRenderingIncorporationComponent();
+        component.setWrappedComponent(wrappedComponent);
+        component.setPortletExecutionManager(portletExecutionManager);
+
+        final StringBuilder output = new StringBuilder();
+        for (final CharacterEvent event : component.getEventReader(request, response)) {
+            output.append(((CharacterDataEvent) event).getData());
+        }
+
+        assertEquals("<div>completerendering</div>", output.toString());
+        verify(response, times(1)).flushBuffer();
+    }
+}
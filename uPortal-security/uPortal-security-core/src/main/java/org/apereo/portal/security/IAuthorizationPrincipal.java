@@ -14,6 +14,8 @@
  */
 package org.apereo.portal.security;
 
+import java.util.Collection;
+import java.util.Set;
 import org.apereo.portal.AuthorizationException;
 import org.apereo.portal.portlet.om.PortletLifecycleState;
 
@@ -172,4 +174,18 @@ public interface IAuthorizationPrincipal {
      */
     boolean hasPermission(String owner, String activity, String target, IPermissionPolicy policy)
             throws AuthorizationException;
+
+    /**
+     * Answers {@link #hasPermission(String, String, String)} for many targets of the same <code>
+     * owner</code> and <code>activity</code> at once.
+     *
+     * @return The targets this <code>IAuthorizationPrincipal</code> has permission for, in the
+     *     order of the targets
+     * @param owner java.lang.String
+     * @param activity java.lang.String
+     * @param targets java.util.Collection
+     * @exception AuthorizationException indicates authorization information could not be retrieved.
+     */
+    Set<String> getPermittedTargets(String owner, String activity, Collection<String> targets)
+            throws AuthorizationException;
 }
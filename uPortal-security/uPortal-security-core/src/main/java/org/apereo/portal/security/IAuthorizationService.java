@@ -14,6 +14,8 @@
  */
 package org.apereo.portal.security;
 
+import java.util.Collection;
+import java.util.Set;
 import org.apereo.portal.AuthorizationException;
 import org.apereo.portal.groups.GroupsException;
 import org.apereo.portal.groups.IGroupMember;
@@ -264,4 +266,23 @@ public interface IAuthorizationService {
             String target,
             IPermissionPolicy policy)
             throws AuthorizationException;
+
+    /**
+     * Answers {@link #doesPrincipalHavePermission(IAuthorizationPrincipal, String, String,
+     * String)} for many targets of the same owner and activity at once. The permission policy does
+     * the work that does not depend on the target, like the super-user check, only once.
+     *
+     * @return The targets the principal has permission for, in the order of the targets
+     * @param principal IAuthorizationPrincipal
+     * @param owner java.lang.String
+     * @param activity java.lang.String
+     * @param targets java.util.Collection
+     * @exception AuthorizationException indicates authorization information could not be retrieved.
+     */
+    Set<String> getPermittedTargets(
+            IAuthorizationPrincipal principal,
+            String owner,
+            String activity,
+            Collection<String> targets)
+            throws AuthorizationException;
 }
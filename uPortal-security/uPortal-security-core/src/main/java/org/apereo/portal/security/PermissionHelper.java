@@ -16,6 +16,7 @@ package org.apereo.portal.security;
 
 import org.apache.commons.lang3.Validate;
 import org.apereo.portal.portlet.om.IPortletDefinition;
+import org.apereo.portal.portlet.om.PortletLifecycleState;
 
 /**
  * Stateless static utility convenience methods for working with uPortal permissions.
@@ -44,4 +45,50 @@ public class PermissionHelper {
 
         return IPermission.PORTLET_PREFIX.concat(portletPublicationId);
     }
+
+    /**
+     * Static utility method choosing the BROWSE activity for portlets in a lifecycle state, each
+     * state has its own. There is no separate activity for MAINTENANCE, everyone simply sees the
+     * 'out of service' message.
+     *
+     * @param state a portlet lifecycle state
+     * @return The activity, null for an unknown state
+     * @since 5.17
+     */
+    public static String browseActivityForLifecycleState(final PortletLifecycleState state) {
+        if (state.equals(PortletLifecycleState.PUBLISHED)
+                || state.equals(PortletLifecycleState.MAINTENANCE)) {
+            return IPermission.PORTLET_BROWSE_ACTIVITY;
+        } else if (state.equals(PortletLifecycleState.APPROVED)) {
+            return IPermission.PORTLET_BROWSE_APPROVED_ACTIVITY;
+        } else if (state.equals(PortletLifecycleState.CREATED)) {
+            return IPermission.PORTLET_BROWSE_CREATED_ACTIVITY;
+        } else if (state.equals(PortletLifecycleState.EXPIRED)) {
+            return IPermission.PORTLET_BROWSE_EXPIRED_ACTIVITY;
+        }
+        return null;
+    }
+
+    /**
+     * Static utility method choosing the SUBSCRIBE activity for portlets in a lifecycle state,
+     * each state has its own. There is no separate activity for MAINTENANCE, everyone simply sees
+     * the 'out of service' message.
+     *
+     * @param state a portlet lifecycle state
+     * @return The activity, null for an unknown state
+     * @since 5.17
+     */
+    public static String subscribeActivityForLifecycleState(final PortletLifecycleState state) {
+        if (state.equals(PortletLifecycleState.PUBLISHED)
+                || state.equals(PortletLifecycleState.MAINTENANCE)) {
+            return IPermission.PORTLET_SUBSCRIBER_ACTIVITY;
+        } else if (state.equals(PortletLifecycleState.APPROVED)) {
+            return IPermission.PORTLET_SUBSCRIBER_APPROVED_ACTIVITY;
+        } else if (state.equals(PortletLifecycleState.CREATED)) {
+            return IPermission.PORTLET_SUBSCRIBER_CREATED_ACTIVITY;
+        } else if (state.equals(PortletLifecycleState.EXPIRED)) {
+            return IPermission.PORTLET_SUBSCRIBER_EXPIRED_ACTIVITY;
+        }
+        return null;
+    }
 }
@@ -14,6 +14,8 @@
  */
 package org.apereo.portal.security.provider;
 
+import java.util.Collection;
+import java.util.Set;
 import org.apereo.portal.AuthorizationException;
 import org.apereo.portal.groups.IEntityGroup;
 import org.apereo.portal.portlet.om.PortletLifecycleState;
@@ -248,4 +250,22 @@ public class AuthorizationPrincipalImpl implements IAuthorizationPrincipal {
         return getAuthorizationService()
                 .doesPrincipalHavePermission(this, owner, activity, target, policy);
     }
+
+    /**
+     * Answers {@link #hasPermission(String, String, String)} for many targets of the same <code>
+     * owner</code> and <code>activity</code> at once.
+     *
+     * @return The targets this <code>IAuthorizationPrincipal</code> has permission for, in the
+     *     order of the targets
+     * @param owner String
+     * @param activity String
+     * @param targets Collection
+     * @exception AuthorizationException indicates authorization information could not be retrieved.
+     */
+    @Override
+    public Set<String> getPermittedTargets(
+            String owner, String activity, Collection<String> targets)
+            throws AuthorizationException {
+        return getAuthorizationService().getPermittedTargets(this, owner, activity, targets);
+    }
 }
@@ -14,8 +14,11 @@
  */
 package org.apereo.portal.security.provider;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
@@ -64,6 +67,12 @@ import org.springframework.stereotype.Service;
  * <p>Principal -- Small group (DENY) -- Bigger group -- Huge group Principal -- Some other group --
  * Bigger other group (GRANT) -- Huge group Results in GRANT because there is an unblocked path to a
  * GRANT.
+ *
+ * <p>To avoid walking the groups tree when it cannot lead to an answer, the policy keeps an index
+ * of the principals holding any permission for each owner and activity, and the set of ancestor
+ * groups of each principal. Principals outside the index are passed through without looking up
+ * their permissions, and when neither the principal nor any of its ancestors is in the index the
+ * answer is DENY without walking the tree at all.
  */
 @Service("anyUnblockedGrantPermissionPolicy")
 public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
@@ -80,6 +89,18 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
                     "org.apereo.portal.security.provider.AnyUnblockedGrantPermissionPolicy.HAS_UNBLOCKED_GRANT")
     private Cache hasUnblockedGrantCache;
 
+    @Autowired
+    @Qualifier(
+            value =
+                    "org.apereo.portal.security.provider.AnyUnblockedGrantPermissionPolicy.PERMISSION_PRINCIPALS")
+    private Cache permissionPrincipalsCache;
+
+    @Autowired
+    @Qualifier(
+            value =
+                    "org.apereo.portal.security.provider.AnyUnblockedGrantPermissionPolicy.ANCESTOR_PRINCIPALS")
+    private Cache ancestorPrincipalsCache;
+
     @Override
     public boolean doesPrincipalHavePermission(
             IAuthorizationService service,
@@ -114,28 +135,99 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
             return false;
         }
 
-        // Is this user a super-user?  (Should this logic be moved to AuthorizationImpl?)
-        final IPermissionActivity allPermissionsActivity =
-                permissionOwnerDao.getPermissionActivity(
-                        IPermission.PORTAL_SYSTEM, IPermission.ALL_PERMISSIONS_ACTIVITY);
-        if (!activity.equals(
-                allPermissionsActivity)) { // NOTE:  Must check to avoid infinite recursion
-            final IPermissionOwner allPermissionsOwner =
-                    permissionOwnerDao.getPermissionOwner(IPermission.PORTAL_SYSTEM);
-            final IPermissionTarget allPermissionsTarget =
-                    targetProviderRegistry
-                            .getTargetProvider(allPermissionsActivity.getTargetProviderKey())
-                            .getTarget(IPermission.ALL_TARGET);
-            if (doesPrincipalHavePermission(
+        if (isSuperUser(service, principal, activity)) {
+            // Stop checking;  just return true
+            return true;
+        }
+
+        return hasPermission(service, principal, owner, activity, target);
+    }
+
+    /**
+     * Answers {@link #doesPrincipalHavePermission(IAuthorizationService, IAuthorizationPrincipal,
+     * IPermissionOwner, IPermissionActivity, IPermissionTarget)} for each target, checking for the
+     * super-user permission and for permissions anywhere in the principal's groups only once.
+     */
+    @Override
+    public Set<IPermissionTarget> getPermittedTargets(
+            IAuthorizationService service,
+            IAuthorizationPrincipal principal,
+            IPermissionOwner owner,
+            IPermissionActivity activity,
+            Collection<IPermissionTarget> targets)
+            throws AuthorizationException {
+
+        final Set<IPermissionTarget> result = new LinkedHashSet<>();
+        if (service == null
+                || principal == null
+                || owner == null
+                || activity == null
+                || targets == null) {
+            log.error(
+                    "Null argument to AnyUnblockedGrantPermissionPolicy getPermittedTargets() "
+                            + "method should not be possible;  service='{}', principal='{}', "
+                            + "owner='{}', activity='{}', targets='{}'",
                     service,
                     principal,
-                    allPermissionsOwner,
-                    allPermissionsActivity,
-                    allPermissionsTarget)) {
-                // Stop checking;  just return true
-                return true;
+                    owner,
+                    activity,
+                    targets,
+                    new AuthorizationException("Null argument"));
+            // fail closed
+            return result;
+        }
+
+        if (isSuperUser(service, principal, activity)) {
+            result.addAll(targets);
+            return result;
+        }
+
+        if (!hasPermissionsInGroups(service, principal, owner, activity)) {
+            // Neither the targets nor their collective targets can be granted
+            return result;
+        }
+
+        for (final IPermissionTarget target : targets) {
+            if (target != null && hasPermission(service, principal, owner, activity, target)) {
+                result.add(target);
             }
         }
+        return result;
+    }
+
+    /** Is this user a super-user? (Should this logic be moved to AuthorizationImpl?) */
+    private boolean isSuperUser(
+            IAuthorizationService service,
+            IAuthorizationPrincipal principal,
+            IPermissionActivity activity) {
+        final IPermissionActivity allPermissionsActivity =
+                permissionOwnerDao.getPermissionActivity(
+                        IPermission.PORTAL_SYSTEM, IPermission.ALL_PERMISSIONS_ACTIVITY);
+        if (activity.equals(allPermissionsActivity)) {
+            // NOTE:  Must check to avoid infinite recursion
+            return false;
+        }
+        final IPermissionOwner allPermissionsOwner =
+                permissionOwnerDao.getPermissionOwner(IPermission.PORTAL_SYSTEM);
+        final IPermissionTarget allPermissionsTarget =
+                targetProviderRegistry
+                        .getTargetProvider(allPermissionsActivity.getTargetProviderKey())
+                        .getTarget(IPermission.ALL_TARGET);
+        return hasPermission(
+                service,
+                principal,
+                allPermissionsOwner,
+                allPermissionsActivity,
+                allPermissionsTarget);
+    }
+
+    /** Checks the target and its collective target, the super-user check is up to the caller. */
+    private boolean hasPermission(
+            IAuthorizationService service,
+            IAuthorizationPrincipal principal,
+            IPermissionOwner owner,
+            IPermissionActivity activity,
+            IPermissionTarget target) {
 
         /*
          * uPortal uses a few "special" targets that signal permission to
@@ -171,8 +263,7 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
          * the collective target, else StackOverflowError.
          */
         if (collectiveTarget != null && !collectiveTarget.equals(target)) {
-            if (doesPrincipalHavePermission(
-                    service, principal, owner, activity, collectiveTarget)) {
+            if (hasPermission(service, principal, owner, activity, collectiveTarget)) {
                 /*
                  * There is a collective for this class of target,
                  * and the user DOES have this special permission
@@ -184,11 +275,23 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
         // Search ourselves and all ancestors for an unblocked GRANT.
         boolean result;
         try {
-            // Track groups we've already explored to avoid infinite loop
-            final Set<IGroupMember> seenGroups = new HashSet<>();
-            result =
-                    hasUnblockedPathToGrantWithCache(
-                            service, principal, owner, activity, target, seenGroups);
+            if (hasPermissionsInGroups(service, principal, owner, activity)) {
+                // Track groups we've already explored to avoid infinite loop
+                final Set<IGroupMember> seenGroups = new HashSet<>();
+                final Set<String> permissionPrincipals =
+                        getPermissionPrincipals(service, owner, activity);
+                result =
+                        hasUnblockedPathToGrantWithCache(
+                                service,
+                                principal,
+                                owner,
+                                activity,
+                                target,
+                                permissionPrincipals,
+                                seenGroups);
+            } else {
+                result = false;
+            }
         } catch (Exception e) {
             log.error(
                     "Error searching for unblocked path to grant for principal [" + principal + "]",
@@ -228,6 +331,7 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
             IPermissionOwner owner,
             IPermissionActivity activity,
             IPermissionTarget target,
+            Set<String> permissionPrincipals,
             Set<IGroupMember> seenGroups)
             throws GroupsException {
 
@@ -236,7 +340,13 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
         if (element == null) {
             final boolean answer =
                     hasUnblockedPathToGrant(
-                            service, principal, owner, activity, target, seenGroups);
+                            service,
+                            principal,
+                            owner,
+                            activity,
+                            target,
+                            permissionPrincipals,
+                            seenGroups);
             element = new Element(cacheKey, answer);
             hasUnblockedGrantCache.put(element);
         }
@@ -252,7 +362,8 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
      *
      * <ol>
      *   <li>Find out if the specified principal is <em>specifically</em> granted or denied; if an
-     *       answer is found in this step, return it
+     *       answer is found in this step, return it (skipped for principals that hold no
+     *       permission for the owner and activity)
      *   <li>Find out what groups this principal belongs to; convert each one to a principal and
      *       seek an answer by invoking ourselves recursively; if an answer is found in this step,
      *       return it
@@ -265,6 +376,7 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
             IPermissionOwner owner,
             IPermissionActivity activity,
             IPermissionTarget target,
+            Set<String> permissionPrincipals,
             Set<IGroupMember> seenGroups)
             throws GroupsException {
 
@@ -281,27 +393,29 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
         /*
          * Step #1:  Specific GRANT/DENY attached to this principal
          */
-        final IPermission[] permissions =
-                service.getPermissionsForPrincipal(
-                        principal, owner.getFname(), activity.getFname(), target.getKey());
-
-        final Set<IPermission> activePermissions = removeInactivePermissions(permissions);
-        final boolean denyExists =
-                containsType(activePermissions, IPermission.PERMISSION_TYPE_DENY);
-        if (denyExists) {
-            // We need go no further;  DENY trumps both GRANT & inherited permissions
-            return false;
-        }
-        final boolean grantExists =
-                containsType(activePermissions, IPermission.PERMISSION_TYPE_GRANT);
-        if (grantExists) {
-            // We need go no further;  explicit GRANT at this level of the hierarchy
-            if (log.isTraceEnabled()) {
-                log.trace(
-                        "Found unblocked path to this permission set including a GRANT:  {}",
-                        activePermissions);
+        if (permissionPrincipals.contains(principal.getPrincipalString())) {
+            final IPermission[] permissions =
+                    service.getPermissionsForPrincipal(
+                            principal, owner.getFname(), activity.getFname(), target.getKey());
+
+            final Set<IPermission> activePermissions = removeInactivePermissions(permissions);
+            final boolean denyExists =
+                    containsType(activePermissions, IPermission.PERMISSION_TYPE_DENY);
+            if (denyExists) {
+                // We need go no further;  DENY trumps both GRANT & inherited permissions
+                return false;
+            }
+            final boolean grantExists =
+                    containsType(activePermissions, IPermission.PERMISSION_TYPE_GRANT);
+            if (grantExists) {
+                // We need go no further;  explicit GRANT at this level of the hierarchy
+                if (log.isTraceEnabled()) {
+                    log.trace(
+                            "Found unblocked path to this permission set including a GRANT:  {}",
+                            activePermissions);
+                }
+                return true;
             }
-            return true;
         }
 
         /*
@@ -328,7 +442,13 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
                     IAuthorizationPrincipal parentPrincipal = service.newPrincipal(parentGroup);
                     boolean parentHasUnblockedPathToGrant =
                             hasUnblockedPathToGrantWithCache(
-                                    service, parentPrincipal, owner, activity, target, seenGroups);
+                                    service,
+                                    parentPrincipal,
+                                    owner,
+                                    activity,
+                                    target,
+                                    permissionPrincipals,
+                                    seenGroups);
                     if (parentHasUnblockedPathToGrant) {
                         return true;
                     }
@@ -350,6 +470,83 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
         return false;
     }
 
+    /**
+     * Answers whether the principal or any group containing it, directly or indirectly, holds a
+     * permission of any type on any target for the owner and activity. If not there cannot be a
+     * GRANT for the principal. Answers true if the groups could not be determined so the groups
+     * tree is still walked, where a broken portion of the tree does not prevent a GRANT.
+     */
+    private boolean hasPermissionsInGroups(
+            IAuthorizationService service,
+            IAuthorizationPrincipal principal,
+            IPermissionOwner owner,
+            IPermissionActivity activity) {
+        final Set<String> permissionPrincipals = getPermissionPrincipals(service, owner, activity);
+        if (permissionPrincipals.isEmpty()) {
+            return false;
+        }
+        final Set<String> selfAndAncestorPrincipals;
+        try {
+            selfAndAncestorPrincipals = getSelfAndAncestorPrincipals(service, principal);
+        } catch (Exception e) {
+            log.warn("Error determining ancestor groups of principal [" + principal + "]", e);
+            return true;
+        }
+        for (final String principalString : selfAndAncestorPrincipals) {
+            if (permissionPrincipals.contains(principalString)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the principal strings of all principals that hold a permission of any type on any
+     * target for the owner and activity. Entries are removed by {@link AuthorizationImpl} when
+     * permissions for the owner and activity are added, updated or removed.
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> getPermissionPrincipals(
+            IAuthorizationService service, IPermissionOwner owner, IPermissionActivity activity) {
+        final CacheKey cacheKey =
+                getPermissionPrincipalsCacheKey(owner.getFname(), activity.getFname());
+        Element element = permissionPrincipalsCache.get(cacheKey);
+        if (element == null) {
+            final IPermission[] permissions =
+                    service.getPermissionsForOwner(owner.getFname(), activity.getFname(), null);
+            final Set<String> principals = new HashSet<>();
+            for (final IPermission permission : permissions) {
+                principals.add(permission.getPrincipal());
+            }
+            element = new Element(cacheKey, Collections.unmodifiableSet(principals));
+            permissionPrincipalsCache.put(element);
+        }
+        return (Set<String>) element.getObjectValue();
+    }
+
+    /**
+     * Returns the principal strings of the principal and every group that contains it, directly or
+     * indirectly.
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> getSelfAndAncestorPrincipals(
+            IAuthorizationService service, IAuthorizationPrincipal principal)
+            throws GroupsException {
+        final CacheKey cacheKey = getCacheKey(principal);
+        Element element = ancestorPrincipalsCache.get(cacheKey);
+        if (element == null) {
+            final Set<String> principals = new HashSet<>();
+            principals.add(principal.getPrincipalString());
+            final IGroupMember groupMember = service.getGroupMember(principal);
+            for (final IEntityGroup group : groupMember.getAncestorGroups()) {
+                principals.add(service.newPrincipal(group).getPrincipalString());
+            }
+            element = new Element(cacheKey, Collections.unmodifiableSet(principals));
+            ancestorPrincipalsCache.put(element);
+        }
+        return (Set<String>) element.getObjectValue();
+    }
+
     /**
      * Returns a Set containing those IPermission instances where the present date is neither after
      * the permission expiration if present nor before the permission start date if present. Only
@@ -403,6 +600,23 @@ public class AnyUnblockedGrantPermissionPolicy implements IPermissionPolicy {
         return result;
     }
 
+    static CacheKey getPermissionPrincipalsCacheKey(String owner, String activity) {
+        return CacheKey.build(
+                AnyUnblockedGrantPermissionPolicy.class.getName(), owner, activity);
+    }
+
+    protected CacheKey getCacheKey(IAuthorizationPrincipal principal) {
+        if (principal.isGroup()) {
+            return CacheKey.build(
+                    AnyUnblockedGrantPermissionPolicy.class.getName(),
+                    principal.getPrincipalString());
+        }
+        return CacheKey.buildTagged(
+                AnyUnblockedGrantPermissionPolicy.class.getName(),
+                UsernameTaggedCacheEntryPurger.createCacheEntryTag(principal.getKey()),
+                principal.getPrincipalString());
+    }
+
     protected CacheKey getCacheKey(
             IAuthorizationPrincipal principal,
             IPermissionOwner owner,
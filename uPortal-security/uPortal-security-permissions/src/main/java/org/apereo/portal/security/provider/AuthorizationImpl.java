@@ -17,8 +17,12 @@ package org.apereo.portal.security.provider;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -110,6 +114,9 @@ public class AuthorizationImpl implements IAuthorizationService {
     /** The cache to hold permission resolution. */
     private Ehcache doesPrincipalHavePermissionCache;
 
+    /** The cache to hold the principals with permissions per owner and activity. */
+    private Ehcache permissionPrincipalsCache;
+
     /** The class representing the permission set type. */
     private static final Class<IPermissionSet> PERMISSION_SET_TYPE = IPermissionSet.class;
 
@@ -168,6 +175,14 @@ public class AuthorizationImpl implements IAuthorizationService {
         this.doesPrincipalHavePermissionCache = doesPrincipalHavePermissionCache;
     }
 
+    @Autowired
+    public void setPermissionPrincipalsCache(
+            @Qualifier(
+                            "org.apereo.portal.security.provider.AnyUnblockedGrantPermissionPolicy.PERMISSION_PRINCIPALS")
+                    Ehcache permissionPrincipalsCache) {
+        this.permissionPrincipalsCache = permissionPrincipalsCache;
+    }
+
     @Autowired
     public void setPortletDefinitionRegistry(IPortletDefinitionRegistry portletDefinitionRegistry) {
         this.portletDefinitionRegistry = portletDefinitionRegistry;
@@ -193,6 +208,7 @@ public class AuthorizationImpl implements IAuthorizationService {
     public void addPermissions(IPermission[] permissions) throws AuthorizationException {
         if (permissions.length > 0) {
             getPermissionStore().add(permissions);
+            removeFromPermissionPrincipalsCache(permissions);
             if (this.cachePermissions) {
                 removeFromPermissionsCache(permissions);
             }
@@ -440,19 +456,8 @@ public class AuthorizationImpl implements IAuthorizationService {
          * Each channel lifecycle state now has its own browse permission.  The
          * following logic checks the appropriate permission for the lifecycle.
          */
-        String permission;
-        if (state.equals(PortletLifecycleState.PUBLISHED)
-                || state.equals(PortletLifecycleState.MAINTENANCE)) {
-            // NB:  There is no separate BROWSE permission for MAINTENANCE
-            // mode;  everyone simply sees the 'out of service' message
-            permission = IPermission.PORTLET_BROWSE_ACTIVITY;
-        } else if (state.equals(PortletLifecycleState.APPROVED)) {
-            permission = IPermission.PORTLET_BROWSE_APPROVED_ACTIVITY;
-        } else if (state.equals(PortletLifecycleState.CREATED)) {
-            permission = IPermission.PORTLET_BROWSE_CREATED_ACTIVITY;
-        } else if (state.equals(PortletLifecycleState.EXPIRED)) {
-            permission = IPermission.PORTLET_BROWSE_EXPIRED_ACTIVITY;
-        } else {
+        final String permission = PermissionHelper.browseActivityForLifecycleState(state);
+        if (permission == null) {
             throw new AuthorizationException(
                     "Unrecognized lifecycle state for channel "
                             + portlet.getPortletDefinitionId().getStringId());
@@ -492,19 +497,8 @@ public class AuthorizationImpl implements IAuthorizationService {
          * Each channel lifecycle state now has its own subscribe permission.  The
          * following logic checks the appropriate permission for the lifecycle.
          */
-        String permission;
-        if (state.equals(PortletLifecycleState.PUBLISHED)
-                || state.equals(PortletLifecycleState.MAINTENANCE)) {
-            // NB:  There is no separate SUBSCRIBE permission for MAINTENANCE
-            // mode;  everyone simply sees the 'out of service' message
-            permission = IPermission.PORTLET_SUBSCRIBER_ACTIVITY;
-        } else if (state.equals(PortletLifecycleState.APPROVED)) {
-            permission = IPermission.PORTLET_SUBSCRIBER_APPROVED_ACTIVITY;
-        } else if (state.equals(PortletLifecycleState.CREATED)) {
-            permission = IPermission.PORTLET_SUBSCRIBER_CREATED_ACTIVITY;
-        } else if (state.equals(PortletLifecycleState.EXPIRED)) {
-            permission = IPermission.PORTLET_SUBSCRIBER_EXPIRED_ACTIVITY;
-        } else {
+        final String permission = PermissionHelper.subscribeActivityForLifecycleState(state);
+        if (permission == null) {
             throw new AuthorizationException(
                     "Unrecognized lifecycle state for channel " + portletDefinitionId);
         }
@@ -556,16 +550,7 @@ public class AuthorizationImpl implements IAuthorizationService {
             IPermissionPolicy policy)
             throws AuthorizationException {
 
-        final CacheKeyBuilder<Serializable, Serializable> cacheKeyBuilder =
-                CacheKey.builder(AuthorizationImpl.class.getName());
-        final String username = principal.getKey();
-        if (IPerson.class.equals(principal.getType())) {
-            cacheKeyBuilder.addTag(UsernameTaggedCacheEntryPurger.createCacheEntryTag(username));
-        }
-        cacheKeyBuilder.addAll(
-                policy.getClass(), username, principal.getType(), owner, activity, target);
-
-        final CacheKey key = cacheKeyBuilder.build();
+        final CacheKey key = getPermissionCacheKey(principal, owner, activity, target, policy);
 
         final Element element = this.doesPrincipalHavePermissionCache.get(key);
         if (element != null) {
@@ -635,6 +620,105 @@ public class AuthorizationImpl implements IAuthorizationService {
         return result;
     }
 
+    /**
+     * Answers {@link #doesPrincipalHavePermission(IAuthorizationPrincipal, String, String,
+     * String)} for many targets of the same owner and activity at once. The answers are cached
+     * like those of single targets, the targets that are not cached yet are evaluated with one
+     * call to {@link IPermissionPolicy#getPermittedTargets(IAuthorizationService,
+     * IAuthorizationPrincipal, IPermissionOwner, IPermissionActivity, Collection)}.
+     *
+     * @return The targets the principal has permission for, in the order of the targets
+     * @param principal IAuthorizationPrincipal
+     * @param owner java.lang.String
+     * @param activity java.lang.String
+     * @param targets java.util.Collection
+     * @exception AuthorizationException indicates authorization information could not be retrieved.
+     */
+    @Override
+    public Set<String> getPermittedTargets(
+            IAuthorizationPrincipal principal,
+            String owner,
+            String activity,
+            Collection<String> targets)
+            throws AuthorizationException {
+
+        final IPermissionPolicy policy = getDefaultPermissionPolicy();
+        final Map<String, Boolean> answers = new HashMap<>();
+        final Map<String, CacheKey> uncachedKeys = new LinkedHashMap<>();
+        for (final String target : targets) {
+            if (answers.containsKey(target) || uncachedKeys.containsKey(target)) {
+                continue;
+            }
+            final CacheKey key = getPermissionCacheKey(principal, owner, activity, target, policy);
+            final Element element = this.doesPrincipalHavePermissionCache.get(key);
+            if (element != null) {
+                answers.put(target, (Boolean) element.getValue());
+            } else {
+                uncachedKeys.put(target, key);
+            }
+        }
+
+        final IPermissionActivity ipActivity =
+                uncachedKeys.isEmpty()
+                        ? null
+                        : permissionOwnerDao.getPermissionActivity(owner, activity);
+        if (ipActivity != null) {
+            final IPermissionOwner ipOwner = permissionOwnerDao.getPermissionOwner(owner);
+            final IPermissionTargetProvider targetProvider =
+                    targetProviderRegistry.getTargetProvider(ipActivity.getTargetProviderKey());
+            final Map<String, IPermissionTarget> ipTargets = new LinkedHashMap<>();
+            for (final String target : uncachedKeys.keySet()) {
+                final IPermissionTarget ipTarget = targetProvider.getTarget(target);
+                if (ipTarget != null) {
+                    ipTargets.put(target, ipTarget);
+                }
+            }
+
+            final Set<IPermissionTarget> permittedTargets =
+                    policy.getPermittedTargets(
+                            this, principal, ipOwner, ipActivity, ipTargets.values());
+            for (final Map.Entry<String, IPermissionTarget> ipTarget : ipTargets.entrySet()) {
+                final String target = ipTarget.getKey();
+                final boolean result = permittedTargets.contains(ipTarget.getValue());
+                this.doesPrincipalHavePermissionCache.put(
+                        new Element(uncachedKeys.remove(target), result));
+                answers.put(target, result);
+            }
+        }
+
+        // Unknown targets and activities get the answer of a single target, which handles them
+        for (final String target : uncachedKeys.keySet()) {
+            answers.put(
+                    target, doesPrincipalHavePermission(principal, owner, activity, target, policy));
+        }
+
+        final Set<String> result = new LinkedHashSet<>();
+        for (final String target : targets) {
+            if (answers.get(target)) {
+                result.add(target);
+            }
+        }
+        return result;
+    }
+
+    /** Key of the cached answer of {@link #doesPrincipalHavePermission} */
+    private CacheKey getPermissionCacheKey(
+            IAuthorizationPrincipal principal,
+            String owner,
+            String activity,
+            String target,
+            IPermissionPolicy policy) {
+        final CacheKeyBuilder<Serializable, Serializable> cacheKeyBuilder =
+                CacheKey.builder(AuthorizationImpl.class.getName());
+        final String username = principal.getKey();
+        if (IPerson.class.equals(principal.getType())) {
+            cacheKeyBuilder.addTag(UsernameTaggedCacheEntryPurger.createCacheEntryTag(username));
+        }
+        cacheKeyBuilder.addAll(
+                policy.getClass(), username, principal.getType(), owner, activity, target);
+        return cacheKeyBuilder.build();
+    }
+
     /**
      * Returns the <code>IPermissions</code> owner has granted this <code>Principal</code> for the
      * specified activity and target. Null parameters will be ignored, that is, all <code>
@@ -1162,6 +1246,20 @@ public class AuthorizationImpl implements IAuthorizationService {
         removeFromPermissionsCache(principals);
     }
 
+    /**
+     * Removes the principals holding permissions for the owners and activities of the <code>
+     * IPermissions</code> from the cache.
+     *
+     * @param permissions IPermission[]
+     */
+    private void removeFromPermissionPrincipalsCache(IPermission[] permissions) {
+        for (IPermission permission : permissions) {
+            this.permissionPrincipalsCache.remove(
+                    AnyUnblockedGrantPermissionPolicy.getPermissionPrincipalsCacheKey(
+                            permission.getOwner(), permission.getActivity()));
+        }
+    }
+
     /**
      * Removes <code>IPermissions</code> from the back end store.
      *
@@ -1172,6 +1270,7 @@ public class AuthorizationImpl implements IAuthorizationService {
     public void removePermissions(IPermission[] permissions) throws AuthorizationException {
         if (permissions.length > 0) {
             getPermissionStore().delete(permissions);
+            removeFromPermissionPrincipalsCache(permissions);
             if (this.cachePermissions) {
                 removeFromPermissionsCache(permissions);
             }
@@ -1188,6 +1287,7 @@ public class AuthorizationImpl implements IAuthorizationService {
     public void updatePermissions(IPermission[] permissions) throws AuthorizationException {
         if (permissions.length > 0) {
             getPermissionStore().update(permissions);
+            removeFromPermissionPrincipalsCache(permissions);
             if (this.cachePermissions) {
                 removeFromPermissionsCache(permissions);
             }
@@ -19,6 +19,7 @@ import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -262,11 +263,15 @@ public class PortalShellBuildHelperImpl implements PortalShellBuildHelper {
                             "Exporting All Data of types " + types + " to: " + dataDir);
                 }
 
-                portalDataHandlerService.exportAllDataOfType(
-                        types,
-                        dataDirFile,
+                final IPortalDataHandlerService.BatchExportOptions options =
                         new IPortalDataHandlerService.BatchExportOptions()
-                                .setLogDirectoryParent(logDir));
+                                .setLogDirectoryParent(logDir);
+                if (isExportArchive(dataDir)) {
+                    portalDataHandlerService.exportAllDataOfTypeToArchive(
+                            types, dataDirFile, options);
+                } else {
+                    portalDataHandlerService.exportAllDataOfType(types, dataDirFile, options);
+                }
             } catch (Exception e) {
                 throw new RuntimeException(
                         target + " to " + dataDir + " of " + type + " failed", e);
@@ -274,16 +279,30 @@ public class PortalShellBuildHelperImpl implements PortalShellBuildHelper {
         } else {
             try {
                 PortalShell.LOGGER.info("Exporting All Data to: " + dataDir);
-                portalDataHandlerService.exportAllData(
-                        dataDirFile,
+                final IPortalDataHandlerService.BatchExportOptions options =
                         new IPortalDataHandlerService.BatchExportOptions()
-                                .setLogDirectoryParent(logDir));
+                                .setLogDirectoryParent(logDir);
+                if (isExportArchive(dataDir)) {
+                    portalDataHandlerService.exportAllDataToArchive(dataDirFile, options);
+                } else {
+                    portalDataHandlerService.exportAllData(dataDirFile, options);
+                }
             } catch (Exception e) {
                 throw new RuntimeException(target + " to " + dataDir + " failed", e);
             }
         }
     }
 
+    /** Bulk exports to a path with an archive extension are written into that archive */
+    private static boolean isExportArchive(String dataDir) {
+        final String name = dataDir.toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip")
+                || name.endsWith(".jar")
+                || name.endsWith(".tar")
+                || name.endsWith(".tar.gz")
+                || name.endsWith(".tgz");
+    }
+
     @Override
     public void dataImport(
             String target, String dataDir, String pattern, String file, String logDir) {
@@ -55,6 +55,11 @@ public class BufferedXMLEventReader extends BaseXMLEventReader {
         if (this.bufferReader != null) {
             final XMLEvent event = this.bufferReader.next();
 
+            // If no longer buffering drop the event once it has been re-read
+            if (this.eventLimit == 0) {
+                this.bufferReader.remove();
+            }
+
             // If nothing left in the iterator, remove the reference and fall through to direct
             // reading
             if (!this.bufferReader.hasNext()) {
@@ -137,6 +142,26 @@ public class BufferedXMLEventReader extends BaseXMLEventReader {
         }
     }
 
+    /**
+     * Stop buffering events without losing the buffered events that have not been re-read yet
+     * since the last {@link #reset()}. Those are still returned and dropped as they are read, after
+     * which this reader can no longer be reset.
+     */
+    public void release() {
+        this.eventLimit = 0;
+
+        if (this.bufferReader == null) {
+            this.eventBuffer.clear();
+        } else {
+            // Drop the events that have already been re-read
+            final int nextIndex = this.bufferReader.nextIndex();
+            for (int i = 0; i < nextIndex; i++) {
+                this.eventBuffer.poll();
+            }
+            this.bufferReader = this.eventBuffer.listIterator();
+        }
+    }
+
     /** Reset the reader to these start of the buffered events. */
     public void reset() {
         if (this.eventBuffer.isEmpty()) {
@@ -102,4 +102,34 @@ public class BufferedXMLEventReaderTest {
         }
         assertEquals(132, eventCount);
     }
+
+    @Test
+    public void testReleaseAfterReset() throws Exception {
+        final XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+
+        final InputStream xmlStream = this.getClass().getResourceAsStream("document.xml");
+        final XMLEventReader xmlEventReader = xmlInputFactory.createXMLEventReader(xmlStream);
+
+        final BufferedXMLEventReader reader = new BufferedXMLEventReader(xmlEventReader, -1);
+        for (int i = 0; i < 10; i++) {
+            reader.nextEvent();
+        }
+
+        reader.reset();
+        for (int i = 0; i < 5; i++) {
+            reader.nextEvent();
+        }
+
+        // The 5 buffered events not re-read yet are still returned, nothing else is buffered
+        reader.release();
+        assertEquals(5, reader.getBuffer().size());
+
+        int eventCount = 5;
+        while (reader.hasNext()) {
+            reader.nextEvent();
+            eventCount++;
+        }
+        assertEquals(122, eventCount);
+        assertEquals(0, reader.getBuffer().size());
+    }
 }
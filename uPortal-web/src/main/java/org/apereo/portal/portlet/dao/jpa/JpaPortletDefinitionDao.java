@@ -28,18 +28,23 @@ import org.apache.commons.lang.Validate;
 import org.apereo.portal.jpa.BasePortalJpaDao;
 import org.apereo.portal.jpa.OpenEntityManager;
 import org.apereo.portal.portlet.dao.IPortletDefinitionDao;
+import org.apereo.portal.portlet.dao.PortletDefinitionChangeEvent;
+import org.apereo.portal.portlet.dao.PortletDefinitionChangeEvent.ChangeType;
 import org.apereo.portal.portlet.om.IPortletDefinition;
 import org.apereo.portal.portlet.om.IPortletDefinitionId;
 import org.apereo.portal.spring.tx.DialectAwareTransactional;
 import org.hibernate.dialect.PostgreSQL81Dialect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.stereotype.Repository;
 
 /** JPA implementation of the portlet definition DAO */
 @Repository
-public class JpaPortletDefinitionDao extends BasePortalJpaDao implements IPortletDefinitionDao {
+public class JpaPortletDefinitionDao extends BasePortalJpaDao
+        implements IPortletDefinitionDao, ApplicationEventPublisherAware {
 
     private CriteriaQuery<PortletDefinitionImpl> findAllPortletDefinitions;
     private CriteriaQuery<PortletDefinitionImpl> findDefinitionByNameQuery;
@@ -47,9 +52,15 @@ public class JpaPortletDefinitionDao extends BasePortalJpaDao implements IPortle
     private CriteriaQuery<PortletDefinitionImpl> searchDefinitionByNameOrTitleQuery;
     private ParameterExpression<String> nameParameter;
     private ParameterExpression<String> titleParameter;
+    private ApplicationEventPublisher applicationEventPublisher;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
     @Override
     public void afterPropertiesSet() {
         this.nameParameter = this.createParameterExpression(String.class, "name");
@@ -232,6 +243,7 @@ public class JpaPortletDefinitionDao extends BasePortalJpaDao implements IPortle
         }
 
         entityManager.remove(persistentPortletDefinition);
+        this.publishChange(persistentPortletDefinition, ChangeType.DELETED);
     }
 
     @Override
@@ -256,6 +268,7 @@ public class JpaPortletDefinitionDao extends BasePortalJpaDao implements IPortle
         Validate.notEmpty(portletDefinition.getName(), "portletDefinition name can not be null");
         Validate.notEmpty(portletDefinition.getTitle(), "portletDefinition title can not be null");
         this.getEntityManager().persist(portletDefinition);
+        this.publishChange(portletDefinition, ChangeType.SAVED);
         return portletDefinition;
     }
 
@@ -269,9 +282,18 @@ public class JpaPortletDefinitionDao extends BasePortalJpaDao implements IPortle
         Validate.notEmpty(portletDefinition.getName(), "portletDefinition name can not be null");
         Validate.notEmpty(portletDefinition.getTitle(), "portletDefinition title can not be null");
         this.getEntityManager().merge(portletDefinition);
+        this.publishChange(portletDefinition, ChangeType.SAVED);
         return portletDefinition;
     }
 
+    private void publishChange(IPortletDefinition portletDefinition, ChangeType changeType) {
+        if (this.applicationEventPublisher != null) {
+            final String fname = portletDefinition.getFName();
+            this.applicationEventPublisher.publishEvent(
+                    new PortletDefinitionChangeEvent(this, fname, changeType));
+        }
+    }
+
     private long getNativePortletDefinitionId(IPortletDefinitionId portletDefinitionId) {
         return Long.parseLong(portletDefinitionId.getStringId());
     }
@@ -648,6 +648,38 @@ public class PortletExecutionManager extends HandlerInterceptorAdapter
         return tracker != null;
     }
 
+    @Override
+    public boolean isPortletRenderHeaderComplete(
+            IPortletWindowId portletWindowId,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        final Map<IPortletWindowId, IPortletRenderExecutionWorker> portletRenderingMap =
+                this.getPortletHeaderRenderingMap(request);
+        final IPortletRenderExecutionWorker tracker = portletRenderingMap.get(portletWindowId);
+
+        return isWorkerComplete(tracker);
+    }
+
+    @Override
+    public boolean isPortletRenderComplete(
+            IPortletWindowId portletWindowId,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        final Map<IPortletWindowId, IPortletRenderExecutionWorker> portletRenderingMap =
+                this.getPortletRenderingMap(request);
+        final IPortletRenderExecutionWorker tracker = portletRenderingMap.get(portletWindowId);
+
+        return isWorkerComplete(tracker);
+    }
+
+    /**
+     * A worker that has not started yet also reports itself as complete, so both have to be
+     * checked
+     */
+    private boolean isWorkerComplete(IPortletRenderExecutionWorker tracker) {
+        return tracker != null && tracker.isStarted() && tracker.isComplete();
+    }
+
     /* (non-Javadoc)
      * @see org.apereo.portal.portlet.rendering.IPortletExecutionManager#getPortletHeadOutput(org.apereo.portal.portlet.om.IPortletWindowId, javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
      */
@@ -0,0 +1,201 @@
+/**
+ * Licensed to Apereo under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright ownership. Apereo
+ * licenses this file to you under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at the
+ * following location:
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apereo.portal.portlet.rendering.worker;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apereo.portal.utils.ConcurrentMapUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounds the number of workers of each portlet fname that may be submitted or executing at once.
+ * Without a bound a single slow portlet that appears on many pages can occupy most of the portlet
+ * thread pool long before {@link HungWorkerAnalyzer} considers its workers hung, starving every
+ * other portlet. A permit is acquired when the worker is submitted and released when its execution
+ * completes. A worker waits a bounded time for a permit, workers that cannot get one within that
+ * time fail and are rendered by the error portlet.
+ */
+@ManagedResource("uPortal:section=Framework,name=PortletConcurrencyLimiter")
+@Service("portletConcurrencyLimiter")
+public class PortletConcurrencyLimiter
+        implements IPortletExecutionInterceptor, PortletConcurrencyLimiterMXBean {
+    private static final String PERMIT_ATTRIBUTE =
+            PortletConcurrencyLimiter.class.getName() + ".PERMIT";
+
+    protected final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ConcurrentMap<String, ExecutionLimit> executionLimits =
+            new ConcurrentHashMap<String, ExecutionLimit>();
+    private final AtomicLong deniedExecutionCount = new AtomicLong();
+
+    private volatile int maxConcurrentExecutionsByFname = 0;
+    private volatile long maxConcurrentExecutionsWaitTime = 1000;
+
+    @Value("${org.apereo.portal.portlet.maxConcurrentExecutionsByFname:0}")
+    @Override
+    public void setMaxConcurrentExecutionsByFname(int maxConcurrentExecutionsByFname) {
+        this.maxConcurrentExecutionsByFname = maxConcurrentExecutionsByFname;
+    }
+
+    @Override
+    public int getMaxConcurrentExecutionsByFname() {
+        return this.maxConcurrentExecutionsByFname;
+    }
+
+    @Value("${org.apereo.portal.portlet.maxConcurrentExecutionsWaitTime:1000}")
+    @Override
+    public void setMaxConcurrentExecutionsWaitTime(long maxConcurrentExecutionsWaitTime) {
+        this.maxConcurrentExecutionsWaitTime = maxConcurrentExecutionsWaitTime;
+    }
+
+    @Override
+    public long getMaxConcurrentExecutionsWaitTime() {
+        return this.maxConcurrentExecutionsWaitTime;
+    }
+
+    @Override
+    public long getDeniedExecutionCount() {
+        return this.deniedExecutionCount.get();
+    }
+
+    @Override
+    public Map<String, Integer> getActiveExecutionCounts() {
+        final Map<String, Integer> activeExecutionCounts = new TreeMap<String, Integer>();
+        for (final Map.Entry<String, ExecutionLimit> limitEntry : this.executionLimits.entrySet()) {
+            final int active = limitEntry.getValue().getActiveCount();
+            if (active > 0) {
+                activeExecutionCounts.put(limitEntry.getKey(), active);
+            }
+        }
+        return activeExecutionCounts;
+    }
+
+    @Override
+    public void preSubmit(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            IPortletExecutionContext context) {
+        final int maxConcurrentExecutions = this.maxConcurrentExecutionsByFname;
+        if (maxConcurrentExecutions <= 0) {
+            // Limiting is disabled, let everything execute
+            return;
+        }
+
+        final String portletFname = context.getPortletFname();
+        final ExecutionLimit executionLimit =
+                this.getExecutionLimit(portletFname, maxConcurrentExecutions);
+        if (!this.acquirePermit(executionLimit)) {
+            this.deniedExecutionCount.incrementAndGet();
+
+            final String msg =
+                    "Denying worker execution for "
+                            + portletFname
+                            + " that still had "
+                            + maxConcurrentExecutions
+                            + " workers submitted or executing after waiting "
+                            + this.maxConcurrentExecutionsWaitTime
+                            + "ms";
+            logger.info(msg);
+            throw new IllegalStateException(msg);
+        }
+
+        // Track the permit on the worker so it is returned to the semaphore it came from even if
+        // the limit is changed while the worker runs
+        context.setExecutionAttribute(PERMIT_ATTRIBUTE, executionLimit);
+    }
+
+    @Override
+    public void preExecution(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            IPortletExecutionContext context) {}
+
+    @Override
+    public void postExecution(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            IPortletExecutionContext context,
+            Exception e) {
+        // Workers denied in preSubmit still run the post execution interceptors but hold no permit
+        final ExecutionLimit executionLimit =
+                (ExecutionLimit) context.setExecutionAttribute(PERMIT_ATTRIBUTE, null);
+        if (executionLimit != null) {
+            executionLimit.permits.release();
+        }
+    }
+
+    private boolean acquirePermit(ExecutionLimit executionLimit) {
+        final long waitTime = this.maxConcurrentExecutionsWaitTime;
+        if (waitTime <= 0) {
+            return executionLimit.permits.tryAcquire();
+        }
+
+        try {
+            return executionLimit.permits.tryAcquire(waitTime, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private ExecutionLimit getExecutionLimit(String portletFname, int maxConcurrentExecutions) {
+        ExecutionLimit executionLimit = this.executionLimits.get(portletFname);
+        if (executionLimit == null) {
+            executionLimit =
+                    ConcurrentMapUtils.putIfAbsent(
+                            this.executionLimits,
+                            portletFname,
+                            new ExecutionLimit(maxConcurrentExecutions));
+        }
+
+        if (executionLimit.size != maxConcurrentExecutions) {
+            // The limit was changed, start a new semaphore. Workers holding permits from the old
+            // one are not counted against the new limit but they drain out within a timeout.
+            final ExecutionLimit newExecutionLimit = new ExecutionLimit(maxConcurrentExecutions);
+            if (this.executionLimits.replace(portletFname, executionLimit, newExecutionLimit)) {
+                executionLimit = newExecutionLimit;
+            } else {
+                executionLimit = this.executionLimits.get(portletFname);
+            }
+        }
+
+        return executionLimit;
+    }
+
+    private static final class ExecutionLimit {
+        private final int size;
+        private final Semaphore permits;
+
+        ExecutionLimit(int size) {
+            this.size = size;
+            this.permits = new Semaphore(size);
+        }
+
+        int getActiveCount() {
+            return this.size - this.permits.availablePermits();
+        }
+    }
+}
@@ -94,9 +94,9 @@ public class DynamicRenderingPipeline implements IPortalRenderingPipeline {
                 // https://github.com/uPortal-Project/uPortal-start/issues/570
                 writer.print("<!DOCTYPE html SYSTEM \"EMPTY\">\n");
             }
+            // No flush per event, PortletRenderingIncorporationComponent flushes before waiting on
+            // a portlet that is still rendering and the container flushes the rest
             writer.print(data);
-            writer.flush();
-            res.flushBuffer();
         }
 
         final long executionTime = System.nanoTime() - startTime;
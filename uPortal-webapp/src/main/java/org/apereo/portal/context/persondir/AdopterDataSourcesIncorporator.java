@@ -15,14 +15,15 @@
 package org.apereo.portal.context.persondir;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import org.apereo.portal.persondir.ConcurrentMergingPersonAttributeDao;
 import org.apereo.services.persondir.IPersonAttributeDao;
-import org.apereo.services.persondir.support.MergingPersonAttributeDaoImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,7 +47,7 @@ public class AdopterDataSourcesIncorporator {
 
     /** This is the bean within the Person Directory stack whose childrden we must manipulate. */
     @Resource(name = "mergingPersonAttributeDao")
-    private MergingPersonAttributeDaoImpl mergingPersonAttributeDao;
+    private ConcurrentMergingPersonAttributeDao mergingPersonAttributeDao;
 
     /**
      * These are the children of <code>mergingPersonAttributeDao</code> defined by uPortal itself.
@@ -75,11 +76,12 @@ public class AdopterDataSourcesIncorporator {
     public void init() {
 
         /*
-         * Identify IPersonAttributeDao beans defined by adopters.
+         * Identify IPersonAttributeDao beans defined by adopters.  They are visited by bean name so
+         * their merge order, and the names of their metrics, are the same on every start.
          */
-        final Set<IPersonAttributeDao> adopterDaos = new HashSet<>();
+        final Set<IPersonAttributeDao> adopterDaos = new LinkedHashSet<>();
         final Map<String, IPersonAttributeDao> allDaos =
-                applicationContext.getBeansOfType(IPersonAttributeDao.class);
+                new TreeMap<>(applicationContext.getBeansOfType(IPersonAttributeDao.class));
         for (Map.Entry<String, IPersonAttributeDao> y : allDaos.entrySet()) {
             logger.debug(
                     "Evaluating IPersonAttributeDao bean with id='{}' to see if it's uPortal "
@@ -28,9 +28,12 @@ import javax.annotation.Resource;
 import javax.servlet.Filter;
 import javax.sql.DataSource;
 import net.sf.ehcache.Cache;
+import org.apereo.portal.persondir.BulkPersonAttributeResolver;
+import org.apereo.portal.persondir.ConcurrentMergingPersonAttributeDao;
 import org.apereo.portal.persondir.ILocalAccountDao;
 import org.apereo.portal.persondir.ImpersonationStatusPersonAttributeDao;
 import org.apereo.portal.persondir.LocalAccountPersonAttributeDao;
+import org.apereo.portal.persondir.PersonAttributesCacheProvider;
 import org.apereo.portal.persondir.PortalRootPersonAttributeDao;
 import org.apereo.portal.persondir.support.PersonManagerCurrentUserProvider;
 import org.apereo.portal.utils.cache.MapCacheProvider;
@@ -44,6 +47,7 @@ import org.apereo.services.persondir.support.ICurrentUserProvider;
 import org.apereo.services.persondir.support.IUsernameAttributeProvider;
 import org.apereo.services.persondir.support.MediatingAdditionalDescriptors;
 import org.apereo.services.persondir.support.MergingPersonAttributeDaoImpl;
+import org.apereo.services.persondir.support.QueryType;
 import org.apereo.services.persondir.support.SimpleUsernameAttributeProvider;
 import org.apereo.services.persondir.support.jdbc.SingleRowJdbcPersonAttributeDao;
 import org.apereo.services.persondir.support.merger.NoncollidingAttributeAdder;
@@ -229,15 +233,21 @@ public class PersonDirectoryConfiguration {
         result.setUsernameAttributeProvider(getUsernameAttributeProvider());
         result.setCacheNullResults(true);
         result.setCacheKeyGenerator(getUserAttributeCacheKeyGenerator());
-        result.setUserInfoCache(new MapCacheProvider<>(userInfoCache));
+        // Leaves out the people merged without a source that failed or timed out
+        result.setUserInfoCache(new PersonAttributesCacheProvider(userInfoCache));
         result.setCachedPersonAttributesDao(getMergingPersonAttributeDao());
         return result;
     }
 
+    /**
+     * Queries the data providing DAOs in parallel and merges their attributes in the order of the
+     * innerMergedPersonAttributeDaoList.
+     */
     @Bean(name = "mergingPersonAttributeDao")
     @Qualifier("uPortalInternal")
-    public IPersonAttributeDao getMergingPersonAttributeDao() {
-        final MergingPersonAttributeDaoImpl result = new MergingPersonAttributeDaoImpl();
+    public ConcurrentMergingPersonAttributeDao getMergingPersonAttributeDao() {
+        final ConcurrentMergingPersonAttributeDao result =
+                new ConcurrentMergingPersonAttributeDao();
         result.setUsernameAttributeProvider(getUsernameAttributeProvider());
 
         /*
@@ -263,6 +273,22 @@ public class PersonDirectoryConfiguration {
         return result;
     }
 
+    /**
+     * Resolves the attributes of lists of users, like search results and group members, with a
+     * query per batch of users instead of per user. The users found are put into the cache of the
+     * cachingPersonAttributeDao.
+     */
+    @Bean(name = "bulkPersonAttributeResolver")
+    public BulkPersonAttributeResolver getBulkPersonAttributeResolver() {
+        final BulkPersonAttributeResolver result = new BulkPersonAttributeResolver();
+        result.setPersonAttributeDao(getPersonAttributeDao());
+        result.setMergingPersonAttributeDao(getMergingPersonAttributeDao());
+        result.setUserInfoCache(new MapCacheProvider<>(userInfoCache));
+        result.setCacheKeyGenerator(getUserAttributeCacheKeyGenerator());
+        result.setUsernameAttributeProvider(getUsernameAttributeProvider());
+        return result;
+    }
+
     /**
      * IPersonAttributeDao beans defined by implementors will be added to this list when the
      * ApplicationContext comes up.
@@ -326,6 +352,8 @@ public class PersonDirectoryConfiguration {
         final SingleRowJdbcPersonAttributeDao result =
                 new SingleRowJdbcPersonAttributeDao(personDb, sql);
         result.setUsernameAttributeProvider(getUsernameAttributeProvider());
+        // Only the username is queried, OR lets one query find several users by username
+        result.setQueryType(QueryType.OR);
         result.setQueryAttributeMapping(
                 Collections.singletonMap(USERNAME_ATTRIBUTE, USERNAME_COLUMN_NAME));
         final Map<String, Set<String>> resultAttributeMapping = new HashMap<>();
@@ -18,6 +18,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -26,21 +31,38 @@ import static org.mockito.Mockito.when;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
 import org.apereo.portal.io.xml.user.ExternalUser;
+import org.apereo.portal.io.xml.user.UserNamePortalDataIterable;
 import org.apereo.portal.io.xml.user.UserPortalDataType;
 import org.apereo.portal.xml.XmlUtilities;
 import org.apereo.portal.xml.XmlUtilitiesImpl;
@@ -53,10 +75,15 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.oxm.Marshaller;
 import org.springframework.oxm.Unmarshaller;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.scheduling.concurrent.ThreadPoolExecutorFactoryBean;
@@ -342,6 +369,138 @@ public class JaxbPortalDataHandlerServiceTest {
         verify(unmarshaller, times(16)).unmarshal(any(Source.class));
     }
 
+    @Test
+    public void testExportAllDataOfTypeToZipArchive() throws Exception {
+        final File archive = new File(tempFolder.getRoot(), "export.zip");
+        exportUsersToArchive(archive, "alice", "bob", "carol");
+
+        try (final ArchiveInputStream archiveStream =
+                new ZipArchiveInputStream(new FileInputStream(archive))) {
+            final Map<String, String> entries = readEntries(archiveStream);
+            assertEquals(
+                    Arrays.asList(
+                            "user/alice.user.xml", "user/bob.user.xml", "user/carol.user.xml"),
+                    new ArrayList<>(entries.keySet()));
+            assertEquals("<user>bob</user>", entries.get("user/bob.user.xml"));
+        }
+        // The temp file the archive was written to has been moved into place
+        assertEquals(
+                Collections.singletonList(archive),
+                Arrays.asList(tempFolder.getRoot().listFiles(File::isFile)));
+    }
+
+    @Test
+    public void testExportAllDataOfTypeToTarGzipArchive() throws Exception {
+        final File archive = new File(tempFolder.getRoot(), "export.tar.gz");
+        exportUsersToArchive(archive, "alice", "bob");
+
+        try (final ArchiveInputStream archiveStream =
+                new TarArchiveInputStream(
+                        new GzipCompressorInputStream(new FileInputStream(archive)))) {
+            final Map<String, String> entries = readEntries(archiveStream);
+            assertEquals(2, entries.size());
+            assertEquals("<user>alice</user>", entries.get("user/alice.user.xml"));
+            assertEquals("<user>bob</user>", entries.get("user/bob.user.xml"));
+        }
+    }
+
+    private void exportUsersToArchive(File archive, String... userNames) throws Exception {
+        final List<IPortalData> users = new ArrayList<>();
+        for (final String userName : userNames) {
+            users.add(new SimpleStringPortalData(userName, null, null));
+        }
+
+        final Marshaller marshaller = mock(Marshaller.class);
+        doAnswer(
+                        invocation -> {
+                            final StreamResult result = invocation.getArgument(1);
+                            result.getOutputStream()
+                                    .write(
+                                            ("<user>" + invocation.getArgument(0) + "</user>")
+                                                    .getBytes(StandardCharsets.UTF_8));
+                            return null;
+                        })
+                .when(marshaller)
+                .marshal(any(), any(StreamResult.class));
+
+        final IDataExporter<String> exporter = mock(IDataExporter.class);
+        when(exporter.getPortalDataType()).thenReturn(new UserPortalDataType());
+        doReturn(users).when(exporter).getPortalData();
+        when(exporter.exportData(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(exporter.getFileName(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(exporter.getMarshaller()).thenReturn(marshaller);
+
+        final Collection<IDataExporter<? extends Object>> exporters =
+                Collections.<IDataExporter<? extends Object>>singleton(exporter);
+        dataImportExportService.setDataExporters(exporters);
+        dataImportExportService.init();
+
+        final IPortalDataHandlerService.BatchExportOptions options =
+                new IPortalDataHandlerService.BatchExportOptions();
+        options.setLogDirectoryParent(tempFolder.newFolder("archiveExportLogs"));
+
+        dataImportExportService.exportAllDataOfTypeToArchive(
+                Collections.singleton("user"), archive, options);
+    }
+
+    private static Map<String, String> readEntries(ArchiveInputStream archiveStream)
+            throws IOException {
+        final Map<String, String> entries = new TreeMap<>();
+        for (ArchiveEntry entry = archiveStream.getNextEntry();
+                entry != null;
+                entry = archiveStream.getNextEntry()) {
+            entries.put(entry.getName(), IOUtils.toString(archiveStream, StandardCharsets.UTF_8));
+        }
+        return entries;
+    }
+
+    @Test
+    public void testUserNamePortalDataIterablePaging() throws Exception {
+        final List<String> userNames = Arrays.asList("admin", "alice", "bob", "carol", "dave");
+        final List<String> pageStarts = new ArrayList<>();
+
+        final JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+        when(jdbcOperations.query(any(PreparedStatementCreator.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> queryUserNames(invocation, userNames, pageStarts));
+
+        final UserNamePortalDataIterable iterable =
+                new UserNamePortalDataIterable(jdbcOperations, Collections.singleton("admin"), 2);
+        final List<String> exported = new ArrayList<>();
+        for (final IPortalData data : iterable) {
+            exported.add(data.getDataId());
+        }
+
+        assertEquals(Arrays.asList("alice", "bob", "carol", "dave"), exported);
+        // Each page starts after the last name of the previous one, the short page ends paging
+        assertEquals(Arrays.asList(null, "alice", "carol"), pageStarts);
+    }
+
+    /** Answers a user name page query as the database would for the given names */
+    private static List<String> queryUserNames(
+            InvocationOnMock invocation, List<String> userNames, List<String> pageStarts)
+            throws SQLException {
+        final Connection connection = mock(Connection.class);
+        final PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(ps);
+        invocation.<PreparedStatementCreator>getArgument(0).createPreparedStatement(connection);
+
+        final ArgumentCaptor<Integer> maxRows = ArgumentCaptor.forClass(Integer.class);
+        verify(ps).setMaxRows(maxRows.capture());
+        final ArgumentCaptor<String> after = ArgumentCaptor.forClass(String.class);
+        verify(ps, atMost(1)).setString(eq(1), after.capture());
+        final String afterUserName = after.getAllValues().isEmpty() ? null : after.getValue();
+        pageStarts.add(afterUserName);
+
+        final List<String> page = new ArrayList<>();
+        for (final String userName : userNames) {
+            if (page.size() < maxRows.getValue()
+                    && (afterUserName == null || userName.compareTo(afterUserName) > 0)) {
+                page.add(userName);
+            }
+        }
+        return page;
+    }
+
     protected IDataUpgrader createXsltDataUpgrader(
             final ClassPathResource xslResource, final PortalDataKey dataKey) throws Exception {
         final XsltDataUpgrader xsltDataUpgrader = new XsltDataUpgrader();
@@ -14,13 +14,17 @@
  */
 package org.apereo.portal.io.xml.crn;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
@@ -134,11 +138,86 @@ public class AbstractDom4jImporterExporterTest {
         }
     }
 
+    @Test
+    public void testImportChunks() throws Exception {
+        final ChunkRecordingImporter importer = new ChunkRecordingImporter(-1);
+        importer.importData(createPermissionSetReader(5), "test.permission_set.xml");
+
+        // Every chunk holds the leading children of the root and up to two targets
+        assertEquals(
+                Arrays.asList("owner,principal,1,2", "owner,principal,3,4", "owner,principal,5"),
+                importer.chunks);
+    }
+
+    @Test
+    public void testImportChunksWithoutRepeatedElements() throws Exception {
+        final ChunkRecordingImporter importer = new ChunkRecordingImporter(-1);
+        importer.importData(createPermissionSetReader(0), "test.permission_set.xml");
+
+        assertEquals(Arrays.asList("owner,principal"), importer.chunks);
+    }
+
+    @Test
+    public void testImportChunksFailureLeavesEarlierChunksImported() throws Exception {
+        final ChunkRecordingImporter importer = new ChunkRecordingImporter(1);
+        try {
+            importer.importData(createPermissionSetReader(5), "test.permission_set.xml");
+            fail("The second chunk should have failed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // Each chunk is imported on its own, the first one stays imported
+        assertEquals(Arrays.asList("owner,principal,1,2"), importer.chunks);
+    }
+
+    private static XMLEventReader createPermissionSetReader(int targets) throws Exception {
+        final StringBuilder xml = new StringBuilder("<permission-set>
+");
+        xml.append("  <owner>owner</owner>
+  <principal>principal</principal>
+");
+        for (int i = 1; i <= targets; i++) {
+            xml.append("  <target>").append(i).append("</target>
+");
+        }
+        xml.append("</permission-set>");
+        return XMLInputFactory.newInstance().createXMLEventReader(new StringReader(xml.toString()));
+    }
+
     private static class TestDom4jImporter extends AbstractDom4jImporter {
         @Override
         protected void importDataElement(Tuple<String, Element> data) {}
     }
 
+    /** Records the text of the children of each imported chunk, failing the chunk at failAt */
+    private static class ChunkRecordingImporter extends AbstractDom4jImporter {
+        private final List<String> chunks = new ArrayList<>();
+        private final int failAt;
+
+        ChunkRecordingImporter(int failAt) {
+            this.failAt = failAt;
+            setStreamingElementName("target");
+            setStreamingChunkSize(2);
+        }
+
+        @Override
+        protected void importDataElement(Tuple<String, Element> data) {
+            if (chunks.size() == failAt) {
+                throw new IllegalStateException("Failed to import chunk " + failAt);
+            }
+
+            final StringBuilder chunk = new StringBuilder();
+            for (final Object child : data.second.elements()) {
+                if (chunk.length() > 0) {
+                    chunk.append(',');
+                }
+                chunk.append(((Element) child).getText());
+            }
+            chunks.add(chunk.toString());
+        }
+    }
+
     private static class TestDom4jExporter extends AbstractDom4jExporter {
         @Override
         protected Element exportDataElement(String id) {
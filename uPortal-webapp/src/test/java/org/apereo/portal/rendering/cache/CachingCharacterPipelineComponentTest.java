@@ -21,13 +21,17 @@ import static org.easymock.EasyMock.notNull;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import org.apereo.portal.character.stream.CharacterEventBufferReader;
 import org.apereo.portal.character.stream.CharacterEventReader;
+import org.apereo.portal.character.stream.events.CharacterDataEvent;
+import org.apereo.portal.character.stream.events.CharacterDataEventImpl;
 import org.apereo.portal.character.stream.events.CharacterEvent;
+import org.apereo.portal.character.stream.events.CharacterEventTypes;
 import org.apereo.portal.rendering.CharacterPipelineComponent;
 import org.apereo.portal.rendering.PipelineEventReader;
 import org.apereo.portal.rendering.PipelineEventReaderImpl;
@@ -119,4 +123,42 @@ public class CachingCharacterPipelineComponentTest {
 
         verify(cache, targetComponent, elementsProvider);
     }
+
+    @Test
+    public void testBufferEventsCoalescesCharacterData() {
+        final CharacterEvent placeholder = createMock(CharacterEvent.class);
+        expect(placeholder.getEventType())
+                .andReturn(CharacterEventTypes.PORTLET_CONTENT)
+                .anyTimes();
+        replay(placeholder);
+
+        final CharacterDataEvent single = CharacterDataEventImpl.create("<div>");
+        final List<CharacterEvent> events =
+                Arrays.<CharacterEvent>asList(
+                        CharacterDataEventImpl.create("<html>"),
+                        CharacterDataEventImpl.create("<body>"),
+                        placeholder,
+                        single,
+                        placeholder,
+                        CharacterDataEventImpl.create("</body>"),
+                        CharacterDataEventImpl.EMPTY_CHARACTER_DATA,
+                        CharacterDataEventImpl.create("</html>"),
+                        CharacterDataEventImpl.create("<!-- end -->"));
+
+        final CachingCharacterPipelineComponent cachingComponent =
+                new CachingCharacterPipelineComponent();
+        final List<CharacterEvent> buffer = cachingComponent.bufferEvents(events);
+
+        Assert.assertEquals(7, buffer.size());
+        Assert.assertEquals(CharacterDataEventImpl.create("<html><body>"), buffer.get(0));
+        Assert.assertSame(placeholder, buffer.get(1));
+        Assert.assertSame(single, buffer.get(2));
+        Assert.assertSame(placeholder, buffer.get(3));
+        Assert.assertSame(events.get(5), buffer.get(4));
+        // Chunk points stay in place and data is not merged across them
+        Assert.assertSame(CharacterDataEventImpl.EMPTY_CHARACTER_DATA, buffer.get(5));
+        Assert.assertEquals(CharacterDataEventImpl.create("</html><!-- end -->"), buffer.get(6));
+
+        verify(placeholder);
+    }
 }
@@ -14,6 +14,7 @@
  */
 package org.apereo.portal.rendering.cache;
 
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
@@ -23,6 +24,11 @@ import static org.easymock.EasyMock.verify;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.events.XMLEvent;
 import net.sf.ehcache.Ehcache;
@@ -114,4 +120,80 @@ public class CachingStAXPipelineComponentTest {
 
         verify(cache, targetComponent, elementsProvider);
     }
+
+    @Test
+    public void testConcurrentCacheMissCoalesced() throws Exception {
+        final CacheKey cacheKey = CacheKey.build("testCacheKey");
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final AtomicInteger loadCount = new AtomicInteger();
+
+        final StAXPipelineComponent targetComponent =
+                new StAXPipelineComponent() {
+                    @Override
+                    public CacheKey getCacheKey(
+                            HttpServletRequest request, HttpServletResponse response) {
+                        return cacheKey;
+                    }
+
+                    @Override
+                    public PipelineEventReader<XMLEventReader, XMLEvent> getEventReader(
+                            HttpServletRequest request, HttpServletResponse response) {
+                        loadCount.incrementAndGet();
+                        loadStarted.countDown();
+                        try {
+                            releaseLoad.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        final List<XMLEvent> eventBuffer = Collections.emptyList();
+                        return new PipelineEventReaderImpl<XMLEventReader, XMLEvent>(
+                                new XMLEventBufferReader(eventBuffer.listIterator()));
+                    }
+                };
+
+        final Ehcache cache = createMock(Ehcache.class);
+        final ResourcesElementsProvider elementsProvider =
+                createMock(ResourcesElementsProvider.class);
+
+        expect(elementsProvider.getDefaultIncludedType()).andReturn(Included.AGGREGATED).times(2);
+        expect(cache.get(cacheKey)).andReturn(null).times(2);
+        cache.put((Element) anyObject());
+        expectLastCall().once();
+
+        replay(cache, elementsProvider);
+
+        final CachingStAXPipelineComponent cachingComponent = new CachingStAXPipelineComponent();
+        cachingComponent.setCache(cache);
+        cachingComponent.setWrappedComponent(targetComponent);
+        cachingComponent.setResourcesElementsProvider(elementsProvider);
+
+        final Runnable render =
+                () ->
+                        cachingComponent.getEventReader(
+                                new MockHttpServletRequest(), new MockHttpServletResponse());
+        final Thread leader = new Thread(render);
+        final Thread follower = new Thread(render);
+
+        leader.start();
+        Assert.assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+        follower.start();
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (cachingComponent.getCoalescedMissCount() == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        releaseLoad.countDown();
+
+        leader.join(10000);
+        follower.join(10000);
+
+        Assert.assertEquals(1, loadCount.get());
+        Assert.assertEquals(1, cachingComponent.getCacheMissCount());
+        Assert.assertEquals(1, cachingComponent.getCoalescedMissCount());
+        Assert.assertEquals(0, cachingComponent.getInFlightMissCount());
+
+        verify(cache, elementsProvider);
+    }
 }